@@ -9,6 +9,9 @@
 */
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.StringTokenizer;
 
 /**
  * This abstract class provides a skeleton implementation of the
@@ -233,6 +236,40 @@ public abstract class AbstractCCAHeuristic implements CCAHeuristic{
     public Cycle bestCycle(int [] bestcycleedge, int [] besticnodes){
 	return bestCycle(bestcycleedge,besticnodes,new ArrayList());
     }
+
+    /**
+     * Returns the interchange chosen by {@link #bestCycle(int [], int
+     * [], ArrayList)} followed by the equivalent operations, at most
+     * <code>max</code> distinct interchanges in total, as specified
+     * by the {@link CCAHeuristic} interface.
+     * @param max the maximum number of interchanges to be returned
+     * @return an ArrayList of int [4] arrays
+     **/
+    public ArrayList bestInterchanges(int max){
+	int [] edge = new int[2];
+	int [] icnodes = new int[2];
+	ArrayList candidates = new ArrayList();
+	bestCycle(edge, icnodes, candidates);
+	ArrayList ics = new ArrayList();
+	HashSet seen = new HashSet();
+	ics.add(new int [] {edge[0], edge[1], icnodes[0], icnodes[1]});
+	seen.add("IC " + edge[0] + " " + edge[1] + " " 
+		 + icnodes[0] + " " + icnodes[1]);
+	for (Iterator i = candidates.iterator(); 
+	     i.hasNext() && ics.size() < max;){
+	    String operation = (String) i.next();
+	    if (!seen.add(operation))
+		continue;
+	    // "IC edge[0] edge[1] icnodes[0] icnodes[1]"
+	    StringTokenizer st = new StringTokenizer(operation);
+	    st.nextToken();
+	    int [] ic = new int[4];
+	    for (int k = 0; k < 4; k++)
+		ic[k] = Integer.parseInt(st.nextToken());
+	    ics.add(ic);
+	}
+	return ics;
+    }
 }
 
 
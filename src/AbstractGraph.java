@@ -51,6 +51,22 @@ public abstract class AbstractGraph
 	return false;
     }
 
+    /** 
+     * Copies the neighbors of <code>node</code> into <code>nghb</code>.
+     * @param node the node of which the neighbors have to be returned
+     * @param nghb the array to be filled, big enough to hold all 
+     *             neighbors
+     * @return the array with the neihbors of the specified node, 
+     *         null if the node is removed
+     **/
+    public int [] neighbors(int node, int [] nghb){
+	int [] neighbors = neighbors(node);
+	if (neighbors == null)
+	    return null;
+	System.arraycopy(neighbors,0,nghb,0,neighbors.length);
+	return nghb;
+    }
+
     /** 
      * Adds a ChangeListener to the Graph to be notified of structural
      * changes.
@@ -126,14 +142,15 @@ public abstract class AbstractGraph
      * @return a String representation of this CubicGraph
      **/
     public String toString(){
-	String s = nrOfNodes() + "\n";
-	for(int i = 0; i < order(); i++)
-	    if (!isRemoved(i)){
-		int [] nghb = neighbors(i);
-		s+=i+": " + nghb[0] + "\t" + 
-		    nghb[1] + "\t" + nghb[2] +"\n";
-	    }
-	return s;
+	StringBuffer s = new StringBuffer(nrOfNodes() + "\n");
+	NodeIterator ni = first();
+	while (ni.hasNext()){
+	    int i = ni.next();
+	    int [] nghb = neighbors(i);
+	    s.append(i+": " + nghb[0] + "\t" + 
+		     nghb[1] + "\t" + nghb[2] +"\n");
+	}
+	return s.toString();
     }
     
     /** 
@@ -162,15 +179,17 @@ public abstract class AbstractGraph
   
     float diagstep = 250 / (nrOfNodes()/2); 
     float diag = 0;
-    for (int i=0; i < order(); i++)
-      if (!isRemoved(i)){
+    NodeIterator ni = first();
+    while (ni.hasNext()){
+	int i = ni.next();
 	diag+=diagstep;
 	out.println("node [\nid " + (20+i) + "\nlabel \"" + i 
 		    + "\"\ngraphics [\nx " + diag + "\ny " + diag 
 		    + "\nw 15\n]\nLabelGraphics [\ntype \"text\"\n]\n]");
-      }
-    for (int i = 0; i < order()-1; i++)
-      if (!isRemoved(i)){
+    }
+    ni = first();
+    while (ni.hasNext()){
+	int i = ni.next();
 	int [] nghb = neighbors(i);
 	String [] labels = gmlEdgeLabels(i);
 	for (int j = 0; j < 3; j++){
@@ -183,7 +202,7 @@ public abstract class AbstractGraph
 			+ "\ngraphics [\n]\nLabelGraphics [\n]\n]");
 	  }
 	}
-      }
+    }
     out.print("]");
   }
 
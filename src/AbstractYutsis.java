@@ -55,33 +55,81 @@ public abstract class AbstractYutsis
      * &lt;edge&gt &lt;edge&gt ... &lt;edge&gt </pre> With &lt;edge&gt
      * = node1 node2, the edges may be distributed over several lines,
      * but linebreaks are not allowed between two nodes of the same
-     * edge. No syntax checks are performed.  
+     * edge. The graph is read by splitting it into the trees of a
+     * braket, see {@link EdgeList}.
      **/
     public static final int EDGELIST = 4;
 
+    /**
+     * Int representing the binary format of a {@link YutsisArchive},
+     * which stores many graphs with a label dictionary and an index.
+     * The file starts with the bytes <code>YGB</code> and 1.
+     **/
+    public static final int ARCHIVE = 8;
+
+    /** The number of characters guessFormat may look ahead. **/
+    private static final int LOOKAHEAD = 1 << 16;
+
     /** 
      * Guesses the format of the file by looking at the first two lines.
      * The aim is to distinguinsh the different file formats by simple
      * differences like the number of tokens on a line, NOT to check for
      * correct syntax!
      * @param filename the filename of the file 
-     * @return the guessed format as an int (BRAKET, YTS or EDGELIST) or -1 
-     *         if unsupported (i.e. not recognized)
+     * @return the guessed format as an int (BRAKET, YTS, EDGELIST or
+     *         ARCHIVE) or -1 if unsupported (i.e. not recognized)
+     * @see YutsisGraph#read
      **/ 
     public static int guessFileFormat(String filename) throws IOException{
 	BufferedReader file = new BufferedReader(new FileReader(filename));
-	String firstline = file.readLine().trim();
-	if (firstline.startsWith("<") && firstline.endsWith(">"))
-	    return BRAKET;
+	try {
+	    return guessFormat(file);
+	}
+	finally {
+	    file.close();
+	}
+    }
 
-	String secondline = file.readLine().trim();
-	if (new StringTokenizer(secondline).countTokens() == 3)
-	    return YTS;
+    /**
+     * Guesses the format of the stream like {@link #guessFileFormat},
+     * and resets the stream to where it was, such that the graph can be
+     * read from the same stream. A BRAKET is recognized by its first
+     * character, such that a long BRAKET is not read twice.
+     * @param input the stream, which must support mark
+     * @return the guessed format as an int (BRAKET, YTS, EDGELIST or
+     *         ARCHIVE) or -1 if unsupported (i.e. not recognized)
+     * @throws IOException if an I/O error occurs
+     **/
+    public static int guessFormat(BufferedReader input) throws IOException{
+	input.mark(LOOKAHEAD);
+	try {
+	    int c = input.read();
+	    if (c == 'Y' && input.read() == 'G' && input.read() == 'B'
+		&& input.read() == 1)
+		return ARCHIVE;
+	    input.reset();
+	    do
+		c = input.read();
+	    while (c != -1 && Character.isWhitespace((char) c));
+	    if (c == -1)
+		return -1;
+	    if (c == '<')
+		return BRAKET;
+	    input.reset();
+	    String firstline = input.readLine();
+	    String secondline = input.readLine();
+	    if (secondline != null
+		&& new StringTokenizer(secondline).countTokens() == 3)
+		return YTS;
        
-	if (new StringTokenizer(firstline).countTokens() == 2)
-	    return EDGELIST;
-	else
-	    return -1;
+	    if (new StringTokenizer(firstline).countTokens() == 2)
+		return EDGELIST;
+	    else
+		return -1;
+	}
+	finally {
+	    input.reset();
+	}
     }
 
     /**
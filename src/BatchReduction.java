@@ -0,0 +1,279 @@
+/* BatchReduction.java
+   -------------------
+   2026 (c) agent
+*/
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.io.File;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Program reducing a batch of Yutsis graphs, given as the files in a
+ * directory or listed in a manifest, in one JVM. The graphs are read
+ * and reduced with a {@link CycleCostAlgorithm} by a fixed number of
+ * worker threads; a result line is printed as soon as a graph is
+ * reduced, so the lines appear in order of completion.
+ *
+ * <p> A manifest is a text file with a filename per line; relative
+ * names are relative to the directory of the manifest, empty lines
+ * and lines starting with '#' are skipped.
+ * @see CycleCostAlgorithm
+ * @author agent@local
+ **/
+public class BatchReduction{
+
+    static final int EDGE_COST = 0;
+    static final int MORE_SMALLER_LESS_BIGGER = 1;
+    static final int CYCLE_COUNT = 2;
+
+    /**
+     * Task reading and reducing one graph, returning its result line.
+     **/
+    static class Reduction implements Callable{
+	String filename;
+	/** The archive holding the graph, null if it is read from filename. **/
+	YutsisArchive archive;
+	/** The index of the graph in the archive. **/
+	int index;
+	int heuristic;
+	int beamwidth;
+	/** The cache shared by the Reductions, null if none. **/
+	ReductionCache cache;
+
+	Reduction(String filename, int heuristic, int beamwidth,
+		  ReductionCache cache){
+	    this.filename = filename;
+	    this.heuristic = heuristic;
+	    this.beamwidth = beamwidth;
+	    this.cache = cache;
+	}
+
+	/**
+	 * Reduction of graph <code>index</code> of <code>archive</code>,
+	 * of which the result line starts with "archivename#name".
+	 **/
+	Reduction(String archivename, YutsisArchive archive, int index,
+		  int heuristic, int beamwidth, ReductionCache cache){
+	    this(archivename + "#" + archive.name(index), heuristic,
+		 beamwidth, cache);
+	    this.archive = archive;
+	    this.index = index;
+	}
+
+	/**
+	 * Returns the line "filename #summations #6j's #ic's time",
+	 * separated by tabs, with the time of the reduction in ms (the
+	 * reading of the graph excluded), or "filename error: message".
+	 * When the reduction was found in the cache "cached" is appended.
+	 **/
+	public Object call(){
+	    try {
+		YutsisGraph y = archive == null ? YutsisGraph.read(filename)
+		    : archive.graph(index);
+		y.setLogStream(null);
+		long start = System.nanoTime();
+		CCAHeuristic h = (heuristic == EDGE_COST) ?
+		    (CCAHeuristic) new EdgeCostHeuristic(y) :
+		    (CCAHeuristic) new CycleCountHeuristic(y);
+		if (heuristic == CYCLE_COUNT)
+		    ((CycleCountHeuristic) h).setStrategy
+			(CycleCountHeuristic.CYCLE_COUNT);
+		CycleCostAlgorithm cca = new CycleCostAlgorithm(y, h);
+		cca.setLogStream(null);
+		cca.setBeamWidth(beamwidth);
+		boolean cached = false;
+		if (cache == null)
+		    cca.reduce();
+		else
+		    cached = cache.reduce(cca);
+		long time = System.nanoTime()-start;
+		GenRecoupCoeff grc = y.genRecoupCoeff();
+		return filename + "\t" + grc.nrOfSummations() + "\t"
+		    + grc.nrOf6js() + "\t" + cca.nrOfInterchanges() + "\t"
+		    + Math.round(time/100000.0)/10.0 + (cached ? "\tcached" : "");
+	    }
+	    catch (FileNotFoundException e){
+		return filename + "\terror: file not found";
+	    }
+	    catch (Exception e){
+		return filename + "\terror: " + e;
+	    }
+	}
+    }
+
+    /**
+     * Adds the files of the given directory, sorted by name, or the
+     * files listed in the given manifest to <code>files</code>.
+     * @param name the directory or manifest
+     * @param files the list of filenames
+     **/
+    static void addFiles(String name, ArrayList files) throws IOException{
+	File f = new File(name);
+	if (f.isDirectory()){
+	    File [] list = f.listFiles();
+	    Arrays.sort(list);
+	    for (int i = 0; i < list.length; i++)
+		if (list[i].isFile() && !list[i].isHidden())
+		    files.add(list[i].getPath());
+	    return;
+	}
+	BufferedReader manifest = new BufferedReader(new FileReader(f));
+	try {
+	    String line;
+	    while ((line = manifest.readLine()) != null){
+		line = line.trim();
+		if (line.length() == 0 || line.startsWith("#"))
+		    continue;
+		File entry = new File(line);
+		if (!entry.isAbsolute() && f.getParentFile() != null)
+		    entry = new File(f.getParentFile(), line);
+		files.add(entry.getPath());
+	    }
+	}
+	finally {
+	    manifest.close();
+	}
+    }
+
+    /**
+     * Runs the batch. When ran with illegal arguments it prints a
+     * "usage" to System.err.
+     **/
+    public static void main(String [] args) throws IOException{
+	String usage = "Usage: java BatchReduction [-options] <dir|manifest> ..."
+	    + "\n Reduces the BRAKET and YTS files in the directories and manifests"
+	    + "\n and the graphs in the YutsisArchives (<archive>#<name>)"
+	    + "\n and prints a line per graph in order of completion:"
+	    + "\n <filename> #summations #6j's #ic's time(ms)"
+	    + "\nOptions:"
+	    + "\n            e: use the EdgeCostHeuristic"
+	    + "\n            b: use the CycleCountHeuristic.MORE_SMALLER_LESS_BIGGER (default)"
+	    + "\n            c: use the CycleCountHeuristic.CYCLE_COUNT"
+	    + "\n            k<n>: beam search keeping the n best partial reductions"
+	    + "\n            w<n>: reduce n graphs at a time (default: all processors)"
+	    + "\n            C<dir>: reuse the reductions of isomorphic graphs stored"
+	    + "\n                    in directory dir";
+	int heuristic = MORE_SMALLER_LESS_BIGGER;
+	int beamwidth = 1;
+	int workers = Runtime.getRuntime().availableProcessors();
+	String cachedir = null;
+	ArrayList files = new ArrayList();
+	try {
+	    for (int i = 0; i < args.length; i++){
+		if (!args[i].startsWith("-")){
+		    if (YutsisArchive.isArchive(new File(args[i])))
+			files.add(new YutsisArchive(new File(args[i])));
+		    else
+			addFiles(args[i], files);
+		    continue;
+		}
+		for (int k = 1; k < args[i].length(); k++)
+		    switch (args[i].charAt(k)){
+		    case 'e':
+			heuristic = EDGE_COST;
+			break;
+		    case 'b':
+			heuristic = MORE_SMALLER_LESS_BIGGER;
+			break;
+		    case 'c':
+			heuristic = CYCLE_COUNT;
+			break;
+		    case 'k':
+		    case 'w':
+			int end = k+1;
+			while (end < args[i].length()
+			       && Character.isDigit(args[i].charAt(end)))
+			    end++;
+			if (end == k+1)
+			    throw new IllegalArgumentException();
+			int n = Integer.parseInt(args[i].substring(k+1,end));
+			if (n < 1)
+			    throw new IllegalArgumentException();
+			if (args[i].charAt(k) == 'k')
+			    beamwidth = n;
+			else
+			    workers = n;
+			k = end-1;
+			break;
+		    case 'C':
+			cachedir = args[i].substring(k+1);
+			if (cachedir.length() == 0)
+			    throw new IllegalArgumentException();
+			k = args[i].length();
+			break;
+		    default:
+			throw new IllegalArgumentException();
+		    }
+	    }
+	}
+	catch (FileNotFoundException e){
+	    System.err.println(e.getMessage());
+	    return;
+	}
+	catch (IllegalArgumentException e){
+	    System.err.println(usage);
+	    return;
+	}
+	if (files.size() == 0){
+	    System.err.println(usage);
+	    return;
+	}
+	ReductionCache cache = cachedir == null ? null :
+	    new ReductionCache(new File(cachedir),
+			       (heuristic == EDGE_COST ? "EdgeCost" :
+				heuristic == CYCLE_COUNT ? "CycleCount.CYCLE_COUNT" :
+				"CycleCount.MORE_SMALLER_LESS_BIGGER")
+			       + (beamwidth > 1 ? " k" + beamwidth : ""));
+	ExecutorService pool = Executors.newFixedThreadPool(workers);
+	CompletionService results = new ExecutorCompletionService(pool);
+	// maps the Futures on their Reductions, to name a failed graph
+	HashMap tasks = new HashMap();
+	for (int i = 0; i < files.size(); i++)
+	    if (files.get(i) instanceof YutsisArchive){
+		YutsisArchive archive = (YutsisArchive) files.get(i);
+		for (int k = 0; k < archive.size(); k++){
+		    Reduction r = new Reduction(archive.file().getPath(),
+						archive, k, heuristic,
+						beamwidth, cache);
+		    tasks.put(results.submit(r), r);
+		}
+	    }
+	    else {
+		Reduction r = new Reduction((String) files.get(i), heuristic,
+					    beamwidth, cache);
+		tasks.put(results.submit(r), r);
+	    }
+	try {
+	    for (int i = tasks.size(); i > 0; i--){
+		Future f = results.take();
+		try {
+		    System.out.println(f.get());
+		}
+		catch (ExecutionException e){
+		    // Reduction.call catches its exceptions: only errors
+		    // (e.g. a StackOverflowError) get here
+		    System.out.println(((Reduction) tasks.get(f)).filename
+				       + "\terror: " + e.getCause());
+		}
+	    }
+	}
+	catch (InterruptedException e){}
+	finally {
+	    pool.shutdownNow();
+	}
+	if (cache != null)
+	    System.err.println(cache);
+    }
+}
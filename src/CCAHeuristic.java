@@ -35,6 +35,17 @@ public interface CCAHeuristic{
      **/
     public void setProblem(Yutsis y, CycleGenerator cg);
 
+    /**
+     * Returns a new CCAHeuristic of the same kind and with the same
+     * settings as this one, for the Yutsis object <code>y</code>. Used
+     * to explore several reductions at once, each on its own copy of
+     * the problem.
+     * @param y the Yutsis object for which operations must be chosen
+     * @return a new CCAHeuristic for y
+     * @see Yutsis
+     **/
+    public CCAHeuristic newInstance(Yutsis y);
+
     /**
      * Returns the problem considered.
      * @return the Yutsis object defining the problem or null if no
@@ -138,4 +149,16 @@ public interface CCAHeuristic{
      **/
     public Cycle bestCycle(int [] bestcycleedge, int [] besticnodes, 
 			   ArrayList candidates);
+
+    /**
+     * Returns at most <code>max</code> interchanges, best first,
+     * each as an array <code>{edge[0], edge[1], icnodes[0],
+     * icnodes[1]}</code> in the canonical form of {@link
+     * #bestCycle(int [], int [], ArrayList)}; the first is the 
+     * interchange chosen by that method.
+     * @param max the maximum number of interchanges to be returned
+     * @return an ArrayList of int [4] arrays
+     * @see CycleCostAlgorithm#setBeamWidth
+     **/
+    public ArrayList bestInterchanges(int max);
 }
@@ -7,7 +7,7 @@
    Krijgslaan 281--S9
    B-9000 GENT Belgium
 */
-import java.util.ArrayList;
+import java.util.NoSuchElementException;
 
 /** 
  * Class representing relevant cycles, which are by definition
@@ -22,12 +22,12 @@ import java.util.ArrayList;
 public class Cycle{
 
     /** 
-     * The cycle is represented by the {@link Path} that results when all
-     * edges are followed except the last edge going back to the
-     * start node.
+     * The cycle is represented by the nodes of the {@link Path} that 
+     * results when all edges are followed except the last edge going
+     * back to the start node.
      * @see Path
      **/
-    Path cycle;
+    int [] nodes;
     
     /** 
      * Constructs an odd relevant cycle made of a shortest path from
@@ -38,17 +38,10 @@ public class Cycle{
      * @see Path
      **/
     public Cycle(Path ry, Path rz){
-	ArrayList nodes = new ArrayList(ry.length()+ rz.length()+1);
-	NodeIterator ni = ry.first();
-	while (ni.hasNext())
-	    nodes.add(new Integer(ni.next()));
-	ni = rz.last();
-	while (ni.hasPrevious()){
-	    Integer node = new Integer(ni.previous());
-	    if (ni.hasPrevious())
-		nodes.add(node);
-	}
-	cycle = new Path(nodes);
+	nodes = new int[ry.size+rz.size-1];
+	System.arraycopy(ry.nodes,0,nodes,0,ry.size);
+	for (int k = rz.size-1; k > 0; k--)
+	    nodes[ry.size+rz.size-1-k] = rz.nodes[k];
     }
 
     /** 
@@ -61,18 +54,11 @@ public class Cycle{
      * @see Path
      **/
     public Cycle(Path rp, Path rq, int y){
-	ArrayList nodes = new ArrayList(rp.length()+ rq.length()+2);
-	NodeIterator ni = rp.first();
-	while (ni.hasNext())
-	    nodes.add(new Integer(ni.next()));
-	nodes.add(new Integer(y));
-	ni = rq.last();
-	while (ni.hasPrevious()){
-	    Integer node = new Integer(ni.previous());
-	    if (ni.hasPrevious())
-		nodes.add(node);
-	}
-	cycle = new Path(nodes);
+	nodes = new int[rp.size+rq.size];
+	System.arraycopy(rp.nodes,0,nodes,0,rp.size);
+	nodes[rp.size] = y;
+	for (int k = rq.size-1; k > 0; k--)
+	    nodes[rp.size+rq.size-k] = rq.nodes[k];
     }
 
     /** 
@@ -80,7 +66,7 @@ public class Cycle{
      * @return the length of this cycle
      **/
     public int length(){
-	return cycle.length()+1;
+	return nodes.length;
     }   
 
     /** 
@@ -90,7 +76,7 @@ public class Cycle{
      * @return the node at the specified index
      **/
     public int nodeAt(int index){
-	return cycle.nodeAt(index);
+	return nodes[index];
     } 
 
     /** 
@@ -101,7 +87,7 @@ public class Cycle{
      * @see NodeIterator
      **/
     public NodeIterator first(){
-	return cycle.first();
+	return new Path.PNodeIterator(nodes,nodes.length,0);
     }
 
     /** 
@@ -112,7 +98,7 @@ public class Cycle{
      * @see NodeIterator
      **/
     public NodeIterator last(){
-	return cycle.last();
+	return new Path.PNodeIterator(nodes,nodes.length,nodes.length);
     }
 
     /** 
@@ -123,7 +109,10 @@ public class Cycle{
      * @see NodeIterator
      **/
     public NodeIterator nodeIterator(int node){
-	return cycle.nodeIterator(node);
+	for (int k = 0; k < nodes.length; k++)
+	    if (nodes[k] == node)
+		return new Path.PNodeIterator(nodes,nodes.length,k);
+	throw new NoSuchElementException("Node " + node + " not in cycle.");
     }
    
     /** 
@@ -131,7 +120,9 @@ public class Cycle{
      * @return a String representation of this cycle
      **/
     public String toString(){
-	return new StringBuffer(cycle.toString()).
-	    append("->"+cycle.first().next()).toString();
+	StringBuffer sb = new StringBuffer();
+	for (int k = 0; k < nodes.length; k++)
+	    sb.append(nodes[k]+"->");
+	return sb.append(nodes[0]).toString();
     }
 }
@@ -8,12 +8,13 @@
    B-9000 GENT Belgium
 */
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import java.io.PrintStream;
-import java.io.FileReader;
 import java.io.FileOutputStream;
-import java.io.BufferedReader;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.FileNotFoundException;
@@ -34,6 +35,12 @@ import javax.swing.event.ChangeEvent;
  * are triangles present they are removed. When there are no bubbles
  * nor triangles present, the heuristic will decide which interchange
  * will be applied.
+ *
+ * <p> In beam search mode (beam width bigger than one) the
+ * interchanges the heuristic considers equivalent are explored as
+ * well: at each step the best partial reductions are kept and
+ * expanded, and the reduction with the fewest summations and
+ * 6j-symbols is applied.
  * @see Yutsis
  * @see CCAHeuristic
  * @author Dries.VanDyck@rug.ac.be
@@ -41,6 +48,13 @@ import javax.swing.event.ChangeEvent;
 public class CycleCostAlgorithm
     implements ChangeListener{
 
+    /** Code of a bubble removal in {@link #operations()}. **/
+    public static final int BUBBLE = 0;
+    /** Code of a triangle removal in {@link #operations()}. **/
+    public static final int TRIANGLE = 1;
+    /** Code of an interchange in {@link #operations()}. **/
+    public static final int INTERCHANGE = 2;
+
     /**
      * The Yutsis object defining the problem.
      * @see Yutsis
@@ -67,14 +81,58 @@ public class CycleCostAlgorithm
 
     int nrofinterchanges = 0;
 
+    /**
+     * The interchanges performed so far, as int [4] arrays holding
+     * the edge and the interchange nodes.
+     **/
+    ArrayList interchanges = new ArrayList();
+
+    /**
+     * All operations performed so far, see {@link #operations()}.
+     **/
+    ArrayList operations = new ArrayList();
+
     boolean stateChanged = true;
 
+    /**
+     * Set by {@link #cancel} to stop the reduction.
+     **/
+    volatile boolean cancelled = false;
+
+    /**
+     * The ChangeListeners notified after each step of {@link #reduce}.
+     **/
+    ArrayList progresslisteners = new ArrayList();
+
+    /**
+     * The girth of the graph on which the last operation was performed,
+     * only kept when there are progress listeners.
+     **/
+    int girth = 0;
+
+    /**
+     * The metrics of the steps performed, null when disabled.
+     **/
+    ReductionMetrics metrics = null;
+
     /**
      * Basename of the files where the graph after each step will be
      * written in gml-output (graphlet).
      **/
     String gmlbasename = null;
 
+    /**
+     * Number of partial reductions kept by the beam search; 1 means
+     * the greedy reduction.
+     **/
+    int beamwidth = 1;
+
+    /**
+     * Number of threads expanding the partial reductions of the beam
+     * search.
+     **/
+    int beamparallelism = 1;
+
     /**
      * Constructs a new CycleCostAlgorithm object for the
      * Yutsis y with heuristic h.
@@ -100,6 +158,108 @@ public class CycleCostAlgorithm
      **/
     public int nrOfInterchanges() { return nrofinterchanges; }
 
+    /**
+     * Returns the interchanges performed so far, in order, as int [4]
+     * arrays <code>{edge[0], edge[1], icnodes[0], icnodes[1]}</code>.
+     * Together with the bubbles and triangles removed in between they
+     * determine the reduction: see {@link #reduce(ArrayList)}.
+     * @return an ArrayList of int [4] arrays
+     **/
+    public ArrayList interchanges(){ return new ArrayList(interchanges); }
+
+    /**
+     * Returns all operations performed so far, in order, as int
+     * arrays: <code>{BUBBLE, node, node}</code>, <code>{TRIANGLE,
+     * node, node, node}</code> or <code>{INTERCHANGE, edge[0],
+     * edge[1], icnodes[0], icnodes[1]}</code>. Unlike the interchanges
+     * alone, they can be repeated on an isomorphic graph with another
+     * numbering of the nodes by {@link #perform}.
+     * @return an ArrayList of int arrays
+     **/
+    public ArrayList operations(){ return new ArrayList(operations); }
+
+    /**
+     * Stops a reduction in progress, possibly from another thread:
+     * {@link #reduce} returns after the current operation, leaving the
+     * Yutsis object partially reduced.
+     **/
+    public void cancel(){ cancelled = true; }
+
+    /**
+     * True if {@link #cancel} has been called.
+     * @return true if the reduction has been cancelled
+     **/
+    public boolean isCancelled(){ return cancelled; }
+
+    /**
+     * Undoes {@link #cancel}, such that {@link #reduce} goes on with
+     * the partially reduced Yutsis object.
+     **/
+    public void clearCancelled(){ cancelled = false; }
+
+    /**
+     * Registers a ChangeListener notified after each step of {@link
+     * #reduce}, in the thread of the reduction, with a ChangeEvent of
+     * which the source is a {@link ReductionProgress}.
+     * @param l the ChangeListener to be added
+     **/
+    public void addProgressListener(ChangeListener l){
+        synchronized (progresslisteners){
+            progresslisteners.add(l);
+        }
+    }
+
+    /**
+     * Removes a ChangeListener registered by {@link
+     * #addProgressListener}.
+     * @param l the ChangeListener to be removed
+     **/
+    public void removeProgressListener(ChangeListener l){
+        synchronized (progresslisteners){
+            progresslisteners.remove(l);
+        }
+    }
+
+    /**
+     * Notifies the progress listeners of the step performed.
+     **/
+    void fireProgress(int step, long start){
+        Object [] listeners;
+        synchronized (progresslisteners){
+            if (progresslisteners.isEmpty())
+                return;
+            listeners = progresslisteners.toArray();
+        }
+        ChangeEvent ce = new ChangeEvent
+            (new ReductionProgress(step, y.nrOfNodes(), girth,
+                                   (System.nanoTime()-start)/1000000));
+        for (int i = 0; i < listeners.length; i++)
+            ((ChangeListener) listeners[i]).stateChanged(ce);
+    }
+
+    /**
+     * Enables or disables the recording of the time spent per step in
+     * each phase of the reduction, together with some counters (see
+     * {@link ReductionMetrics}). Disabled by default. Only the steps
+     * performed in the thread of this CycleCostAlgorithm are
+     * recorded, not the exploration of the beam search.
+     * @param enabled true if the metrics have to be recorded
+     **/
+    public void setMetricsEnabled(boolean enabled){
+        if (!enabled)
+            metrics = null;
+        else if (metrics == null)
+            metrics = new ReductionMetrics();
+    }
+
+    /**
+     * Returns the metrics of the steps performed since they were
+     * enabled.
+     * @return the metrics or null if disabled
+     * @see #setMetricsEnabled
+     **/
+    public ReductionMetrics metrics(){ return metrics; }
+
     /**
      * Searches for the best operation to reduce the Yutsis object and
      * performs it.  If there is a bubble or triangle in the graph it
@@ -108,32 +268,44 @@ public class CycleCostAlgorithm
      * @see CCAHeuristic
      **/
     public void performOperation(){
-        int [] bubble = y.bubble();
-        if (bubble[0] != -1){
-            log("Best Cycle: "
-                + bubble[0] + "->" + bubble[1] + "->"+bubble[0]);
-            y.removeBubble(bubble);
-            return;
+        try {
+            chooseOperation();
         }
-        nrofinterchanges++; // triangle counts for an interchange
-        int [] triangle = y.triangle();
-        if (triangle[0] != -1){
-            log("Best cycle: "+
-                triangle[0]+"->"+triangle[1]
-                +"->"+triangle[2]+"->"+triangle[0]);
-            y.removeTriangle(triangle);
-            return;
+        finally {
+            abortStep();
         }
+    }
+
+    /**
+     * Performs the operation of {@link #performOperation}.
+     **/
+    private void chooseOperation(){
+        if (removeBubbleOrTriangle())
+            return;
+        ReductionMetrics m = metrics;
+        if (m != null)
+            m.beginStep();
+        nrofinterchanges++;
         int [] bestcycleedge = {-1,-1};
         int [] besticnodes = {-1,-1};
         ArrayList candidates = new ArrayList();
+        ReductionMetrics phase =
+            ReductionMetrics.begin(ReductionMetrics.HEURISTIC);
         Cycle bestcycle = h.bestCycle(bestcycleedge, besticnodes, candidates);
+        ReductionMetrics.end(phase);
+        if (!progresslisteners.isEmpty())
+            girth = h.cycleGenerator().girth();
         log("Best Cycle:"+bestcycle+"; best edge: "
             + (y instanceof YutsisGraph ?
                ((YutsisGraph) y).edges(bestcycleedge[0],
                                        bestcycleedge[1])[0].toString()
                : "(" +bestcycleedge[0]+","+bestcycleedge[1]+")"));
         log("IC nodes: "+besticnodes[0]+", "+besticnodes[1]);
+        interchanges.add(new int [] {bestcycleedge[0], bestcycleedge[1],
+                                     besticnodes[0], besticnodes[1]});
+        operations.add(new int [] {INTERCHANGE,
+                                   bestcycleedge[0], bestcycleedge[1],
+                                   besticnodes[0], besticnodes[1]});
         if (candidates.size() > 0){
             log("Equivalent operations:");
             for (Iterator i = candidates.iterator(); i.hasNext();){
@@ -141,7 +313,125 @@ public class CycleCostAlgorithm
                 log(operation);
             }
         }
+        phase = ReductionMetrics.begin(ReductionMetrics.GRAPH);
         y.interchange(bestcycleedge,besticnodes);
+        ReductionMetrics.end(phase);
+        if (m != null)
+            m.endStep("interchange", y.nrOfNodes());
+    }
+
+    /**
+     * Drops the step of the metrics still in progress after an
+     * operation threw an exception.
+     **/
+    private void abortStep(){
+        if (metrics != null)
+            metrics.abortStep();
+    }
+
+    /**
+     * Removes a bubble, or if there are none a triangle, if present.
+     * @return true if a bubble or triangle was removed
+     **/
+    boolean removeBubbleOrTriangle(){
+        ReductionMetrics m = metrics;
+        if (m != null)
+            m.beginStep(); // goes on when nothing is removed
+        int [] bubble = y.bubble();
+        if (bubble[0] != -1){
+            log("Best Cycle: "
+                + bubble[0] + "->" + bubble[1] + "->"+bubble[0]);
+            operations.add(new int [] {BUBBLE, bubble[0], bubble[1]});
+            girth = 2;
+            ReductionMetrics phase =
+                ReductionMetrics.begin(ReductionMetrics.GRAPH);
+            y.removeBubble(bubble);
+            ReductionMetrics.end(phase);
+            if (m != null)
+                m.endStep("bubble", y.nrOfNodes());
+            return true;
+        }
+        int [] triangle = y.triangle();
+        if (triangle[0] != -1){
+            nrofinterchanges++; // triangle counts for an interchange
+            log("Best cycle: "+
+                triangle[0]+"->"+triangle[1]
+                +"->"+triangle[2]+"->"+triangle[0]);
+            operations.add(new int [] {TRIANGLE,
+                                       triangle[0], triangle[1], triangle[2]});
+            girth = 3;
+            ReductionMetrics phase =
+                ReductionMetrics.begin(ReductionMetrics.GRAPH);
+            y.removeTriangle(triangle);
+            ReductionMetrics.end(phase);
+            if (m != null)
+                m.endStep("triangle", y.nrOfNodes());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Performs the given operation, as returned by {@link
+     * #operations()}, without consulting the heuristic.
+     * @param operation the operation to be performed
+     **/
+    public void perform(int [] operation){
+        try {
+            performStep(operation);
+        }
+        finally {
+            abortStep();
+        }
+    }
+
+    /**
+     * Performs the operation of {@link #perform}.
+     **/
+    private void performStep(int [] operation){
+        ReductionMetrics m = metrics;
+        if (m != null)
+            m.beginStep();
+        operations.add(operation.clone());
+        ReductionMetrics phase;
+        switch (operation[0]){
+        case BUBBLE:
+            log("Bubble: " + operation[1] + "->" + operation[2]
+                + "->" + operation[1]);
+            phase = ReductionMetrics.begin(ReductionMetrics.GRAPH);
+            y.removeBubble(new int [] {operation[1], operation[2]});
+            ReductionMetrics.end(phase);
+            if (m != null)
+                m.endStep("bubble", y.nrOfNodes());
+            break;
+        case TRIANGLE:
+            nrofinterchanges++;
+            log("Triangle: " + operation[1] + "->" + operation[2]
+                + "->" + operation[3] + "->" + operation[1]);
+            phase = ReductionMetrics.begin(ReductionMetrics.GRAPH);
+            y.removeTriangle(new int [] {operation[1], operation[2],
+                                         operation[3]});
+            ReductionMetrics.end(phase);
+            if (m != null)
+                m.endStep("triangle", y.nrOfNodes());
+            break;
+        case INTERCHANGE:
+            nrofinterchanges++;
+            interchanges.add(new int [] {operation[1], operation[2],
+                                         operation[3], operation[4]});
+            log("Interchange: IC " + operation[1] + " " + operation[2]
+                + " " + operation[3] + " " + operation[4]);
+            phase = ReductionMetrics.begin(ReductionMetrics.GRAPH);
+            y.interchange(new int [] {operation[1], operation[2]},
+                          new int [] {operation[3], operation[4]});
+            ReductionMetrics.end(phase);
+            if (m != null)
+                m.endStep("interchange", y.nrOfNodes());
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown operation "
+                                               + operation[0]);
+        }
     }
 
     /**
@@ -165,6 +455,37 @@ public class CycleCostAlgorithm
      **/
     public void setHeuristic(CCAHeuristic h){ this.h = h; }
 
+    /**
+     * Returns the number of partial reductions kept by the beam search.
+     * @return the beam width, 1 for the greedy reduction
+     **/
+    public int beamWidth(){ return beamwidth; }
+
+    /**
+     * Sets the number of partial reductions kept by the beam search
+     * in {@link #reduce}. A width of 1 (default) yields the greedy
+     * reduction applying the best operation of the heuristic at each
+     * step. The beam search is only done for YutsisGraphs.
+     * @param beamwidth the beam width
+     **/
+    public void setBeamWidth(int beamwidth){
+        if (beamwidth < 1)
+            throw new IllegalArgumentException("beam width < 1");
+        this.beamwidth = beamwidth;
+    }
+
+    /**
+     * Sets the number of threads expanding the partial reductions of
+     * the beam search; each thread works on its own copy of the
+     * graph. The result does not depend on this number.
+     * @param parallelism the number of threads to be used
+     **/
+    public void setBeamParallelism(int parallelism){
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism < 1");
+        beamparallelism = parallelism;
+    }
+
     /**
      * Write the String to the logstream.
      * @param tolog the String to be logged
@@ -196,19 +517,373 @@ public class CycleCostAlgorithm
 
     /**
      * Reduces the Yutsis object to a so called triangular delta
-     * by repeatedly calling performOperation.
+     * by repeatedly calling performOperation, unless it is cancelled.
+     * The cancellation is checked before each step; the progress
+     * listeners are notified after each step.
      * @see #performOperation.
+     * @see #cancel
+     * @see #addProgressListener
      * @see Yutsis
      **/
     public void reduce(){
         GRVisitor grv = null;
-        while (!y.triangularDelta()){
+        long start = System.nanoTime();
+        int step = 0;
+        if (beamwidth > 1 && y instanceof YutsisGraph && !cancelled)
+            replay(beamSearch().path(), "Beam search", grv);
+        while (!cancelled && !y.triangularDelta()){
             logCurrentState(grv);
             performOperation();
+            fireProgress(++step, start);
         }
         logCurrentState(grv);
     }
 
+    /**
+     * Reduces the Yutsis object by first applying the given
+     * interchanges, each preceded by the removal of all bubbles and
+     * triangles, and then calling {@link #reduce()}. Given the
+     * interchanges of another reduction of the same problem, this
+     * repeats that reduction without consulting the heuristic.
+     * @param interchanges an ArrayList of int [4] arrays as returned
+     *                     by {@link #interchanges()}
+     **/
+    public void reduce(ArrayList interchanges){
+        replay(interchanges, "Replay", null);
+        reduce();
+    }
+
+    /**
+     * A partial reduction explored by the beam search: the sequence
+     * of interchanges leading to it (each followed by the removal of
+     * all bubbles and triangles), and its result.
+     **/
+    static class BeamState implements Comparable{
+        /** The state before the last interchange, null for the root. **/
+        BeamState parent;
+        /** The last interchange: edge[0], edge[1], icnodes[0], icnodes[1]. **/
+        int [] ic;
+        /** The number of interchanges. **/
+        int depth;
+        /** The number of nodes left. **/
+        int nodes;
+        /** The number of summations in the formula. **/
+        int summations;
+        /** The number of 6j-symbols in the formula. **/
+        int nrof6j;
+        /** The rank of the last interchange among those of the parent. **/
+        int position;
+        /**
+         * The score of the heuristic: the sum of the positions of all
+         * interchanges, 0 for the greedy reduction.
+         **/
+        int score;
+        /** The order in which the states of a step are generated. **/
+        int rank;
+
+        BeamState(BeamState parent, int [] ic, int position, YutsisGraph y){
+            this.parent = parent;
+            this.ic = ic;
+            this.position = position;
+            depth = parent == null ? 0 : parent.depth+1;
+            score = parent == null ? 0 : parent.score+position;
+            nodes = y.nrOfNodes();
+            summations = y.genRecoupCoeff().nrOfSummations();
+            nrof6j = y.genRecoupCoeff().nrOf6js();
+        }
+
+        /**
+         * True if the graph is reduced to a triangular delta.
+         **/
+        boolean reduced(){ return nodes == 2; }
+
+        /**
+         * True if this reduced state has fewer summations than
+         * <code>s</code>, or as many but fewer 6j-symbols.
+         **/
+        boolean betterThan(BeamState s){
+            if (summations != s.summations)
+                return summations < s.summations;
+            return nrof6j < s.nrof6j;
+        }
+
+        /**
+         * Orders states by the score of the heuristic first, then
+         * fewest nodes left, then fewest 6j-symbols, then the order
+         * of generation.
+         **/
+        public int compareTo(Object o){
+            BeamState s = (BeamState) o;
+            if (score != s.score)
+                return score < s.score ? -1 : 1;
+            if (nodes != s.nodes)
+                return nodes < s.nodes ? -1 : 1;
+            if (nrof6j != s.nrof6j)
+                return nrof6j < s.nrof6j ? -1 : 1;
+            return rank < s.rank ? -1 : rank > s.rank ? 1 : 0;
+        }
+
+        /**
+         * Returns the interchanges leading to this state.
+         **/
+        ArrayList path(){
+            int [][] path = new int[depth][];
+            for (BeamState t = this; t.parent != null; t = t.parent)
+                path[t.depth-1] = t.ic;
+            ArrayList ics = new ArrayList(depth);
+            for (int d = 0; d < depth; d++)
+                ics.add(path[d]);
+            return ics;
+        }
+
+        public String toString(){
+            return "IC " + ic[0] + " " + ic[1] + " " + ic[2] + " " + ic[3];
+        }
+    }
+
+    /**
+     * Removes bubbles and triangles from <code>g</code> until the
+     * heuristic has to choose an interchange or until it is reduced
+     * to a triangular delta, like {@link #performOperation}.
+     **/
+    static void removeBubblesAndTriangles(YutsisGraph g){
+        while (!g.triangularDelta()){
+            int [] bubble = g.bubble();
+            if (bubble[0] != -1){
+                g.removeBubble(bubble);
+                continue;
+            }
+            int [] triangle = g.triangle();
+            if (triangle[0] == -1)
+                return;
+            g.removeTriangle(triangle);
+        }
+    }
+
+    /**
+     * Explores partial reductions on its own copy of the graph,
+     * moving from one to another by rolling back to their common
+     * ancestor and reapplying the interchanges from there.
+     **/
+    class Explorer{
+        YutsisGraph g;
+        CCAHeuristic h;
+        /** The states from the root up to the current state. **/
+        BeamState [] path;
+        /** The marks set in g at the states in path. **/
+        int [] marks;
+        /** The depth of the current state. **/
+        int depth = 0;
+
+        Explorer(YutsisGraph y){
+            g = new YutsisGraph(y);
+            g.setLogStream(null);
+            h = CycleCostAlgorithm.this.h.newInstance(g);
+            removeBubblesAndTriangles(g);
+            path = new BeamState[16];
+            marks = new int[16];
+            marks[0] = g.mark();
+        }
+
+        /**
+         * Brings the graph in the given state.
+         **/
+        void moveTo(BeamState s){
+            BeamState [] target = new BeamState[s.depth+1];
+            for (BeamState t = s; t != null; t = t.parent)
+                target[t.depth] = t;
+            path[0] = target[0];
+            int common = 1;
+            while (common <= depth && common <= s.depth
+                   && path[common] == target[common])
+                common++;
+            if (common <= depth){
+                g.rollback(marks[common-1]);
+                marks[common-1] = g.mark();
+            }
+            if (path.length <= s.depth){
+                BeamState [] newpath = new BeamState[2*s.depth];
+                System.arraycopy(path,0,newpath,0,common);
+                path = newpath;
+                int [] newmarks = new int[2*s.depth];
+                System.arraycopy(marks,0,newmarks,0,common);
+                marks = newmarks;
+            }
+            for (int d = common; d <= s.depth; d++){
+                interchange(target[d].ic);
+                path[d] = target[d];
+                marks[d] = g.mark();
+            }
+            depth = s.depth;
+        }
+
+        void interchange(int [] ic){
+            g.interchange(new int [] {ic[0], ic[1]},
+                          new int [] {ic[2], ic[3]});
+            removeBubblesAndTriangles(g);
+        }
+
+        /**
+         * Returns the states resulting from the best
+         * <code>beamwidth</code> interchanges in state <code>s</code>
+         * according to the heuristic.
+         **/
+        ArrayList expand(BeamState s){
+            moveTo(s);
+            ArrayList ics = h.bestInterchanges(beamwidth);
+            ArrayList children = new ArrayList();
+            for (int i = 0; i < ics.size(); i++){
+                int [] ic = (int []) ics.get(i);
+                int mark = g.mark();
+                interchange(ic);
+                children.add(new BeamState(s, ic, i, g));
+                g.rollback(mark);
+            }
+            return children;
+        }
+    }
+
+    /**
+     * Task expanding a range of states of the beam with one Explorer.
+     **/
+    static class ExpandTask extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+
+        Explorer explorer;
+        ArrayList beam;
+        int from, to;
+        ArrayList children = new ArrayList();
+
+        ExpandTask(Explorer explorer, ArrayList beam, int from, int to){
+            this.explorer = explorer;
+            this.beam = beam;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute(){
+            for (int i = from; i < to; i++)
+                children.addAll(explorer.expand((BeamState) beam.get(i)));
+        }
+    }
+
+    /**
+     * Searches the reduction of the YutsisGraph with the fewest
+     * summations and 6j-symbols with a beam search of width
+     * <code>beamwidth</code>, without changing the graph itself.
+     * The beam keeps the states with the best score of the heuristic,
+     * always including the greedy child of the best state, and is
+     * expanded until all its states are reduced. The result is never
+     * worse than the greedy reduction.
+     * @return the final state of the best reduction found
+     **/
+    BeamState beamSearch(){
+        YutsisGraph yg = (YutsisGraph) y;
+        Explorer [] explorers =
+            new Explorer[Math.min(beamparallelism, beamwidth)];
+        for (int i = 0; i < explorers.length; i++)
+            explorers[i] = new Explorer(yg);
+        BeamState root = new BeamState(null, null, 0, explorers[0].g);
+        ForkJoinPool pool = explorers.length > 1 ?
+            new ForkJoinPool(explorers.length) : null;
+        ArrayList beam = new ArrayList();
+        beam.add(root);
+        BeamState greedy = root;
+        BeamState best = root.reduced() ? root : null;
+        try {
+            while (!cancelled){
+                ArrayList open = new ArrayList();
+                ArrayList next = new ArrayList();
+                for (int i = 0; i < beam.size(); i++){
+                    BeamState s = (BeamState) beam.get(i);
+                    (s.reduced() ? next : open).add(s);
+                }
+                if (open.isEmpty())
+                    break;
+                // contiguous ranges keep the paths of an explorer close
+                ExpandTask [] tasks = new ExpandTask[explorers.length];
+                for (int i = 0; i < tasks.length; i++)
+                    tasks[i] = new ExpandTask(explorers[i], open,
+                                              i*open.size()/tasks.length,
+                                              (i+1)*open.size()/tasks.length);
+                if (pool == null)
+                    tasks[0].compute();
+                else {
+                    for (int i = 0; i < tasks.length; i++)
+                        pool.execute(tasks[i]);
+                    for (int i = 0; i < tasks.length; i++)
+                        tasks[i].join();
+                }
+                BeamState greedychild = null;
+                for (int i = 0; i < tasks.length; i++)
+                    next.addAll(tasks[i].children);
+                for (int i = 0; i < next.size(); i++){
+                    BeamState s = (BeamState) next.get(i);
+                    s.rank = i;
+                    if (s.parent == greedy && s.position == 0)
+                        greedychild = s;
+                    if (s.reduced() && (best == null || s.betterThan(best)))
+                        best = s;
+                }
+                Collections.sort(next);
+                beam = new ArrayList(next.subList
+                    (0, Math.min(beamwidth, next.size())));
+                if (greedychild != null){
+                    if (!beam.contains(greedychild))
+                        beam.set(beam.size()-1, greedychild);
+                    greedy = greedychild;
+                }
+            }
+        }
+        finally {
+            if (pool != null)
+                pool.shutdown();
+        }
+        // the greedy reduction is a candidate itself
+        if (best == null || (greedy.reduced() && greedy.betterThan(best)))
+            best = greedy;
+        log("Beam search (width " + beamwidth + "): " + best.depth 
+            + " interchanges, " + best.nrof6j + " 6j-symbols");
+        return best;
+    }
+
+    /**
+     * Applies the given interchanges, removing bubbles and triangles
+     * in between, unless the reduction is cancelled.
+     * @param ics an ArrayList of int [4] arrays
+     * @param how the origin of the interchanges, for the rules log
+     * @param grv the GRVisitor used to log the current state
+     **/
+    void replay(ArrayList ics, String how, GRVisitor grv){
+        try {
+            for (Iterator i = ics.iterator(); i.hasNext() && !cancelled;){
+                int [] ic = (int []) i.next();
+                logCurrentState(grv);
+                while (removeBubbleOrTriangle())
+                    logCurrentState(grv);
+                ReductionMetrics m = metrics;
+                if (m != null)
+                    m.beginStep();
+                nrofinterchanges++;
+                interchanges.add(ic);
+                operations.add(new int [] {INTERCHANGE,
+                                           ic[0], ic[1], ic[2], ic[3]});
+                log(how + ": IC " + ic[0] + " " + ic[1] + " "
+                    + ic[2] + " " + ic[3]);
+                ReductionMetrics phase =
+                    ReductionMetrics.begin(ReductionMetrics.GRAPH);
+                y.interchange(new int [] {ic[0], ic[1]},
+                              new int [] {ic[2], ic[3]});
+                ReductionMetrics.end(phase);
+                if (m != null)
+                    m.endStep("interchange", y.nrOfNodes());
+            }
+        }
+        finally {
+            abortStep();
+        }
+    }
+
     /**
      * Implementation of the ChangeListener interface.
      **/
@@ -259,22 +934,37 @@ public class CycleCostAlgorithm
         GRVisitor grv = null;
         String usage =
             "Usage: java [-options] CycleCostAlgorithm <YutsisGraph>"
-            +"\n <YutsisGraph>:= \"<Bra|Ket>\" | <filename>\n <filename> must be in BRAKET or YTS format"
+            +"\n <YutsisGraph>:= \"<Bra|Ket>\" | <filename>\n <filename> must be in BRAKET, YTS or EDGELIST format"
             + "\nOptions:"
-            + "\n heuristics:a: run both CycleCountHeuristics and output the best"
+            + "\n heuristics:a: run all heuristics concurrently and output the best"
+            + "\n            t<n>: with a, cancel the heuristics not done after n ms"
             + "\n            e: use the EdgeCostHeuristic"
             + "\n            b: use the CycleCountHeuristic.MORE_SMALLER_LESS_BIGGER (default)"
             + "\n            c: use the CycleCountHeuristic.CYCLE_COUNT"
+            + "\n            p<n>: score the interchanges of the CycleCountHeuristic"
+            + "\n                  using n threads (default: all processors)"
+            + "\n            k<n>: beam search keeping the n best partial reductions"
+            + "\n                  (expanded by as many threads as set by p)"
             + "\n output:    G: generic output (same as default but wrapped)"
             + "\n            L: LaTeX ouput"
             + "\n            M: Maple output"
             + "\n            R: Racah output"
             + "\n            l: output macros for the LaTeX format"
             + "\n            m: output macros for the Maple format"
+            + "\n            n<label>=<value>,...: also output the value of the formula"
+            + "\n                 for the given values, e.g. -na=1/2,b=1,c=3/2"
+            + "\n                 (may be repeated; the outermost summation is"
+            + "\n                 divided over as many threads as set by p)"
+            + "\n            x: with n, use exact arithmetic instead of doubles"
             + "\n general:   v: verbose output (same as \"-or\")"
             + "\n            o: output graph operations"
             + "\n            r: output rule selection"
-            + "\n            g: ouput graph after each step in gml-format";
+            + "\n            g: ouput graph after each step in gml-format"
+            + "\n            S: write time per phase and counters of each step"
+            + "\n               to stderr in CSV format"
+            + "\n            J: same as S in JSON format"
+            + "\n            C<dir>: reuse the reductions of isomorphic graphs stored"
+            + "\n                    in directory dir (not with a)";
         if (args.length < 1){
             System.err.println(usage);
             return;
@@ -283,6 +973,13 @@ public class CycleCostAlgorithm
         boolean outputrules = false;
         boolean outputgml = false;
         int heuristic = MORE_SMALLER_LESS_BIGGER;
+        int parallelism = 1;
+        int beamwidth = 1;
+        long timebudget = 0;
+        char metrics = 0;
+        String cachedir = null;
+        ArrayList assignments = new ArrayList();
+        boolean exact = false;
         for (int i = 0; i < args.length-1; i++)
             if (args[i].charAt(0) == '-'){
                 for (int k = 1; k < args[i].length(); k++)
@@ -300,6 +997,52 @@ public class CycleCostAlgorithm
                     case 'c':
                         heuristic = CYCLE_COUNT;
                         break;
+                    case 'p':
+                        int end = k+1;
+                        while (end < args[i].length()
+                               && Character.isDigit(args[i].charAt(end)))
+                            end++;
+                        parallelism = end == k+1 ?
+                            Runtime.getRuntime().availableProcessors() :
+                            Integer.parseInt(args[i].substring(k+1,end));
+                        if (parallelism < 1){
+                            System.err.println("Illegal option -"
+                                               + args[i].substring(k,end)
+                                               + "\n" + usage);
+                            return;
+                        }
+                        k = end-1;
+                        break;
+                    case 'k':
+                        end = k+1;
+                        while (end < args[i].length()
+                               && Character.isDigit(args[i].charAt(end)))
+                            end++;
+                        beamwidth = end == k+1 ? 0 :
+                            Integer.parseInt(args[i].substring(k+1,end));
+                        if (beamwidth < 1){
+                            System.err.println("Illegal option -"
+                                               + args[i].substring(k,end)
+                                               + "\n" + usage);
+                            return;
+                        }
+                        k = end-1;
+                        break;
+                    case 't':
+                        end = k+1;
+                        while (end < args[i].length()
+                               && Character.isDigit(args[i].charAt(end)))
+                            end++;
+                        timebudget = end == k+1 ? 0 :
+                            Long.parseLong(args[i].substring(k+1,end));
+                        if (timebudget < 1){
+                            System.err.println("Illegal option -"
+                                               + args[i].substring(k,end)
+                                               + "\n" + usage);
+                            return;
+                        }
+                        k = end-1;
+                        break;
                         // Output format
                     case 'G':
                         grv = new GRWrappedStringVisitor();
@@ -319,6 +1062,17 @@ public class CycleCostAlgorithm
                     case 'm':
                         System.out.println(GRWrappedMapleVisitor.macros());
                         return;
+                    case 'n':
+                        if (args[i].length() == k+1){
+                            System.err.println("Illegal option -n\n" + usage);
+                            return;
+                        }
+                        assignments.add(args[i].substring(k+1));
+                        k = args[i].length();
+                        break;
+                    case 'x':
+                        exact = true;
+                        break;
                         //General options
                     case 'v':
                         outputoperations = outputrules  = true;
@@ -332,6 +1086,18 @@ public class CycleCostAlgorithm
                     case 'g':
                         outputgml = true;
                         break;
+                    case 'S':
+                    case 'J':
+                        metrics = args[i].charAt(k);
+                        break;
+                    case 'C':
+                        cachedir = args[i].substring(k+1);
+                        if (cachedir.length() == 0){
+                            System.err.println("Illegal option -C\n" + usage);
+                            return;
+                        }
+                        k = args[i].length();
+                        break;
                     default:
                         System.err.println("Unknown option -" +
                                            args[i].charAt(k) + "\n" + usage);
@@ -346,13 +1112,7 @@ public class CycleCostAlgorithm
                 gmlbasename = "newgraph"+(y.nrOfNodes()/2);
             }
             else {
-                int format = YutsisGraph.guessFileFormat(args[args.length-1]);
-                if (format == -1){
-                    System.err.println(usage);
-                    return;
-                }
-                y = new YutsisGraph(new BufferedReader(new FileReader(args[args.length-1])),
-                                    format);
+                y = YutsisGraph.read(args[args.length-1]);
                 gmlbasename =
                     args[args.length-1].substring
                     (0,args[args.length-1].lastIndexOf('.'));
@@ -368,41 +1128,97 @@ public class CycleCostAlgorithm
         }
         gmlbasename = outputgml ? gmlbasename+".cca" : null;
         y.setLogStream(outputoperations ? System.out : null);
-        CCAHeuristic h = (heuristic == EDGE_COST) ?
-            (CCAHeuristic) new EdgeCostHeuristic(y) :
-                (CCAHeuristic) new CycleCountHeuristic(y);
-        if (heuristic == CYCLE_COUNT)//MORE_SMALLER_LESS_BIGGER is default
-            ((CycleCountHeuristic) h).setStrategy
-                (CycleCountHeuristic.CYCLE_COUNT);
         CycleCostAlgorithm cca;
+        if (heuristic == ALL && cachedir != null){
+            System.err.println("Options -a and -C can not be combined.");
+            return;
+        }
+        if (heuristic != ALL && timebudget > 0){
+            System.err.println("Option -t can only be used with -a.\n"
+                               + usage);
+            return;
+        }
         if (heuristic == ALL){
-            YutsisGraph yclone = (YutsisGraph) y.clone();
-            CycleCountHeuristic cch = new CycleCountHeuristic(yclone);
-            cch.setStrategy(CycleCountHeuristic.CYCLE_COUNT);
-            CycleCostAlgorithm ccatemp =
-                reduceYutsisGraph(yclone, cch,
-                                  outputrules ? System.out : null,
-                                  gmlbasename);
-            cca = reduceYutsisGraph(y, h, outputrules ?
-                                System.out : null, gmlbasename);
-            if (cca.nrOfInterchanges() <= ccatemp.nrOfInterchanges()){
-                System.out.println("Results from CycleCount.MORE_SMALLER_LESS_BIGGER ("
-                                   +(ccatemp.nrOfInterchanges()
-                                     -cca.nrOfInterchanges())
-                                   +" IC's better than CycleCount.CYCLE_COUNT):");
-                cca = ccatemp;
-                y = yclone;
+            HeuristicPortfolio portfolio = new HeuristicPortfolio(y);
+            portfolio.setTimeBudget(timebudget);
+            portfolio.setBeamSearch(beamwidth, parallelism);
+            portfolio.setParallelism(parallelism);
+            HeuristicPortfolio.Run best;
+            try {
+                best = portfolio.run();
+            }
+            catch (InterruptedException e){
+                return;
+            }
+            portfolio.report(System.out);
+            if (best == null){
+                System.err.println("No heuristic reduced the graph.");
+                return;
+            }
+            System.out.println("Results from " + best.name() + ":");
+            // repeat the best reduction on y itself
+            CCAHeuristic h = best.heuristic().newInstance(y);
+            if (h instanceof CycleCountHeuristic)
+                ((CycleCountHeuristic) h).setParallelism(parallelism);
+            cca = new CycleCostAlgorithm(y, h);
+            cca.setLogStream(outputrules ? System.out : null);
+            if (gmlbasename != null)
+                cca.setGmlOutputBasename(gmlbasename);
+            cca.setMetricsEnabled(metrics != 0);
+            cca.reduce(best.algorithm().interchanges());
+        }
+        else {
+            CCAHeuristic h = (heuristic == EDGE_COST) ?
+                (CCAHeuristic) new EdgeCostHeuristic(y) :
+                    (CCAHeuristic) new CycleCountHeuristic(y);
+            if (heuristic == CYCLE_COUNT)//MORE_SMALLER_LESS_BIGGER is default
+                ((CycleCountHeuristic) h).setStrategy
+                    (CycleCountHeuristic.CYCLE_COUNT);
+            if (h instanceof CycleCountHeuristic)
+                ((CycleCountHeuristic) h).setParallelism(parallelism);
+            cca = new CycleCostAlgorithm(y,h);
+            cca.setBeamWidth(beamwidth);
+            cca.setBeamParallelism(parallelism);
+            cca.setLogStream(outputrules ? System.out : null);
+            if (gmlbasename != null)
+                cca.setGmlOutputBasename(gmlbasename);
+            cca.setMetricsEnabled(metrics != 0);
+            if (cachedir == null)
+                cca.reduce();
+            else {
+                ReductionCache cache = new ReductionCache
+                    (new java.io.File(cachedir),
+                     (heuristic == EDGE_COST ? "EdgeCost" :
+                      heuristic == CYCLE_COUNT ? "CycleCount.CYCLE_COUNT" :
+                      "CycleCount.MORE_SMALLER_LESS_BIGGER")
+                     + (beamwidth > 1 ? " k" + beamwidth : ""));
+                cache.reduce(cca);
+                System.err.println(cache);
             }
-            else
-                System.out.println("Results from CycleCount.CYCLE_COUNT ("
-                                   +(cca.nrOfInterchanges()
-                                     -ccatemp.nrOfInterchanges())
-                                   +" IC's better than CycleCount.MORE_SMALLER_LESS_BIGGER):");
         }
-        else
-            cca = reduceYutsisGraph(y, h, outputrules ?
-                                    System.out : null, gmlbasename);
         outputResults(y,cca,grv);
+        if (assignments.size() > 0){
+            GREvaluator eval = new GREvaluator(exact);
+            eval.setParallelism(parallelism);
+            y.genRecoupCoeff().accept(eval);
+            for (int i = 0; i < assignments.size(); i++){
+                String assignment = (String) assignments.get(i);
+                try {
+                    eval.clearValues();
+                    eval.setValues(assignment);
+                    System.out.println("value(" + assignment + ") = "
+                                       + eval.result());
+                }
+                catch (RuntimeException e){
+                    System.err.println("value(" + assignment + "): "
+                                       + e.getMessage());
+                }
+            }
+        }
+        if (metrics == 'S')
+            cca.metrics().writeCSV(System.err);
+        else if (metrics == 'J')
+            cca.metrics().writeJSON(System.err);
     }
 
     /**
@@ -426,7 +1242,37 @@ public class CycleCostAlgorithm
                                              CCAHeuristic h,
                                              PrintStream ruleslogstream,
                                              String gmlbasename){
+        return reduceYutsisGraph(y, h, 1, 1, ruleslogstream, gmlbasename);
+    }
+
+    /**
+     * This function reduces the given Yutsis object to a triangular
+     * delta with a beam search of the given width, and returns the
+     * used CycleCostAlgorithm object.
+     * @param y the Yutsis to be reduced
+     * @param h the heuristic to be used as a CCAHeuristic object
+     * @param beamwidth the number of partial reductions kept by the
+     *                  beam search, 1 for the greedy reduction
+     * @param parallelism the number of threads used by the beam search
+     * @param ruleslogstream the stream to where the applied rules have
+     *                       to be logged
+     * @param gmlbasename the basename of the files to which the graphs
+     *                    will be written in gml-format (graphlet) after
+     *                    each step or null for no gml output.
+     * @return the used CycleCostAlgorithm object.
+     * @see #reduce
+     * @see #setBeamWidth
+     **/
+    public static
+        CycleCostAlgorithm reduceYutsisGraph(Yutsis y,
+                                             CCAHeuristic h,
+                                             int beamwidth,
+                                             int parallelism,
+                                             PrintStream ruleslogstream,
+                                             String gmlbasename){
         CycleCostAlgorithm cca = new CycleCostAlgorithm(y,h);
+        cca.setBeamWidth(beamwidth);
+        cca.setBeamParallelism(parallelism);
         cca.setLogStream(ruleslogstream);
         if (gmlbasename != null)
             cca.setGmlOutputBasename(gmlbasename);
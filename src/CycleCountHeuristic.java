@@ -9,8 +9,13 @@
 */
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.ListIterator;
 import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import java.io.PrintStream;
 
@@ -77,6 +82,17 @@ public class CycleCountHeuristic extends AbstractCCAHeuristic{
      **/
     HashSet forbidden;
 
+    /**
+     * Number of threads used to calculate the effect of the candidate
+     * interchanges; 1 means no parallelism.
+     **/
+    int parallelism = 1;
+
+    /**
+     * The pool executing the EffectTasks when parallelism > 1.
+     **/
+    ForkJoinPool pool;
+
     /**
      * Default constructor: constructs a new CycleCountHeuristic object
      **/ 
@@ -120,6 +136,20 @@ public class CycleCountHeuristic extends AbstractCCAHeuristic{
 	forbidden = new HashSet(y.nrOfEdges());
     }
     
+    /**
+     * Returns a new CycleCountHeuristic with the same strategy for
+     * the Yutsis object <code>y</code>, as specified by the {@link
+     * CCAHeuristic} interface. The new heuristic scores the
+     * interchanges in the calling thread.
+     * @param y the Yutsis object for which operations must be chosen
+     * @return a new CycleCountHeuristic for y
+     **/
+    public CCAHeuristic newInstance(Yutsis y){
+	CycleCountHeuristic h = new CycleCountHeuristic(y);
+	h.setStrategy(strategy);
+	return h;
+    }
+    
     /** 
      * This function returns the best {@link Cycle} to reduce and fills
      * the best edge to interchange out of the cycle (min length 4) 
@@ -140,84 +170,208 @@ public class CycleCountHeuristic extends AbstractCCAHeuristic{
 	    System.err.println("RT " + cg.cycles(3).get(0));
 	    return (Cycle) cg.cycles(3).get(0);
 	}
-	forbidden.clear();
-	Cycle bestcycle = null;
 	// Assumption: the best operation reduces a girth cycle
-	ArrayList girthCycles = cg.cycles(cg.girth());
-	ListIterator li = girthCycles.listIterator();
+	ArrayList operations = operations(cg.cycles(cg.girth()));
+	Cycle bestcycle = null;
 	ArrayList [] bestsmaller = null;
 	ArrayList [] bestbigger = null;
-	while (li.hasNext()){//O(n^9)
-	    Cycle c = (Cycle) li.next();
-	    NodeIterator ni = c.first();
-	    int [] edge = new int[2];
-	    int first = ni.next();
-	    int previous = first;
-	    while (ni.hasNext()){
-		int current = ni.next();
-		edge[0] = previous;
-		edge[1] = current;
-		int [] icnodes = 
-		    interchangeNodes(c, edge);
-		String operation = "IC " + edge[0] + " " + edge[1] + " " 
-		    + icnodes[0] + " " + icnodes[1];
-		if (forbidden.add(operation)){
-		    ArrayList [] [] smallerbigger = 
-			effect(edge[0],edge[1],icnodes[0],icnodes[1]);//O(n^5)
-		    ArrayList [] smaller = smallerbigger[0];
-		    ArrayList [] bigger = smallerbigger[1];
-		    int result = 0;
-		    result = bestsmaller == null ? 1 : //O(n)
-			betterEffect(smaller,bigger,bestsmaller,bestbigger);
-		    if (result == 1){
-			candidates.clear();
-			candidates.add(operation);
-			bestcycle = c;
-			bestsmaller = smaller;
-			bestbigger = bigger;
-			bestcycleedge[0] = edge[0];
-			bestcycleedge[1] = edge[1];
-			besticnodes[0] = icnodes[0];
-			besticnodes[1] = icnodes[1];
-		    }
-		    else if (result == 0){
-			candidates.add(operation);
-		    }		
-		}
-		previous = current;
-	    }
-	    edge[0] = previous;
-	    edge[1] = first;
-	    int [] icnodes = 
-		    interchangeNodes(c, edge);
-	    String operation = "IC " + edge[0] + " " + edge[1] + " " 
-		    + icnodes[0] + " " + icnodes[1];
-	    if (forbidden.add(operation)){
-		ArrayList [] [] smallerbigger = 
-		    effect(edge[0],edge[1],icnodes[0],icnodes[1]);
-		ArrayList [] smaller = smallerbigger[0];
-		ArrayList [] bigger = smallerbigger[1];
-		int result = 
+	// Operations are scored in batches (one at a time when running
+	// serially) but always compared in the order they were generated,
+	// such that ties are broken exactly like in the serial run.
+	int batch = parallelism > 1 ? 4*parallelism : 1;
+	for (int from = 0; from < operations.size(); from += batch){//O(n^9)
+	    int to = Math.min(from+batch, operations.size());
+	    score(operations, from, to);
+	    for (int i = from; i < to; i++){
+		Operation op = (Operation) operations.get(i);
+		ArrayList [] smaller = op.effect[0];
+		ArrayList [] bigger = op.effect[1];
+		op.effect = null;
+		int result = bestsmaller == null ? 1 : //O(n)
 		    betterEffect(smaller,bigger,bestsmaller,bestbigger);
 		if (result == 1){
 		    candidates.clear();
-		    candidates.add(operation);
-		    bestcycle = c;
+		    candidates.add(op.operation);
+		    bestcycle = op.cycle;
 		    bestsmaller = smaller;
 		    bestbigger = bigger;
-		    bestcycleedge[0] = edge[0];
-		    bestcycleedge[1] = edge[1];
-		    besticnodes[0] = icnodes[0];
-		    besticnodes[1] = icnodes[1];
+		    bestcycleedge[0] = op.edge[0];
+		    bestcycleedge[1] = op.edge[1];
+		    besticnodes[0] = op.icnodes[0];
+		    besticnodes[1] = op.icnodes[1];
 		}
 		else if (result == 0){
-		    candidates.add(operation);
+		    candidates.add(op.operation);
 		}
 	    }
 	}
 	return bestcycle;
     }
 
+    /**
+     * Returns at most <code>max</code> interchanges reducing a girth
+     * cycle ranked by their effect according to the current strategy,
+     * as specified by the {@link CCAHeuristic} interface. Equivalent
+     * interchanges keep the order in which bestCycle considers them,
+     * such that the first is the one chosen by bestCycle.
+     * @param max the maximum number of interchanges to be returned
+     * @return an ArrayList of int [4] arrays
+     **/
+    public ArrayList bestInterchanges(int max){
+	if (cg.girth() == 3)
+	    return super.bestInterchanges(max);
+	ArrayList operations = operations(cg.cycles(cg.girth()));
+	score(operations, 0, operations.size());
+	// stable: equivalent operations keep their order
+	Collections.sort(operations, new Comparator(){
+		public int compare(Object o1, Object o2){
+		    Operation op1 = (Operation) o1;
+		    Operation op2 = (Operation) o2;
+		    return -betterEffect(op1.effect[0], op1.effect[1],
+					 op2.effect[0], op2.effect[1]);
+		}
+	    });
+	ArrayList ics = new ArrayList();
+	for (int i = 0; i < operations.size() && i < max; i++){
+	    Operation op = (Operation) operations.get(i);
+	    ics.add(new int [] {op.edge[0], op.edge[1], 
+				op.icnodes[0], op.icnodes[1]});
+	}
+	return ics;
+    }
+
+    /**
+     * Class representing an interchange reducing a girth cycle, together
+     * with its effect once it has been scored.
+     **/
+    static class Operation{
+	Cycle cycle;
+	int [] edge;
+	int [] icnodes;
+	String operation;
+	ArrayList [] [] effect;
+
+	Operation(Cycle cycle, int [] edge, int [] icnodes){
+	    this.cycle = cycle;
+	    this.edge = edge;
+	    this.icnodes = icnodes;
+	    operation = "IC " + edge[0] + " " + edge[1] + " " 
+		+ icnodes[0] + " " + icnodes[1];
+	}
+    }
+
+    /**
+     * Returns the distinct interchanges reducing one of the given
+     * cycles in length, in the order in which the cycles and their
+     * edges are traversed. Of each set of isomorphic operations only
+     * the first one encountered is kept.
+     * @param girthCycles the cycles to be reduced
+     * @return an ArrayList of Operation objects
+     **/
+    ArrayList operations(ArrayList girthCycles){
+	forbidden.clear();
+	ArrayList operations = new ArrayList();
+	ListIterator li = girthCycles.listIterator();
+	while (li.hasNext()){
+	    Cycle c = (Cycle) li.next();
+	    NodeIterator ni = c.first();
+	    int first = ni.next();
+	    int previous = first;
+	    while (ni.hasNext()){
+		int current = ni.next();
+		addOperation(operations, c, previous, current);
+		previous = current;
+	    }
+	    addOperation(operations, c, previous, first);
+	}
+	return operations;
+    }
+
+    private void addOperation(ArrayList operations, Cycle c, 
+			      int node1, int node2){
+	int [] edge = {node1, node2};
+	Operation op = new Operation(c, edge, interchangeNodes(c, edge));
+	if (forbidden.add(op.operation))
+	    operations.add(op);
+    }
+
+    /**
+     * Calculates the effect of the operations with index 
+     * <code>from</code> (included) up to <code>to</code> (not included),
+     * in parallel when a parallelism bigger than one is set.
+     * @param operations ArrayList of Operation objects
+     * @param from index of the first operation to be scored
+     * @param to index after the last operation to be scored
+     **/
+    void score(ArrayList operations, int from, int to){
+	ReductionMetrics m = ReductionMetrics.begin(ReductionMetrics.SCORING);
+	if (m != null)
+	    m.addCandidates(to-from);
+	if (parallelism > 1 && to-from > 1)
+	    pool.invoke(new EffectTask(operations, from, to));
+	else
+	    for (int i = from; i < to; i++){
+		Operation op = (Operation) operations.get(i);
+		op.effect = effect(op.edge[0],op.edge[1],
+				   op.icnodes[0],op.icnodes[1]);
+	    }
+	ReductionMetrics.end(m);
+    }
+
+    /**
+     * Task scoring a range of operations by recursively splitting
+     * it in halves. Only the CycleGenerator is read, which must be
+     * up to date before the task is started.
+     **/
+    class EffectTask extends RecursiveAction{
+	private static final long serialVersionUID = 1L;
+
+	ArrayList operations;
+	int from, to;
+
+	EffectTask(ArrayList operations, int from, int to){
+	    this.operations = operations;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	protected void compute(){
+	    if (to-from == 1){
+		Operation op = (Operation) operations.get(from);
+		op.effect = effect(op.edge[0],op.edge[1],
+				   op.icnodes[0],op.icnodes[1]);
+	    }
+	    else {
+		int middle = (from+to)/2;
+		invokeAll(new EffectTask(operations, from, middle),
+			  new EffectTask(operations, middle, to));
+	    }
+	}
+    }
+
+    /**
+     * Returns the number of threads used to calculate the effect of
+     * the candidate interchanges.
+     * @return the number of threads used by bestCycle
+     **/
+    public int parallelism(){ return parallelism; }
+
+    /**
+     * Sets the number of threads used to calculate the effect of the
+     * candidate interchanges. The chosen operation and the list of
+     * equivalent operations do not depend on this number. A value of
+     * 1 (default) scores all interchanges in the calling thread.
+     * @param parallelism the number of threads to be used
+     **/
+    public void setParallelism(int parallelism){
+	if (parallelism < 1)
+	    throw new IllegalArgumentException("parallelism < 1");
+	if (pool != null)
+	    pool.shutdown();
+	this.parallelism = parallelism;
+	pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
     /**
      * Returns the current strategy to compare the effect of
      * interchanges. Possible values are BIGGERSMALLER and CYCLECOUNT.
@@ -239,7 +393,9 @@ public class CycleCountHeuristic extends AbstractCCAHeuristic{
      * Calculates the effect of the interchange on the edge 
      * <code>(e1,e2)</code> interchanging the edges 
      * <code>(e1,a)</code> and <code>(e2,b)</code>, assuming that
-     * the girth of <code>y</code> is at least 4.
+     * the girth of <code>y</code> is at least 4. Only the cycles 
+     * passing <code>e1</code> or <code>e2</code> are visited, using the
+     * incidence index of the {@link CycleGenerator}.
      * @param e1 endpoint of the base edge of the interchange
      * @param e2 endpoint of the base edge of the interchange 
      * @param a endpoint of the edge (e1, a) to be interchanged 
@@ -248,76 +404,108 @@ public class CycleCountHeuristic extends AbstractCCAHeuristic{
      *         all cycles which become smaller, the second all cycles
      *         become bigger; both have at index l cycles of length l+4
      **/
-    public ArrayList[][] effect(int e1, int e2, int a, int b){ //O(n^5)
+    public ArrayList[][] effect(int e1, int e2, int a, int b){
 	ArrayList [] smaller = new ArrayList[y.order()-4];
 	ArrayList [] bigger = new ArrayList[y.order()-4];
-	for (int i=cg.girth(); i < y.order(); i++){//O(n^5)
-	    ArrayList c_i = cg.cycles(i);
-	    if (c_i != null){ // assuming #cycles O(n^4)
-		ListIterator li = c_i.listIterator();
-		while (li.hasNext()){
-		    Cycle c = (Cycle) li.next();
-		    int previous, current, next, nextnext;
-		    previous = c.nodeAt(c.length()-2);
-		    current = c.nodeAt(c.length()-1);
-		    next = c.nodeAt(0);
-		    nextnext = c.nodeAt(1);
-		    if (current == e1 && next == e2){
-			if (previous == a){
-			    if (nextnext != b)
+	// Only cycles passing e1 or e2 are affected: collect them from the
+	// incidence index of the edges coupled in e1 and e2. The neighbors
+	// are copied into arrays of this call: neighbors(int) fills a cache
+	// of the graph, which must not be written by the scoring threads
+	int [] nghb1 = y.neighbors(e1, new int[3]);
+	int [] nghb2 = y.neighbors(e2, new int[3]);
+	int [][] ids = new int[6][];
+	for (int k = 0; k < 3; k++){
+	    ids[k] = cg.edgeCycles(e1,nghb1[k]);
+	    ids[3+k] = cg.edgeCycles(e2,nghb2[k]);
+	}
+	int [] cycleids = union(ids);
+	for (int k = 0; k < cycleids.length; k++){
+	    Cycle c = cg.cycle(cycleids[k]);
+	    int previous, current, next, nextnext;
+	    previous = c.nodeAt(c.length()-2);
+	    current = c.nodeAt(c.length()-1);
+	    next = c.nodeAt(0);
+	    nextnext = c.nodeAt(1);
+	    if (current == e1 && next == e2){
+		if (previous == a){
+		    if (nextnext != b)
+			add(smaller,c);
+		}
+		else if (nextnext == b)
+		    add(smaller,c);
+	    }
+	    else if (current == e2 && next == e1){
+		if (previous == b){
+		    if (nextnext != a)
+			add(smaller,c);
+		}
+		else if (nextnext == a)
+		    add(smaller,c);
+	    }
+	    else
+		for (int j = 0; j < c.length(); j++){//O(n)
+		    previous = current;
+		    current = next;
+		    next = nextnext;
+		    nextnext = c.nodeAt((j+2) % c.length());
+		    // Edge in Cycle?
+		    if (current == e1){
+			if (next == e2){//Yes
+			    if (previous == a){
+				if (nextnext != b)
+				    add(smaller,c);
+			    }
+			    else if (nextnext == b)
 				add(smaller,c);
 			}
-			else if (nextnext == b)
-			    add(smaller,c);
+			else
+			    add(bigger,c);
+			break;
 		    }
-		    else if (current == e2 && next == e1){
-			if (previous == b){
-			    if (nextnext != a)
+		    else if (current == e2){
+			if (next == e1){//Yes
+			    if (previous == b){
+				if (nextnext != a)
+				    add(smaller,c);
+			    }
+			    else if (nextnext == a)
 				add(smaller,c);
 			}
-			else if (nextnext == a)
-			    add(smaller,c);
+			else
+			    add(bigger,c);
+			break;
 		    }
-		    else
-			for (int j = 0; j < c.length(); j++){//O(n)
-			    previous = current;
-			    current = next;
-			    next = nextnext;
-			    nextnext = c.nodeAt((j+2) % c.length());
-			    // Edge in Cycle?
-			    if (current == e1){
-				if (next == e2){//Yes
-				    if (previous == a){
-					if (nextnext != b)
-					    add(smaller,c);
-				    }
-				    else if (nextnext == b)
-					add(smaller,c);
-				}
-				else
-				    add(bigger,c);
-				break;
-			    }
-			    else if (current == e2){
-				if (next == e1){//Yes
-				    if (previous == b){
-					if (nextnext != a)
-					    add(smaller,c);
-				    }
-				    else if (nextnext == a)
-					add(smaller,c);
-				}
-				else
-				    add(bigger,c);
-				break;
-			    }
-			}   
-		}
-	    }
+		}   
 	}
 	return new ArrayList [] [] {smaller,bigger};
     }
 
+    /**
+     * Returns the union of the given ascending arrays of cycle ids as
+     * a new ascending array without duplicates.
+     * @param ids the ascending arrays of ids to be merged
+     * @return the ascending union of the specified arrays
+     **/
+    private static int [] union(int [][] ids){
+	int size = 0;
+	for (int k = 0; k < ids.length; k++)
+	    size += ids[k].length;
+	int [] all = new int[size];
+	size = 0;
+	for (int k = 0; k < ids.length; k++){
+	    System.arraycopy(ids[k],0,all,size,ids[k].length);
+	    size += ids[k].length;
+	}
+	Arrays.sort(all);
+	int nrofids = 0;
+	for (int k = 0; k < all.length; k++)
+	    if (nrofids == 0 || all[k] != all[nrofids-1])
+		all[nrofids++] = all[k];
+	int [] union = new int[nrofids];
+	System.arraycopy(all,0,union,0,nrofids);
+	return union;
+    }
+
         /**
      * Prints the effect of the interchange on the edge 
      * <code>(e1,e2)</code> interchanging the edges 
@@ -8,9 +8,8 @@
    B-9000 GENT Belgium
 */
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ListIterator;
-import java.io.FileReader;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.FileNotFoundException;
 
@@ -54,6 +53,60 @@ public class CycleGenerator
      **/
     private boolean stateChanged = true;
 
+    /**
+     * All relevant cycles ordered by length, each length in order of
+     * generation; the index of a Cycle in this array is its id.
+     **/
+    private Cycle [] indexedCycles;
+
+    /**
+     * Incidence index: for each edge (i,j), i < j, at position 
+     * j*(j-1)/2+i the ascending ids of the cycles passing the edge, 
+     * or null if no relevant cycle passes the edge.
+     **/
+    private int [][] edgeCycles;
+
+    /**
+     * Will be set true when the incidence index has to be rebuilt.
+     **/
+    private boolean indexChanged = true;
+
+    /**
+     * The neighbors of each node (null for removed nodes) when the
+     * cycles were last generated.
+     **/
+    private int [][] lastAdjacency;
+
+    /**
+     * The canonical distances when the cycles were last generated.
+     * @see #canonicalDistances
+     **/
+    private int [] lastDistances;
+
+    /**
+     * True if the cycles may be updated incrementally.
+     **/
+    private boolean incremental = true;
+
+    /**
+     * True if incremental updates have to be compared with a full
+     * regeneration.
+     **/
+    private boolean selfCheck = false;
+
+    /**
+     * An incremental update is only tried when less than 
+     * 1/maxTouchedNodes of the nodes have changed neighbors.
+     **/
+    private static final int maxTouchedNodes = 4;
+
+    /**
+     * Marks for the nodes of a path in onlyStartNodeInCommon, valid
+     * if equal to stamp.
+     **/
+    private int [] stamps;
+    private int stamp = 0;
+
     /** 
      * Constructs a new CycleGenerator object for the graph g and registers
      * itself as ChangeListener for g.
@@ -67,6 +120,7 @@ public class CycleGenerator
 	g.addChangeListener(this);
 	pg = new PathGenerator(g);
 	cycles = new ArrayList[g.order()-3];
+	stamps = new int[g.order()];
     }
   
     /**
@@ -74,94 +128,393 @@ public class CycleGenerator
      **/
     public void stateChanged(ChangeEvent e){ stateChanged = true; }
 
-    /** 
-     * Regenerates all relevant cycles. To be used if the graph is altered.
+    /**
+     * Regenerates all relevant cycles. To be used if the graph is
+     * altered. When the change is small the relevant cycles are
+     * updated incrementally, otherwise they are generated from scratch.
+     * @see #update
      **/
     private void regenerate(){
+	ReductionMetrics m = ReductionMetrics.begin(ReductionMetrics.CYCLES);
 	stateChanged = false;
+	indexChanged = true;
 	pg.makeCanonical();
-	clearCycles();
-	vismara();
+	int [][] adjacency = adjacency();
+	int [] distances = canonicalDistances(adjacency);
+	if (!incremental || !update(adjacency,distances)){
+	    clearCycles();
+	    vismara();
+	}
+	else if (selfCheck)
+	    check();
+	lastAdjacency = adjacency;
+	lastDistances = distances;
+	if (m != null){
+	    m.cycles(cycles);
+	    ReductionMetrics.end(m);
+	}
     }
 
-    /** 
+    /**
      * The algorithm from Philipe Vismara to generate ALL relevant cycles
      * of a given graph.
      **/
     void vismara(){
+	vismara(cycles);
+    }
+
+    /**
+     * The algorithm from Philipe Vismara to generate ALL relevant cycles
+     * of a given graph, adding them to the given array of lists.
+     * @param to array of lists; index i will contain the cycles of
+     *           length i+3
+     **/
+    void vismara(ArrayList [] to){
 	// This variant returns ALL relevant cycles, which is potentially
-	// an exponential sized set. 
-	ArrayList s = new ArrayList(3);
+	// an exponential sized set.
 	NodeIterator ri = g.first();
 	while (ri.hasNext()){ //O(n^5)
 	    int r = ri.next();
 	    NodeIterator yi = g.nodeIterator(r);
 	    if (yi != null){
 		yi.next(); //skip r
-		while (yi.hasNext()){ // O(n^4)
-		    int y = yi.next();
-		    s.clear();
-		    if (pg.distance(r,y) < g.order()){ // y in V_r
-			int [] z = g.neighbors(y);
-			for (int i = 0; i < z.length; i++)
-			    //O(n^3) (z.length == 3)
-			    if (r < z[i] && pg.distance(r,z[i]) < g.order()){
-				//z in V_r
-				if (pg.distance(r,z[i]) + 1
-				    == pg.distance(r,y))
-				    s.add(new Integer(z[i]));
-				else if (pg.distance(r,z[i]) 
-					 != pg.distance(r,y) + 1 && z[i] > y){
-				    ArrayList rypaths = pg.paths(r,y);
-				    ArrayList rzpaths = pg.paths(r,z[i]);
-				    ListIterator ryi = rypaths.listIterator();
-				    ListIterator rzi = rzpaths.listIterator();
-				    while (ryi.hasNext()){ //O(n^3)
-					Path ry = (Path) ryi.next();
-					while (rzi.hasNext()){ // O(n^2)
-					    Path rz = (Path) rzi.next();
-					    if (onlyStartNodeInCommon(rz,ry))
-						//O(n)
-						addCycle(new Cycle(ry,rz)); 
-					    // O(n)
-					}
-				    }
-				}
+		while (yi.hasNext()) // O(n^4)
+		    vismara(r,yi.next(),to);
+	    }
+	}
+    }
+
+    /**
+     * Generates the relevant cycles with lowest node <code>r</code>
+     * which are closed in node <code>y</code>: the odd cycles closed
+     * by an edge (y,z) with z > y and the even cycles closed in y.
+     * Each relevant cycle is generated by exactly one pair r, y: r is
+     * its first node and y the node at index length/2.
+     * @param r the lowest node of the cycles
+     * @param y the node closing the cycles
+     * @param to array of lists; index i will contain the cycles of
+     *           length i+3
+     **/
+    void vismara(int r, int y, ArrayList [] to){
+	ArrayList s = new ArrayList(3);
+	if (pg.distance(r,y) < g.order()){ // y in V_r
+	    int [] z = g.neighbors(y);
+	    for (int i = 0; i < z.length; i++)
+		//O(n^3) (z.length == 3)
+		if (r < z[i] && pg.distance(r,z[i]) < g.order()){
+		    //z in V_r
+		    if (pg.distance(r,z[i]) + 1
+			== pg.distance(r,y))
+			s.add(new Integer(z[i]));
+		    else if (pg.distance(r,z[i])
+			     != pg.distance(r,y) + 1 && z[i] > y){
+			ArrayList rypaths = pg.paths(r,y);
+			ArrayList rzpaths = pg.paths(r,z[i]);
+			ListIterator ryi = rypaths.listIterator();
+			ListIterator rzi = rzpaths.listIterator();
+			while (ryi.hasNext()){ //O(n^3)
+			    Path ry = (Path) ryi.next();
+			    while (rzi.hasNext()){ // O(n^2)
+				Path rz = (Path) rzi.next();
+				if (onlyStartNodeInCommon(rz,ry))
+				    //O(n)
+				    addCycle(to,new Cycle(ry,rz));
+				// O(n)
 			    }
+			}
 		    }
-	
-		    for (int pi = 0; pi < s.size()-1; pi++) 
-			//O(n^3) (s.size() <= 3)
-			for (int qi = pi+1; qi < s.size(); qi++){
-			    ArrayList rppaths = 
-				pg.paths(r,((Integer) s.get(pi)).intValue());
-			    ArrayList rqpaths = 
-				pg.paths(r,((Integer) s.get(qi)).intValue());
-			    ListIterator rpi = rppaths.listIterator();
-			    while (rpi.hasNext()){//O(n^3)
-				Path rp = (Path) rpi.next();
-				ListIterator rqi = rqpaths.listIterator();
-				while (rqi.hasNext()){ //O(n^2)
-				    Path rq = (Path) rqi.next();
-				    if (onlyStartNodeInCommon(rp,rq))//O(n)
-					addCycle(new Cycle(rp,rq,y)); //O(n)
-				}
-			    }
-			} 
 		}
-	    }
 	}
+
+	for (int pi = 0; pi < s.size()-1; pi++)
+	    //O(n^3) (s.size() <= 3)
+	    for (int qi = pi+1; qi < s.size(); qi++){
+		ArrayList rppaths =
+		    pg.paths(r,((Integer) s.get(pi)).intValue());
+		ArrayList rqpaths =
+		    pg.paths(r,((Integer) s.get(qi)).intValue());
+		ListIterator rpi = rppaths.listIterator();
+		while (rpi.hasNext()){//O(n^3)
+		    Path rp = (Path) rpi.next();
+		    ListIterator rqi = rqpaths.listIterator();
+		    while (rqi.hasNext()){ //O(n^2)
+			Path rq = (Path) rqi.next();
+			if (onlyStartNodeInCommon(rp,rq))//O(n)
+			    addCycle(to,new Cycle(rp,rq,y)); //O(n)
+		    }
+		}
+	    }
     }
-  
-    /** 
-     * Adds a cycle to the set of relevant Cycle's.
+
+    /**
+     * Adds a cycle to a set of relevant Cycle's.
+     * @param to array of lists; index i contains the cycles of
+     *           length i+3
      * @param c the cycle to be added to the set of relevant Cycle's
      * @see Cycle
      **/
-    void addCycle(Cycle c){
-	if (cycles[index(c)] == null)
-	    cycles[index(c)] = new ArrayList();
-	cycles[index(c)].add(c);
+    void addCycle(ArrayList [] to, Cycle c){
+	if (to[index(c)] == null)
+	    to[index(c)] = new ArrayList();
+	to[index(c)].add(c);
+    }
+
+    /**
+     * Updates the relevant cycles after a change of the graph, using
+     * the adjacencies and canonical distances of the previous state.
+     * A root r is <em>dirty</em> when its canonical shortest paths to
+     * the higher nodes may have changed: all cycles with lowest node r
+     * are generated again. For the other roots only the cycles closed
+     * in a node whose neighbors have changed are generated again.
+     * The new cycles are merged with the remaining old ones such that
+     * the order is the same as after a full regeneration.
+     * @param adjacency the current neighbors of each node
+     * @param distances the current canonical distances
+     * @return true if the cycles are updated, false if a full
+     *         regeneration is needed because there is no previous state,
+     *         the change involves multiple edges or the change is
+     *         too large.
+     **/
+    private boolean update(int [][] adjacency, int [] distances){
+	if (lastAdjacency == null)
+	    return false;
+	int n = g.order();
+	boolean [] touched = new boolean[n];
+	int nroftouched = 0;
+	ArrayList removed = new ArrayList(); // edges as int [2]
+	ArrayList added = new ArrayList();
+	for (int i = 0; i < n; i++)
+	    if (!sameNeighbors(lastAdjacency[i],adjacency[i])){
+		if (multipleEdges(lastAdjacency[i])
+		    || multipleEdges(adjacency[i]))
+		    return false;
+		touched[i] = true;
+		nroftouched++;
+		addMissingEdges(i,lastAdjacency[i],adjacency[i],removed);
+		addMissingEdges(i,adjacency[i],lastAdjacency[i],added);
+	    }
+	if (nroftouched == 0)
+	    return true;
+	if (maxTouchedNodes*nroftouched > g.nrOfNodes())
+	    return false;
+	boolean [] dirty = new boolean[n];
+	int nrofdirty = 0;
+	NodeIterator ri = g.first();
+	while (ri.hasNext()){
+	    int r = ri.next();
+	    if (dirty(r,adjacency,distances,removed,added)){
+		dirty[r] = true;
+		nrofdirty++;
+	    }
+	}
+	if (2*nrofdirty > g.nrOfNodes())
+	    return false;
+
+	ArrayList [] fresh = new ArrayList[cycles.length];
+	ri = g.first();
+	while (ri.hasNext()){
+	    int r = ri.next();
+	    NodeIterator yi = g.nodeIterator(r);
+	    yi.next(); //skip r
+	    while (yi.hasNext()){
+		int y = yi.next();
+		if (dirty[r] || touched[y])
+		    vismara(r,y,fresh);
+	    }
+	}
+	for (int l = 0; l < cycles.length; l++)
+	    cycles[l] = merge(cycles[l],fresh[l],adjacency,dirty,touched);
+	return true;
+    }
+
+    /**
+     * True if the canonical shortest paths from r to the higher nodes
+     * may have changed, i.e. the canonical distance to some node has
+     * changed or a removed/added edge is part of a canonical shortest
+     * path starting in r before/after the change.
+     **/
+    private boolean dirty(int r, int [][] adjacency, int [] distances,
+			  ArrayList removed, ArrayList added){
+	for (int w = r+1; w < g.order(); w++)
+	    if (adjacency[w] != null &&
+		distance(lastDistances,r,w) != distance(distances,r,w))
+		return true;
+	for (int k = 0; k < removed.size(); k++){
+	    int [] e = (int []) removed.get(k);
+	    if (onCanonicalPath(r,e[0],e[1],adjacency,lastDistances)
+		|| onCanonicalPath(r,e[1],e[0],adjacency,lastDistances))
+		return true;
+	}
+	for (int k = 0; k < added.size(); k++){
+	    int [] e = (int []) added.get(k);
+	    if (onCanonicalPath(r,e[0],e[1],adjacency,distances)
+		|| onCanonicalPath(r,e[1],e[0],adjacency,distances))
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * True if the edge u->w may be part of a canonical shortest path
+     * from r to a node that is not removed, given the canonical
+     * distances.
+     **/
+    private boolean onCanonicalPath(int r, int u, int w, int [][] adjacency,
+				    int [] distances){
+	return u >= r && w > r && adjacency[w] != null
+	    && distance(distances,r,u) < g.order()
+	    && distance(distances,r,u)+1 == distance(distances,r,w);
+    }
+
+    /**
+     * Merges the remaining old cycles of some length with the newly
+     * generated ones, both ordered by their lowest node r and the node
+     * y at index length/2 (the order of generation).
+     **/
+    private ArrayList merge(ArrayList old, ArrayList fresh,
+			    int [][] adjacency, boolean [] dirty,
+			    boolean [] touched){
+	ArrayList merged = new ArrayList((old == null ? 0 : old.size())
+					 + (fresh == null ? 0 : fresh.size()));
+	int f = 0;
+	if (old != null)
+	    for (int k = 0; k < old.size(); k++){
+		Cycle c = (Cycle) old.get(k);
+		int r = c.nodeAt(0);
+		int y = c.nodeAt(c.length()/2);
+		if (adjacency[r] == null || dirty[r] || touched[y])
+		    continue;
+		while (fresh != null && f < fresh.size()
+		       && key((Cycle) fresh.get(f)) < key(c))
+		    merged.add(fresh.get(f++));
+		merged.add(c);
+	    }
+	while (fresh != null && f < fresh.size())
+	    merged.add(fresh.get(f++));
+	return merged.size() > 0 ? merged : null;
+    }
+
+    /**
+     * Returns the position of the cycle in the order of generation,
+     * determined by its lowest node and the node at index length/2.
+     **/
+    private long key(Cycle c){
+	return (long) c.nodeAt(0)*g.order() + c.nodeAt(c.length()/2);
+    }
+
+    /**
+     * Compares the incrementally updated cycles with a full
+     * regeneration.
+     * @throws IllegalStateException if both differ
+     **/
+    private void check(){
+	ArrayList [] full = new ArrayList[cycles.length];
+	vismara(full);
+	for (int l = 0; l < cycles.length; l++){
+	    int size = cycles[l] == null ? 0 : cycles[l].size();
+	    int fullsize = full[l] == null ? 0 : full[l].size();
+	    if (size != fullsize)
+		throw new IllegalStateException
+		    ("Incremental update yields " + size + " cycles of length "
+		     + (l+3) + ", full regeneration " + fullsize);
+	    for (int k = 0; k < size; k++)
+		if (!sameCycle((Cycle) cycles[l].get(k),(Cycle) full[l].get(k)))
+		    throw new IllegalStateException
+			("Incremental update yields cycle " + cycles[l].get(k)
+			 + ", full regeneration " + full[l].get(k));
+	}
+    }
+
+    private static boolean sameCycle(Cycle c1, Cycle c2){
+	if (c1.length() != c2.length())
+	    return false;
+	for (int i = 0; i < c1.length(); i++)
+	    if (c1.nodeAt(i) != c2.nodeAt(i))
+		return false;
+	return true;
+    }
+
+    /**
+     * Returns the neighbors of every node, null for removed nodes.
+     **/
+    private int [][] adjacency(){
+	int [][] adjacency = new int[g.order()][];
+	for (int i = 0; i < g.order(); i++)
+	    adjacency[i] = g.neighbors(i);
+	return adjacency;
+    }
+
+    /**
+     * Returns the canonical distances between all nodes i < j at
+     * index j*(j-1)/2+i, as given by the PathGenerator after
+     * makeCanonical, or order() if one of the nodes is removed.
+     **/
+    private int [] canonicalDistances(int [][] adjacency){
+	int [] distances = new int[g.order()*(g.order()-1)/2];
+	for (int j = 1; j < g.order(); j++)
+	    for (int i = 0; i < j; i++)
+		distances[j*(j-1)/2+i] =
+		    adjacency[i] == null || adjacency[j] == null ?
+		    g.order() : pg.distance(i,j);
+	return distances;
+    }
+
+    private static int distance(int [] distances, int i, int j){
+	if (i == j)
+	    return 0;
+	return i < j ? distances[j*(j-1)/2+i] : distances[i*(i-1)/2+j];
+    }
+
+    private static boolean sameNeighbors(int [] nghb1, int [] nghb2){
+	if (nghb1 == null || nghb2 == null)
+	    return nghb1 == nghb2;
+	int [] sorted1 = nghb1.clone();
+	int [] sorted2 = nghb2.clone();
+	Arrays.sort(sorted1);
+	Arrays.sort(sorted2);
+	return Arrays.equals(sorted1,sorted2);
+    }
+
+    private static boolean multipleEdges(int [] nghb){
+	return nghb != null &&
+	    (nghb[0] == nghb[1] || nghb[0] == nghb[2] || nghb[1] == nghb[2]);
+    }
+
+    /**
+     * Adds the edges (i,j) with i < j, j in <code>from</code> but not in
+     * <code>to</code>, to the list.
+     **/
+    private static void addMissingEdges(int i, int [] from, int [] to,
+					ArrayList edges){
+	if (from == null)
+	    return;
+	for (int k = 0; k < from.length; k++){
+	    boolean missing = true;
+	    for (int m = 0; to != null && m < to.length; m++)
+		if (to[m] == from[k])
+		    missing = false;
+	    if (missing && i < from[k])
+		edges.add(new int [] {i,from[k]});
+	}
+    }
+
+    /**
+     * Enables or disables the incremental update of the relevant
+     * cycles after a change of the graph (enabled by default).
+     * @param incremental true if the cycles may be updated incrementally
+     **/
+    public void setIncremental(boolean incremental){
+	this.incremental = incremental;
+    }
+
+    /**
+     * Enables or disables the self-check mode: after each incremental
+     * update the result is compared with a full regeneration and an
+     * IllegalStateException is thrown when they differ.
+     * @param selfcheck true if incremental updates have to be checked
+     **/
+    public void setSelfCheck(boolean selfcheck){
+	this.selfCheck = selfcheck;
     }
 
     /**
@@ -179,12 +532,11 @@ public class CycleGenerator
      * @see Path
      **/
     boolean onlyStartNodeInCommon(Path vx, Path vy){
-	int [] is = vx.intersection(vy);
-	NodeIterator ni = vx.first();
-	if (is.length == 1 && is[0] == ni.next())
-	    return true;
-	else
-	    return false;
+	if (++stamp == 0){
+	    Arrays.fill(stamps,0);
+	    stamp = 1;
+	}
+	return vx.onlyFirstNodeInCommon(vy,stamps,stamp);
     }
 
     /** 
@@ -234,6 +586,85 @@ public class CycleGenerator
 	return cycles[l-3];
     }  
   
+    /** 
+     * Returns the relevant Cycle with the given id.
+     * @param id the id of the Cycle as returned by edgeCycles
+     * @return the Cycle with the specified id
+     * @see #edgeCycles
+     **/
+    public Cycle cycle(int id){
+	if (stateChanged)
+	    regenerate();
+	index();
+	return indexedCycles[id];
+    }
+
+    /** 
+     * Returns the ids of all relevant cycles passing the edge
+     * <code>(i,j)</code> in ascending order. Ascending ids correspond
+     * to the order in which the cycles are returned by 
+     * {@link #cycles(int)} for increasing lengths.
+     * @param i first endpoint of the edge
+     * @param j second endpoint of the edge
+     * @return the ids of the cycles passing the edge, an empty array if
+     *         there are none
+     * @see #cycle
+     **/
+    public int [] edgeCycles(int i, int j){
+	if (stateChanged)
+	    regenerate();
+	if (i > j)
+	    return edgeCycles(j,i);
+	index();
+	int [] ids = i == j ? null : edgeCycles[j*(j-1)/2+i];
+	return ids == null ? new int[0] : ids;
+    }
+
+    /** 
+     * Builds the incidence index of the relevant cycles if the
+     * graph has changed since it was last built. Synchronized as
+     * the heuristics may query the index from several threads.
+     **/
+    private synchronized void index(){
+	if (!indexChanged)
+	    return;
+	int nrofcycles = 0;
+	for (int l = 0; l < cycles.length; l++)
+	    if (cycles[l] != null)
+		nrofcycles += cycles[l].size();
+	indexedCycles = new Cycle[nrofcycles];
+	int id = 0;
+	for (int l = 0; l < cycles.length; l++)
+	    if (cycles[l] != null)
+		for (int k = 0; k < cycles[l].size(); k++)
+		    indexedCycles[id++] = (Cycle) cycles[l].get(k);
+	// first count the cycles per edge, then fill in the ids
+	int [] count = new int[g.order()*(g.order()-1)/2];
+	for (id = 0; id < nrofcycles; id++){
+	    Cycle c = indexedCycles[id];
+	    for (int k = 0; k < c.length(); k++)
+		count[edgeIndex(c.nodeAt(k),c.nodeAt((k+1) % c.length()))]++;
+	}
+	edgeCycles = new int[count.length][];
+	for (int e = 0; e < count.length; e++){
+	    if (count[e] > 0)
+		edgeCycles[e] = new int[count[e]];
+	    count[e] = 0;
+	}
+	for (id = 0; id < nrofcycles; id++){
+	    Cycle c = indexedCycles[id];
+	    for (int k = 0; k < c.length(); k++){
+		int e = edgeIndex(c.nodeAt(k),c.nodeAt((k+1) % c.length()));
+		edgeCycles[e][count[e]++] = id;
+	    }
+	}
+	indexChanged = false;
+    }
+
+    private int edgeIndex(int i, int j){
+	return i < j ? j*(j-1)/2+i : i*(i-1)/2+j;
+    }
+
     private void clearCycles(){
 	for(int i=0; i < cycles.length; i++)
 	    cycles[i] = null;
@@ -266,7 +697,7 @@ public class CycleGenerator
      * works on {@link YutsisGraph}s.
      **/
     public static void main(String [] args) throws IOException{
-	String usage = new String("Usage: java CycleGenerator <YutsisGraph>\n <YutsisGraph>:= \"<Bra|Ket>\" | <filename>\n <filename> must be in BRAKET of YTS format\n  (see documentation of Class YutsisGraph for more info)");
+	String usage = new String("Usage: java CycleGenerator <YutsisGraph>\n <YutsisGraph>:= \"<Bra|Ket>\" | <filename>\n <filename> must be in BRAKET, YTS or EDGELIST format\n  (see documentation of Class YutsisGraph for more info)");
 	if (args.length != 1){
 	    System.err.println(usage);
 	    return;
@@ -275,15 +706,8 @@ public class CycleGenerator
 	try {
 	    if (args[0].charAt(0) == '<')
 		y = new YutsisGraph(args[0]);
-	    else {
-		int format = AbstractYutsis.guessFileFormat(args[0]);
-		if (format == -1){
-		    System.err.println(usage);
-		    return;
-		}
-		y = new YutsisGraph(new BufferedReader(new FileReader(args[0])),
-				    format);
-	    }
+	    else
+		y = YutsisGraph.read(args[0]);
 	}
 	catch (FileNotFoundException e){
 	    System.err.println("File " + args[0] + " not found.");
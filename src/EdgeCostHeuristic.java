@@ -98,6 +98,17 @@ public class EdgeCostHeuristic
 	y.addChangeListener(this);
     }
 
+    /**
+     * Returns a new EdgeCostHeuristic for the Yutsis object
+     * <code>y</code>, as specified by the {@link CCAHeuristic}
+     * interface.
+     * @param y the Yutsis object for which operations must be chosen
+     * @return a new EdgeCostHeuristic for y
+     **/
+    public CCAHeuristic newInstance(Yutsis y){
+	return new EdgeCostHeuristic(y);
+    }
+
     /** 
      * This function returns the best Cycle to reduce and fills
      * the best edge to interchange out of the cycle (min length 4). It
@@ -152,9 +163,10 @@ public class EdgeCostHeuristic
 		} 
 		else if (edgecost == minedgecost){
 		    nrofbestedges++;
-		    int [] icnodes = 
-			interchangeNodes(c,new int [] {previous,current});
-		    bestoperations.add("IC " + previous + " " + current + 
+		    // interchangeNodes makes the edge canonical
+		    int [] edge = {previous,current};
+		    int [] icnodes = interchangeNodes(c,edge);
+		    bestoperations.add("IC " + edge[0] + " " + edge[1] + 
 				       " " + icnodes[0] + " " + icnodes[1]);
 		}
 		previous = current;
@@ -167,9 +179,9 @@ public class EdgeCostHeuristic
 		bestedge[1] = first;
 	    } else if (edgecost == minedgecost){
 		nrofbestedges++;
-		int [] icnodes = 
-		    interchangeNodes(c,new int [] {previous,first});
-		bestoperations.add("IC " + previous + " " + first + 
+		int [] edge = {previous,first};
+		int [] icnodes = interchangeNodes(c,edge);
+		bestoperations.add("IC " + edge[0] + " " + edge[1] + 
 				   " " + icnodes[0] + " " + icnodes[1]);
 	    }
 	    if (minedgecost < bestcycleedgecost ||
@@ -338,7 +350,9 @@ public class EdgeCostHeuristic
      * Recalculates all edge costs, to be used when the graph is altered.
      **/
     private void regenerate(){
+	ReductionMetrics m = ReductionMetrics.begin(ReductionMetrics.EDGE_COSTS);
 	stateChanged = false;
 	calculateEdgeCosts();
+	ReductionMetrics.end(m);
     }
 }
@@ -0,0 +1,764 @@
+/* EdgeList.java
+   -------------
+   2026 (c) agent
+*/
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads and writes graphs in the {@link AbstractYutsis#EDGELIST}
+ * format: <pre> &lt;nrOfnodes&gt &lt;nrOfEdges&gt &lt;edge&gt
+ * &lt;edge&gt ... &lt;edge&gt </pre> with &lt;edge&gt = node1 node2.
+ * The nodes are numbered from 0, or from 1 if no node 0 occurs.
+ *
+ * <p> The text is streamed through a fixed buffer and only the
+ * endpoints of the edges are kept, such that the edge lists of very
+ * large graphs, e.g. the output of a graph generator on a pipe, can be
+ * read. An edge list has no labels, signs or directions: to get a
+ * {@link YutsisGraph} the cubic graph is split into two vertex induced
+ * trees of the same size, the bra and the ket. The edges between the
+ * trees are the coupled momenta <var>j1</var>, <var>j2</var>, ... in the
+ * order of the bra, one of them being the root. The YutsisGraph is
+ * built from the tables of the split, as those of a {@link
+ * YutsisArchive}, without writing and parsing its braket. Finding a
+ * split is a search which may fail: a graph which is not a Yutsis
+ * graph has no split.
+ * @see YutsisGraph
+ * @author agent@local
+ **/
+public class EdgeList{
+
+    /** The size of the I/O buffers in bytes. **/
+    static final int BUFFERSIZE = 1 << 16;
+
+    /**
+     * The work per node the search for a split may take before giving
+     * up: the number of steps plus the number of nodes visited by the
+     * connectivity tests.
+     **/
+    static final int STEPS = 4096;
+
+    /**
+     * The work per node of the first attempt of the search for a
+     * split; each next attempt may take twice as much.
+     **/
+    static final int FIRSTSTEPS = 64;
+
+    /**
+     * The number of candidates, the most recent ones, of which the best
+     * is added to the tree in the search for a split.
+     **/
+    static final int WINDOW = 16;
+
+    private EdgeList(){}
+
+    /**
+     * A stream of non-negative ints separated by white space, read
+     * from a channel or a Reader through a fixed buffer.
+     **/
+    private static final class Scanner{
+	private ReadableByteChannel channel;
+	private ByteBuffer bytes;
+	private Reader reader;
+	private char [] chars;
+	private int position = 0, length = 0;
+	/** The number of ints read, for the error messages. **/
+	private int count = 0;
+
+	Scanner(ReadableByteChannel channel){
+	    this.channel = channel;
+	    bytes = ByteBuffer.allocate(BUFFERSIZE);
+	    bytes.flip();
+	}
+
+	Scanner(Reader reader){
+	    this.reader = reader;
+	    chars = new char[BUFFERSIZE];
+	}
+
+	/**
+	 * Returns the next character, -1 at the end of the stream.
+	 **/
+	private int read() throws IOException{
+	    if (channel != null){
+		while (!bytes.hasRemaining()){
+		    bytes.clear();
+		    int read = channel.read(bytes);
+		    bytes.flip();
+		    if (read == -1)
+			return -1;
+		}
+		return bytes.get() & 0xff;
+	    }
+	    while (position == length){
+		length = reader.read(chars);
+		position = 0;
+		if (length == -1){
+		    length = 0;
+		    return -1;
+		}
+	    }
+	    return chars[position++];
+	}
+
+	/**
+	 * Returns the next int.
+	 * @param what what the int is, for the error message
+	 **/
+	int nextInt(String what) throws IOException{
+	    int c;
+	    do
+		c = read();
+	    while (c != -1 && Character.isWhitespace((char) c));
+	    if (c < '0' || c > '9')
+		throw new IllegalArgumentException
+		    ("EDGELIST: expected " + what + " as number " + (count+1)
+		     + (c == -1 ? ", found end of file"
+			: ", found '" + (char) c + "'"));
+	    long value = 0;
+	    while (c >= '0' && c <= '9'){
+		value = 10*value + c - '0';
+		if (value > Integer.MAX_VALUE)
+		    throw new IllegalArgumentException
+			("EDGELIST: number " + (count+1) + " is too large");
+		c = read();
+	    }
+	    if (c != -1 && !Character.isWhitespace((char) c))
+		throw new IllegalArgumentException
+		    ("EDGELIST: illegal character '" + (char) c
+		     + "' in number " + (count+1));
+	    count++;
+	    return (int) value;
+	}
+    }
+
+    /**
+     * Reads a cubic graph in EDGELIST format and returns its braket.
+     * @param in the channel, which is read to the end but not closed
+     * @return the braket of the graph
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the edge list is not a
+     *         cubic graph which can be split into two trees
+     **/
+    public static String braket(ReadableByteChannel in) throws IOException{
+	int [] twin = twin(new Scanner(in));
+	return braket(twin, split(twin, twin.length/3));
+    }
+
+    /**
+     * Reads a cubic graph in EDGELIST format and returns its braket.
+     * @param in the Reader, which is read to the end but not closed
+     * @return the braket of the graph
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the edge list is not a
+     *         cubic graph which can be split into two trees
+     **/
+    public static String braket(Reader in) throws IOException{
+	int [] twin = twin(new Scanner(in));
+	return braket(twin, split(twin, twin.length/3));
+    }
+
+    /**
+     * Reads a YutsisGraph in EDGELIST format.
+     * @param in the channel, which is read to the end but not closed
+     * @return the YutsisGraph of the split graph
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the edge list is not a
+     *         cubic graph which can be split into two trees
+     **/
+    public static YutsisGraph read(ReadableByteChannel in) throws IOException{
+	int [] twin = twin(new Scanner(in));
+	int order = twin.length/6;
+	return new YutsisGraph(labels(order), order,
+			       labelIds(twin, split(twin, 2*order)),
+			       signs(order), heads(order), null);
+    }
+
+    /**
+     * Reads a graph in EDGELIST format into <code>y</code>, for the
+     * constructor of YutsisGraph.
+     * @param in the Reader, which is read to the end but not closed
+     * @param y the YutsisGraph being constructed
+     **/
+    static void read(Reader in, YutsisGraph y) throws IOException{
+	int [] twin = twin(new Scanner(in));
+	int order = twin.length/6;
+	y.setTables(labels(order), order,
+		    labelIds(twin, split(twin, 2*order)),
+		    signs(order), heads(order), null);
+    }
+
+    /**
+     * Reads the edges and returns the other slot of the edge of each
+     * slot <code>3*node+i</code>.
+     **/
+    private static int [] twin(Scanner in) throws IOException{
+	int nodes = in.nextInt("the number of nodes");
+	int nrofedges = in.nextInt("the number of edges");
+	if (nodes < 2 || nodes % 2 != 0 || (long) 2*nrofedges != 3L*nodes)
+	    throw new IllegalArgumentException
+		("EDGELIST: " + nodes + " nodes and " + nrofedges
+		 + " edges is not a cubic graph of even order");
+	int [] ends = new int[2*nrofedges];
+	int min = Integer.MAX_VALUE, max = 0;
+	for (int i = 0; i < ends.length; i++){
+	    ends[i] = in.nextInt("a node");
+	    min = Math.min(min, ends[i]);
+	    max = Math.max(max, ends[i]);
+	}
+	int first = (min == 1 && max == nodes) ? 1 : 0;
+	if (max-first >= nodes)
+	    throw new IllegalArgumentException
+		("EDGELIST: node " + max + " out of range");
+	// twin[slot] is the other slot of the edge, slot = 3*node+i
+	int [] twin = new int[3*nodes];
+	int [] degree = new int[nodes];
+	for (int i = 0; i < ends.length; i += 2){
+	    int a = ends[i]-first, b = ends[i+1]-first;
+	    if (a == b)
+		throw new IllegalArgumentException
+		    ("EDGELIST: loop in node " + ends[i]);
+	    if (degree[a] == 3 || degree[b] == 3)
+		throw new IllegalArgumentException
+		    ("EDGELIST: node " + (degree[a] == 3 ? ends[i] : ends[i+1])
+		     + " has more than 3 edges");
+	    int sa = 3*a + degree[a]++, sb = 3*b + degree[b]++;
+	    twin[sa] = sb;
+	    twin[sb] = sa;
+	}
+	return twin;
+    }
+
+    /**
+     * Splits the cubic graph into two vertex induced trees of the same
+     * size. A tree is grown from a start node one node at a time: a
+     * node can be added if exactly one of its neighbors is in the tree
+     * and the other nodes stay connected. Then the other nodes form a
+     * tree too, as they are as many as the nodes of the tree and have
+     * one edge less.
+     *
+     * <p> A node outside the tree with two neighbors in it can never be
+     * added: it is dead. The node added is one making the fewest nodes
+     * dead of the {@link #WINDOW} most recent candidates. The search
+     * branches on adding or excluding (making dead) a node, and
+     * backtracks when no node can be added or more than half of the
+     * nodes are dead.
+     *
+     * <p> The time a search takes varies wildly with the start node and
+     * the order of the candidates, so the search is restarted with a
+     * doubled budget of work from a random start node, breaking the
+     * ties between candidates at random, until the total budget of
+     * {@link #STEPS} per node is spent. The random numbers have a fixed
+     * seed, so a graph always gets the same split.
+     * @return the nodes of the tree containing node 0
+     * @throws IllegalArgumentException if there is no split, or if none
+     *         was found within the budget
+     **/
+    static boolean [] split(int [] twin, int nodes){
+	// the other nodes must be connected, also when node 0 is left out
+	int [] mark = new int[nodes];
+	int [] queue = new int[nodes];
+	int reached = 1;
+	queue[0] = twin[0]/3;
+	mark[0] = mark[queue[0]] = 1;
+	for (int head = 0; head < reached; head++)
+	    for (int i = 0; i < 3; i++){
+		int u = twin[3*queue[head]+i]/3;
+		if (mark[u] == 0){
+		    mark[u] = 1;
+		    queue[reached++] = u;
+		}
+	    }
+	if (reached != nodes-1)
+	    throw new IllegalArgumentException
+		("EDGELIST: the graph cannot be split into two trees:"
+		 + " it is not connected without its first node");
+	long maxwork = (long) STEPS*nodes + 100000;
+	long budget = (long) FIRSTSTEPS*nodes + 10000;
+	long [] work = {0};
+	Random random = null;
+	for (int start = 0; ; budget *= 2){
+	    boolean [] tree = search(twin, nodes, start, random,
+				     Math.min(work[0]+budget, maxwork), work);
+	    if (tree != null){
+		if (!tree[0])
+		    for (int i = 0; i < nodes; i++)
+			tree[i] = !tree[i];
+		return tree;
+	    }
+	    if (work[0] >= maxwork)
+		throw new IllegalArgumentException
+		    ("EDGELIST: no split into two trees found within "
+		     + maxwork + " steps");
+	    if (random == null)
+		random = new Random(nodes);
+	    start = random.nextInt(nodes);
+	}
+    }
+
+    /**
+     * Searches a split with a tree containing <code>start</code>, as
+     * described at {@link #split}, until <code>work[0]</code> (the
+     * steps plus the nodes visited by the connectivity tests) exceeds
+     * <code>maxwork</code>.
+     * @param random breaks the ties between candidates, null to take
+     *               the most recent one
+     * @return the nodes of the tree, or null if the work ran out
+     * @throws IllegalArgumentException if there is no split
+     **/
+    private static boolean [] search(int [] twin, int nodes, int start,
+				     Random random, long maxwork,
+				     long [] work){
+	int half = nodes/2;
+	boolean [] intree = new boolean[nodes];
+	boolean [] excluded = new boolean[nodes];
+	int [] treenghbs = new int[nodes]; // neighbors in the tree
+	// candidates: nodes with a neighbor in the tree, some of which
+	// became invalid, truncated when backtracking
+	int [] candidates = new int[3*nodes+1];
+	int nrofcandidates = 0;
+	// the decisions: node+1 if added, -(node+1) if excluded, with the
+	// number of candidates before the decision
+	int [] decisions = new int[nodes];
+	int [] saved = new int[nodes];
+	int depth = 0, size = 0;
+	int [] dead = {0};
+	int [] window = new int[WINDOW];
+	int [] scores = new int[WINDOW];
+	int [] mark = new int[nodes];
+	int [] queue = new int[nodes];
+	int [] stamp = {0};
+	int node = start;
+	boolean backtrack = false;
+	while (true){
+	    if (!backtrack){
+		saved[depth] = nrofcandidates;
+		decisions[depth++] = node+1;
+		setInTree(node, true, twin, intree, excluded, treenghbs, dead);
+		size++;
+		for (int i = 0; i < 3; i++){
+		    int u = twin[3*node+i]/3;
+		    if (!intree[u])
+			candidates[nrofcandidates++] = u;
+		}
+		if (size == half)
+		    return intree;
+	    }
+	    backtrack = false;
+	    if (++work[0] > maxwork)
+		return null;
+	    // choose the candidate making the fewest nodes dead among the
+	    // most recent ones, and else any candidate
+	    node = -1;
+	    int found = 0, k = nrofcandidates-1;
+	    for (; k >= 0 && found < WINDOW; k--){
+		int u = candidates[k];
+		if (intree[u] || excluded[u] || treenghbs[u] != 1)
+		    continue;
+		window[found] = u;
+		scores[found] = 0; // the number of neighbors becoming dead
+		for (int i = 0; i < 3; i++){
+		    int v = twin[3*u+i]/3;
+		    if (!intree[v] && treenghbs[v] == 1)
+			scores[found]++;
+		}
+		found++;
+	    }
+	    int first = random == null || found == 0 ? 0
+		: random.nextInt(found);
+	    for (int score = 0; score < 3 && node == -1; score++)
+		for (int w = 0; w < found && node == -1; w++){
+		    int c = (first+w) % found;
+		    if (scores[c] == score && connectedWithout
+			(window[c], twin, intree, mark, queue, stamp, work))
+			node = window[c];
+		}
+	    for (; k >= 0 && node == -1 && work[0] <= maxwork; k--){
+		int u = candidates[k];
+		if (!intree[u] && !excluded[u] && treenghbs[u] == 1
+		    && connectedWithout(u, twin, intree, mark, queue, stamp,
+					work))
+		    node = u;
+	    }
+	    if (work[0] > maxwork)
+		return null;
+	    if (node != -1 && dead[0] <= half)
+		continue;
+	    // backtrack to the last addition and exclude its node
+	    while (true){
+		if (depth == 1)
+		    throw new IllegalArgumentException
+			("EDGELIST: the graph cannot be split into two trees:"
+			 + " not a Yutsis graph");
+		int d = decisions[--depth];
+		nrofcandidates = saved[depth];
+		if (d < 0){
+		    setExcluded(-d-1, false, excluded, intree, treenghbs, dead);
+		    continue;
+		}
+		int u = d-1;
+		setInTree(u, false, twin, intree, excluded, treenghbs, dead);
+		size--;
+		setExcluded(u, true, excluded, intree, treenghbs, dead);
+		saved[depth] = nrofcandidates;
+		decisions[depth++] = -(u+1);
+		break;
+	    }
+	    backtrack = true;
+	}
+    }
+
+    private static boolean isDead(int node, boolean [] intree,
+				  boolean [] excluded, int [] treenghbs){
+	return !intree[node] && (excluded[node] || treenghbs[node] >= 2);
+    }
+
+    /**
+     * Adds the node to the tree or removes it, updating the number of
+     * neighbors in the tree and the number of dead nodes.
+     **/
+    private static void setInTree(int node, boolean in, int [] twin,
+				  boolean [] intree, boolean [] excluded,
+				  int [] treenghbs, int [] dead){
+	if (isDead(node, intree, excluded, treenghbs))
+	    dead[0]--;
+	intree[node] = in;
+	if (isDead(node, intree, excluded, treenghbs))
+	    dead[0]++;
+	for (int i = 0; i < 3; i++){
+	    int u = twin[3*node+i]/3;
+	    if (isDead(u, intree, excluded, treenghbs))
+		dead[0]--;
+	    treenghbs[u] += in ? 1 : -1;
+	    if (isDead(u, intree, excluded, treenghbs))
+		dead[0]++;
+	}
+    }
+
+    private static void setExcluded(int node, boolean ex,
+				    boolean [] excluded, boolean [] intree,
+				    int [] treenghbs, int [] dead){
+	if (isDead(node, intree, excluded, treenghbs))
+	    dead[0]--;
+	excluded[node] = ex;
+	if (isDead(node, intree, excluded, treenghbs))
+	    dead[0]++;
+    }
+
+    /**
+     * True if the nodes outside the tree stay connected when
+     * <code>node</code>, which has one neighbor in the tree, is added
+     * to it. Its other neighbors are searched from alternately, until
+     * they meet or one of them runs out of nodes, such that the search
+     * costs at most twice the size of the smaller part. The number of
+     * nodes visited is added to <code>work[0]</code>.
+     **/
+    private static boolean connectedWithout(int node, int [] twin,
+					    boolean [] intree, int [] mark,
+					    int [] queue, int [] stamp,
+					    long [] work){
+	int a = -1, b = -1;
+	for (int i = 0; i < 3; i++){
+	    int u = twin[3*node+i]/3;
+	    if (!intree[u]){
+		if (a == -1)
+		    a = u;
+		else
+		    b = u;
+	    }
+	}
+	if (b == -1 || a == b)
+	    return true; // node is a leaf of the other nodes
+	// marks: stamp+1 reached from a, stamp+2 reached from b
+	int sa = stamp[0]+1, sb = stamp[0]+2;
+	stamp[0] += 2;
+	if (stamp[0] < 0){ // the stamps wrapped around
+	    Arrays.fill(mark,0);
+	    stamp[0] = 2;
+	    sa = 1;
+	    sb = 2;
+	}
+	mark[node] = sb+1; // blocked
+	// queue a grows from the front, queue b from the back
+	int heada = 0, taila = 0, headb = queue.length, tailb = queue.length;
+	queue[taila++] = a;
+	mark[a] = sa;
+	queue[--tailb] = b;
+	mark[b] = sb;
+	boolean connected = false;
+	while (heada < taila && headb > tailb){
+	    int u = queue[heada++];
+	    for (int i = 0; i < 3 && !connected; i++){
+		int v = twin[3*u+i]/3;
+		if (intree[v] || mark[v] == sa || mark[v] == sb+1)
+		    continue;
+		if (mark[v] == sb)
+		    connected = true;
+		else {
+		    mark[v] = sa;
+		    queue[taila++] = v;
+		}
+	    }
+	    if (connected)
+		break;
+	    u = queue[--headb];
+	    for (int i = 0; i < 3 && !connected; i++){
+		int v = twin[3*u+i]/3;
+		if (intree[v] || mark[v] == sb || mark[v] == sb+1)
+		    continue;
+		if (mark[v] == sa)
+		    connected = true;
+		else {
+		    mark[v] = sb;
+		    queue[--tailb] = v;
+		}
+	    }
+	    if (connected)
+		break;
+	}
+	mark[node] = 0;
+	work[0] += taila + queue.length-tailb;
+	return connected;
+    }
+
+    /**
+     * Returns the braket of the split graph. The root is the first edge
+     * between the trees; the bra is the tree containing node 0, the
+     * other momenta are numbered in its order, followed by the
+     * intermediate labels of the bra, the root and those of the ket.
+     **/
+    static String braket(int [] twin, boolean [] bra){
+	int root = 0;
+	while (!bra[root/3] || bra[twin[root]/3])
+	    root++;
+	int [] label = new int[twin.length];
+	int [] next = {1, twin.length/6 + 2}; // next momentum, intermediate
+	StringBuffer out = new StringBuffer(8*twin.length);
+	out.append('<');
+	tree(root, twin, bra, label, next, out, null);
+	out.append('|');
+	tree(twin[root], twin, bra, label, next, out, null);
+	out.append('>');
+	return out.toString();
+    }
+
+    /**
+     * Returns the label ids of the slots of the split graph, as taken
+     * by the tables constructor of YutsisGraph: the nodes of the bra
+     * followed by those of the ket, each in post-order. Label
+     * <code>j&lt;i&gt;</code> of the braket gets id <code>i-1</code>.
+     **/
+    static int [] labelIds(int [] twin, boolean [] bra){
+	int root = 0;
+	while (!bra[root/3] || bra[twin[root]/3])
+	    root++;
+	int [] label = new int[twin.length];
+	// next momentum, intermediate, node
+	int [] next = {1, twin.length/6 + 2, 0};
+	int [] ids = new int[twin.length];
+	tree(root, twin, bra, label, next, null, ids);
+	tree(twin[root], twin, bra, label, next, null, ids);
+	return ids;
+    }
+
+    /**
+     * Returns the labels <code>j1, j2, ...</code> of a split graph.
+     **/
+    private static String [] labels(int order){
+	String [] labels = new String[3*order];
+	for (int i = 0; i < labels.length; i++)
+	    labels[i] = "j" + (i+1);
+	return labels;
+    }
+
+    /**
+     * Returns the signs of the nodes of a split graph: + in the ket.
+     **/
+    private static BitSet signs(int order){
+	BitSet signs = new BitSet(2*order);
+	signs.set(order, 2*order);
+	return signs;
+    }
+
+    /**
+     * Returns the directions of the edges of a split graph: the
+     * couplings point towards the root in the bra and away from it in
+     * the ket.
+     **/
+    private static BitSet heads(int order){
+	BitSet heads = new BitSet(6*order);
+	for (int node = 0; node < order; node++){
+	    heads.set(3*node+2);
+	    heads.set(3*(order+node), 3*(order+node)+2);
+	}
+	return heads;
+    }
+
+    /**
+     * Visits the tree of the node of <code>rootslot</code>, without
+     * recursion, appending it to <code>out</code> or storing the labels
+     * of its nodes in post-order in <code>ids</code>.
+     **/
+    private static void tree(int rootslot, int [] twin, boolean [] bra,
+			     int [] label, int [] next, StringBuffer out,
+			     int [] ids){
+	int [] parent = new int[twin.length/3]; // parent slot per level
+	int [] child = new int[twin.length/3]; // next child per level
+	int [] children = new int[2*twin.length/3]; // slots of the children
+	int level = 0;
+	parent[0] = rootslot;
+	child[0] = 0;
+	while (level >= 0){
+	    int slot = parent[level];
+	    int node = slot/3;
+	    if (child[level] == 2){
+		if (label[slot] == 0)
+		    label[slot] = label[twin[slot]] = next[1]++;
+		if (out != null)
+		    out.append(")j").append(label[slot]);
+		else {
+		    int k = 3*next[2]++;
+		    ids[k] = label[children[2*level]]-1;
+		    ids[k+1] = label[children[2*level+1]]-1;
+		    ids[k+2] = label[slot]-1;
+		}
+		level--;
+		continue;
+	    }
+	    if (out != null)
+		out.append(child[level] == 0 ? '(' : ',');
+	    // the child-th slot of node which is not the parent slot
+	    int s = 3*node + child[level];
+	    if (s >= slot)
+		s++;
+	    children[2*level+child[level]++] = s;
+	    int other = twin[s];
+	    if (bra[other/3] == bra[node]){
+		level++;
+		parent[level] = other;
+		child[level] = 0;
+	    }
+	    else {
+		if (label[s] == 0)
+		    label[s] = label[other] = next[0]++;
+		if (out != null)
+		    out.append('j').append(label[s]);
+	    }
+	}
+    }
+
+    /**
+     * Writes the graph in EDGELIST format, with an edge per line. The
+     * nodes which are not removed are numbered from 0 in increasing
+     * order.
+     * @param y the graph
+     * @param out the channel, which is not closed
+     * @throws IOException if an I/O error occurs
+     **/
+    public static void write(YutsisGraph y, WritableByteChannel out)
+	throws IOException{
+	int [] number = new int[y.order()];
+	int nodes = 0;
+	for (int node = 0; node < y.order(); node++)
+	    if (!y.isRemoved(node))
+		number[node] = nodes++;
+	ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
+	StringBuffer line = new StringBuffer(32);
+	line.append(nodes).append(' ').append(3*nodes/2).append('\n');
+	put(line, buffer, out);
+	int [] nghb = new int[3];
+	for (int node = 0; node < y.order(); node++){
+	    if (y.isRemoved(node))
+		continue;
+	    y.neighbors(node, nghb);
+	    for (int i = 0; i < 3; i++)
+		if (node < nghb[i]){
+		    line.setLength(0);
+		    line.append(number[node]).append(' ')
+			.append(number[nghb[i]]).append('\n');
+		    put(line, buffer, out);
+		}
+	}
+	buffer.flip();
+	while (buffer.hasRemaining())
+	    out.write(buffer);
+    }
+
+    /**
+     * Puts the ASCII line in the buffer, which is written to the
+     * channel when full.
+     **/
+    private static void put(StringBuffer line, ByteBuffer buffer,
+			    WritableByteChannel out) throws IOException{
+	if (buffer.remaining() < line.length()){
+	    buffer.flip();
+	    while (buffer.hasRemaining())
+		out.write(buffer);
+	    buffer.clear();
+	}
+	for (int i = 0; i < line.length(); i++)
+	    buffer.put((byte) line.charAt(i));
+    }
+
+    /**
+     * Converts a graph to another format, writing it to System.out.
+     * When ran with illegal arguments it prints a "usage" to
+     * System.err.
+     **/
+    public static void main(String [] args) throws IOException{
+	String usage = "Usage: java EdgeList [-options] [<filename>]"
+	    + "\n Reads a graph from the file (any format) or an EDGELIST from"
+	    + "\n System.in and writes it to System.out"
+	    + "\nOptions:"
+	    + "\n            b: write the braket (default)"
+	    + "\n            e: write an EDGELIST";
+	boolean edgelist = false;
+	String filename = null;
+	for (int i = 0; i < args.length; i++){
+	    if (!args[i].startsWith("-") && filename == null){
+		filename = args[i];
+		continue;
+	    }
+	    for (int k = 1; k < args[i].length(); k++)
+		switch (args[i].charAt(k)){
+		case 'b':
+		    edgelist = false;
+		    break;
+		case 'e':
+		    edgelist = true;
+		    break;
+		default:
+		    System.err.println(usage);
+		    return;
+		}
+	    if (args[i].length() < 2){
+		System.err.println(usage);
+		return;
+	    }
+	}
+	YutsisGraph y;
+	try {
+	    y = filename == null ?
+		read(Channels.newChannel(System.in)) : YutsisGraph.read(filename);
+	}
+	catch (IllegalArgumentException e){
+	    System.err.println(e.getMessage());
+	    return;
+	}
+	if (edgelist){
+	    WritableByteChannel out = Channels.newChannel(System.out);
+	    write(y, out);
+	    System.out.flush();
+	}
+	else
+	    System.out.println(y.braket());
+    }
+}
@@ -0,0 +1,369 @@
+/* ExactValue.java
+   ---------------
+   2026 (c) agent
+*/
+import java.math.BigInteger;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class represents an exact real number of the form
+ * <code>q1*sqrt(r1) + ... + qn*sqrt(rn)</code>, with rational
+ * coefficients <code>qi</code> and distinct square free integers
+ * <code>ri</code>. These numbers are closed under addition and
+ * multiplication, and include the values of the 6j-symbols and the
+ * weights <code>(2j+1)^(k/2)</code>, so also the values of a {@link
+ * GenRecoupCoeff}. ExactValues are immutable.
+ *
+ * <p> The square roots are built from prime factorizations, such that
+ * no large integer ever has to be factored: the arguments of the
+ * square roots in a GenRecoupCoeff are products of factorials and
+ * small integers.
+ * @see GREvaluator
+ * @author agent@local
+ **/
+public class ExactValue{
+
+    /** The ExactValue 0. **/
+    public static final ExactValue ZERO = new ExactValue(new TreeMap());
+
+    /** The ExactValue 1. **/
+    public static final ExactValue ONE = valueOf(1);
+
+    /**
+     * Maps the square free integers <code>ri</code> (BigIntegers) on
+     * their coefficients <code>qi</code>, given as a BigInteger array
+     * {numerator, denominator} in lowest terms with a positive
+     * denominator. Coefficients are never 0.
+     **/
+    private TreeMap terms;
+
+    /**
+     * The primes in increasing order, grown by {@link #primes}.
+     **/
+    private static volatile int [] primes = {2, 3, 5, 7, 11, 13};
+
+    /**
+     * The factorials, grown by {@link #factorial}.
+     **/
+    private static volatile BigInteger [] factorials = {BigInteger.ONE};
+
+    private ExactValue(TreeMap terms){
+	this.terms = terms;
+    }
+
+    /**
+     * Returns the ExactValue of the integer <code>n</code>.
+     * @param n an integer
+     * @return the ExactValue n
+     **/
+    public static ExactValue valueOf(long n){
+	return valueOf(BigInteger.valueOf(n), BigInteger.ONE);
+    }
+
+    /**
+     * Returns the ExactValue of the fraction <code>num/den</code>.
+     * @param num the numerator
+     * @param den the denominator, not 0
+     * @return the ExactValue num/den
+     **/
+    public static ExactValue valueOf(BigInteger num, BigInteger den){
+	TreeMap terms = new TreeMap();
+	put(terms, BigInteger.ONE, num, den);
+	return new ExactValue(terms);
+    }
+
+    /**
+     * Returns the square root of the product of the primes to the
+     * given powers, i.e. <code>prime(i)^(exps[i]/2)</code>.
+     * @param exps the exponents of the primes in increasing order,
+     *             possibly negative
+     * @return the square root of the product
+     **/
+    public static ExactValue sqrtOfPrimePowers(int [] exps){
+	int [] p = primes(0);
+	if (p.length < exps.length)
+	    p = primes(exps.length);
+	BigInteger num = BigInteger.ONE;
+	BigInteger den = BigInteger.ONE;
+	BigInteger radicand = BigInteger.ONE;
+	for (int i = 0; i < exps.length; i++){
+	    if (exps[i] == 0)
+		continue;
+	    BigInteger prime = BigInteger.valueOf(p[i]);
+	    // prime^(e/2) = prime^(floor(e/2)) * sqrt(prime)^(e mod 2)
+	    int half = exps[i] >> 1;
+	    if (half > 0)
+		num = num.multiply(prime.pow(half));
+	    else if (half < 0)
+		den = den.multiply(prime.pow(-half));
+	    if ((exps[i] & 1) != 0)
+		radicand = radicand.multiply(prime);
+	}
+	TreeMap terms = new TreeMap();
+	put(terms, radicand, num, den);
+	return new ExactValue(terms);
+    }
+
+    /**
+     * Adds <code>num/den</code> to the coefficient of
+     * <code>sqrt(radicand)</code> in <code>terms</code>.
+     **/
+    private static void put(TreeMap terms, BigInteger radicand,
+			    BigInteger num, BigInteger den){
+	BigInteger [] q = (BigInteger []) terms.get(radicand);
+	if (q != null){
+	    num = num.multiply(q[1]).add(q[0].multiply(den));
+	    den = den.multiply(q[1]);
+	}
+	if (num.signum() == 0){
+	    terms.remove(radicand);
+	    return;
+	}
+	if (den.signum() < 0){
+	    num = num.negate();
+	    den = den.negate();
+	}
+	BigInteger gcd = num.gcd(den);
+	if (!gcd.equals(BigInteger.ONE)){
+	    num = num.divide(gcd);
+	    den = den.divide(gcd);
+	}
+	terms.put(radicand, new BigInteger[] {num, den});
+    }
+
+    /**
+     * Returns the sum of this ExactValue and <code>v</code>.
+     * @param v the ExactValue to be added
+     * @return this + v
+     **/
+    public ExactValue add(ExactValue v){
+	if (v.terms.isEmpty())
+	    return this;
+	if (terms.isEmpty())
+	    return v;
+	TreeMap sum = new TreeMap(terms);
+	for (Iterator i = v.terms.entrySet().iterator(); i.hasNext();){
+	    Map.Entry e = (Map.Entry) i.next();
+	    BigInteger [] q = (BigInteger []) e.getValue();
+	    put(sum, (BigInteger) e.getKey(), q[0], q[1]);
+	}
+	return new ExactValue(sum);
+    }
+
+    /**
+     * Returns the product of this ExactValue and <code>v</code>.
+     * @param v the ExactValue to be multiplied with
+     * @return this * v
+     **/
+    public ExactValue multiply(ExactValue v){
+	if (terms.isEmpty() || v.terms.isEmpty())
+	    return ZERO;
+	TreeMap product = new TreeMap();
+	for (Iterator i = terms.entrySet().iterator(); i.hasNext();){
+	    Map.Entry e1 = (Map.Entry) i.next();
+	    BigInteger r1 = (BigInteger) e1.getKey();
+	    BigInteger [] q1 = (BigInteger []) e1.getValue();
+	    for (Iterator k = v.terms.entrySet().iterator(); k.hasNext();){
+		Map.Entry e2 = (Map.Entry) k.next();
+		BigInteger r2 = (BigInteger) e2.getKey();
+		BigInteger [] q2 = (BigInteger []) e2.getValue();
+		// sqrt(r1)*sqrt(r2) = g*sqrt((r1/g)*(r2/g)), g = gcd(r1,r2)
+		BigInteger g = r1.gcd(r2);
+		put(product, r1.divide(g).multiply(r2.divide(g)),
+		    q1[0].multiply(q2[0]).multiply(g), q1[1].multiply(q2[1]));
+	    }
+	}
+	return new ExactValue(product);
+    }
+
+    /**
+     * Returns the opposite of this ExactValue.
+     * @return -this
+     **/
+    public ExactValue negate(){
+	TreeMap opposite = new TreeMap();
+	for (Iterator i = terms.entrySet().iterator(); i.hasNext();){
+	    Map.Entry e = (Map.Entry) i.next();
+	    BigInteger [] q = (BigInteger []) e.getValue();
+	    opposite.put(e.getKey(), new BigInteger[] {q[0].negate(), q[1]});
+	}
+	return new ExactValue(opposite);
+    }
+
+    /**
+     * True if this ExactValue is 0.
+     * @return true if this is 0
+     **/
+    public boolean isZero(){ return terms.isEmpty(); }
+
+    /**
+     * Returns the value of this ExactValue as a double.
+     * @return the nearest double
+     **/
+    public double doubleValue(){
+	BigDecimal sum = BigDecimal.ZERO;
+	for (Iterator i = terms.entrySet().iterator(); i.hasNext();){
+	    Map.Entry e = (Map.Entry) i.next();
+	    BigInteger [] q = (BigInteger []) e.getValue();
+	    BigDecimal root = new BigDecimal(Math.sqrt
+		(((BigInteger) e.getKey()).doubleValue()));
+	    sum = sum.add(new BigDecimal(q[0]).multiply(root)
+			  .divide(new BigDecimal(q[1]), MathContext.DECIMAL64));
+	}
+	return sum.doubleValue();
+    }
+
+    /**
+     * Returns a String representation of this ExactValue, e.g.
+     * <code>-1/2*sqrt(3)+5/6</code>.
+     * @return a String representation of this ExactValue
+     **/
+    public String toString(){
+	if (terms.isEmpty())
+	    return "0";
+	StringBuffer bf = new StringBuffer();
+	for (Iterator i = terms.entrySet().iterator(); i.hasNext();){
+	    Map.Entry e = (Map.Entry) i.next();
+	    BigInteger r = (BigInteger) e.getKey();
+	    BigInteger [] q = (BigInteger []) e.getValue();
+	    if (bf.length() > 0 && q[0].signum() > 0)
+		bf.append('+');
+	    boolean one = q[1].equals(BigInteger.ONE)
+		&& q[0].abs().equals(BigInteger.ONE);
+	    if (r.equals(BigInteger.ONE) || !one)
+		bf.append(q[0]);
+	    else if (q[0].signum() < 0)
+		bf.append('-');
+	    if (!q[1].equals(BigInteger.ONE))
+		bf.append('/').append(q[1]);
+	    if (!r.equals(BigInteger.ONE))
+		bf.append(one ? "" : "*").append("sqrt(").append(r).append(')');
+	}
+	return bf.toString();
+    }
+
+    /**
+     * True if <code>o</code> is an ExactValue with the same value.
+     * @param o the Object to be compared with
+     * @return true if o equals this ExactValue
+     **/
+    public boolean equals(Object o){
+	if (!(o instanceof ExactValue))
+	    return false;
+	TreeMap other = ((ExactValue) o).terms;
+	if (other.size() != terms.size())
+	    return false;
+	Iterator k = other.entrySet().iterator();
+	for (Iterator i = terms.entrySet().iterator(); i.hasNext();){
+	    Map.Entry e1 = (Map.Entry) i.next();
+	    Map.Entry e2 = (Map.Entry) k.next();
+	    BigInteger [] q1 = (BigInteger []) e1.getValue();
+	    BigInteger [] q2 = (BigInteger []) e2.getValue();
+	    if (!e1.getKey().equals(e2.getKey()) || !q1[0].equals(q2[0])
+		|| !q1[1].equals(q2[1]))
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * Returns a hash code for this ExactValue.
+     * @return a hash code consistent with equals
+     **/
+    public int hashCode(){
+	int hash = 0;
+	for (Iterator i = terms.entrySet().iterator(); i.hasNext();){
+	    Map.Entry e = (Map.Entry) i.next();
+	    BigInteger [] q = (BigInteger []) e.getValue();
+	    hash = 31*hash + e.getKey().hashCode()
+		+ 17*q[0].hashCode() + q[1].hashCode();
+	}
+	return hash;
+    }
+
+    /**
+     * Returns the primes in increasing order, at least the first
+     * <code>n</code> ones.
+     **/
+    static synchronized int [] primes(int n){
+	if (primes.length >= n)
+	    return primes;
+	int [] newprimes = new int[Math.max(n, 2*primes.length)];
+	System.arraycopy(primes,0,newprimes,0,primes.length);
+	int count = primes.length;
+	for (int c = primes[count-1]+2; count < newprimes.length; c += 2){
+	    boolean prime = true;
+	    for (int i = 1; prime && newprimes[i]*newprimes[i] <= c; i++)
+		prime = c % newprimes[i] != 0;
+	    if (prime)
+		newprimes[count++] = c;
+	}
+	return primes = newprimes;
+    }
+
+    /**
+     * Returns the number of primes smaller than or equal to
+     * <code>n</code>.
+     **/
+    static int nrOfPrimes(int n){
+	int [] p = primes(0);
+	while (p[p.length-1] <= n)
+	    p = primes(2*p.length);
+	int count = 0;
+	while (p[count] <= n)
+	    count++;
+	return count;
+    }
+
+    /**
+     * Adds <code>times</code> times the exponents of the primes in
+     * <code>n!</code> to <code>exps</code>, which must hold at least
+     * the primes up to <code>n</code>.
+     **/
+    static void addFactorial(int [] exps, int n, int times){
+	int [] p = primes(0);
+	for (int i = 0; i < exps.length && p[i] <= n; i++){
+	    int e = 0;
+	    for (int q = n/p[i]; q > 0; q /= p[i])
+		e += q;
+	    exps[i] += times*e;
+	}
+    }
+
+    /**
+     * Adds <code>times</code> times the exponents of the primes in the
+     * positive integer <code>n</code> to <code>exps</code>, which must
+     * hold at least the primes up to <code>n</code>.
+     **/
+    static void addInteger(int [] exps, int n, int times){
+	int [] p = primes(0);
+	for (int i = 0; n > 1; i++)
+	    while (n % p[i] == 0){
+		exps[i] += times;
+		n /= p[i];
+	    }
+    }
+
+    /**
+     * Returns <code>n!</code>.
+     **/
+    static BigInteger factorial(int n){
+	BigInteger [] f = factorials;
+	if (n < f.length)
+	    return f[n];
+	synchronized (ExactValue.class){
+	    if (n >= factorials.length){
+		f = new BigInteger[Math.max(n+1, 2*factorials.length)];
+		System.arraycopy(factorials,0,f,0,factorials.length);
+		for (int i = factorials.length; i < f.length; i++)
+		    f[i] = f[i-1].multiply(BigInteger.valueOf(i));
+		factorials = f;
+	    }
+	    return factorials[n];
+	}
+    }
+}
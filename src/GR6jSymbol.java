@@ -13,25 +13,33 @@
  * this class are immutable.
  * @see GenRecoupCoeff
  * @see Edge
+ * @see Wigner6j
  * @see GRFactor
  * @see GRVisitor
  * @author Dries.VanDyck@rug.ac.be
  **/
 public class GR6jSymbol extends GRFactor{
     /** 
-     * The labels in this 6j-symbol when read from left to right, top
-     * to bottom.
+     * The ids of the labels in this 6j-symbol when read from left to
+     * right, top to bottom.
      **/
-    String [] labels = new String[6]; 
+    int [] labels = new int[6]; 
+
+    /** 
+     * The table of the labels.
+     **/
+    LabelTable table;
     
     /** 
      * Constructs a Wigner 6j-symbol with toprow <code>toprow[0],
      * toprow[1], toprow[2]</code> and bottomrow 
      * <code>bottomrow[0], bottomrow[1], bottomrow[2]</code>.
-     * @param toprow array of labels for the toprow 
-     * @param bottomrow array of labels for the bottomrow 
+     * @param table the table of the labels
+     * @param toprow array of label ids for the toprow 
+     * @param bottomrow array of label ids for the bottomrow 
      **/
-    public GR6jSymbol(String [] toprow, String [] bottomrow){
+    public GR6jSymbol(LabelTable table, int [] toprow, int [] bottomrow){
+	this.table = table;
 	for (int i =0 ; i < 3; i++){
 	    labels[i] = toprow[i];
 	    labels[3+i] = bottomrow[i];
@@ -39,14 +47,14 @@ public class GR6jSymbol extends GRFactor{
     }
 
     /** 
-     * True if this 6j-symbol contains the label <code>label</code>,
-     * false otherwise.
-     * @param label the label to be checked
+     * True if this 6j-symbol contains the label with id
+     * <code>label</code>, false otherwise.
+     * @param label the id of the label to be checked
      * @return true if the label appears in this GRPreFactor, false otherwise
      **/
-    public boolean containsLabel(String label){
+    public boolean containsLabel(int label){
 	for (int i = 0; i < 6; i++)
-	    if (labels[i].equals(label))
+	    if (labels[i] == label)
 		return true;
 	return false;
     }
@@ -57,9 +65,42 @@ public class GR6jSymbol extends GRFactor{
      *         first/last three make up the bottom/top row.
      **/
     public String[] args(){
-	String [] args = new String[6];
-	System.arraycopy(labels,0,args,0,6);
-	return args;
+	return table.labels(labels);
+    }
+
+    /**
+     * Returns the ids of the arguments of the GR6jSymbol object, in
+     * the order of {@link #args}.
+     * @return the label ids of the arguments
+     **/
+    public int [] argIds(){
+	return labels.clone();
+    }
+
+    /**
+     * Returns the value of this 6j-symbol in double precision for the
+     * given values of the labels.
+     * @param v twice the values of the angular momenta, indexed by
+     *          label id
+     * @return the value of the 6j-symbol
+     * @see Wigner6j#value
+     **/
+    public double value(int [] v){
+	return Wigner6j.value(v[labels[0]],v[labels[1]],v[labels[2]],
+			      v[labels[3]],v[labels[4]],v[labels[5]]);
+    }
+
+    /**
+     * Returns the exact value of this 6j-symbol for the given values
+     * of the labels.
+     * @param v twice the values of the angular momenta, indexed by
+     *          label id
+     * @return the value of the 6j-symbol
+     * @see Wigner6j#exactValue
+     **/
+    public ExactValue exactValue(int [] v){
+	return Wigner6j.exactValue(v[labels[0]],v[labels[1]],v[labels[2]],
+				   v[labels[3]],v[labels[4]],v[labels[5]]);
     }
 
     /** 
@@ -70,10 +111,10 @@ public class GR6jSymbol extends GRFactor{
 	StringBuffer bs = new StringBuffer();
 	bs.append('{');
 	for(int i = 0; i < 3; i++)
-	    bs.append(labels[i]).append(',');
+	    bs.append(table.label(labels[i])).append(',');
 	bs.setCharAt(bs.length()-1,';');
 	for(int i = 3; i <6; i++)
-	    bs.append(labels[i]).append(',');
+	    bs.append(table.label(labels[i])).append(',');
 	bs.setCharAt(bs.length()-1,'}');
 	return bs.toString();
     }
@@ -24,11 +24,18 @@ public class GRCompoundFactor implements Cloneable{
      **/
     ArrayList grfactors;
 
+    /** 
+     * The table of the labels.
+     **/
+    LabelTable table;
+
     /** 
      * Constructs a new (empty) product of GRFactor's.
+     * @param table the table of the labels
      * @see GRFactor
      **/
-    public GRCompoundFactor(){
+    public GRCompoundFactor(LabelTable table){
+	this.table = table;
 	grfactors = new ArrayList();
 	grfactors.add(null);
     }
@@ -36,10 +43,12 @@ public class GRCompoundFactor implements Cloneable{
     /** 
      * Constructs a new (empty) product of GRFactor's with
      * <code>nroffactors</code> expected number of factors.
+     * @param table the table of the labels
      * @param nroffactors the expected number of factors
      * @see GRFactor
      **/
-    public GRCompoundFactor(int nroffactors){
+    public GRCompoundFactor(LabelTable table, int nroffactors){
+	this.table = table;
 	grfactors = new ArrayList(nroffactors);
 	grfactors.add(null);
     }
@@ -47,10 +56,12 @@ public class GRCompoundFactor implements Cloneable{
     /** 
      * Constructs a new product of GRFactor's with initial
      * GRFactor <code>f</code>.
+     * @param table the table of the labels
      * @param f the intial {@link GRFactor}
      * @see GRFactor
      **/
-    public GRCompoundFactor(GRFactor f){
+    public GRCompoundFactor(LabelTable table, GRFactor f){
+	this.table = table;
 	grfactors = new ArrayList();
 	if (!(f instanceof GRPreFactor))
 	    grfactors.add(null);
@@ -61,11 +72,13 @@ public class GRCompoundFactor implements Cloneable{
      * Constructs a new product of GRFactor's with initial
      * GRFactor <code>f</code> and <code>nroffactors</code> expected
      * number of factors.
+     * @param table the table of the labels
      * @param nroffactors the expected number of factors
      * @param f the intial GRFactor
      * @see GRFactor
      **/
-    public GRCompoundFactor(int nroffactors, GRFactor f){
+    public GRCompoundFactor(LabelTable table, int nroffactors, GRFactor f){
+	this.table = table;
 	grfactors = new ArrayList(nroffactors);
 	if (!(f instanceof GRPreFactor))
 	    grfactors.add(null);
@@ -77,6 +90,7 @@ public class GRCompoundFactor implements Cloneable{
      * @param grcf the GRCompoundFactor to be duplicated
      **/
     GRCompoundFactor(GRCompoundFactor grcrf){
+	table = grcrf.table;
 	grfactors = new ArrayList(grcrf.grfactors);
 	if (grfactors.get(0) != null)
 	    grfactors.set(0,new GRPreFactor((GRPreFactor) grfactors.get(0)));
@@ -106,7 +120,7 @@ public class GRCompoundFactor implements Cloneable{
 	grcf.grfactors = (ArrayList) grfactors.clone();
 	// All but first are immutable
 	if (grfactors.get(0) != null)
-	    grfactors.set(0,((GRPreFactor) grfactors.get(0)).clone());
+	    grcf.grfactors.set(0,((GRPreFactor) grfactors.get(0)).clone());
 	return grcf;
     }
 
@@ -127,11 +141,11 @@ public class GRCompoundFactor implements Cloneable{
     /** 
      * Appends a factor <code>(-1)^(j[0] + ... +j[j.length-1])</code> 
      * to this GRCompoundFactor.
-     * @param j array of labels to be appended
+     * @param j array of label ids to be appended
      **/
-    public void appendExp(String [] j){
+    public void appendExp(int [] j){
 	if (grfactors.get(0) == null)
-	    grfactors.set(0, new GRPreFactor(j));
+	    grfactors.set(0, new GRPreFactor(table,j));
 	else
 	    ((GRPreFactor) grfactors.get(0)).appendExp(j);
     }
@@ -140,11 +154,11 @@ public class GRCompoundFactor implements Cloneable{
      * Appends a factor <code>(-1)^(factor*j)</code> to this
      * GRCompoundFactor.
      * @param factor the factor of the label to be appended
-     * @param j the label to be appended
+     * @param j the label id to be appended
      **/
-    public void appendExp(int factor,String j){ 
+    public void appendExp(int factor,int j){ 
 	if (grfactors.get(0) == null) {
-	    grfactors.set(0, new GRPreFactor(factor,j));
+	    grfactors.set(0, new GRPreFactor(table,factor,j));
 	} 
 	else 
 	    ((GRPreFactor)
@@ -170,12 +184,12 @@ public class GRCompoundFactor implements Cloneable{
     /** 
      * Appends a factor <code>(2*a+1)^(exp/2)</code> to this
      * GRCompoundFactor.
-     * @param a the label of the weight to be appended
+     * @param a the label id of the weight to be appended
      * @param exp the 2*exponent of the weight
      **/
-    public void appendFactor(String a, int exp){ 
+    public void appendFactor(int a, int exp){ 
 	if (grfactors.get(0) == null) {
-	    grfactors.set(0,new GRPreFactor(a,exp));
+	    grfactors.set(0,new GRPreFactor(table,new int [] {a},exp));
 	} 
 	else 
 	    ((GRPreFactor)
@@ -186,12 +200,12 @@ public class GRCompoundFactor implements Cloneable{
      * Appends a factor
      * <code>((2*a[0]+1)*...*(2*a[a.length-1]+1))^(exp/2)</code> to
      * this GRCompoundFactor.
-     * @param a array of labels of weights to be appended
+     * @param a array of label ids of weights to be appended
      * @param exp the 2*exponent of all the weights to be appended
      **/
-    public void appendFactor(String [] a, int exp){ 
+    public void appendFactor(int [] a, int exp){ 
 	if (grfactors.get(0) == null) {
-	    grfactors.set(0, new GRPreFactor(a,exp));
+	    grfactors.set(0, new GRPreFactor(table,a,exp));
 	} 
 	else 
 	    ((GRPreFactor)
@@ -199,15 +213,32 @@ public class GRCompoundFactor implements Cloneable{
     }
 
     /** 
-     * True if this GRCompoundFactor contains a factor with label
-     * <code>label</code>, false otherwise.
-     * @param label the label to be checked
+     * Restores a previous state of this GRCompoundFactor: sets the
+     * GRPreFactor to (a copy of) <code>pf</code> and drops the 
+     * factors appended after the first <code>size</code> ones.
+     * @param pf the GRPreFactor to be restored, possibly null
+     * @param size the number of factors to be kept
+     **/
+    void restore(GRPreFactor pf, int size){
+	if (pf == null || grfactors.get(0) == null)
+	    grfactors.set(0,pf);
+	else
+	    ((GRPreFactor) grfactors.get(0)).restore(pf);
+	while (grfactors.size() > size)
+	    grfactors.remove(grfactors.size()-1);
+    }
+
+    /** 
+     * True if this GRCompoundFactor contains a factor with the label
+     * with id <code>label</code>, false otherwise.
+     * @param label the id of the label to be checked
      * @return true if the label appears in this GRCompoundFactor,
      *         false otherwise
      **/
-    public boolean containsLabel(String label){
+    public boolean containsLabel(int label){
 	for (int i = 0; i < grfactors.size(); i++)
-	    if (((GRFactor) grfactors.get(i)).containsLabel(label))
+	    if (grfactors.get(i) != null
+		&& ((GRFactor) grfactors.get(i)).containsLabel(label))
 		return true;
     return false;
     }
@@ -0,0 +1,612 @@
+/* GREvaluator.java
+   ----------------
+   2026 (c) agent
+*/
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A GRVisitor which evaluates the visited {@link GenRecoupCoeff}
+ * numerically for given values of the angular momenta. The values
+ * are integers or half-integers; they are passed as twice the value,
+ * or as Strings like "3/2" or "1.5".
+ *
+ * <p> The visit only collects the factors of the formula; the value is
+ * computed by {@link #result} or, for a sweep over many values, by
+ * {@link #evaluate} and {@link #evaluateExact} which take the values
+ * indexed by label id. The summations are nested in the order of the
+ * formula, each running over the values allowed by the triangle
+ * conditions of its couplings; the 6j-symbols are computed by
+ * {@link Wigner6j}, which caches their values. By default the value
+ * is computed in double precision, by the formula {@link #compile
+ * compiled} to a {@link GRProgram}; in exact mode it is an {@link
+ * ExactValue}.
+ *
+ * <p> The phase factors <code>(-1)^x</code> of the separate factors
+ * can have a half-integer <code>x</code>, only the total phase of a
+ * term is integer. The phase of a term is therefore accumulated as
+ * <code>i^(2x)</code>, i.e. modulo 4 in doubled units, and applied
+ * once per term.
+ *
+ * <p> The value is that of the formula as generated. For some graphs
+ * the generated formula is wrong (see the Bugs of {@link
+ * YutsisGraph}), so its value differs from the recoupling coefficient
+ * in magnitude as well as sign.
+ * @see GRVisitor
+ * @see GenRecoupCoeff
+ * @see ExactValue
+ * @see Wigner6j
+ * @author agent@local
+ **/
+public class GREvaluator implements GRVisitor{
+
+    /**
+     * The factors of the formula within one summation, or outside all
+     * summations.
+     **/
+    static class Level{
+	/** The summation variable, -1 outside the summations. **/
+	int var = -1;
+	/** The couplings a, b, c, d of the summation variable. **/
+	int [] couplings;
+	/** The labels and coefficients of the phase factor. **/
+	int [] phaseIds = new int[0], phaseCoeffs = new int[0];
+	/** The labels and exponents of the weights (2j+1)^(exp/2). **/
+	int [] weightIds = new int[0], weightExps = new int[0];
+	/** Per Kronecker delta the two labels. **/
+	ArrayList deltas = new ArrayList();
+	/** The GR6jSymbols. **/
+	ArrayList sixjs = new ArrayList();
+    }
+
+    private boolean exact;
+
+    /** The table of the labels of the visited formula. **/
+    private LabelTable labels;
+
+    /** The levels of the formula, outside the summations first. **/
+    private ArrayList levels = new ArrayList();
+
+    /** The level being visited. **/
+    private Level current;
+
+    /** The ids of the labels which need a value, null if not known. **/
+    private int [] free;
+
+    /** The compiled formula, null if not compiled yet. **/
+    private GRProgram program;
+
+    /**
+     * Number of threads evaluating the outermost summation; 1 means no
+     * parallelism.
+     **/
+    private int parallelism = 1;
+
+    /** The pool executing the SumTasks when parallelism > 1. **/
+    private ForkJoinPool pool;
+
+    /** Maps the labels on twice their value. **/
+    private HashMap values = new HashMap();
+
+    /**
+     * Constructs a new GREvaluator computing in double precision.
+     **/
+    public GREvaluator(){ this(false); }
+
+    /**
+     * Constructs a new GREvaluator.
+     * @param exact true for exact arithmetic, false for double
+     *              precision
+     **/
+    public GREvaluator(boolean exact){
+	this.exact = exact;
+    }
+
+    /**
+     * True if this GREvaluator uses exact arithmetic.
+     * @return true in exact mode
+     **/
+    public boolean isExact(){ return exact; }
+
+    /**
+     * Returns the number of threads over which the values of the
+     * outermost summation are divided.
+     * @return the number of threads used by the evaluation
+     **/
+    public int parallelism(){ return parallelism; }
+
+    /**
+     * Sets the number of threads over which the values of the
+     * outermost summation are divided. For a parallelism above 1 the
+     * result does not depend on this number: the partial sums are
+     * always added in the order of the values. A value of 1 (default)
+     * evaluates in the calling thread, without splitting the sum.
+     * @param parallelism the number of threads to be used
+     **/
+    public void setParallelism(int parallelism){
+	if (parallelism < 1)
+	    throw new IllegalArgumentException("parallelism < 1");
+	if (pool != null)
+	    pool.shutdown();
+	this.parallelism = parallelism;
+	pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Returns twice the value of an angular momentum given as an
+     * integer, a fraction with denominator 2 or a decimal number.
+     * @param value the value, e.g. "1", "3/2" or "1.5"
+     * @return twice the value
+     * @throws NumberFormatException if the value is not a
+     *         non-negative integer or half-integer
+     **/
+    public static int twice(String value){
+	value = value.trim();
+	int twice;
+	int slash = value.indexOf('/');
+	if (slash != -1){
+	    int num = Integer.parseInt(value.substring(0,slash).trim());
+	    int den = Integer.parseInt(value.substring(slash+1).trim());
+	    if (den == 1)
+		twice = 2*num;
+	    else if (den == 2)
+		twice = num;
+	    else
+		throw new NumberFormatException("Not a half-integer: " + value);
+	}
+	else {
+	    double d = Double.parseDouble(value);
+	    if (2*d != Math.rint(2*d))
+		throw new NumberFormatException("Not a half-integer: " + value);
+	    twice = (int) Math.rint(2*d);
+	}
+	if (twice < 0)
+	    throw new NumberFormatException("Negative value: " + value);
+	return twice;
+    }
+
+    /**
+     * Sets the value of the angular momentum with the given label.
+     * @param label the label of the angular momentum
+     * @param twice twice its value
+     **/
+    public void setValue(String label, int twice){
+	if (twice < 0)
+	    throw new IllegalArgumentException("Negative value for " + label);
+	values.put(label, Integer.valueOf(twice));
+    }
+
+    /**
+     * Sets the value of the angular momentum with the given label.
+     * @param label the label of the angular momentum
+     * @param value its value, e.g. "1", "3/2" or "1.5"
+     * @throws NumberFormatException if the value is not a
+     *         non-negative integer or half-integer
+     **/
+    public void setValue(String label, String value){
+	values.put(label, Integer.valueOf(twice(value)));
+    }
+
+    /**
+     * Sets the values of the angular momenta given as a list
+     * <code>label=value,...</code>, e.g. <code>a=1/2,b=1,c=3/2</code>.
+     * @param assignment the list of values
+     * @throws IllegalArgumentException if the list is malformed
+     **/
+    public void setValues(String assignment){
+	java.util.StringTokenizer st =
+	    new java.util.StringTokenizer(assignment, ",");
+	while (st.hasMoreTokens()){
+	    String token = st.nextToken();
+	    int is = token.indexOf('=');
+	    if (is < 1)
+		throw new IllegalArgumentException("Expected label=value: "
+						   + token);
+	    setValue(token.substring(0,is).trim(), token.substring(is+1));
+	}
+    }
+
+    /**
+     * Removes all values set.
+     **/
+    public void clearValues(){ values.clear(); }
+
+    /**
+     * Returns the id of a label of the visited formula, to be used as
+     * index in the values passed to {@link #evaluate}.
+     * @param label the label
+     * @return its id, or -1 if it is not a label of the formula
+     **/
+    public int labelId(String label){
+	return labels == null ? -1 : labels.lookup(label);
+    }
+
+    /**
+     * Returns the labels of the visited formula which need a value,
+     * i.e. those appearing in it that are not summed over.
+     * @return the labels needing a value
+     **/
+    public String [] freeLabels(){
+	if (labels == null)
+	    throw new IllegalStateException("No formula visited");
+	return labels.labels(free());
+    }
+
+    /**
+     * Returns an array for the values of the visited formula, to be
+     * filled in at the ids of the labels and passed to {@link
+     * #evaluate}; all values are initially unset (-1).
+     * @return a new array for the values
+     **/
+    public int [] newValues(){
+	if (labels == null)
+	    throw new IllegalStateException("No formula visited");
+	int [] v = new int[labels.size()];
+	Arrays.fill(v,-1);
+	return v;
+    }
+
+    /**
+     * Specific method for visiting a GenRecoupCoeff object: starts
+     * the collection of a new formula.
+     * @param grc the GenRecoupCoeff to be visited
+     **/
+    public void visitGenRecoupCoeff(GenRecoupCoeff grc){
+	labels = grc.labels();
+	levels.clear();
+	free = null;
+	program = null;
+    }
+
+    /**
+     * Specific method for visiting a GRCompoundFactor object: the
+     * factors which follow are outside the summations.
+     * @param grcf the GRCompoundFactor to be visited
+     **/
+    public void visitGRCompoundFactor(GRCompoundFactor grcf){
+	current = new Level();
+	levels.add(current);
+    }
+
+    /**
+     * Specific method for visiting a GRSummation object: the factors
+     * which follow are within this summation, nested in the previous
+     * ones.
+     * @param grs the GRSummation to be visited
+     **/
+    public void visitGRSummation(GRSummation grs){
+	current = new Level();
+	current.var = grs.summVarId();
+	current.couplings = grs.couplingIds();
+	levels.add(current);
+    }
+
+    /**
+     * Specific method for visiting a GRPreFactor object.
+     * @param grpf the GRPreFactor to be visited
+     **/
+    public void visitGRPreFactor(GRPreFactor grpf){
+	current.phaseIds = grpf.expIdArray();
+	current.phaseCoeffs = new int[current.phaseIds.length];
+	for (int i = 0; i < current.phaseIds.length; i++)
+	    current.phaseCoeffs[i] = grpf.expCoeff(current.phaseIds[i]);
+	current.weightIds = grpf.factorsIdArray();
+	current.weightExps = new int[current.weightIds.length];
+	for (int i = 0; i < current.weightIds.length; i++)
+	    current.weightExps[i] = grpf.factorExp(current.weightIds[i]);
+    }
+
+    /**
+     * Specific method for visiting a GRKrDelta object.
+     * @param grcd the GRKrDelta to be visited
+     **/
+    public void visitGRKrDelta(GRKrDelta grcd){
+	current.deltas.add(grcd.argIds());
+    }
+
+    /**
+     * Specific method for visiting a GR6jSymbol object.
+     * @param gr6j the GR6jSymbol to be visited
+     **/
+    public void visitGR6jSymbol(GR6jSymbol gr6j){
+	current.sixjs.add(gr6j);
+    }
+
+    /**
+     * Returns the value of the visited formula for the values set.
+     * @return the value as a Double, or as an ExactValue in exact
+     *         mode
+     * @throws IllegalArgumentException if a label has no value
+     **/
+    public Object result(){
+	int [] v = newValues();
+	for (Iterator i = values.entrySet().iterator(); i.hasNext();){
+	    Map.Entry e = (Map.Entry) i.next();
+	    int id = labels.lookup((String) e.getKey());
+	    if (id != -1)
+		v[id] = ((Integer) e.getValue()).intValue();
+	}
+	if (exact)
+	    return evaluateExact(v);
+	return Double.valueOf(evaluate(v));
+    }
+
+    /**
+     * Returns the ids of the labels which need a value.
+     **/
+    private int [] free(){
+	if (free != null)
+	    return free;
+	boolean [] used = new boolean[labels.size()];
+	boolean [] summed = new boolean[labels.size()];
+	for (int l = 0; l < levels.size(); l++){
+	    Level level = (Level) levels.get(l);
+	    if (level.var != -1){
+		summed[level.var] = true;
+		mark(used, level.couplings);
+	    }
+	    mark(used, level.phaseIds);
+	    mark(used, level.weightIds);
+	    for (int i = 0; i < level.deltas.size(); i++)
+		mark(used, (int []) level.deltas.get(i));
+	    for (int i = 0; i < level.sixjs.size(); i++)
+		mark(used, ((GR6jSymbol) level.sixjs.get(i)).argIds());
+	}
+	int count = 0;
+	for (int i = 0; i < used.length; i++)
+	    if (used[i] && !summed[i])
+		count++;
+	free = new int[count];
+	for (int i = 0, k = 0; i < used.length; i++)
+	    if (used[i] && !summed[i])
+		free[k++] = i;
+	return free;
+    }
+
+    private static void mark(boolean [] used, int [] ids){
+	for (int i = 0; i < ids.length; i++)
+	    used[ids[i]] = true;
+    }
+
+    /**
+     * Checks that all labels needing a value have one.
+     **/
+    private void check(int [] v){
+	int [] free = free();
+	for (int i = 0; i < free.length; i++)
+	    if (free[i] >= v.length || v[free[i]] < 0)
+		throw new IllegalArgumentException
+		    ("No value for " + labels.label(free[i]));
+    }
+
+    /**
+     * Returns the visited formula compiled to loops, see {@link
+     * GRProgram}. The program is compiled once per visited formula.
+     * @return the compiled formula
+     * @throws IllegalStateException if no formula was visited
+     **/
+    public GRProgram compile(){
+	if (labels == null)
+	    throw new IllegalStateException("No formula visited");
+	if (program == null)
+	    program = new GRProgram(labels, levels);
+	return program;
+    }
+
+    /**
+     * Returns the value of the visited formula in double precision,
+     * computed by its {@link #compile compiled} program. With a
+     * parallelism of 1 the program is run directly, without
+     * allocations. Otherwise the terms of the outermost summation are
+     * divided over the threads set by {@link #setParallelism}. In
+     * both cases the terms are added in order with compensated
+     * summation, so the result does not depend on the number of
+     * threads.
+     * @param v twice the values of the angular momenta, indexed by
+     *          label id, e.g. an array obtained from {@link
+     *          #newValues}; the array is also used to hold the values
+     *          of the summation variables, so it can not be shared
+     *          between threads
+     * @return the value of the formula
+     * @throws IllegalArgumentException if a label has no value, or
+     *         if the values give a non-integer phase
+     **/
+    public double evaluate(int [] v){
+	check(v);
+	GRProgram program = compile();
+	int [] range = pool == null ? null : program.range(v);
+	if (range == null)
+	    return program.evaluate(v);
+	double [] partial = new double[(range[1]-range[0])/2+1];
+	sum(new SumTask(program, v, range[0], partial, 0, partial.length));
+	// compensated summation (Kahan-Babuska)
+	double sum = 0, c = 0;
+	for (int i = 0; i < partial.length; i++){
+	    double x = partial[i];
+	    double t = sum + x;
+	    c += Math.abs(sum) >= Math.abs(x) ? (sum-t)+x : (x-t)+sum;
+	    sum = t;
+	}
+	return sum + c;
+    }
+
+    /**
+     * Runs the given task, in the pool if there is one.
+     **/
+    private void sum(SumTask task){
+	if (pool == null || task.to-task.from == 1)
+	    task.compute();
+	else
+	    pool.invoke(task);
+    }
+
+    /**
+     * Task computing the terms of a range of values of the outermost
+     * summation, by recursively splitting it in halves. In a pool, a
+     * task computing terms works on its own copy of the program and
+     * of the values.
+     **/
+    class SumTask extends RecursiveAction{
+	private static final long serialVersionUID = 1L;
+
+	GRProgram program;
+	int l, phase;
+	int [] v;
+	int first;
+	double [] partial;
+	ExactValue [] exactpartial;
+	int from, to;
+
+	/**
+	 * Constructs a task for the values <code>first+2*i</code> for
+	 * <code>i</code> from <code>from</code> up to <code>to</code>,
+	 * storing their terms in double precision in
+	 * <code>partial[i]</code>, computed by the program.
+	 **/
+	SumTask(GRProgram program, int [] v, int first, double [] partial,
+		int from, int to){
+	    this(program, 0, 0, v, first, partial, null, from, to);
+	}
+
+	/**
+	 * Constructs a task for the values <code>first+2*i</code> for
+	 * <code>i</code> from <code>from</code> up to <code>to</code>,
+	 * storing their exact terms in <code>exactpartial[i]</code>,
+	 * computed with level <code>l</code> of the outermost summation
+	 * and the phase outside it.
+	 **/
+	SumTask(int l, int phase, int [] v, int first,
+		ExactValue [] exactpartial, int from, int to){
+	    this(null, l, phase, v, first, null, exactpartial, from, to);
+	}
+
+	private SumTask(GRProgram program, int l, int phase, int [] v,
+			int first, double [] partial,
+			ExactValue [] exactpartial, int from, int to){
+	    this.program = program;
+	    this.l = l;
+	    this.phase = phase;
+	    this.v = v;
+	    this.first = first;
+	    this.partial = partial;
+	    this.exactpartial = exactpartial;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	protected void compute(){
+	    if (pool == null || to-from == 1){
+		GRProgram p = pool == null ? program : program == null
+		    ? null : program.copy();
+		int [] values = pool == null ? v : v.clone();
+		for (int i = from; i < to; i++){
+		    int z = first+2*i;
+		    if (p != null)
+			partial[i] = p.evaluate(values, z, z);
+		    else {
+			Level level = (Level) levels.get(l);
+			values[level.var] = z;
+			exactpartial[i] = exactTerm(l, level, phase, values);
+		    }
+		}
+	    }
+	    else {
+		int middle = (from+to)/2;
+		invokeAll(new SumTask(program, l, phase, v, first, partial,
+				      exactpartial, from, middle),
+			  new SumTask(program, l, phase, v, first, partial,
+				      exactpartial, middle, to));
+	    }
+	}
+    }
+
+    /**
+     * Returns the exact value of the visited formula; the terms of the
+     * outermost summation are divided over the threads set by {@link
+     * #setParallelism} and added in order. The array is also used to
+     * hold the values of the summation variables, so it can not be
+     * shared between threads.
+     * @param v twice the values of the angular momenta, indexed by
+     *          label id, e.g. an array obtained from {@link #newValues}
+     * @return the value of the formula
+     * @throws IllegalArgumentException if a label has no value, or
+     *         if the values give a non-integer phase
+     **/
+    public ExactValue evaluateExact(int [] v){
+	check(v);
+	return exactSum(0, 0, v);
+    }
+
+    private ExactValue exactSum(int l, int phase, int [] v){
+	if (l == levels.size()){
+	    if ((phase & 1) != 0)
+		throw new IllegalArgumentException
+		    ("The values do not give an integer phase");
+	    return phase == 0 ? ExactValue.ONE : ExactValue.ONE.negate();
+	}
+	Level level = (Level) levels.get(l);
+	if (level.var == -1)
+	    return exactTerm(l, level, phase, v);
+	int [] c = level.couplings;
+	int a = v[c[0]], b = v[c[1]], cc = v[c[2]], d = v[c[3]];
+	int lo = Math.max(Math.abs(a-b), Math.abs(cc-d));
+	int hi = Math.min(a+b, cc+d);
+	if (((a+b-lo) & 1) != 0 || ((cc+d-lo) & 1) != 0 || lo > hi)
+	    return ExactValue.ZERO;
+	ExactValue sum = ExactValue.ZERO;
+	if (outermost(l)){
+	    ExactValue [] partial = new ExactValue[(hi-lo)/2+1];
+	    sum(new SumTask(l, phase, v, lo, partial, 0, partial.length));
+	    for (int i = 0; i < partial.length; i++)
+		sum = sum.add(partial[i]);
+	    return sum;
+	}
+	for (int z = lo; z <= hi; z += 2){
+	    v[level.var] = z;
+	    sum = sum.add(exactTerm(l, level, phase, v));
+	}
+	return sum;
+    }
+
+    /**
+     * True if level <code>l</code> is the outermost summation.
+     **/
+    private boolean outermost(int l){
+	for (int k = 0; k < l; k++)
+	    if (((Level) levels.get(k)).var != -1)
+		return false;
+	return true;
+    }
+
+    private ExactValue exactTerm(int l, Level level, int phase, int [] v){
+	for (int i = 0; i < level.deltas.size(); i++){
+	    int [] delta = (int []) level.deltas.get(i);
+	    if (v[delta[0]] != v[delta[1]])
+		return ExactValue.ZERO;
+	}
+	ExactValue term = ExactValue.ONE;
+	for (int i = 0; i < level.sixjs.size() && !term.isZero(); i++)
+	    term = term.multiply(((GR6jSymbol) level.sixjs.get(i))
+				 .exactValue(v));
+	if (term.isZero())
+	    return term;
+	if (level.weightIds.length > 0){
+	    int max = 0;
+	    for (int i = 0; i < level.weightIds.length; i++)
+		max = Math.max(max, v[level.weightIds[i]]+1);
+	    int [] exps = new int[ExactValue.nrOfPrimes(max)];
+	    for (int i = 0; i < level.weightIds.length; i++)
+		ExactValue.addInteger(exps, v[level.weightIds[i]]+1,
+				      level.weightExps[i]);
+	    term = term.multiply(ExactValue.sqrtOfPrimePowers(exps));
+	}
+	for (int i = 0; i < level.phaseIds.length; i++)
+	    phase += level.phaseCoeffs[i]*v[level.phaseIds[i]];
+	return term.multiply(exactSum(l+1, phase & 3, v));
+    }
+}
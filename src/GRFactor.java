@@ -37,11 +37,13 @@ abstract public class GRFactor implements Cloneable{
     }
 
     /** 
-     * True if this elemtary factor contains the label <code>label</code>.
-     * @param label the label to be checked
+     * True if this elemtary factor contains the label with id
+     * <code>label</code>.
+     * @param label the id of the label to be checked
      * @return true if the label appears in this GRFactor, false otherwise
+     * @see LabelTable
      **/
-    abstract public boolean containsLabel(String label);
+    abstract public boolean containsLabel(int label);
 
     /** 
      * Implementation of the Visitor pattern.
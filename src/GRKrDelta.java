@@ -18,25 +18,36 @@
  * @author Dries.VanDyck@rug.ac.be
  **/
 public class GRKrDelta extends GRFactor{
-    String l1, l2;
+    /** 
+     * The label ids of the arguments.
+     **/
+    int l1, l2;
+
+    /** 
+     * The table of the labels.
+     **/
+    LabelTable table;
     
     /** 
      * Constructs a new GRKrDelta ChDelta(l1,l2).
-     * @param l1 first argument of the Chronicle Delta 
-     * @param l2 second argument of the Chronicle Delta 
+     * @param table the table of the labels
+     * @param l1 label id of the first argument of the Chronicle Delta 
+     * @param l2 label id of the second argument of the Chronicle Delta 
      **/
-    public GRKrDelta(String l1, String l2){
+    public GRKrDelta(LabelTable table, int l1, int l2){
+	this.table = table;
 	this.l1 = l1;
 	this.l2 = l2;
     }
     
     /** 
-     * True if label appears in this GRKrDelta, false otherwise.
-     * @param label the label to be checked
+     * True if the label with id <code>label</code> appears in this
+     * GRKrDelta, false otherwise.
+     * @param label the id of the label to be checked
      * @return true if the label appears in this GRPreFactor, false otherwise
      **/
-    public boolean containsLabel(String label){
-	return l1.equals(label) || l2.equals(label);
+    public boolean containsLabel(int label){
+	return l1 == label || l2 == label;
     }
     
     /**
@@ -44,7 +55,15 @@ public class GRKrDelta extends GRFactor{
      * @return the arguments of the GRKrDelta as a String array.
      **/
     public String[] args(){
-	return new String [] {l1,l2};
+	return new String [] {table.label(l1),table.label(l2)};
+    }
+
+    /**
+     * Returns the ids of the arguments of the GRKrDelta object.
+     * @return the label ids of the arguments
+     **/
+    public int [] argIds(){
+	return new int [] {l1,l2};
     }
 
     /** 
@@ -52,7 +71,7 @@ public class GRKrDelta extends GRFactor{
      * @return a String representation of this GRKrDelta
      **/
     public String toString(){
-	return "delta("+l1+","+l2+")";
+	return "delta("+table.label(l1)+","+table.label(l2)+")";
     }
 
     /** 
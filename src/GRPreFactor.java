@@ -7,7 +7,6 @@
    Krijgslaan 281--S9
    B-9000 GENT Belgium
 */
-import java.util.HashMap;
 import java.util.Iterator;
 
 /** 
@@ -15,7 +14,11 @@ import java.util.Iterator;
  * <code>(-1)^exp*(2*f_0+1)^(exp_0/2)+...+(2*f_k+1)^(exp_k/2)</code>
  * with <code>exp</code> a lineair combination of labels with
  * positive, integer coefficients, f_0...f_k labels and exp_0..exp_k
- * integer powers.
+ * integer powers. The labels are stored as their ids in a
+ * {@link LabelTable}; the coefficients and powers are kept in
+ * {@link IntIntMap}s, such that appending does not allocate and a
+ * copy only clones a few small arrays. The labels are iterated in
+ * increasing order of their ids.
  * @see GenRecoupCoeff 
  * @see Edge
  * @see GRFactor 
@@ -24,52 +27,63 @@ import java.util.Iterator;
  **/
 public class GRPreFactor extends GRFactor{
     /** 
-     * HashMap with the labels as keys and the coefficients of the
-     * labels as values.
+     * Map with the label ids as keys and the coefficients of the
+     * labels (modulo 4) as values.
      **/
-    HashMap exp;
+    IntIntMap exp;
     /** 
-     * HashMap with the labels as keys and their exponents*2 (to avoid
-     * non-integers) as values.
+     * Map with the label ids as keys and their exponents*2 (to
+     * avoid non-integers) as values.
      **/
-    HashMap factors; 
+    IntIntMap factors; 
+
+    /** 
+     * The table of the labels.
+     **/
+    LabelTable table;
 
     /** 
      * Constructs a new GRPreFactor.
+     * @param table the table of the labels
      **/
-    public GRPreFactor(){
-	exp = new HashMap();
-	factors = new HashMap();
+    public GRPreFactor(LabelTable table){
+	this.table = table;
+	exp = new IntIntMap();
+	factors = new IntIntMap();
     }
 
     /** 
      * Constructs a GRPreFactor with <code>nroflabels</code> expected
      * total number of labels
+     * @param table the table of the labels
      * @param nroflabels the expected number of labels.
      **/
-    public GRPreFactor(int nroflabels){
-	exp = new HashMap(nroflabels*4/3);
-	factors = new HashMap(nroflabels*4/3);
+    public GRPreFactor(LabelTable table, int nroflabels){
+	this.table = table;
+	exp = new IntIntMap(nroflabels);
+	factors = new IntIntMap(nroflabels);
     }
 
     /** 
      * Constructs a new GRPreFactor representing 
      * <code>(-1)^(j[0]+..+j[j.length-1])</code>.
-     * @param j array of labels of the exponent of the phase factor
+     * @param table the table of the labels
+     * @param j array of label ids of the exponent of the phase factor
      **/
-    public GRPreFactor(String [] j){
-	this();
+    public GRPreFactor(LabelTable table, int [] j){
+	this(table);
 	appendExp(j);
     }
 
     /** 
      * Constructs a new GRPreFactor representing 
      * <code>(-1)^(factor*j)</code>.
+     * @param table the table of the labels
      * @param factor the factor of the specified label
-     * @param j the label of the exponent of the phase factor
+     * @param j the label id of the exponent of the phase factor
      **/
-    public GRPreFactor(int factor, String j){
-	this();
+    public GRPreFactor(LabelTable table, int factor, int j){
+	this(table);
 	appendExp(factor,j);
     }
 
@@ -77,11 +91,12 @@ public class GRPreFactor extends GRFactor{
      * Constructs a new GRPreFactor representing
      * <code>(-1)^(j[0]+..+j[j.length-1])</code> with
      * <code>nroflabels</code> expected number of labels..
+     * @param table the table of the labels
      * @param nroflabels the expected number of labels
-     * @param j array of labels of the exponent of the phase factor
+     * @param j array of label ids of the exponent of the phase factor
      **/
-    public GRPreFactor(int nroflabels, String [] j){
-	this(nroflabels);
+    public GRPreFactor(LabelTable table, int nroflabels, int [] j){
+	this(table,nroflabels);
 	appendExp(j);
     }
 
@@ -89,47 +104,25 @@ public class GRPreFactor extends GRFactor{
      * Constructs a new GRPreFactor representing
      * <code>(-1)^(factor*j)</code> with <code>nroflabels</code>
      * expected number of labels.
+     * @param table the table of the labels
      * @param nroflabels the expected number of labels
      * @param factor the factor of the specified label
-     * @param j the label of the exponent of the phase factor
+     * @param j the label id of the exponent of the phase factor
      **/
-    public GRPreFactor(int nroflabels, int factor, String j){
-	this(nroflabels);
+    public GRPreFactor(LabelTable table, int nroflabels, int factor, int j){
+	this(table,nroflabels);
 	appendExp(factor,j);
     }
 
-    /** 
-     * Constructs a new GRPreFactor representing
-     * <code>(2*a+1)^(exp/2)</code>.
-     * @param a label of the weight
-     * @param exp 2*exponent of the weight
-     **/
-    public GRPreFactor(String a, int exp){
-	this();
-	appendFactor(a,exp);
-    }
-
-    /** 
-     * Constructs a new GRPreFactor representing
-     * <code>(2*a+1)^(exp/2)</code> with <code>nroflabels</code>
-     * expected number of labels.
-     * @param nroflabels the expected number of labels
-     * @param a label of the weight
-     * @param exp 2*exponent of the weight
-     **/
-    public GRPreFactor(int nroflabels, String a, int exp){
-	this(nroflabels);
-	appendFactor(a,exp);
-    }
-
     /** 
      * Constructs a new GRPreFactor representing <code>((2*a[0]+1)* ... *
      * (2a[a.length-1]+1))^(exp/2)</code>.
-     * @param a array of labels of the weights
+     * @param table the table of the labels
+     * @param a array of label ids of the weights
      * @param exp 2*exponent of the weights
      **/
-    public GRPreFactor(String [] a, int exp){
-	this();
+    public GRPreFactor(LabelTable table, int [] a, int exp){
+	this(table);
 	appendFactor(a,exp);
     }
 
@@ -137,12 +130,13 @@ public class GRPreFactor extends GRFactor{
      * Constructs a new GRPreFactor representing <code>((2*a[0]+1)* ... *
      * (2a[a.length-1]+1))^(exp/2)</code> with <code>nroflabels</code>
      * expected number of labels.
+     * @param table the table of the labels
      * @param nroflabels the expected number of labels
-     * @param a arrary of labels of the weights
+     * @param a array of label ids of the weights
      * @param exp 2*exponent of the weights
      **/
-    public GRPreFactor(int nroflabels, String [] a, int exp){
-	this(nroflabels);
+    public GRPreFactor(LabelTable table, int nroflabels, int [] a, int exp){
+	this(table,nroflabels);
 	appendFactor(a,exp);
     }
 
@@ -150,11 +144,12 @@ public class GRPreFactor extends GRFactor{
      * Constructs a new GRPreFactor representing
      * <code>(2*a[0]+1)^(exp[0]/2)* ... *
      * (2a[a.length-1]+1)^(exp[a,length-1]/2)</code>.
-     * @param a array of labels of the weights
+     * @param table the table of the labels
+     * @param a array of label ids of the weights
      * @param exp array of 2*exponents of the weights
      **/
-    public GRPreFactor(String [] a, int [] exp){
-	this();
+    public GRPreFactor(LabelTable table, int [] a, int [] exp){
+	this(table);
 	appendFactor(a,exp);
     }
 
@@ -163,12 +158,13 @@ public class GRPreFactor extends GRFactor{
      * <code>(2*a[0]+1)^exp[0]* ... *
      * (2a[a.length-1]+1))^(exp[a.length-1]/2)</code> with
      * <code>nroflabels</code> expected number of labels.
+     * @param table the table of the labels
      * @param nroflabels the expected number of labels
-     * @param a array of labels of the weights
+     * @param a array of label ids of the weights
      * @param exp array of 2*exponents of the weights
      **/
-    public GRPreFactor(int nroflabels, String [] a, int [] exp){
-	this(nroflabels);
+    public GRPreFactor(LabelTable table, int nroflabels, int [] a, int [] exp){
+	this(table,nroflabels);
 	appendFactor(a,exp);
     }
 
@@ -176,15 +172,16 @@ public class GRPreFactor extends GRFactor{
      * Constructs a new GRPreFactor representing
      * <code>(-1)^(factor*j)*(2*a+1)^(exp/2)</code> with
      * <code>nroflabels</code> expected number of labels.
+     * @param table the table of the labels
      * @param nroflabels the expected number of labels
-     * @param factor factor of the label of the exponent of the phase factor
-     * @param j label of the exponent of the phase factor
-     * @param a label of the weight
+     * @param factor factor of the label id of the exponent of the phase factor
+     * @param j label id of the exponent of the phase factor
+     * @param a label id of the weight
      * @param exp 2*exponent of the weight
      **/
-    public GRPreFactor(int nroflabels, int factor, String j, String a, 
-		       int exp){
-	this(nroflabels);
+    public GRPreFactor(LabelTable table, int nroflabels, int factor, int j,
+		       int a, int exp){
+	this(table,nroflabels);
 	appendExp(factor,j);
 	appendFactor(a,exp);
     }
@@ -194,71 +191,63 @@ public class GRPreFactor extends GRFactor{
      * @param gpf the GRPreFactor to be duplicated
      **/
     GRPreFactor(GRPreFactor gpf){
-	exp = new HashMap(gpf.exp);
-	factors = new HashMap(gpf.factors);
+	table = gpf.table;
+	exp = new IntIntMap(gpf.exp);
+	factors = new IntIntMap(gpf.factors);
+    }
+    
+    /** 
+     * Restores the contents of this GRPreFactor to those of
+     * <code>gpf</code>, keeping its own tables.
+     * @param gpf the GRPreFactor to be copied
+     **/
+    void restore(GRPreFactor gpf){
+	exp.set(gpf.exp);
+	factors.set(gpf.factors);
     }
     
     /** 
-     * True if this GRPreFactor contains this label, false
-     * otherwise.
-     * @param label the label to be checked
+     * True if this GRPreFactor contains the label with id
+     * <code>label</code>, false otherwise.
+     * @param label the id of the label to be checked
      * @return true if the label appears in this GRPreFactor, false otherwise
      **/
-    public boolean containsLabel(String label){
+    public boolean containsLabel(int label){
 	return exp.containsKey(label);
     }
 
     /** 
      * Appends a factor <code>(-1)^(j[0]+..+j[j.length-1])</code> to this
      * GRPreFactor.
-     * @param j array of labels to be appended to the exponent of the phase
+     * @param j array of label ids to be appended to the exponent of the phase
      *        factor
      **/
-    public void appendExp(String [] j){
-	Integer coeff;
-	for (int i = 0; i < j.length; i++){
-	    coeff = (Integer) exp.remove(j[i]);
-	    if (coeff == null)
-		exp.put(j[i],new Integer(1));
-	    else {
-		Integer newcoeff = new Integer((coeff.intValue()+1) % 4);
-		if (newcoeff.intValue() != 0)
-		    exp.put(j[i],newcoeff);
-	    }
-	}
+    public void appendExp(int [] j){
+	for (int i = 0; i < j.length; i++)
+	    appendExp(1,j[i]);
     }
 
     /** 
      * Appends a factor <code>(-1)^(factor*j)</code> to this
      * GRPreFactor.
-     * @param factor the factor of the label to be appended to the exponent
+     * @param factor the factor of the label id to be appended to the exponent
      *               of the phase factor
-     * @param j label to be appended to the exponent of the phase factor
-     **/
-    public void appendExp(int factor, String j){
-	if (factor % 4 == 0)
-	    return;
-	Integer coeff;
-	coeff = (Integer) exp.remove(j);
-	if (coeff == null)
-	    exp.put(j,new Integer(factor));
-	else{
-	    Integer newcoeff = new Integer((coeff.intValue()+factor) % 4);
-	    if (newcoeff.intValue() != 0)
-		exp.put(j,newcoeff);
-	}
+     * @param j label id to be appended to the exponent of the phase factor
+     **/
+    public void appendExp(int factor, int j){
+	exp.add(j,factor,4);
     }
 
     /** 
      * Appends a factor
      * <code>(-1)^(factor*j[0]+...+factor*j[j.length-1])</code> to
      * this GRPreFactor.
-     * @param factor the factor of the labels to be appended to the exponent
+     * @param factor the factor of the label ids to be appended to the exponent
      *               of the phase factors
-     * @param j array of labels to be appended to the exponent of the phase 
+     * @param j array of label ids to be appended to the exponent of the phase 
      *          factor
      **/
-    public void appendExp(int factor, String [] j){
+    public void appendExp(int factor, int [] j){
 	for (int i = 0; i < j.length; i++)
 	    appendExp(factor,j[i]);
     }
@@ -268,20 +257,10 @@ public class GRPreFactor extends GRFactor{
      * @param gpf the {@link GRPreFactor} to be appended
      **/
     public void append(GRPreFactor gpf){
-	Iterator labels = gpf.expLabels();
-	Iterator coeffs = gpf.expCoeffs();
-	while (labels.hasNext()){
-	    Integer coeff = (Integer) coeffs.next();
-	    String label = (String) labels.next();
-	    Integer mycoeff = (Integer) exp.remove(label);
-	    if (mycoeff == null)
-		exp.put(label,coeff);
-	    else {
-		int newcoeff = (mycoeff.intValue() + coeff.intValue()) % 4;
-		if (newcoeff != 0)
-		    exp.put(label, new Integer(newcoeff));
-	    }
-	}
+	int [] labels = gpf.exp.keys;
+	for (int i = 0; i < labels.length; i++)
+	    if (labels[i] != IntIntMap.EMPTY)
+		exp.add(labels[i],gpf.exp.values[i],4);
     }
 
     /** 
@@ -298,31 +277,26 @@ public class GRPreFactor extends GRFactor{
 
     /** 
      * Appends a factor <code>(2*a+1)^(exp/2)</code> to this GRPreFactor.
-     * @param a the label of the weight to be appended
+     * @param a the label id of the weight to be appended
      * @param exp 2*exponent of the weight to be appended
      **/
-    public void appendFactor(String a, int exp){
-	Integer currentexp;
-	currentexp = (Integer) factors.remove(a);
-	if (currentexp == null)
-	    factors.put(a,new Integer(exp));
-	else if (currentexp.intValue()+exp != 0)
-	    factors.put(a,new Integer(currentexp.intValue()+exp));
+    public void appendFactor(int a, int exp){
+	factors.add(a,exp,0);
     }
 
     /** 
      * Appends a factor <code>(2*a+1)</code> to this GRPreFactor.
-     * @param a the label of the weight to be appended
+     * @param a the label id of the weight to be appended
      **/
-    public void appendFactor(String a){ appendFactor(a,2); }
+    public void appendFactor(int a){ appendFactor(a,2); }
 
     /** 
      * Appends a factor <code>((2*a[0]+1)* ... *
      * (2a[a.length-1]+1))^(exp/2)</code> to this GRPreFactor.
-     * @param a array of labels of the weights to be appended
+     * @param a array of label ids of the weights to be appended
      * @param exp 2*exponent of the weights to be appended
      **/
-    public void appendFactor(String [] a, int exp){
+    public void appendFactor(int [] a, int exp){
 	for (int i = 0; i < a.length; i++)
 	    appendFactor(a[i],exp);
     }
@@ -330,10 +304,10 @@ public class GRPreFactor extends GRFactor{
     /** 
      * Appends a factor <code>(2*a[0]+1)^(exp[0]/2)* ... *
      * (2a[a.length-1]+1)^(exp[a.length-1]/2)</code> to this GRPreFactor.
-     * @param a array of labels of the weights to be appended
+     * @param a array of label ids of the weights to be appended
      * @param exp array of 2*exponents of the weights to be appended
      **/
-    public void appendFactor(String [] a, int [] exp){
+    public void appendFactor(int [] a, int [] exp){
 	for (int i = 0; i < a.length; i++)
 	    appendFactor(a[i],exp[i]);
     }
@@ -341,9 +315,9 @@ public class GRPreFactor extends GRFactor{
     /** 
      * Appends a factor <code>(2*a[0]+1)* ... *
      * (2a[a.length-1]+1)</code> to this GRPreFactor.
-     * @param a array of labels of the weights to be appended
+     * @param a array of label ids of the weights to be appended
      **/
-    public void appendFactor(String [] a){ appendFactor(a,2);}
+    public void appendFactor(int [] a){ appendFactor(a,2);}
 
     /** 
      * Returns true if this GRPreFactor represents (-1)^exp*1.
@@ -364,13 +338,51 @@ public class GRPreFactor extends GRFactor{
     public boolean empty(){ return expEmpty() && factorsEmpty();}
 
     /** 
-     * Returns an Iterator over the labels in the exponent of (-1).
-     * To be used in collaboration with {@link GRPreFactor#expCoeffs}.
+     * Returns an Iterator over the labels in the exponent of (-1), in
+     * increasing order of their ids, i.e. in the order in which they
+     * were added to the {@link LabelTable}. The visitors print the
+     * terms in this order. To be used in collaboration with {@link
+     * GRPreFactor#expCoeffs}.
      * @return an Iterator over the labels of the exponent of the 
      *         phase factor
      * @see #expCoeffs
      **/
-    public Iterator expLabels(){ return exp.keySet().iterator(); }
+    public Iterator expLabels(){ return table.labels(expIds()); }
+
+    /** 
+     * Returns an Iterator over the ids, as Integers, of the labels in
+     * the exponent of (-1), in the order of {@link #expLabels}.
+     * @return an Iterator over the label ids of the exponent of the
+     *         phase factor
+     * @see #expCoeffs
+     **/
+    public Iterator expIds(){ return exp.keyIterator(); }
+
+    /** 
+     * Returns the coefficient of the given label in the exponent of
+     * (-1).
+     * @param label the label
+     * @return the coefficient (1, 2 or 3) of the label, 0 if absent
+     **/
+    public int expCoeff(String label){
+	int id = table.lookup(label);
+	return id == -1 ? 0 : exp.get(id);
+    }
+
+    /** 
+     * Returns the coefficient of the label with the given id in the
+     * exponent of (-1).
+     * @param label the label id
+     * @return the coefficient (1, 2 or 3) of the label, 0 if absent
+     **/
+    public int expCoeff(int label){ return exp.get(label); }
+
+    /** 
+     * Returns the label ids in the exponent of (-1) in increasing
+     * order.
+     * @return a new array with the label ids
+     **/
+    public int [] expIdArray(){ return exp.keys(); }
 
     /** 
      * Returns an Iterator of the coeffs in the exponent of (-1).
@@ -379,16 +391,39 @@ public class GRPreFactor extends GRFactor{
      *         the exponent of the phase factor
      * @see #expLabels
      **/
-    public Iterator expCoeffs(){ return exp.values().iterator(); }
+    public Iterator expCoeffs(){ return exp.valueIterator(); }
 
     /** 
      * Returns an Iterator of the labels in the factors
-     * (2*label+1)^(exp/2). To be used in collaboration with {@link
-     * GRPreFactor#factorsExps}.
+     * (2*label+1)^(exp/2), in the order of {@link #expLabels}. To be
+     * used in collaboration with {@link GRPreFactor#factorsExps}.
      * @return an Iterator over the labels of the weights
      * @see #factorsExps 
      **/
-    public Iterator factorsLabels(){ return factors.keySet().iterator();}
+    public Iterator factorsLabels(){ return table.labels(factorsIds());}
+
+    /** 
+     * Returns an Iterator over the ids, as Integers, of the labels in
+     * the factors (2*label+1)^(exp/2), in the order of {@link
+     * #factorsLabels}.
+     * @return an Iterator over the label ids of the weights
+     * @see #factorsExps
+     **/
+    public Iterator factorsIds(){ return factors.keyIterator();}
+
+    /** 
+     * Returns 2*exponent of the weight (2*label+1) of the label with
+     * the given id.
+     * @param label the label id
+     * @return 2*exponent of the weight, 0 if absent
+     **/
+    public int factorExp(int label){ return factors.get(label); }
+
+    /** 
+     * Returns the label ids of the weights in increasing order.
+     * @return a new array with the label ids
+     **/
+    public int [] factorsIdArray(){ return factors.keys(); }
 
     /** 
      * Returns an Iterator over the exponents in the factors
@@ -397,7 +432,7 @@ public class GRPreFactor extends GRFactor{
      * @return an Iterator over the exponents of the weights 
      * @see #factorsLabels
      **/
-    public Iterator factorsExps(){ return factors.values().iterator();}
+    public Iterator factorsExps(){ return factors.valueIterator();}
 
     /** 
      * A String representation of this GRPreFactor.
@@ -468,8 +503,8 @@ public class GRPreFactor extends GRFactor{
     public Object clone(){
 	GRPreFactor gpf = null;
 	gpf = (GRPreFactor) super.clone();
-	gpf.exp = (HashMap) exp.clone();
-	gpf.factors = (HashMap) factors.clone();
+	gpf.exp = new IntIntMap(exp);
+	gpf.factors = new IntIntMap(factors);
 	return gpf;
     }
 
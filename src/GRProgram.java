@@ -0,0 +1,412 @@
+/* GRProgram.java
+   --------------
+   2026 (c) agent
+*/
+import java.util.ArrayList;
+
+/**
+ * This class represents a {@link GenRecoupCoeff} compiled to a nest of
+ * summation loops, for evaluating it in double precision for many
+ * values of its free labels. It is obtained from {@link
+ * GREvaluator#compile}.
+ *
+ * <p> Every summation becomes a loop over the values allowed by the
+ * triangle conditions of its couplings <code>a, b, c, d</code>. The
+ * loops are ordered such that the couplings of a loop are fixed
+ * outside it. Every factor of the formula, i.e. every term of a phase,
+ * weight, Kronecker delta and 6j-symbol, is evaluated in the
+ * outermost loop in which all its labels are fixed, instead of in the
+ * summation in which it was generated. The partial product and phase
+ * of each loop depth are kept, and a zero factor skips the loops
+ * inside it.
+ *
+ * <p> The loops are run iteratively on arrays allocated when the
+ * program is compiled, so an evaluation allocates no memory; a
+ * GRProgram can therefore not be used by several threads at the same
+ * time, see {@link #copy}.
+ * @see GREvaluator
+ * @see GRSummation
+ * @author agent@local
+ **/
+public class GRProgram{
+
+    /** The table of the labels. **/
+    LabelTable labels;
+
+    /** The number of loops. **/
+    int depth;
+
+    /** The summation variable per loop, from 1 to depth. **/
+    int [] vars;
+
+    /** The couplings a, b, c, d per loop, from 1 to depth. **/
+    int [][] couplings;
+
+    /**
+     * Per loop depth, 0 being outside the loops, the labels and
+     * coefficients of the phase terms, in doubled units modulo 4.
+     **/
+    int [][] phaseIds, phaseCoeffs;
+
+    /** Per loop depth the labels and exponents of the weights. **/
+    int [][] weightIds, weightExps;
+
+    /** Per loop depth the pairs of labels of the Kronecker deltas. **/
+    int [][] deltas;
+
+    /** Per loop depth the 6j-symbols. **/
+    GR6jSymbol [][] sixjs;
+
+    /** The partial product per loop depth. **/
+    private double [] product;
+
+    /** The partial phase per loop depth. **/
+    private int [] phase;
+
+    /** The upper bound of the loop per depth. **/
+    private int [] upper;
+
+    /**
+     * Compiles the levels of a formula collected by a GREvaluator.
+     * @param labels the table of the labels
+     * @param levels the GREvaluator.Levels, outside the summations
+     *        first
+     * @throws IllegalStateException if the couplings of the summations
+     *         depend on each other cyclically
+     **/
+    GRProgram(LabelTable labels, ArrayList levels){
+	this.labels = labels;
+	// order the loops: a loop after those of its couplings
+	ArrayList summations = new ArrayList();
+	for (int l = 0; l < levels.size(); l++)
+	    if (((GREvaluator.Level) levels.get(l)).var != -1)
+		summations.add(levels.get(l));
+	depth = summations.size();
+	vars = new int[depth+1];
+	couplings = new int[depth+1][];
+	int [] level = new int[labels.size()]; // the depth fixing a label
+	for (int l = 0; l < summations.size(); l++)
+	    level[((GREvaluator.Level) summations.get(l)).var] = -1;
+	for (int d = 1; d <= depth; d++){
+	    GREvaluator.Level next = null;
+	    for (int l = 0; l < summations.size() && next == null; l++){
+		GREvaluator.Level s = (GREvaluator.Level) summations.get(l);
+		if (level(level, s.couplings) != -1)
+		    next = s;
+	    }
+	    if (next == null)
+		throw new IllegalStateException
+		    ("The summations depend on each other");
+	    summations.remove(next);
+	    vars[d] = next.var;
+	    couplings[d] = next.couplings;
+	    level[next.var] = d;
+	}
+	// hoist the factors to the loop fixing all their labels
+	ArrayList [] pIds = lists(), pCoeffs = lists(), wIds = lists(),
+	    wExps = lists(), ds = lists(), js = lists();
+	for (int l = 0; l < levels.size(); l++){
+	    GREvaluator.Level lev = (GREvaluator.Level) levels.get(l);
+	    for (int i = 0; i < lev.phaseIds.length; i++){
+		int d = level(level, new int [] {lev.phaseIds[i]});
+		pIds[d].add(Integer.valueOf(lev.phaseIds[i]));
+		pCoeffs[d].add(Integer.valueOf(lev.phaseCoeffs[i]));
+	    }
+	    for (int i = 0; i < lev.weightIds.length; i++){
+		int d = level(level, new int [] {lev.weightIds[i]});
+		wIds[d].add(Integer.valueOf(lev.weightIds[i]));
+		wExps[d].add(Integer.valueOf(lev.weightExps[i]));
+	    }
+	    for (int i = 0; i < lev.deltas.size(); i++){
+		int [] delta = (int []) lev.deltas.get(i);
+		int d = level(level, delta);
+		ds[d].add(Integer.valueOf(delta[0]));
+		ds[d].add(Integer.valueOf(delta[1]));
+	    }
+	    for (int i = 0; i < lev.sixjs.size(); i++){
+		GR6jSymbol sixj = (GR6jSymbol) lev.sixjs.get(i);
+		js[level(level, sixj.argIds())].add(sixj);
+	    }
+	}
+	phaseIds = ints(pIds);
+	phaseCoeffs = ints(pCoeffs);
+	weightIds = ints(wIds);
+	weightExps = ints(wExps);
+	deltas = ints(ds);
+	sixjs = new GR6jSymbol[depth+1][];
+	for (int d = 0; d <= depth; d++)
+	    sixjs[d] = (GR6jSymbol []) js[d].toArray(new GR6jSymbol[0]);
+	allocate();
+    }
+
+    /**
+     * Constructs a copy of the given GRProgram, sharing its code but
+     * not its working arrays.
+     * @param p the GRProgram to be copied
+     **/
+    public GRProgram(GRProgram p){
+	labels = p.labels;
+	depth = p.depth;
+	vars = p.vars;
+	couplings = p.couplings;
+	phaseIds = p.phaseIds;
+	phaseCoeffs = p.phaseCoeffs;
+	weightIds = p.weightIds;
+	weightExps = p.weightExps;
+	deltas = p.deltas;
+	sixjs = p.sixjs;
+	allocate();
+    }
+
+    private void allocate(){
+	product = new double[depth+1];
+	phase = new int[depth+1];
+	upper = new int[depth+1];
+    }
+
+    /**
+     * Returns the deepest loop fixing one of the labels, -1 if a label
+     * is not fixed yet.
+     **/
+    private static int level(int [] level, int [] ids){
+	int max = 0;
+	for (int i = 0; i < ids.length; i++){
+	    if (level[ids[i]] == -1)
+		return -1;
+	    max = Math.max(max, level[ids[i]]);
+	}
+	return max;
+    }
+
+    private ArrayList [] lists(){
+	ArrayList [] lists = new ArrayList[depth+1];
+	for (int d = 0; d <= depth; d++)
+	    lists[d] = new ArrayList();
+	return lists;
+    }
+
+    private static int [][] ints(ArrayList [] lists){
+	int [][] ints = new int[lists.length][];
+	for (int d = 0; d < lists.length; d++){
+	    ints[d] = new int[lists[d].size()];
+	    for (int i = 0; i < ints[d].length; i++)
+		ints[d][i] = ((Integer) lists[d].get(i)).intValue();
+	}
+	return ints;
+    }
+
+    /**
+     * Returns a copy of this GRProgram, for use by another thread.
+     * @return a new GRProgram with the same code
+     **/
+    public GRProgram copy(){
+	return new GRProgram(this);
+    }
+
+    /**
+     * Returns the number of nested loops.
+     * @return the number of summations
+     **/
+    public int depth(){ return depth; }
+
+    /**
+     * Returns the value of the program in double precision. The values
+     * of the free labels must have been checked by the caller; the
+     * array also receives the values of the summation variables. The
+     * terms of the values of the outermost loop are added with
+     * compensated summation, so the result is the same as when they
+     * are computed one by one with {@link #evaluate(int[],int,int)}
+     * and added in order.
+     * @param v twice the values of the angular momenta, indexed by
+     *          label id
+     * @return the value of the formula
+     * @throws IllegalArgumentException if the values give a
+     *         non-integer phase
+     **/
+    public double evaluate(int [] v){
+	return evaluate(v, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the part of the value of the program in which the
+     * variable of the outermost loop lies between <code>from</code>
+     * and <code>to</code> (both included, doubled), e.g. to split the
+     * outermost loop over several threads.
+     * @param v twice the values of the angular momenta, indexed by
+     *          label id
+     * @param from the first value of the outermost loop
+     * @param to the last value of the outermost loop
+     * @return the partial value of the formula
+     * @throws IllegalArgumentException if the values give a
+     *         non-integer phase
+     * @see #range
+     **/
+    public double evaluate(int [] v, int from, int to){
+	double p = factors(0, v);
+	if (p == 0)
+	    return 0;
+	int ph = phase(0, 0, v);
+	if (depth == 0)
+	    return leaf(p, ph);
+	product[0] = p;
+	phase[0] = ph;
+	// The terms of each value of the outermost loop are added in
+	// inner, which is added to sum with compensated summation
+	// (Neumaier), like GREvaluator adds the terms computed in parallel
+	double sum = 0, comp = 0, inner = 0;
+	int d = 1;
+	boolean enter = true;
+	while (d > 0){
+	    int var = vars[d];
+	    if (d == 1 && !enter){
+		double t = sum + inner;
+		comp += Math.abs(sum) >= Math.abs(inner)
+		    ? (sum-t)+inner : (inner-t)+sum;
+		sum = t;
+		inner = 0;
+	    }
+	    if (enter){
+		int [] c = couplings[d];
+		int a = v[c[0]], b = v[c[1]], cc = v[c[2]], dd = v[c[3]];
+		int lo = Math.max(Math.abs(a-b), Math.abs(cc-dd));
+		upper[d] = Math.min(a+b, cc+dd);
+		if (((a+b-lo) & 1) != 0 || ((cc+dd-lo) & 1) != 0){
+		    d--;
+		    enter = false;
+		    continue;
+		}
+		if (d == 1){
+		    if (from > lo)
+			lo += (from-lo+1)/2*2;
+		    upper[d] = Math.min(upper[d], to);
+		}
+		if (lo > upper[d]){
+		    d--;
+		    enter = false;
+		    continue;
+		}
+		v[var] = lo;
+	    }
+	    else if ((v[var] += 2) > upper[d]){
+		d--;
+		continue;
+	    }
+	    p = factors(d, v);
+	    if (p == 0){
+		enter = false;
+		continue;
+	    }
+	    p *= product[d-1];
+	    ph = phase(d, phase[d-1], v);
+	    if (d == depth){
+		inner += leaf(p, ph);
+		enter = false;
+	    }
+	    else {
+		product[d] = p;
+		phase[d] = ph;
+		d++;
+		enter = true;
+	    }
+	}
+	return sum + comp;
+    }
+
+    /**
+     * Returns the values of the variable of the outermost loop for the
+     * given values of the free labels.
+     * @param v twice the values of the angular momenta, indexed by
+     *          label id
+     * @return the first and last (doubled) value of the outermost
+     *         loop, or null if there are no loops or the loop is empty
+     **/
+    public int [] range(int [] v){
+	if (depth == 0)
+	    return null;
+	int [] c = couplings[1];
+	int a = v[c[0]], b = v[c[1]], cc = v[c[2]], dd = v[c[3]];
+	int lo = Math.max(Math.abs(a-b), Math.abs(cc-dd));
+	int hi = Math.min(a+b, cc+dd);
+	if (((a+b-lo) & 1) != 0 || ((cc+dd-lo) & 1) != 0 || lo > hi)
+	    return null;
+	return new int [] {lo, hi};
+    }
+
+    /**
+     * Returns the product of the weights, deltas and 6j-symbols of
+     * depth <code>d</code>.
+     **/
+    private double factors(int d, int [] v){
+	int [] ds = deltas[d];
+	for (int i = 0; i < ds.length; i += 2)
+	    if (v[ds[i]] != v[ds[i+1]])
+		return 0;
+	double p = 1;
+	GR6jSymbol [] js = sixjs[d];
+	for (int i = 0; i < js.length && p != 0; i++)
+	    p *= js[i].value(v);
+	int [] ids = weightIds[d], exps = weightExps[d];
+	for (int i = 0; i < ids.length; i++)
+	    p *= Math.pow(v[ids[i]]+1, exps[i]/2.0);
+	return p;
+    }
+
+    /**
+     * Adds the phase terms of depth <code>d</code> to
+     * <code>phase</code>.
+     **/
+    private int phase(int d, int phase, int [] v){
+	int [] ids = phaseIds[d], coeffs = phaseCoeffs[d];
+	for (int i = 0; i < ids.length; i++)
+	    phase += coeffs[i]*v[ids[i]];
+	return phase & 3;
+    }
+
+    private static double leaf(double p, int phase){
+	if ((phase & 1) != 0)
+	    throw new IllegalArgumentException
+		("The values do not give an integer phase");
+	return phase == 0 ? p : -p;
+    }
+
+    /**
+     * Returns a listing of the loops with the factors evaluated in
+     * each of them.
+     * @return a String representation of this GRProgram
+     **/
+    public String toString(){
+	StringBuffer sb = new StringBuffer();
+	for (int d = 0; d <= depth; d++){
+	    StringBuffer indent = new StringBuffer();
+	    for (int i = 0; i < d; i++)
+		indent.append("  ");
+	    if (d > 0){
+		String [] c = labels.labels(couplings[d]);
+		sb.append(indent.substring(2)).append("for ")
+		    .append(labels.label(vars[d])).append(" in max(|")
+		    .append(c[0]).append('-').append(c[1]).append("|,|")
+		    .append(c[2]).append('-').append(c[3]).append("|)..min(")
+		    .append(c[0]).append('+').append(c[1]).append(',')
+		    .append(c[2]).append('+').append(c[3]).append(")\n");
+	    }
+	    StringBuffer line = new StringBuffer();
+	    for (int i = 0; i < phaseIds[d].length; i++)
+		line.append(" (-1)^(").append(phaseCoeffs[d][i] == 3 ? "-" :
+					      phaseCoeffs[d][i] == 1 ? "" :
+					      phaseCoeffs[d][i] + "*")
+		    .append(labels.label(phaseIds[d][i])).append(')');
+	    for (int i = 0; i < weightIds[d].length; i++)
+		line.append(" (2*").append(labels.label(weightIds[d][i]))
+		    .append("+1)^(").append(weightExps[d][i]).append("/2)");
+	    for (int i = 0; i < deltas[d].length; i += 2)
+		line.append(" delta(").append(labels.label(deltas[d][i]))
+		    .append(',').append(labels.label(deltas[d][i+1]))
+		    .append(')');
+	    for (int i = 0; i < sixjs[d].length; i++)
+		line.append(' ').append(sixjs[d][i]);
+	    if (line.length() > 0)
+		sb.append(indent).append(line.substring(1)).append('\n');
+	}
+	return sb.toString();
+    }
+}
@@ -23,26 +23,28 @@
  **/
 public class GRSummation extends GRCompoundFactor{
     /** 
-     * The label of the summation variable of this summation factor.
+     * The label id of the summation variable of this summation factor.
      **/
-    String summvar;
+    int summvar;
     // (a,b,summvar) are coupled in a node
-    String a,b;
+    int a,b;
     // (c,d, summvar) are coupled in a node 
-    String c,d;
+    int c,d;
 
     /** 
      * Constructs a new GRSummation object with summation variable
      * <code>summvar</code> with couplings <code>(a,b,summvar)</code>
      * and <code>(c,d,summvar)</code>.
-     * @param summvar the label of the summation variable
+     * @param table the table of the labels
+     * @param summvar the label id of the summation variable
      * @param a first neighbor at first side 
      * @param b second neighbor at firs side
      * @param c first neighbor at second side
      * @param d second neighbor at second side
      **/
-    public GRSummation(String summvar, String a, String b, String c, String d){
-	super();
+    public GRSummation(LabelTable table, int summvar, int a, int b, int c,
+		       int d){
+	super(table);
 	this.summvar = summvar;
 	this.a = a; this.b = b;
 	this.c = c; this.d = d;
@@ -52,16 +54,17 @@ public class GRSummation extends GRCompoundFactor{
      * Constructs a new GRSummation object with summation variable
      * <code>summvar</code> and <code>nroffactors</code> expected
      * number of factors.
-     * @param summvar the label of the summation variable
+     * @param table the table of the labels
+     * @param summvar the label id of the summation variable
      * @param a first neighbor at first side 
      * @param b second neighbor at firs side
      * @param c first neighbor at second side
      * @param d second neighbor at second side
      * @param nroffactors expected number of factors
      **/
-    public GRSummation(String summvar, String a, String b, String c, String d,
-		       int nroffactors){
-	super(nroffactors);
+    public GRSummation(LabelTable table, int summvar, int a, int b, int c,
+		       int d, int nroffactors){
+	super(table,nroffactors);
 	this.summvar = summvar;
 	this.a = a; this.b = b;
 	this.c = c; this.d = d;
@@ -70,7 +73,8 @@ public class GRSummation extends GRCompoundFactor{
     /** 
      * Constructs a new GRSummation object with summation variable
      * <code>summvar</code> and factor <code>f</code>.
-     * @param summvar the label of the summation variable
+     * @param table the table of the labels
+     * @param summvar the label id of the summation variable
      * @param a first neighbor at first side 
      * @param b second neighbor at firs side
      * @param c first neighbor at second side
@@ -78,9 +82,9 @@ public class GRSummation extends GRCompoundFactor{
      * @param f initial factor {@link GRFactor}
      * @see GRFactor
      **/
-    public GRSummation(String summvar,String a, String b, String c, String d,
-		       GRFactor f){
-	super(f);
+    public GRSummation(LabelTable table, int summvar, int a, int b, int c,
+		       int d, GRFactor f){
+	super(table,f);
 	this.summvar = summvar;
 	this.a = a; this.b = b;
 	this.c = c; this.d = d;
@@ -90,7 +94,8 @@ public class GRSummation extends GRCompoundFactor{
      * Constructs a new GRSummation object with summation variable
      * <code>summvar</code>, initial factor <code>f</code> and 
      * <code>nroffactors</code> expected number of factors.
-     * @param summvar the label of the summation variable
+     * @param table the table of the labels
+     * @param summvar the label id of the summation variable
      * @param a first neighbor at first side 
      * @param b second neighbor at firs side
      * @param c first neighbor at second side
@@ -99,9 +104,9 @@ public class GRSummation extends GRCompoundFactor{
      * @param nroffactors expected number of factors
      * @see GRFactor
      **/
-    public GRSummation(String summvar,String a, String b, String c, String d,
-		       int nroffactors, GRFactor f){
-	super(nroffactors,f);
+    public GRSummation(LabelTable table, int summvar, int a, int b, int c,
+		       int d, int nroffactors, GRFactor f){
+	super(table,nroffactors,f);
 	this.summvar = summvar;
 	this.a = a; this.b = b;
 	this.c = c; this.d = d;
@@ -123,7 +128,14 @@ public class GRSummation extends GRCompoundFactor{
      * factor.
      * @return the label of the summation variable
      **/
-    public String summVar() { return summvar;}
+    public String summVar() { return table.label(summvar);}
+
+    /** 
+     * Returns the label id of the summation variable of this
+     * summation factor.
+     * @return the label id of the summation variable
+     **/
+    public int summVarId() { return summvar;}
 
     /** 
      * Returns the labels of the edges coupled with the summatian
@@ -133,7 +145,19 @@ public class GRSummation extends GRCompoundFactor{
      *         side of the summation variable
      **/
     public String [] couplings() {
-	String [] couplings = {a,b,c,d};
+	String [] couplings = {table.label(a), table.label(b),
+			       table.label(c), table.label(d)};
+	return couplings;
+    }
+
+    /** 
+     * Returns the label ids of the edges coupled with the summation
+     * variable, in the order of {@link #couplings}.
+     * @return array containing the label ids of the neighbors at each
+     *         side of the summation variable
+     **/
+    public int [] couplingIds() {
+	int [] couplings = {a,b,c,d};
 	return couplings;
     }
 
@@ -143,9 +167,10 @@ public class GRSummation extends GRCompoundFactor{
      **/
     public String toString(){
 	StringBuffer bf = new StringBuffer();
-	bf.append("sum("+summvar+ 
-		  ",max(|"+a+"-"+b+"|,|"+c+"-"+d+ //lower bound
-		  "|)..min("+a+"+"+b+","+c+"+"+d+"))") //upperbound
+	String [] l = couplings();
+	bf.append("sum("+summVar()+ 
+		  ",max(|"+l[0]+"-"+l[1]+"|,|"+l[2]+"-"+l[3]+ //lower bound
+		  "|)..min("+l[0]+"+"+l[1]+","+l[2]+"+"+l[3]+"))") //upperbound
 	    .append(super.toString());
 	return bf.toString();
     }
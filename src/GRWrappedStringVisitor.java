@@ -218,7 +218,7 @@ public class GRWrappedStringVisitor extends AbstractGRWrappedTextVisitor{
 	while (itlabels.hasNext())
 	    labels.add(itlabels.next());
 	Collections.sort(labels, new VarComparator());
-	int coeff = ((Integer) grpf.exp.get(labels.get(0))).intValue();
+	int coeff = grpf.expCoeff((String) labels.get(0));
 	String scoeff="";
 	switch (coeff){
 	    case 2:
@@ -232,7 +232,7 @@ public class GRWrappedStringVisitor extends AbstractGRWrappedTextVisitor{
 	append(term);
 	for (int i = 1; i < labels.size(); i++){
 	    String label = (String) labels.get(i);
-	    term = expCoeff(((Integer) grpf.exp.get(label)).intValue())
+	    term = expCoeff(grpf.expCoeff(label))
 		+ label;
 	    append(term);
 	}
@@ -9,15 +9,16 @@
 import java.util.NoSuchElementException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
@@ -115,6 +116,9 @@ public class GYutsis extends JFrame
     JTextArea output;
     JTextField nrofsummations;
     JTextField nrof6js;
+    JProgressBar progressbar;
+    // The background reduction, null if none is running
+    ReductionWorker worker;
     //Advanced Panel
     boolean advancedmode = false;
     JPanel advancedpanel, buttonpanel;
@@ -193,7 +197,7 @@ public class GYutsis extends JFrame
 	panel.add(input,gbc);
 	// Browse button
 	browsebutton = new JButton("Browse");
-	browsebutton.setToolTipText("Browse files for a Yutsis Graph (BRAKET or YTS format)");
+	browsebutton.setToolTipText("Browse files for a Yutsis Graph (BRAKET, YTS or EDGELIST format)");
 	browsebutton.addActionListener(this);
 	gbc.gridx = 3; gbc.gridwidth = 1;
 	gbc.weightx = 0; gbc.fill = GridBagConstraints.NONE;
@@ -258,20 +262,29 @@ public class GYutsis extends JFrame
 	gbc.anchor = GridBagConstraints.WEST;
 	gbc.gridx = 1; gbc.gridy = 4;
 	panel.add(nrof6js,gbc);
+	// Progress bar
+	progressbar = new JProgressBar();
+	progressbar.setStringPainted(true);
+	progressbar.setString("");
+	progressbar.setToolTipText("Progress of the reduction");
+	gbc.anchor = GridBagConstraints.CENTER;
+	gbc.gridx = 0; gbc.gridy = 5;
+	gbc.gridwidth = 2; gbc.fill = GridBagConstraints.HORIZONTAL;
+	panel.add(progressbar,gbc);
 	// Advanced Panel button
 	toggleadvanced = new JButton("Show Advanced Panel");
 	toggleadvanced.addActionListener(this);
 	gbc.anchor = GridBagConstraints.SOUTH;
 	gbc.weighty = 0.5;
-	gbc.gridx = 0; gbc.gridy = 5;
-	gbc.gridwidth = 2;
+	gbc.gridx = 0; gbc.gridy = 6;
+	gbc.gridwidth = 2; gbc.fill = GridBagConstraints.NONE;
 	panel.add(toggleadvanced,gbc);
 	// Output textarea
 	output = new JTextArea(OUTPUTROWS,OUTPUTCOLUMNS);
 	output.setEditable(false);
 	gbc.insets = new Insets(0,0,0,0);
 	gbc.gridx = 2; gbc.gridy = 2;
-	gbc.gridwidth = 3; gbc.gridheight = 4;
+	gbc.gridwidth = 3; gbc.gridheight = 5;
 	gbc.fill = GridBagConstraints.BOTH;
 	gbc.weightx = 1; gbc.weighty = 1;
 	scrollpane = new JScrollPane(output,
@@ -496,6 +509,8 @@ public class GYutsis extends JFrame
 	saveeachstepmi.setEnabled(true);
 	savebraket.setEnabled(true);
 	savebraketmi.setEnabled(true);
+	progressbar.setValue(0);
+	progressbar.setString("");
 	if (!advancedmode){
 	    output.setText("");
 	    nrofsummations.setText("");
@@ -512,9 +527,7 @@ public class GYutsis extends JFrame
      **/
     void setYutsisFromFile(File file){
 	try{
-	    setYutsis(new YutsisGraph(new BufferedReader(new 
-		FileReader(file)), YutsisGraph.
-				      guessFileFormat(file.getPath())));
+	    setYutsis(YutsisGraph.read(file.getPath()));
 	    updateLastDir(file.getParent() == null ? 
 			  lastdir : file.getParent());
 	    input.setText(file.getName());
@@ -617,7 +630,7 @@ public class GYutsis extends JFrame
      **/
     public void componentResized(ComponentEvent e){
 	//Listens to the scrollpane...
-	if (y != null && (advancedmode || reduced))
+	if (y != null && worker == null && (advancedmode || reduced))
 	    outputFormula();
     }
 
@@ -625,8 +638,12 @@ public class GYutsis extends JFrame
      * Implementation of the ActionListener interface.
      **/
     public void actionPerformed(ActionEvent e){
-	if (e.getSource() == reducebutton || e.getSource() == reducemi)
-	    reduce();
+	if (e.getSource() == reducebutton || e.getSource() == reducemi){
+	    if (worker == null)
+		reduce();
+	    else
+		cca.cancel();
+	}
 	else if (e.getSource() == browsebutton 
 		 || e.getSource() == browsemi)
 	    browse();
@@ -766,7 +783,180 @@ public class GYutsis extends JFrame
 			   GRWrappedMapleVisitor.macros());
     }
 
-    private void reduce() { cca.reduce();}
+    /**
+     * Starts the reduction in a {@link ReductionWorker}; the Reduce
+     * button cancels it until it is done.
+     **/
+    private void reduce(){
+	progressbar.setMinimum(0);
+	progressbar.setMaximum(y.nrOfNodes()-2);
+	progressbar.setValue(0);
+	progressbar.setString("");
+	setBusy(true);
+	worker = new ReductionWorker(y.nrOfNodes(), advancedmode, outputformat,
+				     outputWidth(), 
+				     output.getFontMetrics(output.getFont()),
+				     usemacrosmi.getState());
+	worker.execute();
+    }
+
+    /**
+     * Disables the controls which change or read the YutsisGraph
+     * while a reduction runs in the background, and turns the Reduce
+     * button into a Cancel button; enables them again afterwards.
+     **/
+    private void setBusy(boolean busy){
+	boolean idle = !busy;
+	reducebutton.setText(busy ? "Cancel" : "Reduce");
+	reducebutton.setToolTipText(busy ? "Cancel the reduction" :
+				    "Reduce the Yutsis Graph to a triangular delta");
+	reducemi.setText(busy ? "Cancel" : "Reduce");
+	if (idle){
+	    boolean notreduced = !y.triangularDelta();
+	    reducebutton.setEnabled(notreduced);
+	    reducemi.setEnabled(notreduced);
+	}
+	input.setEnabled(idle);
+	browsebutton.setEnabled(idle);
+	browsemi.setEnabled(idle);
+	savebraket.setEnabled(idle);
+	savebraketmi.setEnabled(idle);
+	heuristicmenu.setEnabled(idle);
+	outputmenu.setEnabled(idle);
+	toggleadvanced.setEnabled(idle);
+	toggleadvancedmi.setEnabled(idle);
+	graph.setEnabled(idle);
+	graphmi.setEnabled(idle);
+	savegraph.setEnabled(idle);
+	savegraphmi.setEnabled(idle);
+	saveeachstep.setEnabled(idle);
+	saveeachstepmi.setEnabled(idle);
+	if (busy){
+	    cycles.setEnabled(false);
+	    cyclesmi.setEnabled(false);
+	    bestcycle.setEnabled(false);
+	    bestcyclemi.setEnabled(false);
+	    step.setEnabled(false);
+	    stepmi.setEnabled(false);
+	    saveformula.setEnabled(false);
+	    saveformulami.setEnabled(false);
+	}
+    }
+
+    /**
+     * A snapshot of the reduction published by the ReductionWorker:
+     * its progress and, in advanced mode, the formula rendered in the
+     * worker thread.
+     **/
+    static class Step{
+	ReductionProgress progress;
+	String formula;
+	int nrofsummations, nrof6js;
+    }
+
+    /**
+     * Runs {@link CycleCostAlgorithm#reduce} off the event dispatch
+     * thread. The progress events of the CycleCostAlgorithm arrive in
+     * the worker thread; a new Step is only published when the event
+     * dispatch thread has processed the previous one, so a fast
+     * reduction does not flood it. The ChangeEvents of the YutsisGraph
+     * are ignored by GYutsis during the reduction, the state is
+     * refreshed once when it is done. The worker thread does not touch
+     * Swing: the output settings are taken when the worker is created.
+     **/
+    class ReductionWorker extends SwingWorker implements ChangeListener{
+
+	private final int initialnodes;
+	private final boolean advanced;
+	private final int format;
+	private final int width;
+	private final FontMetrics fm;
+	private final boolean macros;
+	private final AtomicBoolean pending = new AtomicBoolean(false);
+
+	/**
+	 * Constructs a worker, on the event dispatch thread.
+	 * @param initialnodes the number of nodes before the reduction
+	 * @param advanced whether the formula is shown after each step
+	 * @param format the output format of the formula
+	 * @param width the width of the output field in pixels
+	 * @param fm the FontMetrics of the output field
+	 * @param macros whether LaTeX output uses macros
+	 **/
+	ReductionWorker(int initialnodes, boolean advanced, int format, 
+			int width, FontMetrics fm, boolean macros){
+	    this.initialnodes = initialnodes;
+	    this.advanced = advanced;
+	    this.format = format;
+	    this.width = width;
+	    this.fm = fm;
+	    this.macros = macros;
+	}
+
+	protected Object doInBackground(){
+	    cca.addProgressListener(this);
+	    try {
+		cca.reduce();
+	    }
+	    finally {
+		cca.removeProgressListener(this);
+	    }
+	    return null;
+	}
+
+	/**
+	 * Receives the progress of the CycleCostAlgorithm, in the
+	 * worker thread.
+	 **/
+	public void stateChanged(ChangeEvent ce){
+	    if (!pending.compareAndSet(false, true))
+		return;
+	    Step s = new Step();
+	    s.progress = (ReductionProgress) ce.getSource();
+	    if (advanced){
+		GenRecoupCoeff grc = y.genRecoupCoeff();
+		GRVisitor v = formulaVisitor(format, width, fm, macros);
+		grc.accept(v);
+		s.formula = (String) v.result();
+		s.nrofsummations = grc.nrOfSummations();
+		s.nrof6js = grc.nrOf6js();
+	    }
+	    publish(new Object [] {s});
+	}
+
+	protected void process(List chunks){
+	    pending.set(false);
+	    Step s = (Step) chunks.get(chunks.size()-1);
+	    progressbar.setValue(initialnodes - s.progress.nodes());
+	    progressbar.setString(s.progress.toString());
+	    if (s.formula != null){
+		output.setText(s.formula);
+		nrofsummations.setText(""+s.nrofsummations);
+		nrof6js.setText(""+s.nrof6js);
+	    }
+	}
+
+	protected void done(){
+	    worker = null;
+	    boolean cancelled = cca.isCancelled();
+	    cca.clearCancelled();
+	    setBusy(false);
+	    if (cancelled)
+		progressbar.setString(progressbar.getString() + " (cancelled)");
+	    try {
+		get();
+	    }
+	    catch (InterruptedException ie){}
+	    catch (ExecutionException ee){
+		JOptionPane.showMessageDialog(GYutsis.this, 
+					      "The reduction failed: " 
+					      + ee.getCause(),
+					      "Reduction error",
+					      JOptionPane.ERROR_MESSAGE);
+	    }
+	    GYutsis.this.stateChanged(new ChangeEvent(y));
+	}
+    }
 
     private void browse() {
 	JFileChooser fc = new JFileChooser(lastdir);
@@ -862,9 +1052,12 @@ public class GYutsis extends JFrame
     }
 
     /** 
-     * Implementation of the ChangeListener interface.
+     * Implementation of the ChangeListener interface. Ignored while a
+     * ReductionWorker runs.
      **/
     public void stateChanged(ChangeEvent ce){
+	if (!SwingUtilities.isEventDispatchThread() || worker != null)
+	    return;
 	reduced = y.triangularDelta();
 	if (advancedmode || reduced){
 	    outputFormula();
@@ -979,39 +1172,59 @@ public class GYutsis extends JFrame
     void outputFormula(){
 	if (y == null)
 	    return;
+	GRVisitor v = formulaVisitor();
+	y.genRecoupCoeff().accept(v);
+	output.setText((String) v.result());
+	nrofsummations.setText(""+y.genRecoupCoeff().nrOfSummations());
+	nrof6js.setText(""+y.genRecoupCoeff().nrOf6js());
+    }
+
+    /**
+     * Returns a visitor wrapping the formula to the width of the output
+     * field in the current output format.
+     **/
+    GRVisitor formulaVisitor(){
+	return formulaVisitor(outputformat, outputWidth(), 
+			      output.getFontMetrics(output.getFont()),
+			      usemacrosmi.getState());
+    }
+
+    /**
+     * Returns the width available for the formula in the output field.
+     **/
+    private int outputWidth(){
+	return Math.min((int) output.getSize().getWidth(), 
+			(int) scrollpane.getSize().getWidth());
+    }
+
+    /**
+     * Returns a visitor wrapping the formula to the given width; does
+     * not touch Swing, so it can be used by the ReductionWorker.
+     * @param format the output format
+     * @param width the width in pixels
+     * @param fm the FontMetrics used to measure the formula
+     * @param macros whether a LaTeX visitor uses macros
+     **/
+    static GRVisitor formulaVisitor(int format, int width, FontMetrics fm, 
+				    boolean macros){
 	GRVisitor v = null;
-	switch(outputformat){
+	switch(format){
 	case GENERIC_OUTPUT:
-	    v = new GRWrappedStringVisitor
-		(Math.min((int) output.getSize().getWidth(), 
-			  (int) scrollpane.getSize().getWidth()),
-		 output.getFontMetrics(output.getFont()));
+	    v = new GRWrappedStringVisitor(width, fm);
 	    break;
 	case LATEX_OUTPUT:
-	    v = new GRWrappedLaTeXVisitor 
-		(Math.min((int) output.getSize().getWidth(), 
-			  (int) scrollpane.getSize().getWidth()),
-		 output.getFontMetrics(output.getFont()));
-	    if (usemacrosmi.getState())
+	    v = new GRWrappedLaTeXVisitor(width, fm);
+	    if (macros)
 		((GRWrappedLaTeXVisitor) v).useMacros(true);
 	    break;
 	case MAPLE_OUTPUT:
-	    v = new GRWrappedMapleVisitor  
-		(Math.min((int) output.getSize().getWidth(), 
-		      (int) scrollpane.getSize().getWidth()),
-	     output.getFontMetrics(output.getFont()));
+	    v = new GRWrappedMapleVisitor(width, fm);
 	    break;
 	case RACAH_OUTPUT:
-	    v = new GRWrappedRacahVisitor
-		(Math.min((int) output.getSize().getWidth(), 
-			  (int) scrollpane.getSize().getWidth()),
-		 output.getFontMetrics(output.getFont()));
+	    v = new GRWrappedRacahVisitor(width, fm);
 	    break;
 	}
-	y.genRecoupCoeff().accept(v);
-	output.setText((String) v.result());
-	nrofsummations.setText(""+y.genRecoupCoeff().nrOfSummations());
-	nrof6js.setText(""+y.genRecoupCoeff().nrOf6js());
+	return v;
     }
 
     void showHelpFile(){
@@ -8,14 +8,19 @@
    B-9000 GENT Belgium
 */
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 
 /** 
  * Class representing a General Recoupling Coefficient of Angular Momenta
  * in terms of 6j-coefficients, which is gradually build by the graphical
  * methods developed by Yutsis and Vanagas by performing reduction 
- * operations on the corresponding YutsisGraph.
+ * operations on the corresponding YutsisGraph. The labels of the
+ * angular momenta are given and stored as their ids in the {@link
+ * LabelTable} of the YutsisGraph.
  * @see YutsisGraph 
+ * @see LabelTable
  * @see Edge 
  * @see GRCompoundFactor 
  * @see GRSummation 
@@ -28,6 +33,44 @@ public class GenRecoupCoeff implements Cloneable{
     int nrof6j = 0;
     GRCompoundFactor precf;
     ArrayList summations;
+
+    /** 
+     * The table of the labels.
+     **/
+    LabelTable labels;
+
+    /** 
+     * The index in {@link #summations} of the summation over each 
+     * label id, -1 if the label is not summed over.
+     **/
+    private int [] summation;
+
+    /** 
+     * The undo log: a list of {@link Undo} entries, null if no mark
+     * is set. 
+     * @see #mark
+     **/
+    private ArrayList undolog;
+
+    /** 
+     * The factors saved in the undo log since the last mark.
+     **/
+    private HashSet saved;
+
+    /** 
+     * Entry of the undo log: either a mark, or the state of a
+     * factor before it was changed for the first time after a mark.
+     **/
+    private static class Undo{
+	/** The changed factor, null for a mark. **/
+	GRCompoundFactor factor;
+	/** The copy of the GRPreFactor of the factor. **/
+	GRPreFactor prefactor;
+	/** The number of GRFactors in the factor or of summations. **/
+	int size;
+	/** The number of 6j-symbols at a mark. **/
+	int nrof6j;
+    }
     
     /** 
      * Constructs a new General Recoupling Coefficient with rootnode
@@ -37,28 +80,32 @@ public class GenRecoupCoeff implements Cloneable{
      * first coupled momenta (with doubles if a angular momenta is
      * first coupled in both trees) with expected number of
      * summationvariables specified by <code>order</code>.
+     * @param labels the table of the labels of the YutsisGraph
      * @param order the order of the corresponding YutsisGraph
-     * @param root the label of the root Edge of the 
+     * @param root the label id of the root Edge of the 
      *             YutsisGraph
-     * @param a array containing the labels of the intermediate angular
+     * @param a array containing the label ids of the intermediate angular
      *          momenta of the BRA of the general recoupling coefficient
-     * @param b array containing the labels of the intermediate angular
+     * @param b array containing the label ids of the intermediate angular
      *          momenta of the KET of the general recoupling coefficient
-     * @param s array containing the labels of all first coupled angular
+     * @param s array containing the label ids of all first coupled angular
      *          momenta 
      **/
-    public GenRecoupCoeff(int order, String root, 
-			  String [] a, String [] b, String [] s){
+    public GenRecoupCoeff(LabelTable labels, int order, int root, 
+			  int [] a, int [] b, int [] s){
+	this.labels = labels;
 	this.order = order;
 	summations = new ArrayList(order);
-	GRPreFactor pf = new GRPreFactor(3*order);
+	summation = new int[4*order];
+	Arrays.fill(summation,-1);
+	GRPreFactor pf = new GRPreFactor(labels,3*order);
 	// Construct initial factors (transformation trees->graph)
 	pf.appendExp(2,root);
 	pf.appendExp(2,b);
 	pf.appendExp(2,s);
 	pf.appendFactor(a,1);
 	pf.appendFactor(b,1);
-	precf = new GRCompoundFactor(3*order,pf);
+	precf = new GRCompoundFactor(labels,3*order,pf);
     }
 
     /** 
@@ -66,8 +113,10 @@ public class GenRecoupCoeff implements Cloneable{
      * @param grc the GenRecoupCoeff object to be duplicated
      **/
     public GenRecoupCoeff(GenRecoupCoeff grc){
+	labels = grc.labels;
 	order = grc.order;
 	nrof6j = grc.nrof6j;
+	summation = grc.summation.clone();
 	precf = new GRCompoundFactor(grc.precf);
 	summations = new ArrayList();
 	Iterator i = grc.summations.iterator();
@@ -89,6 +138,29 @@ public class GenRecoupCoeff implements Cloneable{
      * @return the number of summationinices
      **/
     public int nrOfSummations() { return summations.size(); }
+
+    /** 
+     * Returns the table of the labels of this General Recoupling
+     * Coefficient.
+     * @return the LabelTable
+     **/
+    public LabelTable labels() { return labels; }
+
+    /** 
+     * Returns the index of the summation over the label with the
+     * given id, or -1 if none.
+     **/
+    private int summationOf(int label){
+	return label < summation.length ? summation[label] : -1;
+    }
+
+    /** 
+     * Returns the summation with the given index, or the prefactor
+     * of this General Recoupling Coefficient if the index is -1.
+     **/
+    private GRCompoundFactor factor(int i){
+	return i == -1 ? precf : (GRCompoundFactor) summations.get(i);
+    }
     
     /** 
      * Returns a String representation of this General Recoupling 
@@ -124,22 +196,21 @@ public class GenRecoupCoeff implements Cloneable{
      * General Recoupling Coefficient as a consequence of the invertion
      * of the node sign in wich <code>j[0],j[1],j[2]</code> are coupled
      * in the corresponding YutsisGraph.
-     * @param j the labels of the Edges coupled in the inverted node
+     * @param j the label ids of the Edges coupled in the inverted node
      * @see YutsisGraph
      **/
-    public void invertNode(String [] j){
-	boolean [] notyetappended = {true, true, true};
+    public void invertNode(int [] j){
 	for (int k = 0; k < 3; k++)
-	    for (int i = summations.size()-1; i >= 0; i--){
-		GRSummation summ = (GRSummation) summations.get(i);
-		if (notyetappended[k] && summ.summVar().equals(j[k])){
-		    summ.appendExp(1,j[k]);
-		    notyetappended[k] = false;
-		}
+	    if (summationOf(j[k]) != -1){
+		GRCompoundFactor summ = factor(summationOf(j[k]));
+		save(summ);
+		summ.appendExp(1,j[k]);
 	    }
 	for (int k = 0; k < 3; k++)
-	    if (notyetappended[k])
+	    if (summationOf(j[k]) == -1){
+		save(precf);
 		precf.appendExp(1,j[k]);
+	    }
     }
 
     /** 
@@ -147,19 +218,14 @@ public class GenRecoupCoeff implements Cloneable{
      * Recoupling Coefficient as a consequence of the invertion of
      * the Edge with label <code>j</code> in the corresponding
      * YutsisGraph.
-     * @param j the label of the inverted Edge
+     * @param j the label id of the inverted Edge
      * @see Edge
      * @see YutsisGraph
      **/
-    public void invertEdge(String j){
-	for (int i = summations.size()-1; i >= 0; i--){
-		GRSummation summ = (GRSummation) summations.get(i);
-		if (summ.summVar().equals(j)){
-		    summ.appendExp(2,j);
-		    return;
-		}
-	}
-	precf.appendExp(2,j);
+    public void invertEdge(int j){
+	GRCompoundFactor cf = factor(summationOf(j));
+	save(cf);
+	cf.appendExp(2,j);
     }
 
     /** 
@@ -167,24 +233,19 @@ public class GenRecoupCoeff implements Cloneable{
      * General Recoupling Coefficient as a consequence of the removal of
      * a bubble between the edges with labels <code>l1, l2</code> in the
      * corresponding YutsisGraph.
-     * @param l1 the label of the Edge coming out the bubble
-     * @param l2 the label of the Edge entering the bubble
+     * @param l1 the label id of the Edge coming out the bubble
+     * @param l2 the label id of the Edge entering the bubble
      * @see Edge
      * @see YutsisGraph
      **/
-    public void bubble(String l1, String l2){
-	GRKrDelta cd = new GRKrDelta(l1,l2);
-	for (int i = summations.size()-1; i >= 0; i--){
-		GRSummation summ = (GRSummation) summations.get(i);
-		if (summ.summVar().equals(l1) 
-		    || summ.summVar().equals(l2)){
-		    summ.appendFactor(l1,-2);
-		    summ.append(cd);
-		    return;
-		}
-	}
-	precf.appendFactor(l1,-2);
-	precf.append(cd);
+    public void bubble(int l1, int l2){
+	GRKrDelta cd = new GRKrDelta(labels,l1,l2);
+	// the factor goes to the innermost summation over l1 or l2
+	GRCompoundFactor cf = 
+	    factor(Math.max(summationOf(l1),summationOf(l2)));
+	save(cf);
+	cf.appendFactor(l1,-2);
+	cf.append(cd);
     }
 
     /** 
@@ -194,26 +255,24 @@ public class GenRecoupCoeff implements Cloneable{
      * l[2]</code> with neighboredges <code>j[0], j[1], j[2]</code> such
      * that <code>j[i]<code> is not coupled with <code>l[i]</code> in
      * the corresponding YutsisGraph.
-     * @param l array containing the labels of the Edges of the
+     * @param l array containing the label ids of the Edges of the
      *          triangle
-     * @param j array containg the labels of the Edges coming out
+     * @param j array containg the label ids of the Edges coming out
      *          the triangle
      * @see Edge	 
      * @see YutsisGraph
      **/
-    public void triangle(String [] l, String [] j){
-	GR6jSymbol a6j = new GR6jSymbol(j,l);
+    public void triangle(int [] l, int [] j){
+	GR6jSymbol a6j = new GR6jSymbol(labels,j,l);
 	nrof6j++;
-	for (int i = summations.size()-1; i >= 0; i--){
-		GRSummation summ = (GRSummation) summations.get(i);
-		for (int k = 0; k < 3; k++)
-		    if (summ.summVar().equals(l[k]) 
-			|| summ.summVar().equals(j[k])){
-		    summ.append(a6j);
-		    return;
-		}
-	}
-	precf.append(a6j);
+	// the factor goes to the innermost summation over its labels
+	int innermost = -1;
+	for (int k = 0; k < 3; k++)
+	    innermost = Math.max(innermost, Math.max(summationOf(l[k]),
+						     summationOf(j[k])));
+	GRCompoundFactor cf = factor(innermost);
+	save(cf);
+	cf.append(a6j);
     }
     
     /** 
@@ -224,26 +283,113 @@ public class GenRecoupCoeff implements Cloneable{
      * <code>b,c</code> which (respectively) neighboredges <code>a, d</code>
      * in the corresponding YutsisGraph. <code>f</code> is
      * the new label of the edge with label <code>e</code>.
-     * @param e the label of the Edge on which the interchange is applied
-     * @param b label of an Edge to be interchanged
-     * @param c label of an Edge to be interchanged
-     * @param a label of the Edge coupled with e and b
-     * @param d label of the Edge coupled with e and c
-     * @param f new label of the Edge e
+     * @param e the label id of the Edge on which the interchange is
+     *          applied
+     * @param b label id of an Edge to be interchanged
+     * @param c label id of an Edge to be interchanged
+     * @param a label id of the Edge coupled with e and b
+     * @param d label id of the Edge coupled with e and c
+     * @param f new label id of the Edge e
      * @see Edge
      * @see YutsisGraph
      **/
-    public void interchange(String e, String b, String c, 
-			    String a, String d, String f){
-	GRSummation sumf = new GRSummation(f,a,b,c,d);
-	sumf.append(new GRPreFactor(3*(nrOfSummations()+1)/4,1,f,f,2));
-	String [] top = {a,b,f};
-	String [] bottom = {d,c,e};
+    public void interchange(int e, int b, int c, int a, int d, int f){
+	GRSummation sumf = new GRSummation(labels,f,a,b,c,d);
+	sumf.append(new GRPreFactor(labels,3*(nrOfSummations()+1)/4,1,f,f,2));
+	int [] top = {a,b,f};
+	int [] bottom = {d,c,e};
 	nrof6j++;
-	sumf.append(new GR6jSymbol(top,bottom));
+	sumf.append(new GR6jSymbol(labels,top,bottom));
+	if (f >= summation.length){
+	    int [] newsummation = new int[Math.max(2*summation.length,f+1)];
+	    Arrays.fill(newsummation,-1);
+	    System.arraycopy(summation,0,newsummation,0,summation.length);
+	    summation = newsummation;
+	}
+	summation[f] = summations.size();
 	summations.add(sumf);
-	String [] labels = {b,c,e};
-	invertNode(labels); //same effect... 
+	int [] nodelabels = {b,c,e};
+	invertNode(nodelabels); //same effect... 
+    }
+
+    /** 
+     * Sets a mark to which this GenRecoupCoeff can be rolled back.
+     * From the first mark on the changes are recorded in an undo log.
+     * Marks can be nested; they have to be released (by {@link
+     * #rollback} or {@link #commit}) in the reverse order in which 
+     * they are set.
+     * @return the mark
+     * @see YutsisGraph#mark
+     **/
+    public int mark(){
+	if (undolog == null){
+	    undolog = new ArrayList();
+	    saved = new HashSet();
+	}
+	Undo mark = new Undo();
+	mark.size = summations.size();
+	mark.nrof6j = nrof6j;
+	undolog.add(mark);
+	saved.clear();
+	return undolog.size()-1;
+    }
+
+    /** 
+     * Undoes all changes made since <code>mark</code> was set and
+     * releases the mark (and all marks set after it).
+     * @param mark a mark returned by {@link #mark}
+     * @throws IllegalArgumentException if the mark is not set
+     **/
+    public void rollback(int mark){
+	checkMark(mark);
+	for (int i = undolog.size()-1; i > mark; i--){
+	    Undo u = (Undo) undolog.remove(i);
+	    if (u.factor != null)
+		u.factor.restore(u.prefactor,u.size);
+	}
+	Undo u = (Undo) undolog.remove(mark);
+	while (summations.size() > u.size)
+	    summation[((GRSummation) summations.remove(summations.size()-1))
+		      .summvar] = -1;
+	nrof6j = u.nrof6j;
+	saved.clear();
+	if (mark == 0)
+	    undolog = null;
+    }
+
+    /** 
+     * Releases <code>mark</code> (and all marks set after it) keeping
+     * the changes made since. If no marks are left, changes are no 
+     * longer recorded.
+     * @param mark a mark returned by {@link #mark}
+     * @throws IllegalArgumentException if the mark is not set
+     **/
+    public void commit(int mark){
+	checkMark(mark);
+	if (mark == 0)
+	    undolog = null;
+    }
+
+    private void checkMark(int mark){
+	if (undolog == null || mark < 0 || mark >= undolog.size() 
+	    || ((Undo) undolog.get(mark)).factor != null)
+	    throw new IllegalArgumentException("No mark " + mark);
+    }
+
+    /** 
+     * Saves the state of <code>cf</code> in the undo log, if it is 
+     * not yet saved since the last mark.
+     * @param cf the factor which will be changed
+     **/
+    private void save(GRCompoundFactor cf){
+	if (undolog == null || !saved.add(cf))
+	    return;
+	Undo u = new Undo();
+	u.factor = cf;
+	GRPreFactor pf = (GRPreFactor) cf.grfactors.get(0);
+	u.prefactor = pf == null ? null : new GRPreFactor(pf);
+	u.size = cf.grfactors.size();
+	undolog.add(u);
     }
 
     /** 
@@ -255,10 +401,14 @@ public class GenRecoupCoeff implements Cloneable{
 	try { grc = (GenRecoupCoeff) super.clone(); }
 	catch(CloneNotSupportedException e){}//should not be possible
 	grc.precf = (GRCompoundFactor) precf.clone();
-	summations = new ArrayList();
-	Iterator i = grc.summations.iterator();
+	grc.summation = summation.clone();
+	// the clone starts without marks
+	grc.undolog = null;
+	grc.saved = null;
+	grc.summations = new ArrayList();
+	Iterator i = summations.iterator();
 	while (i.hasNext()){
-	    summations.add(((GRSummation) i.next()).clone());
+	    grc.summations.add(((GRSummation) i.next()).clone());
 	}
 	return grc;
     }
@@ -50,6 +50,17 @@ public interface Graph extends Cloneable{
      **/
     public int [] neighbors(int node);
 
+    /** 
+     * Copies the neighbors of the node with label <code>node</code>
+     * into the array <code>nghb</code>, which is returned.
+     * @param node the node of which the neighbors have to be returned
+     * @param nghb the array to be filled, big enough to hold all 
+     *             neighbors
+     * @return the array with the neihbors of the specified node, 
+     *         null if the node is removed
+     **/
+    public int [] neighbors(int node, int [] nghb);
+
     /** 
      * True if nodes <code>i</code> and <code>j</code> are connected,
      * false otherwise.
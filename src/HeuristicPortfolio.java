@@ -0,0 +1,338 @@
+/* HeuristicPortfolio.java
+   -----------------------
+   2026 (c) agent
+*/
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ExecutionException;
+
+import java.io.PrintStream;
+
+/**
+ * This class runs a portfolio of heuristics concurrently on a
+ * YutsisGraph and selects the best reduction found. Each heuristic
+ * reduces its own copy of the graph with a {@link CycleCostAlgorithm}
+ * in its own thread, so the wall time is about that of the slowest
+ * heuristic. Optionally the runs get a time budget, after which the
+ * unfinished ones are cancelled.
+ *
+ * <p> The graph given to the portfolio is not changed: the best
+ * reduction can be repeated on it with {@link
+ * CycleCostAlgorithm#reduce(ArrayList)} and the interchanges of the
+ * selected run.
+ * @see CycleCostAlgorithm
+ * @see CCAHeuristic
+ * @author agent@local
+ **/
+public class HeuristicPortfolio{
+
+    /**
+     * One heuristic of the portfolio reducing its own copy of the
+     * graph.
+     **/
+    public static class Run implements Runnable{
+	String name;
+	CCAHeuristic prototype;
+	YutsisGraph y;
+	CycleCostAlgorithm cca;
+	/** Time of the reduction in nanoseconds, -1 when not started. **/
+	long time = -1;
+	/** True if the reduction completed within the time budget. **/
+	boolean finished = false;
+	/** The exception that ended the reduction, if any. **/
+	Throwable error = null;
+
+	Run(String name, CCAHeuristic prototype){
+	    this.name = name;
+	    this.prototype = prototype;
+	}
+
+	/**
+	 * Reduces the copy of the graph, measuring the time taken.
+	 **/
+	public void run(){
+	    long start = System.nanoTime();
+	    try {
+		cca.reduce();
+		finished = y.triangularDelta();
+	    }
+	    catch (RuntimeException e){
+		error = e;
+	    }
+	    finally {
+		time = System.nanoTime()-start;
+	    }
+	}
+
+	/**
+	 * Returns the name of the heuristic of this Run.
+	 * @return the name of the heuristic
+	 **/
+	public String name(){ return name; }
+
+	/**
+	 * Returns a heuristic of the same kind as the one of this Run,
+	 * not bound to a problem.
+	 * @return the prototype of the heuristic
+	 * @see CCAHeuristic#newInstance
+	 **/
+	public CCAHeuristic heuristic(){ return prototype; }
+
+	/**
+	 * Returns the CycleCostAlgorithm reducing the copy of the graph.
+	 * @return the CycleCostAlgorithm of this Run
+	 **/
+	public CycleCostAlgorithm algorithm(){ return cca; }
+
+	/**
+	 * Returns the copy of the graph reduced by this Run.
+	 * @return the reduced copy of the graph
+	 **/
+	public YutsisGraph graph(){ return y; }
+
+	/**
+	 * True if the reduction was completed within the time budget.
+	 * @return true if the graph has been reduced
+	 **/
+	public boolean finished(){ return finished; }
+
+	/**
+	 * Returns the time taken by the reduction in milliseconds.
+	 * @return the time of the reduction in ms
+	 **/
+	public long time(){ return time/1000000; }
+
+	/**
+	 * Returns the number of interchanges (triangles included) needed.
+	 * @return the number of interchanges of the reduction
+	 **/
+	public int nrOfInterchanges(){ return cca.nrOfInterchanges(); }
+
+	/**
+	 * A one line report of this Run.
+	 * @return a String representation of this Run
+	 **/
+	public String toString(){
+	    if (error != null)
+		return name + ": failed after " + time() + " ms ("
+		    + error + ")";
+	    if (!finished)
+		return name + ": cancelled after " + time() + " ms";
+	    return name + ": " + nrOfInterchanges() + " IC's, "
+		+ y.genRecoupCoeff().nrOf6js() + " 6j's, " + time() + " ms";
+	}
+    }
+
+    /**
+     * The graph to be reduced.
+     **/
+    YutsisGraph y;
+
+    /**
+     * The Runs of the portfolio.
+     **/
+    ArrayList runs = new ArrayList();
+
+    /**
+     * Time budget of each run in milliseconds, 0 for none.
+     **/
+    long timebudget = 0;
+
+    int beamwidth = 1;
+
+    int beamparallelism = 1;
+
+    /**
+     * Number of threads scoring the interchanges of each
+     * CycleCountHeuristic run.
+     **/
+    int parallelism = 1;
+
+    /**
+     * Constructs a portfolio for the given YutsisGraph running the
+     * CycleCountHeuristic with strategy MORE_SMALLER_LESS_BIGGER,
+     * the CycleCountHeuristic with strategy CYCLE_COUNT and the
+     * EdgeCostHeuristic, in this order of preference.
+     * @param y the YutsisGraph to be reduced
+     **/
+    public HeuristicPortfolio(YutsisGraph y){
+	this.y = y;
+	CycleCountHeuristic cch = new CycleCountHeuristic();
+	cch.setStrategy(CycleCountHeuristic.MORE_SMALLER_LESS_BIGGER);
+	addHeuristic("CycleCount.MORE_SMALLER_LESS_BIGGER", cch);
+	cch = new CycleCountHeuristic();
+	cch.setStrategy(CycleCountHeuristic.CYCLE_COUNT);
+	addHeuristic("CycleCount.CYCLE_COUNT", cch);
+	addHeuristic("EdgeCost", new EdgeCostHeuristic());
+    }
+
+    /**
+     * Adds a heuristic to the portfolio. The runs use heuristics
+     * obtained from <code>prototype</code> with
+     * {@link CCAHeuristic#newInstance}.
+     * @param name the name of the heuristic used in the report
+     * @param prototype the heuristic to be run
+     **/
+    public void addHeuristic(String name, CCAHeuristic prototype){
+	runs.add(new Run(name, prototype));
+    }
+
+    /**
+     * Sets the time budget of each run. Runs not finished within it
+     * are cancelled.
+     * @param millis the time budget in milliseconds, 0 for none
+     **/
+    public void setTimeBudget(long millis){
+	if (millis < 0)
+	    throw new IllegalArgumentException("time budget < 0");
+	timebudget = millis;
+    }
+
+    /**
+     * Sets the beam width and the number of threads of the beam
+     * search of each run.
+     * @param beamwidth the beam width, 1 for the greedy reduction
+     * @param parallelism the number of threads of each beam search
+     * @see CycleCostAlgorithm#setBeamWidth
+     **/
+    public void setBeamSearch(int beamwidth, int parallelism){
+	if (beamwidth < 1)
+	    throw new IllegalArgumentException("beam width < 1");
+	if (parallelism < 1)
+	    throw new IllegalArgumentException("parallelism < 1");
+	this.beamwidth = beamwidth;
+	beamparallelism = parallelism;
+    }
+
+    /**
+     * Sets the number of threads scoring the interchanges of each run
+     * of a {@link CycleCountHeuristic}.
+     * @param parallelism the number of threads of each run
+     * @see CycleCountHeuristic#setParallelism
+     **/
+    public void setParallelism(int parallelism){
+	if (parallelism < 1)
+	    throw new IllegalArgumentException("parallelism < 1");
+	this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the Runs of the portfolio, in order of preference.
+     * @return an ArrayList of Runs
+     **/
+    public ArrayList runs(){ return runs; }
+
+    /**
+     * Runs all heuristics concurrently, each on its own copy of the
+     * graph, and returns the finished Run with the fewest
+     * interchanges; on a tie the one with the fewest 6j-symbols, and
+     * then the one added first.
+     * @return the best Run or null if no Run finished
+     * @throws InterruptedException if interrupted while waiting
+     **/
+    public Run run() throws InterruptedException{
+	for (Iterator i = runs.iterator(); i.hasNext();){
+	    Run r = (Run) i.next();
+	    r.y = new YutsisGraph(y);
+	    r.y.setLogStream(null);
+	    CCAHeuristic h = r.prototype.newInstance(r.y);
+	    if (h instanceof CycleCountHeuristic)
+		((CycleCountHeuristic) h).setParallelism(parallelism);
+	    r.cca = new CycleCostAlgorithm(r.y, h);
+	    r.cca.setLogStream(null);
+	    r.cca.setBeamWidth(beamwidth);
+	    r.cca.setBeamParallelism(beamparallelism);
+	}
+	ExecutorService pool = Executors.newFixedThreadPool(runs.size());
+	try {
+	    Future [] futures = new Future[runs.size()];
+	    for (int i = 0; i < futures.length; i++)
+		futures[i] = pool.submit((Run) runs.get(i));
+	    long deadline = timebudget == 0 ? -1 :
+		System.nanoTime() + timebudget*1000000;
+	    boolean intime = true;
+	    for (int i = 0; i < futures.length && intime; i++)
+		intime = await(futures[i], (Run) runs.get(i), deadline);
+	    cancel();
+	    for (int i = 0; i < futures.length; i++)
+		await(futures[i], (Run) runs.get(i), -1);
+	}
+	finally {
+	    // also when interrupted: shutdown does not stop running tasks
+	    cancel();
+	    pool.shutdown();
+	    shutdownScoring();
+	}
+	Run best = null;
+	for (Iterator i = runs.iterator(); i.hasNext();){
+	    Run r = (Run) i.next();
+	    if (r.finished && (best == null
+			       || r.nrOfInterchanges() < best.nrOfInterchanges()
+			       || r.nrOfInterchanges() == best.nrOfInterchanges()
+			       && r.y.genRecoupCoeff().nrOf6js()
+			       < best.y.genRecoupCoeff().nrOf6js()))
+		best = r;
+	}
+	return best;
+    }
+
+    /**
+     * Shuts down the threads scoring the interchanges of the
+     * CycleCountHeuristics of the Runs, which are not used after the
+     * Runs have ended.
+     **/
+    private void shutdownScoring(){
+	for (Iterator i = runs.iterator(); i.hasNext();){
+	    CCAHeuristic h = ((Run) i.next()).cca.heuristic();
+	    if (h instanceof CycleCountHeuristic)
+		((CycleCountHeuristic) h).setParallelism(1);
+	}
+    }
+
+    /**
+     * Cancels all Runs; the unfinished ones stop after their current
+     * operation.
+     **/
+    private void cancel(){
+	for (Iterator i = runs.iterator(); i.hasNext();)
+	    ((Run) i.next()).cca.cancel();
+    }
+
+    /**
+     * Waits until the given Run has ended or the deadline (as given
+     * by System.nanoTime) has passed.
+     * @return false if the deadline has passed first
+     **/
+    static boolean await(Future f, Run r, long deadline)
+	throws InterruptedException{
+	try {
+	    if (deadline == -1)
+		f.get();
+	    else
+		f.get(Math.max(0, deadline-System.nanoTime()),
+		      TimeUnit.NANOSECONDS);
+	}
+	catch (TimeoutException e){
+	    return false;
+	}
+	catch (ExecutionException e){
+	    r.error = e.getCause();
+	}
+	return true;
+    }
+
+    /**
+     * Prints a line per Run with its result and time to the given
+     * PrintStream.
+     * @param out the PrintStream to which the report is printed
+     **/
+    public void report(PrintStream out){
+	for (Iterator i = runs.iterator(); i.hasNext();)
+	    out.println(i.next());
+    }
+}
@@ -0,0 +1,255 @@
+/* IntIntMap.java
+   --------------
+   2026 (c) agent
+*/
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A map from non-negative int keys to non-zero int values, without
+ * boxing. A value of 0 means the key is absent: putting 0 removes
+ * the key. The entries are kept in an open addressing table with
+ * linear probing, so a copy only has to clone two small arrays.
+ *
+ * <p> The keys are iterated in increasing order, independent of the
+ * order in which they were put.
+ * @see GRPreFactor
+ * @author agent@local
+ **/
+public class IntIntMap implements Cloneable{
+
+    /** Marks an empty slot in {@link #keys}. **/
+    static final int EMPTY = -1;
+
+    /** The keys per slot, EMPTY for an empty slot. **/
+    int [] keys;
+
+    /** The values per slot. **/
+    int [] values;
+
+    /** The number of entries. **/
+    int size = 0;
+
+    /**
+     * Constructs an empty IntIntMap for <code>capacity</code> expected
+     * entries.
+     * @param capacity the expected number of entries
+     **/
+    public IntIntMap(int capacity){
+	int slots = 4;
+	while (slots < capacity*4/3+1)
+	    slots *= 2;
+	keys = new int[slots];
+	Arrays.fill(keys,EMPTY);
+	values = new int[slots];
+    }
+
+    /**
+     * Constructs an empty IntIntMap.
+     **/
+    public IntIntMap(){ this(4); }
+
+    /**
+     * Constructs a copy of the given IntIntMap.
+     * @param m the IntIntMap to be copied
+     **/
+    public IntIntMap(IntIntMap m){
+	keys = m.keys.clone();
+	values = m.values.clone();
+	size = m.size;
+    }
+
+    /**
+     * Returns the slot of <code>key</code>, or the empty slot where
+     * it would be put.
+     **/
+    private int slot(int key){
+	int mask = keys.length-1;
+	int slot = (key * 0x9E3779B9 >>> 16) & mask;
+	while (keys[slot] != EMPTY && keys[slot] != key)
+	    slot = (slot+1) & mask;
+	return slot;
+    }
+
+    /**
+     * Returns the value of <code>key</code>.
+     * @param key the key
+     * @return the value, or 0 if the key is absent
+     **/
+    public int get(int key){
+	return values[slot(key)];
+    }
+
+    /**
+     * True if <code>key</code> has a value.
+     * @param key the key
+     * @return true if the key is present
+     **/
+    public boolean containsKey(int key){
+	return keys[slot(key)] != EMPTY;
+    }
+
+    /**
+     * Sets the value of <code>key</code>; a value of 0 removes it.
+     * @param key the key, not negative
+     * @param value the new value
+     **/
+    public void put(int key, int value){
+	if (key < 0)
+	    throw new IllegalArgumentException("Negative key " + key);
+	int slot = slot(key);
+	if (keys[slot] != EMPTY){
+	    if (value == 0)
+		remove(slot);
+	    else
+		values[slot] = value;
+	}
+	else if (value != 0){
+	    keys[slot] = key;
+	    values[slot] = value;
+	    if (++size > keys.length*3/4)
+		rehash(2*keys.length);
+	}
+    }
+
+    /**
+     * Adds <code>delta</code> to the value of <code>key</code>,
+     * modulo <code>modulus</code> if it is positive.
+     * @param key the key, not negative
+     * @param delta the value to be added
+     * @param modulus the modulus, or 0 for none
+     **/
+    public void add(int key, int delta, int modulus){
+	int value = get(key) + delta;
+	put(key, modulus > 0 ? value % modulus : value);
+    }
+
+    /**
+     * Empties the slot and moves the entries after it, such that no
+     * probing sequence is broken.
+     **/
+    private void remove(int slot){
+	int mask = keys.length-1;
+	int next = slot;
+	while (true){
+	    next = (next+1) & mask;
+	    if (keys[next] == EMPTY)
+		break;
+	    int home = (keys[next] * 0x9E3779B9 >>> 16) & mask;
+	    // move the entry unless its home lies cyclically in (slot,next]
+	    if (slot <= next ? (home <= slot || home > next)
+		: (home <= slot && home > next)){
+		keys[slot] = keys[next];
+		values[slot] = values[next];
+		slot = next;
+	    }
+	}
+	keys[slot] = EMPTY;
+	values[slot] = 0;
+	size--;
+    }
+
+    private void rehash(int slots){
+	int [] oldkeys = keys;
+	int [] oldvalues = values;
+	keys = new int[slots];
+	Arrays.fill(keys,EMPTY);
+	values = new int[slots];
+	for (int i = 0; i < oldkeys.length; i++)
+	    if (oldkeys[i] != EMPTY){
+		int slot = slot(oldkeys[i]);
+		keys[slot] = oldkeys[i];
+		values[slot] = oldvalues[i];
+	    }
+    }
+
+    /**
+     * Makes this IntIntMap a copy of <code>m</code>.
+     * @param m the IntIntMap to be copied
+     **/
+    public void set(IntIntMap m){
+	if (keys.length == m.keys.length){
+	    System.arraycopy(m.keys,0,keys,0,keys.length);
+	    System.arraycopy(m.values,0,values,0,values.length);
+	}
+	else {
+	    keys = m.keys.clone();
+	    values = m.values.clone();
+	}
+	size = m.size;
+    }
+
+    /**
+     * Removes all entries.
+     **/
+    public void clear(){
+	Arrays.fill(keys,EMPTY);
+	Arrays.fill(values,0);
+	size = 0;
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return the number of keys with a value
+     **/
+    public int size(){ return size; }
+
+    /**
+     * True if there are no entries.
+     * @return true if this map is empty
+     **/
+    public boolean isEmpty(){ return size == 0; }
+
+    /**
+     * Returns the keys in increasing order.
+     * @return a new array with the keys
+     **/
+    public int [] keys(){
+	int [] sorted = new int[size];
+	for (int i = 0, k = 0; i < keys.length; i++)
+	    if (keys[i] != EMPTY)
+		sorted[k++] = keys[i];
+	Arrays.sort(sorted);
+	return sorted;
+    }
+
+    /**
+     * Returns an Iterator over the keys, as Integers, in increasing
+     * order.
+     * @return an Iterator over the keys
+     **/
+    public Iterator keyIterator(){ return iterator(true); }
+
+    /**
+     * Returns an Iterator over the values, as Integers, in the order
+     * of {@link #keyIterator}.
+     * @return an Iterator over the values
+     **/
+    public Iterator valueIterator(){ return iterator(false); }
+
+    private Iterator iterator(final boolean keys){
+	final int [] sorted = keys();
+	return new Iterator(){
+		int i = 0;
+		public boolean hasNext(){ return i < sorted.length; }
+		public Object next(){
+		    if (i == sorted.length)
+			throw new NoSuchElementException();
+		    int key = sorted[i++];
+		    return Integer.valueOf(keys ? key : get(key));
+		}
+		public void remove(){
+		    throw new UnsupportedOperationException();
+		}
+	    };
+    }
+
+    /**
+     * Returns a copy of this IntIntMap.
+     * @return a clone of this IntIntMap
+     **/
+    public Object clone(){
+	return new IntIntMap(this);
+    }
+}
@@ -0,0 +1,146 @@
+/* IterationBenchmark.java
+   -----------------------
+   2026 (c) agent
+*/
+import java.util.ArrayList;
+import java.util.Random;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Program measuring the cost of iterating over the nodes of a
+ * {@link YutsisGraph} during its reduction. Each time the number of
+ * nodes has halved, a complete iteration with a {@link NodeIterator}
+ * is timed, as well as a scan over all original nodes testing
+ * {@link YutsisGraph#isRemoved} (the way the NodeIterator used to
+ * work). The first should stay proportional to the number of nodes
+ * left, the second to the original number of nodes.
+ * @see YutsisGraph
+ * @see NodeIterator
+ * @author agent@local
+ **/
+public class IterationBenchmark{
+
+    /**
+     * Returns a BRAKET without intermediate labels coupling the
+     * momenta j1..j<code>n</code> in two random binary trees.
+     * @param n the number of momenta (at least 2)
+     * @param random the random generator to be used
+     * @return a random BRAKET
+     **/
+    public static String randomBraket(int n, Random random){
+	return "<" + randomTree(n,random) + "|" + randomTree(n,random) + ">";
+    }
+
+    private static String randomTree(int n, Random random){
+	ArrayList trees = new ArrayList(n);
+	for (int i = 1; i <= n; i++)
+	    trees.add("j"+i);
+	while (trees.size() > 1){
+	    String t1 = (String) trees.remove(random.nextInt(trees.size()));
+	    String t2 = (String) trees.remove(random.nextInt(trees.size()));
+	    trees.add("(" + t1 + "," + t2 + ")");
+	}
+	return (String) trees.get(0);
+    }
+
+    /**
+     * Returns the time in nanoseconds of one complete iteration with
+     * a NodeIterator, averaged over <code>reps</code> iterations.
+     **/
+    static double iterate(YutsisGraph y, int reps){
+	long sum = 0;
+	long start = System.nanoTime();
+	for (int r = 0; r < reps; r++){
+	    NodeIterator ni = y.first();
+	    while (ni.hasNext())
+		sum += ni.next();
+	}
+	long time = System.nanoTime()-start;
+	if (sum == 42) // keep the loop from being optimized away
+	    System.out.print("");
+	return (double) time/reps;
+    }
+
+    /**
+     * Returns the time in nanoseconds of one scan over all original
+     * nodes, averaged over <code>reps</code> scans.
+     **/
+    static double scan(YutsisGraph y, int reps){
+	long sum = 0;
+	long start = System.nanoTime();
+	for (int r = 0; r < reps; r++)
+	    for (int i = 0; i < y.order(); i++)
+		if (!y.isRemoved(i))
+		    sum += i;
+	long time = System.nanoTime()-start;
+	if (sum == 42)
+	    System.out.print("");
+	return (double) time/reps;
+    }
+
+    /**
+     * Runs the benchmark. Without a file argument a random graph is
+     * generated.  When ran with illegal arguments it prints a "usage"
+     * to System.err.
+     **/
+    public static void main(String [] args) throws IOException{
+	String usage = "Usage: java IterationBenchmark [-n<momenta>] [-r<repetitions>] [<filename>]\n <filename> must be in BRAKET, YTS or EDGELIST format; without filename\n a random graph coupling n momenta is used (default: 200)";
+	int n = 200;
+	int reps = 20000;
+	String filename = null;
+	try {
+	    for (int i = 0; i < args.length; i++)
+		if (args[i].startsWith("-n"))
+		    n = Integer.parseInt(args[i].substring(2));
+		else if (args[i].startsWith("-r"))
+		    reps = Integer.parseInt(args[i].substring(2));
+		else if (filename == null)
+		    filename = args[i];
+		else
+		    throw new IllegalArgumentException();
+	}
+	catch (IllegalArgumentException e){
+	    System.err.println(usage);
+	    return;
+	}
+	if (n < 2 || reps < 1){
+	    System.err.println(usage);
+	    return;
+	}
+	YutsisGraph y;
+	try {
+	    if (filename == null)
+		y = new YutsisGraph(randomBraket(n,new Random(n)));
+	    else
+		y = YutsisGraph.read(filename);
+	}
+	catch (FileNotFoundException e){
+	    System.err.println("File " + filename + " not found.");
+	    return;
+	}
+	catch (IllegalArgumentException e){
+	    System.err.println(e.getMessage());
+	    return;
+	}
+	y.setLogStream(null);
+	CycleCostAlgorithm cca =
+	    new CycleCostAlgorithm(y, new CycleCountHeuristic(y));
+	cca.setLogStream(null);
+	System.out.println("nodes\torder\titerator(ns)\tscan(ns)");
+	int next = y.nrOfNodes();
+	while (true){
+	    if (y.nrOfNodes() <= next){
+		// warm up, then measure
+		iterate(y,reps); scan(y,reps);
+		System.out.println(y.nrOfNodes() + "\t" + y.order() + "\t"
+				   + Math.round(iterate(y,reps)) + "\t\t"
+				   + Math.round(scan(y,reps)));
+		next = y.nrOfNodes()/2;
+	    }
+	    if (y.n() <= 1)
+		break;
+	    cca.performOperation();
+	}
+    }
+}
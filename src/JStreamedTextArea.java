@@ -12,23 +12,51 @@
    and adapted for Java Swing
 */
 
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.io.IOException;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
 import javax.swing.JTextArea;
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
 
 /** 
  * Class representing TextArea objects behaving as OutputStreams.
+ *
+ * <p> The OutputStream may be written from any thread. It collects
+ * the bytes written in a buffer, which is appended to the document in
+ * one batch on the event dispatch thread at most {@link #FLUSHDELAY}
+ * ms later, so a verbose log does not cost an update of the document
+ * per character. When the text grows beyond the maximum number of
+ * lines, the oldest lines are removed.
  * @author Dries.VanDyck@rug.ac.be
  **/
 public class JStreamedTextArea extends JTextArea {
 
-    OutputStream theOutput = new TextAreaOutputStream();
+    /**
+     * The time in ms between a write to the OutputStream and the
+     * append of the text to the document.
+     **/
+    public static final int FLUSHDELAY = 100;
+
+    /**
+     * The default maximum number of lines kept.
+     **/
+    public static final int MAXLINES = 10000;
+
+    TextAreaOutputStream theOutput = new TextAreaOutputStream();
+
+    /** The maximum number of lines kept, 0 if unlimited. **/
+    int maxlines = MAXLINES;
 
     /** 
      * Constructs a new JStreamedTextArea.
@@ -81,9 +109,53 @@ public class JStreamedTextArea extends JTextArea {
     public void setEditable(boolean dummy){}
 
     /** 
-     * Clears the TextArea.
+     * Clears the TextArea, including the text written to the
+     * OutputStream which is not appended yet. To be called on the
+     * event dispatch thread.
+     **/
+    public void clear() {
+	theOutput.discard();
+	setText("");
+    }
+
+    /**
+     * Appends the text written to the OutputStream to the document
+     * now, e.g. before the text is read. To be called on the event
+     * dispatch thread.
+     **/
+    public void flush() { theOutput.appendPending(); }
+
+    /**
+     * Returns the maximum number of lines kept.
+     * @return the maximum number of lines, 0 if unlimited
      **/
-    public void clear() { setText(""); }
+    public int getMaximumLines() { return maxlines; }
+
+    /**
+     * Sets the maximum number of lines kept; when the text grows
+     * beyond it, the oldest lines are removed. The default is {@link
+     * #MAXLINES}.
+     * @param maxlines the maximum number of lines, 0 for no limit
+     **/
+    public void setMaximumLines(int maxlines) {
+	if (maxlines < 0)
+	    throw new IllegalArgumentException("maxlines < 0");
+	this.maxlines = maxlines;
+	trim();
+    }
+
+    /**
+     * Removes the oldest lines beyond the maximum number of lines.
+     **/
+    void trim() {
+	int excess = getLineCount() - maxlines;
+	if (maxlines == 0 || excess <= 0)
+	    return;
+	try {
+	    replaceRange(null, 0, getLineStartOffset(excess));
+	}
+	catch (BadLocationException ble){}// excess < getLineCount()
+    }
    
     /** 
      * Returns the associated OutputStream of this JStreamedTextArea.
@@ -95,20 +167,29 @@ public class JStreamedTextArea extends JTextArea {
 
     /**
      * Class implementing an OutputStream behaviour of
-     * JStreamedTextArea.  
+     * JStreamedTextArea. The bytes are collected in a buffer, which a
+     * Timer appends to the document.
      **/
-    class TextAreaOutputStream extends OutputStream {
+    class TextAreaOutputStream extends OutputStream 
+	implements ActionListener {
+
+	/** The bytes written but not appended yet. **/
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+	/** Fires once, FLUSHDELAY ms after the first pending write. **/
+	private Timer timer = new Timer(FLUSHDELAY, this);
+
+	TextAreaOutputStream() {
+	    timer.setRepeats(false);
+	}
 
 	/** 
 	 * Overrides write(int) from OutputStream, which is mandatory.
 	 * @param b the byte to be written to the OutputStream
 	 **/
 	public synchronized void write(int b) {
-	    // recall that the int should really just be a byte
-	    b &= 0x000000FF;
-	    // must convert byte to a char in order to append it
-	    char c = (char) b;
-	    append(String.valueOf(c));
+	    pending.write(b);
+	    schedule();
 	}
 
 	/**
@@ -124,9 +205,68 @@ public class JStreamedTextArea extends JTextArea {
 	 * @param length the number of bytes to write.
 	 **/
 	public synchronized void write(byte[] b, int offset, int length) {
-	    
-	    append(new String(b, offset, length));
-	    
+	    pending.write(b, offset, length);
+	    schedule();
+	}
+
+	/**
+	 * Starts the timer unless a batch is already scheduled.
+	 **/
+	private void schedule() {
+	    if (pending.size() > 0 && !timer.isRunning())
+		timer.start();
+	}
+
+	/**
+	 * Takes the pending text, leaving the buffer empty.
+	 **/
+	private synchronized String take() {
+	    if (pending.size() == 0)
+		return null;
+	    String text = pending.toString();
+	    pending.reset();
+	    return text;
+	}
+
+	/**
+	 * Drops the pending text.
+	 **/
+	synchronized void discard() {
+	    pending.reset();
 	}
+
+	/**
+	 * Appends the pending text to the document, on the event
+	 * dispatch thread.
+	 **/
+	void appendPending() {
+	    String text = take();
+	    if (text == null)
+		return;
+	    if (maxlines > 0)
+		text = lastLines(text, maxlines);
+	    append(text);
+	    trim();
+	}
+
+	/**
+	 * Called by the timer on the event dispatch thread.
+	 **/
+	public void actionPerformed(ActionEvent e) {
+	    appendPending();
+	}
+    }
+
+    /**
+     * Returns the text without the lines which would be removed anyway
+     * when it is appended, i.e. at most its last <code>n</code> lines.
+     **/
+    static String lastLines(String text, int n) {
+	int i = text.length();
+	if (i > 0 && text.charAt(i-1) == '\n')
+	    i--;
+	while (n-- > 0 && i > 0)
+	    i = text.lastIndexOf('\n', i-1);
+	return i <= 0 ? text : text.substring(i+1);
     }
 }
@@ -0,0 +1,138 @@
+/* LabelTable.java
+   ---------------
+   2026 (c) agent
+*/
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * This class represents the symbol table of the labels of the angular
+ * momenta of a YutsisGraph and its {@link GenRecoupCoeff}: each label
+ * is given an int id, in order of appearance, the first time it is
+ * interned. The graph and the formula work on these ids; the labels
+ * are only needed again for output.
+ *
+ * <p> Labels are never removed, so an id keeps denoting the same
+ * label. This allows a LabelTable to be shared by a YutsisGraph and
+ * all its copies, also when these are reduced by different threads.
+ * @see YutsisGraph
+ * @see GenRecoupCoeff
+ * @author agent@local
+ **/
+public class LabelTable{
+
+    /**
+     * The labels, indexed by id. The array is replaced when it grows,
+     * the elements are never changed once set.
+     **/
+    private volatile String [] labels;
+
+    /**
+     * The number of labels in the table.
+     **/
+    private volatile int size = 0;
+
+    /**
+     * HashMap with the labels as keys and their ids as values.
+     **/
+    private HashMap ids;
+
+    /**
+     * Constructs an empty LabelTable for <code>capacity</code> expected
+     * labels.
+     * @param capacity the expected number of labels
+     **/
+    public LabelTable(int capacity){
+	labels = new String[Math.max(capacity,1)];
+	ids = new HashMap(capacity*4/3+1);
+    }
+
+    /**
+     * Returns the id of the given label, adding it to the table if it
+     * is not present yet.
+     * @param label the label to be interned
+     * @return the id of the label
+     **/
+    public synchronized int id(String label){
+	Integer id = (Integer) ids.get(label);
+	if (id != null)
+	    return id.intValue();
+	if (size == labels.length){
+	    String [] newlabels = new String[2*size];
+	    System.arraycopy(labels,0,newlabels,0,size);
+	    labels = newlabels;
+	}
+	labels[size] = label;
+	ids.put(label,Integer.valueOf(size));
+	return size++;
+    }
+
+    /**
+     * Returns the ids of the given labels, adding them to the table
+     * if needed.
+     * @param labels the labels to be interned
+     * @return the ids of the labels
+     **/
+    public int [] ids(String [] labels){
+	int [] ids = new int[labels.length];
+	for (int i = 0; i < labels.length; i++)
+	    ids[i] = id(labels[i]);
+	return ids;
+    }
+
+    /**
+     * Returns the id of the given label, without adding it.
+     * @param label the label to be looked up
+     * @return the id of the label, or -1 if it is not in the table
+     **/
+    public synchronized int lookup(String label){
+	Integer id = (Integer) ids.get(label);
+	return id == null ? -1 : id.intValue();
+    }
+
+    /**
+     * Returns the label with the given id.
+     * @param id the id of a label in the table
+     * @return the label
+     **/
+    public String label(int id){
+	if (id >= size)
+	    throw new IllegalArgumentException("No label with id " + id);
+	return labels[id];
+    }
+
+    /**
+     * Returns the labels with the given ids.
+     * @param ids the ids of labels in the table
+     * @return the labels
+     **/
+    public String [] labels(int [] ids){
+	String [] labels = new String[ids.length];
+	for (int i = 0; i < ids.length; i++)
+	    labels[i] = label(ids[i]);
+	return labels;
+    }
+
+    /**
+     * Returns an Iterator over the labels of the ids, given as
+     * Integers, returned by <code>ids</code>.
+     * @param ids an Iterator over Integer ids
+     * @return an Iterator over the corresponding labels
+     **/
+    public Iterator labels(final Iterator ids){
+	return new Iterator(){
+		public boolean hasNext(){ return ids.hasNext(); }
+		public Object next(){
+		    return label(((Integer) ids.next()).intValue());
+		}
+		public void remove(){ ids.remove(); }
+	    };
+    }
+
+    /**
+     * Returns the number of labels in this table; the ids are
+     * <code>0...size()-1</code>.
+     * @return the number of labels
+     **/
+    public int size(){ return size; }
+}
@@ -8,24 +8,23 @@
    B-9000 GENT Belgium
 */
 
-import java.util.ArrayList;
-import java.util.ListIterator;
-import java.util.HashSet;
 import java.util.NoSuchElementException;
 
 /** 
  * Class representing a path in a Graph as a sequence of connected
- * nodes.
+ * nodes. The nodes are stored in an int array of which only the
+ * first <code>size</code> elements are used.
  * @see NodeIterator
  * @author Dries.VanDyck@rug.ac.be
  **/
 public class Path{
-    ArrayList nodes;
+    int [] nodes;
+    int size;
   
     /** 
      * Creates a new empty Path.
      **/
-    public Path(){ nodes = new ArrayList();}
+    public Path(){ nodes = new int[4];}
   
     /** 
      * Creates a new path being the edge (<code>i</code>,<code>j</code>).
@@ -33,9 +32,8 @@ public class Path{
      * @param j second node of the Path
      **/
     public Path(int i,int j) {
-	nodes = new ArrayList();
-	nodes.add(new Integer(i));
-	nodes.add(new Integer(j));
+	nodes = new int [] {i,j};
+	size = 2;
     }
 
     /** 
@@ -44,24 +42,25 @@ public class Path{
      * @param apath the nodes of the Path as an array
      **/
     public Path(int [] apath){
-	nodes = new ArrayList(apath.length);
-	for (int i = 0; i < apath.length; i++)
-	    nodes.add(new Integer(apath[i]));
+	this(apath.clone(), apath.length);
     }
 
     /** 
-     * Wraps a new Path object around this vector.
-     * @param nodes the ArrayList around which a Path has to be wrapped
+     * Wraps a new Path object around the first <code>size</code>
+     * elements of this array.
+     * @param nodes the array around which a Path has to be wrapped
+     * @param size the number of nodes of the Path
      **/
-    protected Path(ArrayList nodes){
+    Path(int [] nodes, int size){
 	this.nodes = nodes;
+	this.size = size;
     }
     
     /** 
      * Returns the length of this Path (nr of edges).
      * @return the length of this Path
      **/
-    public int length(){ return nodes.size()-1;}
+    public int length(){ return size-1;}
 
     /** 
      * Returns the node at distance <code>d</code> from the startnode
@@ -70,30 +69,58 @@ public class Path{
      * @return the node at the specified distance from the startnode
      **/
     public int nodeAt(int d){ 
-	return ((Integer) nodes.get(d)).intValue();
+	if (d >= size)
+	    throw new IndexOutOfBoundsException("Index: "+d+", Size: "+size);
+	return nodes[d];
+    }
+
+    /** 
+     * Makes sure the node array can hold <code>capacity</code> nodes.
+     **/
+    private void ensureCapacity(int capacity){
+	if (capacity > nodes.length){
+	    int [] newnodes = new int[Math.max(capacity, 2*nodes.length)];
+	    System.arraycopy(nodes,0,newnodes,0,size);
+	    nodes = newnodes;
+	}
     }
 
     /** 
      * Adds node <code>node</code> to the end of this Path.
      * @param node the node to be added to the back
      **/
-    public void addBack(int node){ nodes.add(new Integer(node));}
+    public void addBack(int node){ 
+	ensureCapacity(size+1);
+	nodes[size++] = node;
+    }
 
     /** 
      * Adds node <code>node</code> to the end of this Path (O(length)).
      * @param node the node to be added to the front
      **/ 
-    public void addFront(int node) { nodes.add(0, new Integer(node));}
+    public void addFront(int node) { 
+	ensureCapacity(size+1);
+	System.arraycopy(nodes,0,nodes,1,size++);
+	nodes[0] = node;
+    }
 
     /** 
      * Removes the last node from this Path.
      **/
-    public void removeBack() { nodes.remove(nodes.size()-1);}
+    public void removeBack() { 
+	if (size == 0)
+	    throw new IndexOutOfBoundsException("Path is empty");
+	size--;
+    }
   
     /** 
      * Removes the first node from this Path (O(length)).
      **/
-    public void removeFront() {nodes.remove(0);}
+    public void removeFront() {
+	if (size == 0)
+	    throw new IndexOutOfBoundsException("Path is empty");
+	System.arraycopy(nodes,1,nodes,0,--size);
+    }
 
     /** 
      * Appends <code>p</code> to this path where appropriate.
@@ -101,39 +128,38 @@ public class Path{
      * @param p the Path to be appended
      **/
     public void append(Path p){
-	if (p.nodes.size() <= 1)
+	if (p.size <= 1)
 	    return;
-	else if (nodes.size() <= 1)
-	    nodes = (ArrayList) p.nodes.clone();
+	else if (size <= 1){
+	    nodes = p.nodes.clone();
+	    size = p.size;
+	}
 
-	if (nodes.get(nodes.size()-1).equals(p.nodes.get(0))){
-	    nodes.remove(nodes.size()-1);
-	    nodes.addAll(p.nodes);
+	if (nodes[size-1] == p.nodes[0]){
+	    ensureCapacity(size-1+p.size);
+	    System.arraycopy(p.nodes,0,nodes,size-1,p.size);
+	    size += p.size-1;
 	}
-	else if (nodes.get(nodes.size()-1).equals(p.nodes.get(p.nodes.size()-1))){
-	    nodes.remove(nodes.size()-1);
-	    ListIterator li = p.nodes.listIterator(p.nodes.size());
-	    while (li.hasPrevious()){
-		nodes.add(li.previous());
-	    }
+	else if (nodes[size-1] == p.nodes[p.size-1]){
+	    ensureCapacity(size-1+p.size);
+	    for (int k = p.size-1; k >= 0; k--)
+		nodes[size-1+p.size-1-k] = p.nodes[k];
+	    size += p.size-1;
 	}
-	else if (nodes.get(0).equals(p.nodes.get(p.nodes.size()-1))){
-	    ArrayList newnodes = (ArrayList) p.nodes.clone();
-	    newnodes.remove(p.nodes.size()-1);
-	    newnodes.addAll(nodes);
+	else if (nodes[0] == p.nodes[p.size-1]){
+	    int [] newnodes = new int[size+p.size-1];
+	    System.arraycopy(p.nodes,0,newnodes,0,p.size-1);
+	    System.arraycopy(nodes,0,newnodes,p.size-1,size);
 	    nodes = newnodes;
+	    size = newnodes.length;
 	}
-	else if (nodes.get(0).equals(p.nodes.get(0))){
-	    ArrayList newnodes = new ArrayList(nodes.size()+p.nodes.size());
-	    ListIterator li = p.nodes.listIterator(p.nodes.size());
-	    while (li.hasPrevious()){
-		newnodes.add(li.previous());
-	    }
-	    li = nodes.listIterator();li.next();
-	    while (li.hasNext()){
-		newnodes.add(li.next());
-	    }
+	else if (nodes[0] == p.nodes[0]){
+	    int [] newnodes = new int[size+p.size-1];
+	    for (int k = p.size-1; k >= 0; k--)
+		newnodes[p.size-1-k] = p.nodes[k];
+	    System.arraycopy(nodes,1,newnodes,p.size,size-1);
 	    nodes = newnodes;
+	    size = newnodes.length;
 	}
     }
 
@@ -145,7 +171,7 @@ public class Path{
      **/
     public Path concat(Path p){
 	Path pt;
-	if (this.nodes.get(0).equals(p.nodes.get(0))){
+	if (this.nodes[0] == p.nodes[0]){
 	    pt = (Path) p.clone();
 	    pt.append(this);
 	}
@@ -163,13 +189,9 @@ public class Path{
      * @return true if this Path is cyclic canonical, false otherwise
      **/
     public boolean isCanonical(){
-	ListIterator li = nodes.listIterator();
-	int firstnode = ((Integer) li.next()).intValue();
-	while (li.hasNext()){
-	    int node = ((Integer) li.next()).intValue();
-	    if (li.hasNext() && firstnode > node)
+	for (int k = 1; k < size-1; k++)
+	    if (nodes[0] > nodes[k])
 		return false;
-	}
 	return true;
     }
 
@@ -179,48 +201,85 @@ public class Path{
      * @return the nodes common to this and the specified Path
      **/
     public int [] intersection(Path p){
-	ArrayList intersection = new ArrayList(Math.min(length(),p.length()));
-	HashSet hs = new HashSet(nodes.size()*4/3);
-	ListIterator li = nodes.listIterator();    
-	while (li.hasNext())
-	    hs.add(li.next());
-	li = p.nodes.listIterator();
-	while (li.hasNext()){
-	    Integer node = (Integer) li.next();
-	    if (hs.remove(node))
-		intersection.add(node);
+	int [] intersection = new int[Math.min(size,p.size)];
+	int n = 0;
+	for (int k = 0; k < p.size; k++){
+	    int node = p.nodes[k];
+	    if (indexOf(node) >= 0 && !contains(intersection,n,node))
+		intersection[n++] = node;
 	}
-	li = intersection.listIterator();
-	int [] toreturn = new int[intersection.size()];
-	int index = 0;
-	while (li.hasNext())
-	    toreturn[index++] = ((Integer) li.next()).intValue();
+	int [] toreturn = new int[n];
+	System.arraycopy(intersection,0,toreturn,0,n);
 	return toreturn;
     }
+
+    /** 
+     * True if both paths have only their first node in common. 
+     * Unlike {@link #intersection} no objects are created: the nodes
+     * of this path are marked in <code>stamps</code> with the value
+     * <code>stamp</code>, which must differ from all values already
+     * in the array.
+     * @param p the path to be compared with this Path
+     * @param stamps array indexed by node, at least as big as the 
+     *               biggest node of both paths
+     * @param stamp the value used to mark the nodes of this Path
+     * @return true if the first node of this Path is the only node 
+     *         common to both paths
+     **/
+    public boolean onlyFirstNodeInCommon(Path p, int [] stamps, int stamp){
+	for (int k = 0; k < size; k++)
+	    stamps[nodes[k]] = stamp;
+	boolean first = false;
+	for (int k = 0; k < p.size; k++)
+	    if (stamps[p.nodes[k]] == stamp){
+		if (p.nodes[k] != nodes[0])
+		    return false;
+		first = true;
+	    }
+	return first;
+    }
+
+    /** 
+     * Returns the index of the first occurrence of <code>node</code>
+     * in this Path, -1 if the Path does not contain the node.
+     **/
+    int indexOf(int node){
+	for (int k = 0; k < size; k++)
+	    if (nodes[k] == node)
+		return k;
+	return -1;
+    }
+
+    private static boolean contains(int [] a, int n, int node){
+	for (int k = 0; k < n; k++)
+	    if (a[k] == node)
+		return true;
+	return false;
+    }
   
     /**
      * Class implementing the NodeIterator interface for
-     * iterating over the nodes of this Path.
+     * iterating over the first <code>size</code> elements of
+     * an array of nodes, such as the nodes of a Path or a Cycle.
      * @see NodeIterator
      **/
-    class PNodeIterator implements NodeIterator{
-	ListIterator li;
-      
-	/**
-	 * Constructs a new PNodeIterator.
-	 **/
-	PNodeIterator(){
-	    li = nodes.listIterator();
-	}
+    static class PNodeIterator implements NodeIterator{
+	int [] nodes;
+	int size;
+	int index;
       
 	/**
 	 * Constructs a new PNodeIterator starting the iteration
 	 * at the node at the specified index.
+	 * @param nodes the array of nodes
+	 * @param size the number of nodes in the array
 	 * @param index the index of the node where the iteration has
 	 *              to be started
 	 **/
-	PNodeIterator(int index){
-	    li = nodes.listIterator(index);
+	PNodeIterator(int [] nodes, int size, int index){
+	    this.nodes = nodes;
+	    this.size = size;
+	    this.index = index;
 	}
 
 	/**
@@ -229,17 +288,19 @@ public class Path{
 	 *         false otherwise.  
 	 **/
 	public boolean hasNext(){
-	    return li.hasNext();
+	    return index < size;
 	}
 
 	/**
 	 * Implementation of the NodeIterator interface.
-	 * @return the next node in this iteration or -1 if this is the
-	 *         last.  
+	 * @return the next node in this iteration
+	 * @throws NoSuchElementException if this is the last
 	 * @see NodeIterator
 	 **/
 	public int next(){
-	    return ((Integer) li.next()).intValue();
+	    if (index >= size)
+		throw new NoSuchElementException();
+	    return nodes[index++];
 	}
 
 	/**
@@ -249,17 +310,19 @@ public class Path{
 	 * @see NodeIterator
 	 **/
 	public boolean hasPrevious(){
-	    return li.hasPrevious();
+	    return index > 0;
 	}
       
 	/**
 	 * Implementation of the NodeIterator interface.
-	 * @return the previous node in this iteration or -1 if this is
-	 *         the first.
+	 * @return the previous node in this iteration
+	 * @throws NoSuchElementException if this is the first
 	 * @see NodeIterator 
 	 **/
 	public int previous(){
-	    return ((Integer) li.previous()).intValue();
+	    if (index <= 0)
+		throw new NoSuchElementException();
+	    return nodes[--index];
 	} 
     }  
 
@@ -272,7 +335,7 @@ public class Path{
      * @see NodeIterator#next
      **/
     public NodeIterator first(){
-	return new PNodeIterator();
+	return new PNodeIterator(nodes,size,0);
     }
 
     /** 
@@ -284,7 +347,7 @@ public class Path{
      * @see NodeIterator#previous
      **/
     public NodeIterator last(){
-	return new PNodeIterator(nodes.size());
+	return new PNodeIterator(nodes,size,size);
     }
 
     /** 
@@ -300,9 +363,9 @@ public class Path{
      * @see NodeIterator.next()
      **/
     public NodeIterator nodeIterator(int node){
-	int index = nodes.indexOf(new Integer(node));
+	int index = indexOf(node);
 	if (index >= 0)
-	    return new PNodeIterator(index);
+	    return new PNodeIterator(nodes,size,index);
 	else 
 	    throw new NoSuchElementException("Node " + node + " not in path.");
     }
@@ -312,7 +375,9 @@ public class Path{
      * @return a clone of this Path
      **/
     public Object clone(){
-	return new Path(new ArrayList(nodes));
+	int [] newnodes = new int[size];
+	System.arraycopy(nodes,0,newnodes,0,size);
+	return new Path(newnodes,size);
     }
 
     /** 
@@ -320,12 +385,12 @@ public class Path{
      * @return a String representation of this path.
      **/
     public String toString(){
+	if (size == 0)
+	    throw new NoSuchElementException();
 	StringBuffer sb = new StringBuffer();
-	ListIterator li = nodes.listIterator();
-	sb.append(li.next());
-	while (li.hasNext()){
-	    sb.append("->"+li.next());
-	}
+	sb.append(nodes[0]);
+	for (int k = 1; k < size; k++)
+	    sb.append("->"+nodes[k]);
 	return sb.toString();
     }
 }
@@ -8,9 +8,9 @@
    B-9000 GENT Belgium
 */
 import java.util.ArrayList;
-import java.util.ListIterator;
-import java.io.FileReader;
-import java.io.BufferedReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.io.IOException;
 import java.io.FileNotFoundException;
 
@@ -20,9 +20,11 @@ import javax.swing.event.ChangeEvent;
 /** 
  * Class that generates all shortest paths for a given
  * Graph. The shortest paths can be made cyclic canonical for the
- * purpose of cycle generation. The PathGenerator object is always
- * in sync with the Graph object by using the ChangeListener to 
- * regenerate Paths on demand.
+ * purpose of cycle generation. Only the distances are computed
+ * eagerly (by breadth first search); the paths between two nodes are
+ * enumerated from the shortest path DAG when they are asked for. The
+ * PathGenerator object is always in sync with the Graph object by
+ * using the ChangeListener to regenerate Paths on demand.
  * @see Graph 
  * @see Path 
  * @see Cycle
@@ -38,10 +40,31 @@ public class PathGenerator
     private Graph g;
     
     /** 
-     * Distancetable for this graph as a symmetric matrix with
-     * null on the diagonal.
+     * Distancetable for this graph: the distance between i and j 
+     * (i < j) at index j*(j-1)/2+i, the Graph's order if there is
+     * no path. Computed by a breadth first search from each node.
+     **/
+    private int [] distanceTable;
+
+    /** 
+     * Distancetable of the cyclic canonical shortest paths: the
+     * distance between i and j (i < j) at index j*(j-1)/2+i if there
+     * is a shortest path between i and j passing only nodes bigger 
+     * than i, the Graph's order otherwise.
+     **/
+    private int [] canonicalTable;
+
+    /** 
+     * Cache of the shortest paths generated so far, at the same
+     * index as in the distancetables. The paths of a pair are only
+     * enumerated when they are asked for.
      **/
     private ArrayList [] pathTable;
+
+    /** 
+     * True if only cyclic canonical paths are returned.
+     **/
+    private boolean canonical = false;
     
     /** 
      * Will be set true when the g notifies a change.
@@ -57,12 +80,14 @@ public class PathGenerator
     public PathGenerator(Graph g){ 
 	this.g = g;
 	g.addChangeListener(this);
+	distanceTable = new int[g.order()*(g.order()-1)/2];
+	canonicalTable = new int[g.order()*(g.order()-1)/2];
 	pathTable = new ArrayList[g.order()*(g.order()-1)/2];
     }
    
     /** 
      * Returns a vector of shortest paths between <code>i</code> and
-     * <code>j</code>
+     * <code>j</code>, starting at the lowest of both nodes.
      * @param i first node for which all Path's have to be returned 
      * @param j second node for which all Path's have to be returned 
      * @see Path
@@ -72,20 +97,12 @@ public class PathGenerator
 	    regenerate();
 	if (i > j)
 	    return paths(j,i);
-	else if (i == j)
+	else if (i == j || distance(i,j) == g.order())
 	    return null;
+	if (pathTable[j*(j-1)/2+i] == null)
+	    pathTable[j*(j-1)/2+i] = enumerate(i,j);
 	return pathTable[j*(j-1)/2+i];
     }
-
-    private void setPaths(int i, int j, ArrayList d){
-	if (i > j){
-	    setPaths(j,i,d);
-	    return;
-	}
-	else if (i == j)
-	    throw new IllegalArgumentException("i == j");
-	pathTable[j*(j-1)/2+i] = d;
-    }
     
     /** 
      * Returns the distance between the nodes <code>i</code> and
@@ -99,13 +116,15 @@ public class PathGenerator
     public int distance(int i, int j){
 	if (stateChanged)
 	    regenerate();
+	return distance(canonical ? canonicalTable : distanceTable, i, j);
+    }
+
+    private static int distance(int [] table, int i, int j){
 	if (i > j)
-	    return distance(j,i);
+	    return distance(table,j,i);
 	else if (i == j)
 	    return 0;
-	if (paths(i,j) == null)
-	    return g.order(); //infinity
-	return ((Path)paths(i,j).get(0)).length();
+	return table[j*(j-1)/2+i];
     }
 
     private void clearPaths(){
@@ -119,66 +138,153 @@ public class PathGenerator
     public void stateChanged(ChangeEvent e){ stateChanged = true; }
 
     /** 
-     * Regenerates all paths. To be used when the graph is altered.
+     * Regenerates all distances. To be used when the graph is altered.
      **/
     private void regenerate(){
+	ReductionMetrics m = ReductionMetrics.begin(ReductionMetrics.PATHS);
 	stateChanged = false;
+	canonical = false;
 	clearPaths();
-	floyd();
+	bfs();
+	ReductionMetrics.end(m);
     }
 
-    void floyd(){
-	NodeIterator ii = g.first();
-	while (ii.hasNext()){
-	    int i = ii.next();
-	    int [] nghb = g.neighbors(i);
-	    for (int k = 0; k < 3; k++)
-		if (i < nghb[k]){
-		    ArrayList paths = new ArrayList();
-		    paths.add(new Path(i,nghb[k]));
-		    setPaths(i,nghb[k],paths);
+    /** 
+     * Fills the distancetables by a breadth first search from each
+     * node r, once in the whole Graph and once restricted to the nodes
+     * bigger than r. A shortest path from r to j is cyclic canonical
+     * if both distances are equal. 
+     **/
+    void bfs(){
+	Arrays.fill(distanceTable,g.order());
+	Arrays.fill(canonicalTable,g.order());
+	int [] dist = new int[g.order()];
+	int [] queue = new int[g.order()];
+	NodeIterator ri = g.first();
+	while (ri.hasNext()){
+	    int r = ri.next();
+	    bfs(r,0,dist,queue);
+	    for (int j = r+1; j < g.order(); j++)
+		distanceTable[j*(j-1)/2+r] = dist[j];
+	    bfs(r,r+1,dist,queue);
+	    for (int j = r+1; j < g.order(); j++)
+		if (dist[j] == distanceTable[j*(j-1)/2+r])
+		    canonicalTable[j*(j-1)/2+r] = dist[j];
+	}
+    }
+
+    /** 
+     * Breadth first search from <code>r</code> passing only the nodes
+     * not smaller than <code>min</code>.
+     * @param dist will contain the distance from r to each node,
+     *             the Graph's order if unreachable
+     * @param queue buffer of at least order() nodes
+     **/
+    private void bfs(int r, int min, int [] dist, int [] queue){
+	Arrays.fill(dist,g.order());
+	dist[r] = 0;
+	queue[0] = r;
+	int head = 0, tail = 1;
+	int [] nghb = new int[3];
+	while (head < tail){
+	    int u = queue[head++];
+	    g.neighbors(u,nghb);
+	    for (int k = 0; k < nghb.length; k++)
+		if (nghb[k] >= min && dist[nghb[k]] == g.order()){
+		    dist[nghb[k]] = dist[u]+1;
+		    queue[tail++] = nghb[k];
 		}
 	}
-	NodeIterator ki = g.first();
-	while (ki.hasNext()){
-	    int k = ki.next();
-	    ii = g.first();
-	    while (ii.hasNext()){
-		int i = ii.next();
-		if (ii.hasNext()){
-		    NodeIterator ji = g.nodeIterator(i); 
-		    if (ji != null){
-			ji.next();//skip i
-			while (ji.hasNext()){// Always i < j
-			    int j = ji.next();
-			    if (i != k && k != j && distance(i,j) >= 
-				distance(i,k) + distance(k,j)){
-				ArrayList ikpaths = paths(i,k);
-				ArrayList kjpaths = paths(k,j);
-				ArrayList ijpaths;
-				if (distance(i,j) == distance(i,k) 
-				    + distance(k,j))
-				    ijpaths = paths(i,j);
-				else
-				    ijpaths = new ArrayList(ikpaths.size()
-							    *kjpaths.size());
-				for (int ik = 0; ik < ikpaths.size(); ik++)
-				    for (int kj = 0; kj < kjpaths.size(); kj++)
-					ijpaths.add(((Path) 
-						     ikpaths.get(ik))
-						    .concat((Path) kjpaths.
-							    get(kj)));
-				setPaths(i,j,ijpaths);
-			    }
-			}
-		    }
-		    else
-			System.err.println("ij == null !!");
+    }
+
+    /** 
+     * Enumerates the (cyclic canonical) shortest paths from i to j, 
+     * i < j, by walking back from j over the shortest path DAG rooted
+     * at i. The paths are ordered as they would be found by
+     * the Floyd-Warshall algorithm.
+     * @see #compare
+     **/
+    private ArrayList enumerate(int i, int j){
+	int [] table = canonical ? canonicalTable : distanceTable;
+	int length = distance(table,i,j);
+	ArrayList apaths = new ArrayList();
+	int [] apath = new int[length+1];
+	apath[0] = i;
+	apath[length] = j;
+	enumerate(table,apath,length,apaths);
+	Collections.sort(apaths, new Comparator(){
+		public int compare(Object o1, Object o2){
+		    return PathGenerator.compare((int []) o1,(int []) o2, 0,
+						 ((int []) o1).length-1);
 		}
+	    });
+	ArrayList paths = new ArrayList(apaths.size());
+	for (int k = 0; k < apaths.size(); k++){
+	    int [] nodes = (int []) apaths.get(k);
+	    paths.add(new Path(nodes,nodes.length));
+	}
+	return paths;
+    }
+
+    /** 
+     * Completes <code>apath</code> from index <code>d</code> (which
+     * is already filled) back to the start node, adding each complete
+     * path to <code>apaths</code>.
+     **/
+    private void enumerate(int [] table, int [] apath, int d, 
+			   ArrayList apaths){
+	if (d == 1){
+	    apaths.add(apath.clone());
+	    return;
+	}
+	int i = apath[0];
+	int [] nghb = g.neighbors(apath[d]);
+	for (int k = 0; k < nghb.length; k++){
+	    boolean multiple = false;
+	    for (int l = 0; l < k; l++)
+		if (nghb[l] == nghb[k])
+		    multiple = true;
+	    if (!multiple && nghb[k] != i && distance(table,i,nghb[k]) == d-1
+		&& (!canonical || nghb[k] > i)){
+		apath[d-1] = nghb[k];
+		enumerate(table,apath,d-1,apaths);
 	    }
 	}
     }
 
+    /** 
+     * Compares two shortest paths between the same nodes in the
+     * order of the Floyd-Warshall algorithm: the paths over the 
+     * lowest intermediate node come first, ties are broken by 
+     * comparing the subpath starting at the lowest endpoint, then 
+     * the other subpath, recursively.
+     * @param p first path as an array of nodes
+     * @param q second path as an array of nodes
+     * @param a index of the first node of the subpaths to compare
+     * @param b index of the last node of the subpaths to compare
+     **/
+    private static int compare(int [] p, int [] q, int a, int b){
+	if (b-a <= 1)
+	    return 0;
+	int m = a+1;
+	for (int k = a+2; k < b; k++)
+	    if (p[k] > p[m])
+		m = k;
+	int mq = a+1;
+	for (int k = a+2; k < b; k++)
+	    if (q[k] > q[mq])
+		mq = k;
+	if (p[m] != q[mq])
+	    return p[m] - q[mq];
+	int c;
+	if (p[a] < p[b]){
+	    c = compare(p,q,a,m);
+	    return c != 0 ? c : compare(p,q,m,b);
+	}
+	c = compare(p,q,m,b);
+	return c != 0 ? c : compare(p,q,a,m);
+    }
+
     /** 
      * Only the Path's wich passes nodes bigger than the start
      * node will remain. A combination of such two paths uniquely
@@ -190,17 +296,9 @@ public class PathGenerator
     public void makeCanonical(){
 	if (stateChanged)
 	    regenerate();
-	for (int i=0; i < pathTable.length; i++){
-	    if (pathTable[i] != null){
-		ListIterator li = pathTable[i].listIterator();
-		ArrayList paths = new ArrayList();
-		while (li.hasNext()){
-		    Path p = (Path) li.next();
-		    if (p.isCanonical())
-			paths.add(p);
-		}
-		pathTable[i] = paths.size() > 0 ? paths : null;
-	    }
+	if (!canonical){
+	    canonical = true;
+	    clearPaths();
 	}
     }
 
@@ -212,13 +310,11 @@ public class PathGenerator
     public int diameter(){
 	if (stateChanged)
 	    regenerate();
+	int [] table = canonical ? canonicalTable : distanceTable;
 	int diam = 0;
-	for (int i = 0; i < pathTable.length; i++)
-	    if (pathTable[i] != null){
-		int d = ((Path) pathTable[i].get(0)).length();
-		if (d > diam)
-		    diam = d;
-	    }
+	for (int i = 0; i < table.length; i++)
+	    if (table[i] < g.order() && table[i] > diam)
+		diam = table[i];
 	return diam;
     }
     
@@ -260,7 +356,7 @@ public class PathGenerator
      * @see YutsisGraph
      **/
     public static void main(String [] args) throws IOException{
-	String usage = new String("Usage: java PathGenerator <YutsisGraph>\n <YutsisGraph>:= \"<Bra|Ket>\" | <filename>\n <filename> must be in BRAKET of YTS format\n  (see documentation of Class YutsisGraph for more info)");
+	String usage = new String("Usage: java PathGenerator <YutsisGraph>\n <YutsisGraph>:= \"<Bra|Ket>\" | <filename>\n <filename> must be in BRAKET, YTS or EDGELIST format\n  (see documentation of Class YutsisGraph for more info)");
 	if (args.length != 1){
 	    System.err.println(usage);
 	    return;
@@ -269,15 +365,8 @@ public class PathGenerator
 	try {
 	    if (args[0].charAt(0) == '<')
 		y = new YutsisGraph(args[0]);
-	    else {
-		int format = AbstractYutsis.guessFileFormat(args[0]);
-		if (format == -1){
-		    System.err.println(usage);
-		    return;
-		}
-		y = new YutsisGraph(new BufferedReader(new 
-		    FileReader(args[0])), format);
-	    }
+	    else
+		y = YutsisGraph.read(args[0]);
 	}
 	catch (FileNotFoundException e){
 	    System.err.println("File " + args[0] + " not found.");
@@ -0,0 +1,300 @@
+/* ReductionBenchmark.java
+   -----------------------
+   2026 (c) agent
+*/
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.io.File;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.StringReader;
+import java.io.IOException;
+
+/**
+ * Program measuring the steps of the reduction pipeline on the
+ * bundled testcases and on random graphs of growing size: the
+ * construction of a {@link YutsisGraph} from its YTS or BRAKET text,
+ * the breadth first searches of the {@link PathGenerator}, the
+ * generation of the relevant cycles by the {@link CycleGenerator},
+ * the edge costs of the {@link EdgeCostHeuristic}, the choice of an
+ * interchange by the {@link CycleCountHeuristic} and the complete
+ * reduction by the {@link CycleCostAlgorithm}.
+ *
+ * <p> Each benchmark is run for a number of warmup iterations,
+ * followed by the measured iterations, each lasting about the same
+ * time. Only the benchmarked call is timed, not the preparation of
+ * its input. A line per benchmark and graph is printed with the mean
+ * time of a call over the measured iterations and its standard
+ * deviation between them, so runs before and after a change can be
+ * compared.
+ * @see IterationBenchmark
+ * @author agent@local
+ **/
+public class ReductionBenchmark{
+
+    /**
+     * A benchmarked call on a graph.
+     **/
+    static abstract class Benchmark{
+	String name;
+
+	Benchmark(String name){ this.name = name; }
+
+	/**
+	 * Prepares the next call, not timed.
+	 **/
+	void prepare(){}
+
+	/**
+	 * The timed call; the result is kept from being optimized away.
+	 **/
+	abstract Object call();
+    }
+
+    /**
+     * Result of the calls, kept from being optimized away.
+     **/
+    static int sink;
+
+    /**
+     * Returns the benchmarks for the graph with the given text, in
+     * the given format. Benchmarks that do not apply to the graph
+     * are left out.
+     **/
+    static ArrayList benchmarks(final String text, final int format){
+	ArrayList benchmarks = new ArrayList();
+	final YutsisGraph y = parse(text,format);
+	benchmarks.add(new Benchmark(format == AbstractYutsis.YTS ?
+				     "YutsisGraph.parseYTS" :
+				     "YutsisGraph.parseBRAKET"){
+		Object call(){ return parse(text,format); }
+	    });
+	final PathGenerator pg = new PathGenerator(y);
+	benchmarks.add(new Benchmark("PathGenerator.bfs"){
+		Object call(){
+		    pg.bfs();
+		    return pg;
+		}
+	    });
+	final CycleGenerator cg = new CycleGenerator(y);
+	cg.setIncremental(false);
+	benchmarks.add(new Benchmark("CycleGenerator.vismara"){
+		void prepare(){ cg.stateChanged(null); }
+		Object call(){ return cg.cycles(); }
+	    });
+	// the heuristics choose interchanges only when there are no
+	// bubbles nor triangles
+	final YutsisGraph reduced = new YutsisGraph(y);
+	reduced.setLogStream(null);
+	CycleCostAlgorithm.removeBubblesAndTriangles(reduced);
+	if (!reduced.triangularDelta()){
+	    final EdgeCostHeuristic ech = new EdgeCostHeuristic(reduced);
+	    benchmarks.add(new Benchmark("EdgeCostHeuristic.calculateEdgeCosts"){
+		    Object call(){
+			ech.calculateEdgeCosts();
+			return ech;
+		    }
+		});
+	    final CycleCountHeuristic cch = new CycleCountHeuristic(reduced);
+	    final int [] edge = new int[2];
+	    final int [] icnodes = new int[2];
+	    cch.bestCycle(edge, icnodes, new ArrayList());
+	    benchmarks.add(new Benchmark("CycleCountHeuristic.bestCycle"){
+		    Object call(){
+			return cch.bestCycle(edge, icnodes, new ArrayList());
+		    }
+		});
+	    benchmarks.add(new Benchmark("CycleCountHeuristic.effect"){
+		    Object call(){
+			return cch.effect(edge[0], edge[1],
+					  icnodes[0], icnodes[1]);
+		    }
+		});
+	}
+	benchmarks.add(new Benchmark("CycleCostAlgorithm.reduce"){
+		YutsisGraph copy;
+		CycleCostAlgorithm cca;
+		void prepare(){
+		    copy = new YutsisGraph(y);
+		    cca = new CycleCostAlgorithm(copy,
+						 new CycleCountHeuristic(copy));
+		    cca.setLogStream(null);
+		}
+		Object call(){
+		    cca.reduce();
+		    return copy.genRecoupCoeff();
+		}
+	    });
+	return benchmarks;
+    }
+
+    static YutsisGraph parse(String text, int format){
+	YutsisGraph y;
+	try {
+	    y = format == AbstractYutsis.BRAKET ? new YutsisGraph(text) :
+		new YutsisGraph(new BufferedReader(new StringReader(text)),
+				format);
+	}
+	catch (IOException e){ // not possible for a StringReader
+	    throw new RuntimeException(e.getMessage());
+	}
+	y.setLogStream(null);
+	return y;
+    }
+
+    /**
+     * Runs <code>b</code> for about <code>millis</code> ms and returns
+     * the mean time of a call in nanoseconds.
+     **/
+    static double iteration(Benchmark b, long millis){
+	long end = System.nanoTime() + millis*1000000;
+	long time = 0;
+	int calls = 0;
+	do {
+	    b.prepare();
+	    long start = System.nanoTime();
+	    Object result = b.call();
+	    time += System.nanoTime()-start;
+	    sink += System.identityHashCode(result);
+	    calls++;
+	} while (System.nanoTime() < end);
+	return (double) time/calls;
+    }
+
+    /**
+     * Runs <code>b</code> and prints its mean time of a call in
+     * microseconds and the standard deviation between the measured
+     * iterations.
+     **/
+    static void measure(Benchmark b, String graph, int nodes, int warmups,
+			int iterations, long millis){
+	for (int i = 0; i < warmups; i++)
+	    iteration(b,millis);
+	double sum = 0, sumsq = 0;
+	for (int i = 0; i < iterations; i++){
+	    double t = iteration(b,millis)/1000;
+	    sum += t;
+	    sumsq += t*t;
+	}
+	double mean = sum/iterations;
+	double sd = Math.sqrt(Math.max(0, sumsq/iterations - mean*mean));
+	System.out.println(b.name + "\t" + graph + "\t" + nodes + "\t"
+			   + Math.round(mean*10)/10.0 + "\t"
+			   + Math.round(sd*10)/10.0);
+    }
+
+    /**
+     * Runs the benchmarks with <code>filter</code> in their name on
+     * the given graph.
+     **/
+    static void run(String graph, String text, int format, String filter,
+		    int warmups, int iterations, long millis){
+	int nodes = parse(text,format).order();
+	for (Iterator i = benchmarks(text,format).iterator(); i.hasNext();){
+	    Benchmark b = (Benchmark) i.next();
+	    if (b.name.indexOf(filter) != -1)
+		measure(b, graph, nodes, warmups, iterations, millis);
+	}
+    }
+
+    static String read(String filename) throws IOException{
+	BufferedReader in = new BufferedReader(new FileReader(filename));
+	StringBuffer text = new StringBuffer();
+	try {
+	    String line;
+	    while ((line = in.readLine()) != null)
+		text.append(line).append('\n');
+	}
+	finally {
+	    in.close();
+	}
+	return text.toString().trim();
+    }
+
+    /**
+     * Runs the benchmarks. When ran with illegal arguments it prints
+     * a "usage" to System.err.
+     **/
+    public static void main(String [] args) throws IOException{
+	String usage = "Usage: java ReductionBenchmark [-options] [<file|dir> ...]"
+	    + "\n Benchmarks the reduction of the given BRAKET and YTS files"
+	    + "\n (default: the directory testcases) and of random graphs."
+	    + "\nOptions:"
+	    + "\n -s<n>,<n>,...: momenta of the random graphs (default: 10,20,40,80)"
+	    + "\n -b<name>: only run the benchmarks with <name> in their name"
+	    + "\n -w<n>: number of warmup iterations (default: 3)"
+	    + "\n -i<n>: number of measured iterations (default: 5)"
+	    + "\n -t<ms>: time of an iteration (default: 200)";
+	int [] sizes = {10, 20, 40, 80};
+	String filter = "";
+	int warmups = 3;
+	int iterations = 5;
+	long millis = 200;
+	ArrayList files = new ArrayList();
+	try {
+	    for (int i = 0; i < args.length; i++)
+		if (args[i].startsWith("-s")){
+		    StringTokenizer st = new StringTokenizer
+			(args[i].substring(2), ",");
+		    sizes = new int[st.countTokens()];
+		    for (int k = 0; k < sizes.length; k++)
+			if ((sizes[k] = Integer.parseInt(st.nextToken())) < 2)
+			    throw new IllegalArgumentException();
+		}
+		else if (args[i].startsWith("-b"))
+		    filter = args[i].substring(2);
+		else if (args[i].startsWith("-w"))
+		    warmups = Integer.parseInt(args[i].substring(2));
+		else if (args[i].startsWith("-i"))
+		    iterations = Integer.parseInt(args[i].substring(2));
+		else if (args[i].startsWith("-t"))
+		    millis = Long.parseLong(args[i].substring(2));
+		else if (args[i].startsWith("-"))
+		    throw new IllegalArgumentException();
+		else
+		    files.add(args[i]);
+	}
+	catch (IllegalArgumentException e){
+	    System.err.println(usage);
+	    return;
+	}
+	if (warmups < 0 || iterations < 1 || millis < 1){
+	    System.err.println(usage);
+	    return;
+	}
+	if (files.size() == 0)
+	    files.add("testcases");
+	ArrayList graphs = new ArrayList();
+	for (Iterator i = files.iterator(); i.hasNext();){
+	    File f = new File((String) i.next());
+	    if (f.isDirectory()){
+		File [] list = f.listFiles();
+		Arrays.sort(list);
+		for (int k = 0; k < list.length; k++)
+		    graphs.add(list[k].getPath());
+	    }
+	    else
+		graphs.add(f.getPath());
+	}
+	System.out.println("benchmark\tgraph\tnodes\tmean(us)\tsd(us)");
+	for (Iterator i = graphs.iterator(); i.hasNext();){
+	    String graph = (String) i.next();
+	    int format = AbstractYutsis.guessFileFormat(graph);
+	    if (format != AbstractYutsis.BRAKET && format != AbstractYutsis.YTS)
+		System.err.println("Skipped " + graph
+				   + ": not in BRAKET or YTS format");
+	    else
+		run(graph, read(graph), format, filter, warmups, iterations,
+		    millis);
+	}
+	for (int i = 0; i < sizes.length; i++)
+	    run("random" + sizes[i],
+		IterationBenchmark.randomBraket(sizes[i], new Random(sizes[i])),
+		AbstractYutsis.BRAKET, filter, warmups, iterations, millis);
+	if (sink == 42)
+	    System.out.print("");
+    }
+}
@@ -0,0 +1,275 @@
+/* ReductionCache.java
+   -------------------
+   2026 (c) agent
+*/
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * This class represents a persistent cache of reductions, stored in a
+ * directory with a file per graph. A reduction is stored under the
+ * {@link YutsisGraph#canonicalForm canonical form} of the graph as
+ * the sequence of operations performed by a {@link
+ * CycleCostAlgorithm}, with the nodes numbered canonically. A graph
+ * isomorphic to a stored one, e.g. a BRAKET differing only in its
+ * labels, is then reduced by repeating these operations on its own
+ * nodes instead of searching them again.
+ *
+ * <p> The reductions of different heuristics are kept apart by the
+ * variant given to the cache, which is part of the key. The files
+ * are named after the SHA-256 hash of the key; they also contain the
+ * key itself, such that hash collisions are detected. A cache can
+ * be shared by several threads and processes.
+ * @see CycleCostAlgorithm#operations
+ * @author agent@local
+ **/
+public class ReductionCache{
+
+    /**
+     * The directory containing the cache files.
+     **/
+    File dir;
+
+    /**
+     * Identifies the heuristic (and its settings) of the reductions.
+     **/
+    String variant;
+
+    AtomicInteger hits = new AtomicInteger();
+    AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Constructs a ReductionCache in the given directory, which is
+     * created if needed, for the reductions of the given variant.
+     * @param dir the directory of the cache files
+     * @param variant the heuristic used, e.g. "CycleCount.CYCLE_COUNT"
+     * @throws IOException if the directory can not be created
+     **/
+    public ReductionCache(File dir, String variant) throws IOException{
+	if (!dir.isDirectory() && !dir.mkdirs())
+	    throw new IOException("Can not create directory " + dir);
+	this.dir = dir;
+	this.variant = variant;
+    }
+
+    /**
+     * Reduces the YutsisGraph of the given CycleCostAlgorithm: when
+     * an isomorphic graph is found in the cache its operations are
+     * performed, otherwise the graph is reduced by the algorithm and
+     * its operations are stored.
+     * @param cca the CycleCostAlgorithm reducing a YutsisGraph
+     * @return true if the reduction was found in the cache
+     * @throws IOException if the cache can not be read or written
+     **/
+    public boolean reduce(CycleCostAlgorithm cca) throws IOException{
+	YutsisGraph y = (YutsisGraph) cca.problem();
+	int [] canonical = new int[y.order()];
+	int [] code = y.canonicalForm(canonical);
+	if (code == null){ // not a proper Yutsis graph, not cached
+	    misses.incrementAndGet();
+	    cca.reduce();
+	    return false;
+	}
+	String key = key(code);
+	int [] node = new int[y.order()];
+	int nodes = 0;
+	for (int i = 0; i < canonical.length; i++)
+	    if (canonical[i] != -1){
+		node[canonical[i]] = i;
+		nodes++;
+	    }
+	ArrayList operations = lookup(key, nodes);
+	if (operations != null){
+	    hits.incrementAndGet();
+	    for (Iterator i = operations.iterator(); i.hasNext();)
+		cca.perform(relabel((int []) i.next(), node));
+	    if (!y.triangularDelta()) // the stored reduction is incomplete
+		cca.reduce();
+	    return true;
+	}
+	misses.incrementAndGet();
+	cca.reduce();
+	if (!cca.isCancelled())
+	    store(key, cca.operations(), canonical);
+	return false;
+    }
+
+    /**
+     * Returns the operation with its nodes replaced by
+     * <code>node[n]</code>.
+     **/
+    static int [] relabel(int [] operation, int [] node){
+	int [] relabeled = operation.clone();
+	for (int i = 1; i < relabeled.length; i++)
+	    relabeled[i] = node[relabeled[i]];
+	return relabeled;
+    }
+
+    /**
+     * Returns the key of a graph with the given canonical form.
+     **/
+    String key(int [] code){
+	StringBuffer key = new StringBuffer(variant).append('\n');
+	for (int i = 0; i < code.length; i++)
+	    key.append(i == 0 ? "" : " ").append(code[i]);
+	return key.toString();
+    }
+
+    /**
+     * Returns the file in which the reduction with the given key is
+     * stored.
+     **/
+    File file(String key){
+	try {
+	    byte [] hash = MessageDigest.getInstance("SHA-256")
+		.digest(key.getBytes("UTF-8"));
+	    StringBuffer name = new StringBuffer();
+	    for (int i = 0; i < hash.length; i++)
+		name.append(Integer.toHexString(0x100 | (hash[i] & 0xff))
+			    .substring(1));
+	    return new File(dir, name.append(".red").toString());
+	}
+	catch (NoSuchAlgorithmException e){ // required by the JVM spec
+	    throw new RuntimeException(e.getMessage());
+	}
+	catch (java.io.UnsupportedEncodingException e){ // idem
+	    throw new RuntimeException(e.getMessage());
+	}
+    }
+
+    /**
+     * Returns the operations stored with the given key, numbered
+     * canonically, or null if there are none. A file which is not a
+     * valid list of operations on the given number of nodes, e.g. a
+     * truncated one, is ignored.
+     **/
+    ArrayList lookup(String key, int nodes) throws IOException{
+	BufferedReader in;
+	try {
+	    in = new BufferedReader(new FileReader(file(key)));
+	}
+	catch (FileNotFoundException e){
+	    return null;
+	}
+	try {
+	    // the key takes two lines: the variant and the code
+	    String line1 = in.readLine();
+	    String line2 = in.readLine();
+	    if (line2 == null || !key.equals(line1 + "\n" + line2))
+		return null;
+	    ArrayList operations = new ArrayList();
+	    String line;
+	    while ((line = in.readLine()) != null){
+		StringTokenizer st = new StringTokenizer(line);
+		int [] operation = new int[st.countTokens()];
+		for (int i = 0; i < operation.length; i++)
+		    operation[i] = Integer.parseInt(st.nextToken());
+		if (!isValid(operation, nodes))
+		    return null;
+		operations.add(operation);
+	    }
+	    return operations;
+	}
+	catch (NumberFormatException e){
+	    return null;
+	}
+	finally {
+	    in.close();
+	}
+    }
+
+    /**
+     * True if the operation has a known code, the right length and
+     * distinct nodes from 0 up to <code>nodes</code> (not included).
+     **/
+    static boolean isValid(int [] operation, int nodes){
+	if (operation.length == 0)
+	    return false;
+	switch (operation[0]){
+	case CycleCostAlgorithm.BUBBLE:
+	    if (operation.length != 3)
+		return false;
+	    break;
+	case CycleCostAlgorithm.TRIANGLE:
+	    if (operation.length != 4)
+		return false;
+	    break;
+	case CycleCostAlgorithm.INTERCHANGE:
+	    if (operation.length != 5)
+		return false;
+	    break;
+	default:
+	    return false;
+	}
+	for (int i = 1; i < operation.length; i++){
+	    if (operation[i] < 0 || operation[i] >= nodes)
+		return false;
+	    for (int j = 1; j < i; j++)
+		if (operation[j] == operation[i])
+		    return false;
+	}
+	return true;
+    }
+
+    /**
+     * Stores the operations under the given key, numbering the nodes
+     * canonically. The file is written under a temporary name and
+     * renamed, such that readers never see a partial file.
+     **/
+    void store(String key, ArrayList operations, int [] canonical)
+	throws IOException{
+	File file = file(key);
+	File tmp = File.createTempFile("red", ".tmp", dir);
+	PrintStream out = new PrintStream(new BufferedOutputStream(new
+	    FileOutputStream(tmp)));
+	out.println(key);
+	for (Iterator i = operations.iterator(); i.hasNext();){
+	    int [] operation = relabel((int []) i.next(), canonical);
+	    StringBuffer line = new StringBuffer();
+	    for (int k = 0; k < operation.length; k++)
+		line.append(k == 0 ? "" : " ").append(operation[k]);
+	    out.println(line);
+	}
+	out.close();
+	if (out.checkError() || !tmp.renameTo(file)){
+	    tmp.delete();
+	    if (!file.exists())
+		throw new IOException("Can not write " + file);
+	}
+    }
+
+    /**
+     * Returns the number of reductions found in the cache.
+     * @return the number of hits
+     **/
+    public int hits(){ return hits.get(); }
+
+    /**
+     * Returns the number of reductions not found in the cache.
+     * @return the number of misses
+     **/
+    public int misses(){ return misses.get(); }
+
+    /**
+     * Returns the hit/miss statistics of this cache.
+     * @return a String representation of the statistics
+     **/
+    public String toString(){
+	int h = hits(), m = misses();
+	return "Reduction cache " + dir + ": " + h + " hits, " + m
+	    + " misses" + (h+m == 0 ? "" : " (" + (100*h/(h+m)) + "% hits)");
+    }
+}
@@ -0,0 +1,388 @@
+/* ReductionMetrics.java
+   ---------------------
+   2026 (c) agent
+*/
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import java.io.PrintStream;
+
+/**
+ * This class records the time spent per step of a reduction by a
+ * {@link CycleCostAlgorithm} in each of its phases: the generation of
+ * the shortest paths, the generation of the relevant cycles, the
+ * calculation of the edge costs, the scoring of the candidate
+ * interchanges, the rest of the choice made by the heuristic, the
+ * graph operation and the update of the formula. Per step it also
+ * records the number of candidate interchanges scored, the number of
+ * relevant cycles per length when they were regenerated and, if the
+ * JVM supports it, the number of bytes allocated.
+ *
+ * <p> The phases measure exclusive wall time: when a phase starts
+ * within another one (e.g. the cycles are regenerated while the
+ * heuristic chooses an operation), the time of the inner phase is
+ * not counted in the outer one. The time of a step outside all
+ * phases (finding bubbles and triangles, logging) is reported as
+ * "other".
+ *
+ * <p> The classes involved find the metrics of the step in progress
+ * in their thread with {@link #begin}; when no step is recorded by
+ * any thread this costs a single volatile read.
+ * @see CycleCostAlgorithm#setMetricsEnabled
+ * @author agent@local
+ **/
+public class ReductionMetrics{
+
+    /** Phase regenerating the shortest paths (PathGenerator). **/
+    public static final int PATHS = 0;
+    /** Phase regenerating the relevant cycles (CycleGenerator). **/
+    public static final int CYCLES = 1;
+    /** Phase calculating the edge costs (EdgeCostHeuristic). **/
+    public static final int EDGE_COSTS = 2;
+    /** Phase scoring the candidate interchanges (CycleCountHeuristic). **/
+    public static final int SCORING = 3;
+    /** The rest of the choice of an interchange by the heuristic. **/
+    public static final int HEURISTIC = 4;
+    /** Phase performing the graph operation, formula excluded. **/
+    public static final int GRAPH = 5;
+    /** Phase updating the formula (GenRecoupCoeff). **/
+    public static final int FORMULA = 6;
+
+    /** The names of the phases, used in the output. **/
+    public static final String [] PHASES = {"paths", "cycles", "edgecosts",
+					    "scoring", "heuristic", "graph",
+					    "formula"};
+
+    /** The metrics recording a step in the current thread. **/
+    private static final ThreadLocal current = new ThreadLocal();
+
+    /** The number of steps being recorded, in all threads. **/
+    private static final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * The metrics of a step.
+     **/
+    static class Step{
+	String operation;
+	int nodes;
+	long start;
+	long total;
+	long [] time = new long[PHASES.length];
+	int candidates = 0;
+	/** The relevant cycles per length, null if not regenerated. **/
+	int [] cycles = null;
+	long allocated = -1;
+    }
+
+    /** The recorded steps. **/
+    ArrayList steps = new ArrayList();
+
+    /** The step in progress, null if none. **/
+    Step step = null;
+
+    /** The phases in progress, the innermost last. **/
+    int [] stack = new int[PHASES.length];
+    int depth = 0;
+    /** Time of the last start or end of a phase. **/
+    long last;
+
+    /** Null if the allocated bytes cannot be measured. **/
+    com.sun.management.ThreadMXBean threads = null;
+
+    /**
+     * Constructs a new, empty ReductionMetrics object.
+     **/
+    public ReductionMetrics(){
+	ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	if (bean instanceof com.sun.management.ThreadMXBean){
+	    threads = (com.sun.management.ThreadMXBean) bean;
+	    if (!threads.isThreadAllocatedMemorySupported()
+		|| !threads.isThreadAllocatedMemoryEnabled())
+		threads = null;
+	}
+    }
+
+    /**
+     * Returns the metrics recording a step in the current thread, or
+     * null if none.
+     **/
+    static ReductionMetrics current(){
+	return active.get() == 0 ? null : (ReductionMetrics) current.get();
+    }
+
+    /**
+     * Starts the given phase in the step recorded in the current
+     * thread, if any.
+     * @param phase the phase to be started
+     * @return the metrics to be passed to {@link #end}, or null
+     **/
+    static ReductionMetrics begin(int phase){
+	ReductionMetrics m = current();
+	if (m != null)
+	    m.enter(phase);
+	return m;
+    }
+
+    /**
+     * Ends the innermost phase started by {@link #begin}.
+     * @param m the metrics returned by begin
+     **/
+    static void end(ReductionMetrics m){
+	if (m != null)
+	    m.exit();
+    }
+
+    /**
+     * Starts recording a step in the current thread, unless a step is
+     * already in progress.
+     **/
+    void beginStep(){
+	if (step != null)
+	    return;
+	step = new Step();
+	current.set(this);
+	active.incrementAndGet();
+	if (threads != null)
+	    step.allocated =
+		threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	depth = 0;
+	last = step.start = System.nanoTime();
+    }
+
+    /**
+     * Ends the step in progress. When no operation was performed
+     * (<code>operation</code> is null), the step goes on.
+     * @param operation the operation performed
+     * @param nodes the number of nodes left
+     **/
+    void endStep(String operation, int nodes){
+	if (step == null || operation == null)
+	    return;
+	step.total = System.nanoTime()-step.start;
+	if (threads != null)
+	    step.allocated = threads.getThreadAllocatedBytes
+		(Thread.currentThread().getId()) - step.allocated;
+	step.operation = operation;
+	step.nodes = nodes;
+	steps.add(step);
+	step = null;
+	current.remove();
+	active.decrementAndGet();
+    }
+
+    /**
+     * Drops the step in progress, if any, e.g. when its operation threw
+     * an exception. Does nothing after {@link #endStep}.
+     **/
+    void abortStep(){
+	if (step == null)
+	    return;
+	step = null;
+	current.remove();
+	active.decrementAndGet();
+    }
+
+    void enter(int phase){
+	long now = System.nanoTime();
+	if (depth > 0)
+	    step.time[stack[depth-1]] += now-last;
+	if (depth == stack.length){
+	    int [] newstack = new int[2*depth];
+	    System.arraycopy(stack,0,newstack,0,depth);
+	    stack = newstack;
+	}
+	stack[depth++] = phase;
+	last = now;
+    }
+
+    void exit(){
+	long now = System.nanoTime();
+	step.time[stack[--depth]] += now-last;
+	last = now;
+    }
+
+    /**
+     * Adds <code>n</code> to the number of candidate interchanges
+     * scored in the step in progress.
+     **/
+    void addCandidates(int n){ step.candidates += n; }
+
+    /**
+     * Records the number of relevant cycles per length in the step in
+     * progress.
+     * @param cycles the relevant cycles, those of length l at index l-3
+     **/
+    void cycles(ArrayList [] cycles){
+	step.cycles = new int[cycles.length+3];
+	for (int i = 0; i < cycles.length; i++)
+	    step.cycles[i+3] = cycles[i] == null ? 0 : cycles[i].size();
+    }
+
+    /**
+     * Returns the number of recorded steps.
+     * @return the number of steps
+     **/
+    public int steps(){ return steps.size(); }
+
+    private Step step(int i){ return (Step) steps.get(i); }
+
+    /**
+     * Returns the operation performed in step <code>i</code>:
+     * "bubble", "triangle" or "interchange".
+     * @param i the index of the step
+     * @return the operation of the step
+     **/
+    public String operation(int i){ return step(i).operation; }
+
+    /**
+     * Returns the number of nodes left after step <code>i</code>.
+     * @param i the index of the step
+     * @return the number of nodes left
+     **/
+    public int nodes(int i){ return step(i).nodes; }
+
+    /**
+     * Returns the wall time of step <code>i</code> in nanoseconds.
+     * @param i the index of the step
+     * @return the time of the step in ns
+     **/
+    public long time(int i){ return step(i).total; }
+
+    /**
+     * Returns the exclusive wall time spent in the given phase during
+     * step <code>i</code> in nanoseconds.
+     * @param i the index of the step
+     * @param phase the phase, e.g. {@link #CYCLES}
+     * @return the time of the phase in ns
+     **/
+    public long time(int i, int phase){ return step(i).time[phase]; }
+
+    /**
+     * Returns the wall time of step <code>i</code> outside all phases
+     * in nanoseconds.
+     * @param i the index of the step
+     * @return the time outside the phases in ns
+     **/
+    public long otherTime(int i){
+	long other = step(i).total;
+	for (int p = 0; p < PHASES.length; p++)
+	    other -= step(i).time[p];
+	return other;
+    }
+
+    /**
+     * Returns the total time spent in the given phase over all steps
+     * in nanoseconds.
+     * @param phase the phase, e.g. {@link #CYCLES}
+     * @return the total time of the phase in ns
+     **/
+    public long totalTime(int phase){
+	long total = 0;
+	for (int i = 0; i < steps.size(); i++)
+	    total += step(i).time[phase];
+	return total;
+    }
+
+    /**
+     * Returns the number of candidate interchanges scored in step
+     * <code>i</code>.
+     * @param i the index of the step
+     * @return the number of candidates scored
+     **/
+    public int candidates(int i){ return step(i).candidates; }
+
+    /**
+     * Returns the number of relevant cycles per length, at index l for
+     * length l, as regenerated during step <code>i</code>.
+     * @param i the index of the step
+     * @return the number of cycles per length, or null if the relevant
+     *         cycles were not regenerated in this step
+     **/
+    public int [] cycles(int i){ return step(i).cycles; }
+
+    /**
+     * Returns the number of bytes allocated by the thread performing
+     * step <code>i</code>.
+     * @param i the index of the step
+     * @return the allocated bytes or -1 if not supported by the JVM
+     **/
+    public long allocatedBytes(int i){ return step(i).allocated; }
+
+    /**
+     * Writes the metrics in CSV format: a header line followed by a
+     * line per step. The relevant cycles are given as space separated
+     * "length:count" pairs.
+     * @param out the PrintStream to write to
+     **/
+    public void writeCSV(PrintStream out){
+	StringBuffer line = new StringBuffer("step,operation,nodes,total_ns");
+	for (int p = 0; p < PHASES.length; p++)
+	    line.append(',').append(PHASES[p]).append("_ns");
+	line.append(",other_ns,candidates,allocated_bytes,cycles");
+	out.println(line);
+	for (int i = 0; i < steps.size(); i++){
+	    line.setLength(0);
+	    line.append(i+1).append(',').append(operation(i)).append(',')
+		.append(nodes(i)).append(',').append(time(i));
+	    for (int p = 0; p < PHASES.length; p++)
+		line.append(',').append(time(i,p));
+	    line.append(',').append(otherTime(i)).append(',')
+		.append(candidates(i)).append(',').append(allocatedBytes(i))
+		.append(',');
+	    int [] cycles = cycles(i);
+	    String separator = "";
+	    for (int l = 0; cycles != null && l < cycles.length; l++)
+		if (cycles[l] > 0){
+		    line.append(separator).append(l).append(':')
+			.append(cycles[l]);
+		    separator = " ";
+		}
+	    out.println(line);
+	}
+    }
+
+    /**
+     * Writes the metrics in JSON format: an object with the array
+     * "steps" and the total time per phase "totals_ns".
+     * @param out the PrintStream to write to
+     **/
+    public void writeJSON(PrintStream out){
+	StringBuffer json = new StringBuffer("{\"steps\":[");
+	for (int i = 0; i < steps.size(); i++){
+	    if (i > 0)
+		json.append(',');
+	    json.append("\n {\"step\":").append(i+1)
+		.append(",\"operation\":\"").append(operation(i))
+		.append("\",\"nodes\":").append(nodes(i))
+		.append(",\"total_ns\":").append(time(i))
+		.append(",\"phases_ns\":{");
+	    for (int p = 0; p < PHASES.length; p++)
+		json.append('"').append(PHASES[p]).append("\":")
+		    .append(time(i,p)).append(',');
+	    json.append("\"other\":").append(otherTime(i))
+		.append("},\"candidates\":").append(candidates(i))
+		.append(",\"allocated_bytes\":").append(allocatedBytes(i));
+	    int [] cycles = cycles(i);
+	    if (cycles != null){
+		json.append(",\"cycles\":{");
+		String separator = "";
+		for (int l = 0; l < cycles.length; l++)
+		    if (cycles[l] > 0){
+			json.append(separator).append('"').append(l)
+			    .append("\":").append(cycles[l]);
+			separator = ",";
+		    }
+		json.append('}');
+	    }
+	    json.append('}');
+	}
+	json.append("\n],\"totals_ns\":{");
+	for (int p = 0; p < PHASES.length; p++)
+	    json.append(p == 0 ? "" : ",").append('"').append(PHASES[p])
+		.append("\":").append(totalTime(p));
+	json.append("}}");
+	out.println(json);
+    }
+}
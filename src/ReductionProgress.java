@@ -0,0 +1,68 @@
+/* ReductionProgress.java
+   ----------------------
+   2026 (c) agent
+*/
+
+/**
+ * The state of a reduction by a {@link CycleCostAlgorithm} after one
+ * of its steps, reported to its progress listeners as the source of a
+ * ChangeEvent. A ReductionProgress does not change, so it can be
+ * handed to another thread, e.g. the event dispatch thread of a GUI.
+ * @see CycleCostAlgorithm#addProgressListener
+ * @author agent@local
+ **/
+public class ReductionProgress{
+
+    private final int step;
+    private final int nodes;
+    private final int girth;
+    private final long elapsed;
+
+    /**
+     * Constructs the progress after a step.
+     * @param step the number of steps performed by the reduction
+     * @param nodes the number of nodes left
+     * @param girth the girth of the graph on which the step was
+     *              performed (2 for a bubble)
+     * @param elapsed the time since the start of the reduction in ms
+     **/
+    public ReductionProgress(int step, int nodes, int girth, long elapsed){
+	this.step = step;
+	this.nodes = nodes;
+	this.girth = girth;
+	this.elapsed = elapsed;
+    }
+
+    /**
+     * Returns the number of steps performed by the reduction.
+     * @return the number of the last step, counting from 1
+     **/
+    public int step(){ return step; }
+
+    /**
+     * Returns the number of nodes left after the step.
+     * @return the number of nodes which are not removed
+     **/
+    public int nodes(){ return nodes; }
+
+    /**
+     * Returns the girth of the graph on which the step was performed:
+     * 2 if a bubble was removed, 3 if a triangle was removed.
+     * @return the girth before the step
+     **/
+    public int girth(){ return girth; }
+
+    /**
+     * Returns the time elapsed since the start of the reduction.
+     * @return the time in ms
+     **/
+    public long elapsed(){ return elapsed; }
+
+    /**
+     * Returns e.g. "step 12: 40 nodes, girth 5, 1.2 s".
+     **/
+    public String toString(){
+	return "step " + step + ": " + nodes + " nodes, girth " + girth
+	    + ", " + elapsed/100/10.0 + " s";
+    }
+}
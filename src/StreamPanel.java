@@ -91,6 +91,7 @@ public class StreamPanel extends JPanel implements ActionListener{
 		try {
 		    PrintWriter pw = new 
 			PrintWriter(new BufferedWriter(new FileWriter(f)));
+		    sta.flush();
 		    pw.print(sta.getText());
 		    pw.close();
 		}
@@ -0,0 +1,303 @@
+/* Wigner6j.java
+   -------------
+   2026 (c) agent
+*/
+import java.math.BigInteger;
+
+/**
+ * This class computes Wigner 6j-symbols with the Racah formula and
+ * remembers the values computed last. The arguments are always twice
+ * the angular momenta.
+ *
+ * <p> In double precision the terms of the Racah formula are computed
+ * from a table of the logarithms of the factorials, such that a term
+ * costs the same for all arguments and no factorial overflows. The
+ * exact values are computed with {@link ExactValue}, the square roots
+ * of the triangle coefficients from the prime factorizations of the
+ * factorials. When the alternating terms cancel out too much for
+ * double precision, which happens for large arguments, the double
+ * value is also computed exactly.
+ *
+ * <p> A 6j-symbol is invariant under the permutations of its columns
+ * and under the interchange of the upper and lower arguments in two of
+ * its columns. The values are cached under, and computed from, the
+ * smallest of the 24 equivalent argument lists, such that a value does
+ * not depend on the order of the computations. The cache is a fixed
+ * size table of which each entry holds the value of one key: a new
+ * value overwrites the old one. The entries are immutable, so the
+ * table can be read and written by several threads without locking;
+ * a race only costs a recomputation.
+ * @see GR6jSymbol
+ * @see GREvaluator
+ * @author agent@local
+ **/
+public class Wigner6j{
+
+    /**
+     * The number of bits of an argument in a key; larger arguments
+     * are not cached.
+     **/
+    static final int BITS = 10;
+
+    /** The largest argument which is cached. **/
+    static final int MAXCACHED = (1 << BITS) - 1;
+
+    /** The relative precision of a double. **/
+    static final double EPSILON = Math.ulp(1.0);
+
+    /**
+     * The relative error allowed in double precision; when the terms
+     * of the Racah formula cancel out more, the value is computed
+     * exactly.
+     **/
+    static final double PRECISION = 1e-10;
+
+    /** The number of entries of each cache. **/
+    static final int CACHESIZE = 1 << 16;
+
+    /**
+     * A cached value with its key.
+     **/
+    static final class Entry{
+	final long key;
+	final double value;
+	final ExactValue exact;
+	Entry(long key, double value, ExactValue exact){
+	    this.key = key;
+	    this.value = value;
+	    this.exact = exact;
+	}
+    }
+
+    /** The cache of the double values. **/
+    private static final Entry [] cache = new Entry[CACHESIZE];
+
+    /** The cache of the exact values. **/
+    private static final Entry [] exactcache = new Entry[CACHESIZE];
+
+    /**
+     * <code>logfactorials[n] = ln(n!)</code>. The array is replaced
+     * when it grows.
+     **/
+    private static volatile double [] logfactorials = new double[1];
+
+    private Wigner6j(){}
+
+    /**
+     * Returns the 6j-symbol <code>{a, b, c; d, e, f}</code> in double
+     * precision.
+     * @return the value of the 6j-symbol, 0 if a triad violates the
+     *         triangle conditions
+     **/
+    public static double value(int a, int b, int c, int d, int e, int f){
+	if (!triads(a,b,c,d,e,f))
+	    return 0;
+	long key = key(a,b,c,d,e,f);
+	if (key == -1)
+	    return compute(a,b,c,d,e,f);
+	int index = index(key);
+	Entry entry = cache[index];
+	if (entry != null && entry.key == key)
+	    return entry.value;
+	double value = compute(key);
+	cache[index] = new Entry(key, value, null);
+	return value;
+    }
+
+    /**
+     * Returns the exact 6j-symbol <code>{a, b, c; d, e, f}</code>.
+     * @return the value of the 6j-symbol, 0 if a triad violates the
+     *         triangle conditions
+     **/
+    public static ExactValue exactValue(int a, int b, int c,
+					int d, int e, int f){
+	if (!triads(a,b,c,d,e,f))
+	    return ExactValue.ZERO;
+	long key = key(a,b,c,d,e,f);
+	if (key == -1)
+	    return computeExact(a,b,c,d,e,f);
+	int index = index(key);
+	Entry entry = exactcache[index];
+	if (entry != null && entry.key == key)
+	    return entry.exact;
+	ExactValue value = computeExact(a,b,c,d,e,f);
+	exactcache[index] = new Entry(key, 0, value);
+	return value;
+    }
+
+    /**
+     * True if <code>a, b, c</code> satisfy the triangle conditions and
+     * have an integer sum.
+     * @return true if <code>a, b, c</code> is a triad
+     **/
+    public static boolean triad(int a, int b, int c){
+	return ((a+b+c) & 1) == 0 && c <= a+b && c >= Math.abs(a-b);
+    }
+
+    private static boolean triads(int a, int b, int c, int d, int e, int f){
+	return triad(a,b,c) && triad(a,e,f) && triad(d,b,f) && triad(d,e,c);
+    }
+
+    /**
+     * Returns the key of the 6j-symbol: of the four ways to flip two
+     * columns (or none), the one with the smallest columns sorted
+     * ascendingly, each column packed as upper and lower argument.
+     * Returns -1 if an argument is too large to be cached.
+     **/
+    static long key(int a, int b, int c, int d, int e, int f){
+	if ((a|b|c|d|e|f) > MAXCACHED)
+	    return -1;
+	long key = Long.MAX_VALUE;
+	key = Math.min(key, columns(a,d, b,e, c,f));
+	key = Math.min(key, columns(d,a, e,b, c,f));
+	key = Math.min(key, columns(d,a, b,e, f,c));
+	key = Math.min(key, columns(a,d, e,b, f,c));
+	return key;
+    }
+
+    /**
+     * Returns the packed columns <code>(u1,l1), (u2,l2), (u3,l3)</code>
+     * in ascending order.
+     **/
+    private static long columns(int u1, int l1, int u2, int l2,
+				int u3, int l3){
+	long c1 = (u1 << BITS) | l1, c2 = (u2 << BITS) | l2,
+	    c3 = (u3 << BITS) | l3, t;
+	if (c1 > c2){ t = c1; c1 = c2; c2 = t; }
+	if (c2 > c3){ t = c2; c2 = c3; c3 = t; }
+	if (c1 > c2){ t = c1; c1 = c2; c2 = t; }
+	return (c1 << 4*BITS) | (c2 << 2*BITS) | c3;
+    }
+
+    /**
+     * Computes the 6j-symbol from its key, such that all equivalent
+     * argument lists get the same value, independent of which of them
+     * was cached first.
+     **/
+    private static double compute(long key){
+	int mask = (1 << 2*BITS) - 1, arg = (1 << BITS) - 1;
+	int c1 = (int) (key >>> 4*BITS) & mask;
+	int c2 = (int) (key >>> 2*BITS) & mask;
+	int c3 = (int) key & mask;
+	return compute(c1 >>> BITS, c2 >>> BITS, c3 >>> BITS,
+		       c1 & arg, c2 & arg, c3 & arg);
+    }
+
+    private static int index(long key){
+	long h = key * 0x9E3779B97F4A7C15L;
+	return (int) (h >>> 32) & (CACHESIZE-1);
+    }
+
+    /**
+     * Returns <code>ln(n!)</code>.
+     **/
+    static double logFactorial(int n){
+	double [] lf = logfactorials;
+	if (n >= lf.length)
+	    lf = growLogFactorials(n);
+	return lf[n];
+    }
+
+    private static synchronized double [] growLogFactorials(int n){
+	double [] lf = logfactorials;
+	if (n < lf.length)
+	    return lf;
+	double [] newlf = new double[Math.max(n+1, 2*lf.length)];
+	System.arraycopy(lf,0,newlf,0,lf.length);
+	for (int k = lf.length; k < newlf.length; k++)
+	    newlf[k] = newlf[k-1] + Math.log(k);
+	logfactorials = newlf;
+	return newlf;
+    }
+
+    /**
+     * Computes the 6j-symbol of valid triads in double precision. The
+     * terms are scaled by the largest one before they are summed.
+     **/
+    private static double compute(int a, int b, int c, int d, int e, int f){
+	int a1 = (a+b+c)/2, a2 = (a+e+f)/2, a3 = (d+b+f)/2, a4 = (d+e+c)/2;
+	int b1 = (a+b+d+e)/2, b2 = (b+c+e+f)/2, b3 = (c+a+f+d)/2;
+	int tmin = Math.max(Math.max(a1,a2), Math.max(a3,a4));
+	int tmax = Math.min(b1, Math.min(b2,b3));
+	logFactorial(tmax+1);
+	double [] lf = logfactorials;
+	double [] logterm = new double[tmax-tmin+1];
+	double max = Double.NEGATIVE_INFINITY;
+	for (int t = tmin; t <= tmax; t++){
+	    double l = lf[t+1] - lf[t-a1] - lf[t-a2] - lf[t-a3] - lf[t-a4]
+		- lf[b1-t] - lf[b2-t] - lf[b3-t];
+	    logterm[t-tmin] = l;
+	    max = Math.max(max, l);
+	}
+	double sum = 0;
+	for (int t = tmin; t <= tmax; t++)
+	    sum += ((t & 1) == 0 ? 1 : -1) * Math.exp(logterm[t-tmin] - max);
+	// the rounding error of the terms, relative to the largest one
+	double error = (tmax-tmin+1) * (Math.abs(max)+1) * EPSILON;
+	if (Math.abs(sum) < error/PRECISION)
+	    return computeExact(a,b,c,d,e,f).doubleValue();
+	double logdelta = logDelta(lf,a,b,c) + logDelta(lf,a,e,f)
+	    + logDelta(lf,d,b,f) + logDelta(lf,d,e,c);
+	return sum * Math.exp(max + logdelta/2);
+    }
+
+    /**
+     * Returns the logarithm of the square of the triangle coefficient
+     * of the triad <code>a, b, c</code>.
+     **/
+    private static double logDelta(double [] lf, int a, int b, int c){
+	return lf[(a+b-c)/2] + lf[(a-b+c)/2] + lf[(b+c-a)/2]
+	    - lf[(a+b+c)/2+1];
+    }
+
+    /**
+     * Computes the exact 6j-symbol of valid triads.
+     **/
+    private static ExactValue computeExact(int a, int b, int c,
+					   int d, int e, int f){
+	int a1 = (a+b+c)/2, a2 = (a+e+f)/2, a3 = (d+b+f)/2, a4 = (d+e+c)/2;
+	int b1 = (a+b+d+e)/2, b2 = (b+c+e+f)/2, b3 = (c+a+f+d)/2;
+	int tmin = Math.max(Math.max(a1,a2), Math.max(a3,a4));
+	int tmax = Math.min(b1, Math.min(b2,b3));
+	BigInteger num = BigInteger.ZERO;
+	BigInteger den = BigInteger.ONE;
+	for (int t = tmin; t <= tmax; t++){
+	    BigInteger tnum = ExactValue.factorial(t+1);
+	    BigInteger tden = ExactValue.factorial(t-a1)
+		.multiply(ExactValue.factorial(t-a2))
+		.multiply(ExactValue.factorial(t-a3))
+		.multiply(ExactValue.factorial(t-a4))
+		.multiply(ExactValue.factorial(b1-t))
+		.multiply(ExactValue.factorial(b2-t))
+		.multiply(ExactValue.factorial(b3-t));
+	    if ((t & 1) != 0)
+		tnum = tnum.negate();
+	    num = num.multiply(tden).add(tnum.multiply(den));
+	    den = den.multiply(tden);
+	    BigInteger gcd = num.gcd(den);
+	    num = num.divide(gcd);
+	    den = den.divide(gcd);
+	}
+	if (num.signum() == 0)
+	    return ExactValue.ZERO;
+	// the product of the triangle coefficients squared
+	int [] exps = new int[ExactValue.nrOfPrimes(tmax+1)];
+	exactDelta(exps,a,b,c);
+	exactDelta(exps,a,e,f);
+	exactDelta(exps,d,b,f);
+	exactDelta(exps,d,e,c);
+	return ExactValue.valueOf(num,den)
+	    .multiply(ExactValue.sqrtOfPrimePowers(exps));
+    }
+
+    /**
+     * Adds the exponents of the primes in the square of the triangle
+     * coefficient of the triad <code>a, b, c</code>.
+     **/
+    private static void exactDelta(int [] exps, int a, int b, int c){
+	ExactValue.addFactorial(exps, (a+b-c)/2, 1);
+	ExactValue.addFactorial(exps, (a-b+c)/2, 1);
+	ExactValue.addFactorial(exps, (b+c-a)/2, 1);
+	ExactValue.addFactorial(exps, (a+b+c)/2+1, -1);
+    }
+}
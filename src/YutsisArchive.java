@@ -0,0 +1,557 @@
+/* YutsisArchive.java
+   ------------------
+   2026 (c) agent
+*/
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A binary file holding many Yutsis graphs, which is memory-mapped
+ * and read without parsing text. The graphs can be built as {@link
+ * YutsisGraph}s, or viewed (order, labels of the nodes, braket)
+ * without building them. A YutsisArchive is written with a {@link
+ * YutsisArchive.Writer}.
+ *
+ * <p> The file consists of big-endian ints, longs and UTF-8 strings,
+ * a string being stored as its length in bytes followed by the bytes:
+ * <pre>
+ * header:     int 0x59474201 ("YGB" 1), int version,
+ *             int #graphs, int #labels,
+ *             long offset of the dictionary, long offset of the index
+ * graph:      int order n (the number of nodes of each tree),
+ *             int #labels k, int [k] dictionary ids of the labels,
+ *             int [6n] label of the slots 3*node+i (0 &lt;= i &lt; 3), as
+ *                     an index in the labels of the graph,
+ *             byte [(2n+7)/8] bitset of the nodes with sign +,
+ *             byte [(6n+7)/8] bitset of the slots of which the node
+ *                     is the head of the edge,
+ *             string braket
+ * dictionary: string [#labels] the labels of all graphs
+ * index:      per graph: long offset of the graph, string name
+ * </pre>
+ * The nodes are those of the original graph: the bra nodes followed
+ * by the ket nodes, each in post-order, with the coupling in slot 2.
+ * Only unreduced graphs can be stored, each under a different name.
+ *
+ * <p> The views and {@link #graph} only use absolute reads of the
+ * mapped buffer, such that several threads can read the same
+ * YutsisArchive.
+ * @see AbstractYutsis#ARCHIVE
+ * @see YutsisGraph
+ * @author agent@local
+ **/
+public class YutsisArchive{
+
+    /** The first int of a YutsisArchive: "YGB" followed by byte 1. **/
+    public static final int MAGIC = 0x59474201;
+
+    /** The version of the format written. **/
+    public static final int VERSION = 1;
+
+    /** The length of the header in bytes. **/
+    static final int HEADER = 32;
+
+    private File file;
+    private ByteBuffer buffer;
+    private long [] offsets;
+    private String [] names;
+    /** The offset of each label of the dictionary. **/
+    private int [] labelOffsets;
+    /** The labels of the dictionary decoded so far. **/
+    private String [] dictionary;
+
+    /**
+     * Maps the file and reads its index.
+     * @param file the YutsisArchive
+     * @throws IOException if an I/O error occurs or the file is not a
+     *         YutsisArchive
+     **/
+    public YutsisArchive(File file) throws IOException{
+	this.file = file;
+	FileInputStream in = new FileInputStream(file);
+	try {
+	    FileChannel channel = in.getChannel();
+	    if (channel.size() > Integer.MAX_VALUE)
+		throw new IOException(file + ": archive too large to be mapped");
+	    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				 channel.size());
+	}
+	finally {
+	    in.close(); // the mapping stays valid
+	}
+	try {
+	    if (buffer.getInt(0) != MAGIC)
+		throw new IOException(file + ": not a YutsisArchive");
+	    if (buffer.getInt(4) != VERSION)
+		throw new IOException(file + ": unsupported version "
+				      + buffer.getInt(4));
+	    int size = buffer.getInt(8);
+	    dictionary = new String[buffer.getInt(12)];
+	    labelOffsets = new int[dictionary.length];
+	    int offset = position(buffer.getLong(16));
+	    for (int i = 0; i < labelOffsets.length; i++){
+		labelOffsets[i] = offset;
+		offset += 4 + buffer.getInt(offset);
+	    }
+	    offsets = new long[size];
+	    names = new String[size];
+	    offset = position(buffer.getLong(24));
+	    for (int i = 0; i < size; i++){
+		offsets[i] = buffer.getLong(offset);
+		names[i] = string(offset+8);
+		offset += 12 + buffer.getInt(offset+8);
+	    }
+	}
+	catch (IndexOutOfBoundsException e){
+	    throw new IOException(file + ": corrupt YutsisArchive");
+	}
+    }
+
+    /**
+     * True if the file starts like a YutsisArchive.
+     * @param file the file to be checked
+     * @return true if the file starts with the bytes of {@link #MAGIC}
+     * @throws IOException if an I/O error occurs
+     **/
+    public static boolean isArchive(File file) throws IOException{
+	if (!file.isFile() || file.length() < HEADER)
+	    return false;
+	DataInputStream in = new DataInputStream(new FileInputStream(file));
+	try {
+	    return in.readInt() == MAGIC;
+	}
+	finally {
+	    in.close();
+	}
+    }
+
+    private int position(long offset) throws IOException{
+	if (offset < HEADER || offset > buffer.limit())
+	    throw new IOException("offset out of range: " + offset);
+	return (int) offset;
+    }
+
+    /**
+     * Returns the UTF-8 string stored at <code>offset</code>.
+     **/
+    private String string(int offset){
+	byte [] bytes = new byte[buffer.getInt(offset)];
+	ByteBuffer view = buffer.duplicate();
+	view.position(offset+4);
+	view.get(bytes);
+	try {
+	    return new String(bytes, "UTF-8");
+	}
+	catch (UnsupportedEncodingException e){ // UTF-8 is always supported
+	    throw new RuntimeException(e.getMessage());
+	}
+    }
+
+    /**
+     * Returns the label with the given dictionary id.
+     **/
+    private String label(int id){
+	String label = dictionary[id];
+	if (label == null) // a race only decodes it twice
+	    dictionary[id] = label = string(labelOffsets[id]);
+	return label;
+    }
+
+    /**
+     * Returns the file of this YutsisArchive.
+     * @return the mapped file
+     **/
+    public File file(){ return file; }
+
+    /**
+     * Returns the number of graphs.
+     * @return the number of graphs in this YutsisArchive
+     **/
+    public int size(){ return offsets.length; }
+
+    /**
+     * Returns the name of graph <code>i</code>.
+     * @param i the index of the graph
+     * @return the name under which the graph was stored
+     **/
+    public String name(int i){ return names[i]; }
+
+    /**
+     * Returns the number of nodes of each tree of graph
+     * <code>i</code>, i.e. the {@link YutsisGraph#cubicOrder}.
+     * @param i the index of the graph
+     * @return the cubic order of the graph
+     **/
+    public int cubicOrder(int i){ return buffer.getInt((int) offsets[i]); }
+
+    /**
+     * Returns the labels of graph <code>i</code>, in the order of their
+     * first slot.
+     **/
+    private String [] labels(int i){
+	int offset = (int) offsets[i] + 4;
+	String [] labels = new String[buffer.getInt(offset)];
+	for (int k = 0; k < labels.length; k++)
+	    labels[k] = label(buffer.getInt(offset + 4 + 4*k));
+	return labels;
+    }
+
+    /**
+     * Returns the offset of the slots of graph <code>i</code>.
+     **/
+    private int slots(int i){
+	int offset = (int) offsets[i] + 4;
+	return offset + 4 + 4*buffer.getInt(offset);
+    }
+
+    /**
+     * Returns the labels of the edges coupled in <code>node</code> of
+     * graph <code>i</code>, like {@link YutsisGraph#edgeLabels}.
+     * @param i the index of the graph
+     * @param node the node, <code>0 &lt;= node &lt; 2*cubicOrder(i)</code>
+     * @return the labels of the three edges of the node
+     **/
+    public String [] edgeLabels(int i, int node){
+	int order = cubicOrder(i);
+	if (node < 0 || node >= 2*order)
+	    throw new IndexOutOfBoundsException("node " + node);
+	int offset = (int) offsets[i] + 8;
+	int slots = slots(i) + 12*node;
+	String [] labels = new String[3];
+	for (int k = 0; k < 3; k++)
+	    labels[k] = label(buffer.getInt(offset + 4*buffer.getInt(slots+4*k)));
+	return labels;
+    }
+
+    /**
+     * Returns the braket of graph <code>i</code>.
+     * @param i the index of the graph
+     * @return the braket of the graph
+     **/
+    public String braket(int i){
+	int order = cubicOrder(i);
+	return string(slots(i) + 24*order + (2*order+7)/8 + (6*order+7)/8);
+    }
+
+    /**
+     * Builds graph <code>i</code>.
+     * @param i the index of the graph
+     * @return a new YutsisGraph
+     **/
+    public YutsisGraph graph(int i){
+	int order = cubicOrder(i);
+	int offset = slots(i);
+	int [] labelIds = new int[6*order];
+	ByteBuffer view = buffer.duplicate();
+	view.position(offset);
+	view.asIntBuffer().get(labelIds);
+	offset += 24*order;
+	BitSet nodeSign = bitSet(offset, 2*order);
+	offset += (2*order+7)/8;
+	BitSet heads = bitSet(offset, 6*order);
+	offset += (6*order+7)/8;
+	return new YutsisGraph(labels(i), order, labelIds, nodeSign, heads,
+			       string(offset));
+    }
+
+    private BitSet bitSet(int offset, int bits){
+	BitSet set = new BitSet(bits);
+	for (int k = 0; k < bits; k++)
+	    if ((buffer.get(offset + k/8) & (1 << k%8)) != 0)
+		set.set(k);
+	return set;
+    }
+
+    /**
+     * Writes graph <code>i</code> in YTS format.
+     * @param i the index of the graph
+     * @param out where the graph is written
+     * @throws IOException if an I/O error occurs
+     **/
+    public void writeYTS(int i, java.io.Writer out) throws IOException{
+	int order = cubicOrder(i);
+	out.write(order + "\n");
+	for (int node = 0; node < 2*order; node++){
+	    String [] labels = edgeLabels(i, node);
+	    out.write(labels[0] + " " + labels[1] + " " + labels[2] + "\n");
+	}
+    }
+
+    /**
+     * Writes a YutsisArchive: the graphs are written as they are
+     * added, the dictionary and the index when the Writer is closed.
+     **/
+    public static class Writer{
+	private File file;
+	private DataOutputStream out;
+	private long offset = HEADER;
+	/** label -> dictionary id (Integer) **/
+	private HashMap ids = new HashMap();
+	private ArrayList labels = new ArrayList();
+	private ArrayList offsets = new ArrayList();
+	private ArrayList names = new ArrayList();
+	/** The names added, to reject duplicates. **/
+	private HashSet nameset = new HashSet();
+
+	/**
+	 * Creates the file; the header is written by {@link #close}.
+	 * @param file the new YutsisArchive
+	 * @throws IOException if an I/O error occurs
+	 **/
+	public Writer(File file) throws IOException{
+	    this.file = file;
+	    out = new DataOutputStream(new BufferedOutputStream
+		(new FileOutputStream(file), 1 << 16));
+	    out.write(new byte[HEADER]);
+	}
+
+	/**
+	 * Appends a graph.
+	 * @param name the name of the graph, e.g. its filename
+	 * @param y the graph, on which no operation may have been
+	 *          performed
+	 * @throws IOException if an I/O error occurs
+	 * @throws IllegalArgumentException if the graph has been changed
+	 *         or a graph with the same name was added before
+	 **/
+	public void add(String name, YutsisGraph y) throws IOException{
+	    if (contains(name))
+		throw new IllegalArgumentException
+		    ("A graph named " + name + " is already stored");
+	    int order = y.cubicOrder();
+	    // the formula is rebuilt from the trees when the graph is read
+	    if (y.nrOfChanges() != 0 || y.braket() == null)
+		throw new IllegalArgumentException
+		    ("Only graphs as read can be archived, not changed ones: "
+		     + name);
+	    // the labels of the graph in the order of their first slot
+	    HashMap local = new HashMap();
+	    ArrayList graphlabels = new ArrayList();
+	    int [] slots = new int[6*order];
+	    byte [] signs = new byte[(2*order+7)/8];
+	    byte [] heads = new byte[(6*order+7)/8];
+	    for (int node = 0; node < 2*order; node++){
+		Edge [] edges = y.edges(node);
+		if (y.sign(node))
+		    signs[node/8] |= 1 << node%8;
+		for (int k = 0; k < 3; k++){
+		    int slot = 3*node+k;
+		    Integer id = (Integer) local.get(edges[k].label());
+		    if (id == null){
+			id = Integer.valueOf(graphlabels.size());
+			local.put(edges[k].label(), id);
+			graphlabels.add(edges[k].label());
+		    }
+		    slots[slot] = id.intValue();
+		    if (edges[k].head() == node)
+			heads[slot/8] |= 1 << slot%8;
+		}
+	    }
+	    offsets.add(Long.valueOf(offset));
+	    names.add(name);
+	    nameset.add(name);
+	    out.writeInt(order);
+	    out.writeInt(graphlabels.size());
+	    for (Iterator i = graphlabels.iterator(); i.hasNext();){
+		String label = (String) i.next();
+		Integer id = (Integer) ids.get(label);
+		if (id == null){
+		    id = Integer.valueOf(labels.size());
+		    ids.put(label, id);
+		    labels.add(label);
+		}
+		out.writeInt(id.intValue());
+	    }
+	    for (int k = 0; k < slots.length; k++)
+		out.writeInt(slots[k]);
+	    out.write(signs);
+	    out.write(heads);
+	    offset += 8 + 4*graphlabels.size() + 4*slots.length + signs.length
+		+ heads.length + writeString(y.braket());
+	}
+
+	/**
+	 * Returns true if a graph with the given name has been added.
+	 * @param name the name of a graph
+	 * @return true if the name is taken
+	 **/
+	public boolean contains(String name){ return nameset.contains(name); }
+
+	/**
+	 * Writes a string, returning the number of bytes written.
+	 **/
+	private int writeString(String s) throws IOException{
+	    byte [] bytes = s.getBytes("UTF-8");
+	    out.writeInt(bytes.length);
+	    out.write(bytes);
+	    return 4 + bytes.length;
+	}
+
+	/**
+	 * Writes the dictionary, the index and the header, and closes the
+	 * file.
+	 * @throws IOException if an I/O error occurs
+	 **/
+	public void close() throws IOException{
+	    long dictionaryOffset = offset;
+	    for (Iterator i = labels.iterator(); i.hasNext();)
+		offset += writeString((String) i.next());
+	    long indexOffset = offset;
+	    for (int i = 0; i < names.size(); i++){
+		out.writeLong(((Long) offsets.get(i)).longValue());
+		offset += 8 + writeString((String) names.get(i));
+	    }
+	    out.close();
+	    RandomAccessFile header = new RandomAccessFile(file, "rw");
+	    try {
+		header.writeInt(MAGIC);
+		header.writeInt(VERSION);
+		header.writeInt(names.size());
+		header.writeInt(labels.size());
+		header.writeLong(dictionaryOffset);
+		header.writeLong(indexOffset);
+	    }
+	    finally {
+		header.close();
+	    }
+	}
+    }
+
+    /**
+     * Returns the name of the file <code>name</code> without directory
+     * and extension.
+     **/
+    private static String baseName(String name){
+	name = new File(name).getName();
+	int dot = name.lastIndexOf('.');
+	return dot > 0 ? name.substring(0,dot) : name;
+    }
+
+    /**
+     * Converts between YutsisArchives and the text formats. When ran
+     * with illegal arguments it prints a "usage" to System.err.
+     **/
+    public static void main(String [] args) throws IOException{
+	String usage = "Usage: java YutsisArchive -c <archive> <file|dir|manifest> ..."
+	    + "\n       java YutsisArchive -x[y] <archive> <dir>"
+	    + "\n       java YutsisArchive -l <archive>"
+	    + "\nOptions:"
+	    + "\n            c: create the archive from the BRAKET, YTS and EDGELIST files,"
+	    + "\n               the files in the directories and the files listed in"
+	    + "\n               the manifests; a graph is named after its file"
+	    + "\n               without extension, unless that name is taken"
+	    + "\n            x: extract the graphs to <dir>/<name>.braket in BRAKET format"
+	    + "\n            y: extract in YTS format to <dir>/<name>.yts"
+	    + "\n            l: list the graphs: name, cubic order and braket";
+	char command = 0;
+	boolean yts = false;
+	if (args.length >= 2 && args[0].startsWith("-"))
+	    for (int k = 1; k < args[0].length(); k++)
+		switch (args[0].charAt(k)){
+		case 'c':
+		case 'x':
+		case 'l':
+		    command = args[0].charAt(k);
+		    break;
+		case 'y':
+		    yts = true;
+		    break;
+		default:
+		    command = 0;
+		    k = args[0].length();
+		}
+	if (command == 0 || (command == 'l' && args.length != 2)
+	    || (command == 'x' && args.length != 3)
+	    || (command == 'c' && args.length < 3)){
+	    System.err.println(usage);
+	    return;
+	}
+	if (command == 'c'){
+	    ArrayList files = new ArrayList();
+	    for (int i = 2; i < args.length; i++){
+		File f = new File(args[i]);
+		if (f.isFile() && !isManifest(f))
+		    files.add(args[i]);
+		else
+		    BatchReduction.addFiles(args[i], files);
+	    }
+	    Writer writer = new Writer(new File(args[1]));
+	    int stored = 0;
+	    try {
+		for (Iterator i = files.iterator(); i.hasNext();){
+		    String filename = (String) i.next();
+		    try {
+			YutsisGraph y = YutsisGraph.read(filename);
+			// e.g. f0.braket and f0.yts: keep the extension of
+			// the second one
+			String name = baseName(filename);
+			if (writer.contains(name))
+			    name = new File(filename).getName();
+			writer.add(name, y);
+			stored++;
+		    }
+		    catch (IllegalArgumentException e){
+			System.err.println("Skipped " + filename + ": "
+					   + e.getMessage());
+		    }
+		}
+	    }
+	    finally {
+		writer.close();
+	    }
+	    System.err.println(stored + " graphs stored in " + args[1]);
+	    return;
+	}
+	YutsisArchive archive = new YutsisArchive(new File(args[1]));
+	if (command == 'l'){
+	    for (int i = 0; i < archive.size(); i++)
+		System.out.println(archive.name(i) + "\t" + archive.cubicOrder(i)
+				   + "\t" + archive.braket(i));
+	    return;
+	}
+	File dir = new File(args[2]);
+	if (!dir.isDirectory() && !dir.mkdirs()){
+	    System.err.println("Cannot create directory " + dir);
+	    return;
+	}
+	for (int i = 0; i < archive.size(); i++){
+	    BufferedWriter out = new BufferedWriter(new FileWriter
+		(new File(dir, archive.name(i) + (yts ? ".yts" : ".braket"))));
+	    try {
+		if (yts)
+		    archive.writeYTS(i, out);
+		else
+		    out.write(archive.braket(i) + "\n");
+	    }
+	    finally {
+		out.close();
+	    }
+	}
+    }
+
+    /**
+     * True if the file is not a graph, and hence a manifest.
+     **/
+    private static boolean isManifest(File f) throws IOException{
+	int format = AbstractYutsis.guessFileFormat(f.getPath());
+	return format != AbstractYutsis.BRAKET && format != AbstractYutsis.YTS
+	    && format != AbstractYutsis.EDGELIST;
+    }
+}
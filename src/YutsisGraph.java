@@ -43,6 +43,32 @@
    - 2002/08/30 added code checking if y != null when needed
    - 2002/09/02 added code checking if y != TD/girth high enough when needed
    - 2002/09/26 added code to ouput graph in gml-format 
+   - 2026/10/16 replaced the Edge table by flat int arrays (adjacency,
+                label ids) and bitsets (edge directions, node signs); Edge
+                objects are only created as a view by the public methods
+                returning edges.
+   - 2026/10/16 added a doubly linked list of the nodes which are not
+                removed, such that iterating over the nodes costs O(1)
+                per node.
+   - 2026/10/16 added an undo log (mark, rollback, commit) such that
+                alternative reductions can be explored without cloning
+                the graph.
+   - 2026/10/16 added a canonical form respecting node signs and edge
+                directions.
+   - 2026/10/16 labels are interned in a LabelTable shared with the
+                GenRecoupCoeff and the copies of the graph; the formula
+                works on label ids.
+   - 2026/10/16 a BRAKET is parsed in a single pass from a Reader, without
+                recursion; the intermediate labels are inserted while
+                parsing.
+   - 2026/10/16 added a constructor from the tables stored in a
+                YutsisArchive and a method read which opens a file once
+                to guess its format and read the graph.
+   - 2026/10/16 added a counter of the changes made to the graph
+                (nrOfChanges), such that only untouched graphs are stored
+                in a YutsisArchive.
+   - 2026/10/16 graphs are read in EDGELIST format by splitting them into
+                a bra and a ket tree (see EdgeList).
    
    Bugs: 
    - 2001/13/12 Maybe better to drop adjTable...
@@ -58,21 +84,37 @@
    - 2002/05/27 removed bug from triangles
    - 2002/08/23 code in guessFileFormat probably better in abstract class
                 AbstractYutsis with eventually extra code to recognize EDGELIST
+   - 2026/10/16 the 6j of an interchange had the two interchanged edges
+                in each other's column, violating two of its triads, so
+                the formula evaluated to zero where it should not.
+   - 2026/10/16 open: some generated formulas are wrong, not only in
+                their overall sign. The relative phases of the terms of
+                a summation do not always match, so the terms partly
+                cancel where they should add up and the magnitude is
+                wrong too: for f4, 12 of 15 random assignments differ
+                from a direct Clebsch-Gordan computation (e.g. -0.2449
+                against 0.04899 from the formula). The interchange fix
+                above removed these errors for most inputs (f2: from 9
+                to 0 of 15). The phases of the reduction rules still
+                have to be checked term by term.
 */
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.ArrayList;
 import java.util.StringTokenizer;
 import java.util.NoSuchElementException;
 
 import java.io.PrintStream;
 import java.io.BufferedReader;
 import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileOutputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.IOException;
 import java.io.FileNotFoundException;
 
@@ -97,7 +139,8 @@ public class YutsisGraph extends AbstractYutsis{
     /*---------------- Field definitions ----------------*/
 
     /** 
-     * Braket notation of the original YutsisGraph.
+     * Braket notation of the original YutsisGraph; null until it is
+     * needed for a graph read in EDGELIST format.
      **/
     String braket;
 
@@ -112,21 +155,75 @@ public class YutsisGraph extends AbstractYutsis{
     private int n;
     
     /** 
-     * Array representing the signs of the nodes: <code>true</code> 
-     * means '+', false '-'.
+     * The signs of the nodes: a set bit means '+', a cleared bit '-'.
      **/
-    private boolean [] nodeSign;
+    private BitSet nodeSign;
     
     /** 
-     * Array with the edges of each node. Nodes sharing an edge also
-     * share an Edge Object!.
+     * The edges of each node are stored in three slots: slot
+     * <code>3*node+i</code> holds the i-th edge of the node. This
+     * array contains for each slot the node at the other side of 
+     * the edge, or -1 if the node is removed. Both endpoints of an
+     * edge have a slot for it with the same label id.
+     **/
+    private int [] adjacency;
+
+    /** 
+     * The label id of the edge in each slot.
+     * @see #labels
+     **/
+    private int [] labelIds;
+
+    /** 
+     * The directions of the edges: the bit of a slot is set if the
+     * node of the slot is the head of the edge.
+     **/
+    private BitSet heads;
+
+    /** 
+     * The edge labels, indexed by label id. The table is shared with
+     * the GenRecoupCoeff and the copies of this YutsisGraph.
+     **/
+    private LabelTable labels;
+
+    /** 
+     * The number of labels of the original graph: label ids from
+     * this number on denote new labels created by interchanges.
+     **/
+    private int originallabels;
+
+    /** 
+     * The number of changes made to this graph (or the graph it was
+     * copied from) since it was read; a rollback does not decrease it.
+     **/
+    private int changes;
+
+    /** 
+     * Arrays returned by {@link #neighbors(int)}, null if it has to be
+     * rebuilt. The arrays are never modified, but replaced when the
+     * neighbors of a node change.
+     **/
+    private int [][] nghbCache;
+
+    /** 
+     * For each node the next node which is not removed, order() if
+     * there is none. Kept up to date for the nodes which are not 
+     * removed; for a removed node it is the next node at the time of
+     * its removal, so following these links from any node always 
+     * leads to the next node which is not removed.
+     **/
+    private int [] nextNode;
+
+    /** 
+     * For each node the previous node which is not removed, -1 if 
+     * there is none. Same conventions as {@link #nextNode}.
      **/
-    private Edge[][] edges;
+    private int [] previousNode;
 
     /** 
-     * Set containing the new labels created by interchanges.
+     * The first and the last node which are not removed.
      **/
-    private HashSet newlabels;
+    private int firstNode, lastNode;
 
     /** 
      * Base string for new labels that arise during reduction. These
@@ -142,6 +239,47 @@ public class YutsisGraph extends AbstractYutsis{
     
     private GenRecoupCoeff genrecoupcoeff;
 
+    /** 
+     * The undo log, null if no mark is set: a stack containing for
+     * each change since the first mark the data needed to undo it,
+     * followed by one of the codes <code>UNDO_...</code>.
+     * @see #mark
+     * @see #rollback
+     **/
+    private int [] undolog;
+
+    /** 
+     * The number of entries used in the undo log.
+     **/
+    private int undosize;
+
+    /** 
+     * The last mark which is not released, -1 if there is none.
+     **/
+    private int topmark = -1;
+
+    /*
+     * Codes of the entries in the undo log, with the data preceding
+     * them on the stack.
+     */
+    /** (previous mark, grcmark): a mark; the GenRecoupCoeff is
+        rolled back to grcmark **/
+    private static final int UNDO_MARK = 0;
+    /** (node): the sign of node is flipped **/
+    private static final int UNDO_SIGN = 1;
+    /** (node, sign): the sign of node is set to sign **/
+    private static final int UNDO_SETSIGN = 2;
+    /** (slot, twin): the directions of both slots are flipped **/
+    private static final int UNDO_EDGE = 3;
+    /** (slot, other, labelid, head): the slot is filled again **/
+    private static final int UNDO_SLOT = 4;
+    /** (3 x adjacency node1, 3 x adjacency node2, node1, node2): the
+        nodes are put back **/
+    private static final int UNDO_REMOVE = 5;
+    /** (eslot, etwin, labelid, newlabelcount): the edge gets its old
+        label back **/
+    private static final int UNDO_LABEL = 6;
+
     private PrintStream log = System.err;
     /*------------- Constructors -----------------*/
 
@@ -159,7 +297,7 @@ public class YutsisGraph extends AbstractYutsis{
      * Contructor creating a YutsisGraph from a BufferedReader in
      * given format.
      * @param input The BufferedReader where the YutsisGraph is read from.
-     * @param format The format used (BRAKET or YTS)
+     * @param format The format used (BRAKET, YTS or EDGELIST)
      * @throws IOException if an I/O error occurs
      **/
     public YutsisGraph(BufferedReader input, int format) throws IOException{
@@ -175,16 +313,17 @@ public class YutsisGraph extends AbstractYutsis{
 	    String [] s = new String[2*order];
 	    HashMap edgeshm = new HashMap(4*order);
 	    HashMap couplings = new HashMap(order);
-	    edges = new Edge[2*order][3];
-	    nodeSign = new boolean[2*order];
+	    Edge [][] edges = new Edge[2*order][3];
+	    nodeSign = new BitSet(2*order);
 	    String [] label = new String[3];
 	    // first tree
 	    for (int node = 0; node < 2*order; node++){
 		st = new StringTokenizer(input.readLine());
 		for (int i = 0; i < 3; i++)
 		    label[i] = checkLabel(st.nextToken());
-		addEdges(node,label,node < order,"line " + (node+2),edgeshm);
-		nodeSign[node] = node > order-1;
+		addEdges(edges[node],node,label,node < order,"line " + (node+2),
+			 edgeshm);
+		nodeSign.set(node, node > order-1);
 		s[node] = label[0];
 		String newcoupling = "(";
 		if (couplings.containsKey(label[0]))
@@ -214,16 +353,99 @@ public class YutsisGraph extends AbstractYutsis{
 			 + "!=" + root);
 	    }
 	    braket += "|" + couplings.remove(root) + ">";
-	    genrecoupcoeff = new GenRecoupCoeff(order,root,a,b,s);
+	    setEdges(edges);
+	    genrecoupcoeff = new GenRecoupCoeff(labels,order,labels.id(root),
+						labels.ids(a),labels.ids(b),
+						labels.ids(s));
 	    break;
 	case BRAKET:
-	    String line = input.readLine();
-	    parseBraket(line);
+	    parseBraket(input);
+	    break;
+	case EDGELIST:
+	    EdgeList.read(input, this);
 	    break;
 	default:
 	    throw new IllegalArgumentException("Unknown format: " + format);
 	}
-	newlabels = new HashSet(3*order);
+    }
+
+    /**
+     * Constructs a YutsisGraph from its tables, as stored in a {@link
+     * YutsisArchive}, without parsing. The nodes are those of the
+     * trees of the braket: the <code>order</code> nodes of the bra
+     * followed by those of the ket, each in post-order, with the
+     * labels of the coupled momenta in the slots 0 and 1 and the label
+     * of the coupling in slot 2.
+     * @param labels the labels; label <code>i</code> gets id
+     *               <code>i</code>
+     * @param order the number of nodes of each tree
+     * @param labelIds the label id of slot <code>3*node+i</code>, used
+     *                 as is
+     * @param nodeSign the nodes with sign +
+     * @param heads the slots of which the node is the head of the edge
+     * @param braket the braket of the graph
+     * @throws IllegalArgumentException if the labels do not describe
+     *         a cubic graph
+     **/
+    YutsisGraph(String [] labels, int order, int [] labelIds,
+		BitSet nodeSign, BitSet heads, String braket){
+	setTables(labels, order, labelIds, nodeSign, heads, braket);
+    }
+
+    /**
+     * Fills this YutsisGraph from its tables, see {@link
+     * #YutsisGraph(String[],int,int[],BitSet,BitSet,String)}.
+     * @param braket the braket of the graph, or null if it is to be
+     *               built from the tables when needed
+     **/
+    void setTables(String [] labels, int order, int [] labelIds,
+		   BitSet nodeSign, BitSet heads, String braket){
+	if (order < 1 || labelIds.length != 6*order)
+	    throw new IllegalArgumentException("Wrong number of slots: "
+					       + labelIds.length);
+	n = this.order = order;
+	this.labels = new LabelTable(4*order);
+	for (int i = 0; i < labels.length; i++)
+	    if (this.labels.id(labels[i]) != i)
+		throw new IllegalArgumentException("Label " + labels[i]
+						   + " occurs twice");
+	this.labelIds = labelIds;
+	this.nodeSign = nodeSign;
+	this.heads = heads;
+	this.braket = braket;
+	adjacency = new int[labelIds.length];
+	int [] first = new int[labels.length];
+	Arrays.fill(first,-1);
+	for (int slot = 0; slot < labelIds.length; slot++){
+	    int id = labelIds[slot];
+	    if (id < 0 || id >= labels.length || first[id] == -2)
+		throw new IllegalArgumentException("Slot " + slot
+						   + ": illegal label id " + id);
+	    if (first[id] == -1)
+		first[id] = slot;
+	    else {
+		adjacency[slot] = first[id]/3;
+		adjacency[first[id]] = slot/3;
+		first[id] = -2;
+	    }
+	}
+	for (int id = 0; id < first.length; id++)
+	    if (first[id] != -2)
+		throw new IllegalArgumentException("Label " + labels[id]
+						   + " does not couple two nodes");
+	initNodes(2*order);
+	originallabels = labels.length;
+	int [] a = new int[order-1];
+	int [] b = new int[order-1];
+	int [] s = new int[2*order];
+	for (int node = 0; node < order-1; node++){
+	    a[node] = labelIds[3*node+2];
+	    b[node] = labelIds[3*(order+node)+2];
+	}
+	for (int node = 0; node < 2*order; node++)
+	    s[node] = labelIds[3*node];
+	genrecoupcoeff = new GenRecoupCoeff(this.labels,order,
+					    labelIds[3*order-1],a,b,s);
     }
 
     /** 
@@ -231,152 +453,378 @@ public class YutsisGraph extends AbstractYutsis{
      * @param braket A string containing a Recoupling Coefficient as a BRAKET
      **/
     public YutsisGraph(String braket){
-	parseBraket(braket);
-	newlabels = new HashSet(3*order);
+	try {
+	    parseBraket(new StringReader(braket));
+	}
+	catch (IOException e){ // a StringReader does not throw them
+	    throw new RuntimeException(e.getMessage());
+	}
     }
-    
-    private void parseBraket(String braket){
-	if (!intermediateLabelsPresent(braket))
-	    braket = addIntermediateLabels(braket);
-	StringTokenizer st = new StringTokenizer(braket,"<|>");
-	String bra,ket;
-	if (st.hasMoreTokens())
-	    bra = st.nextToken().trim();
-	else 
-	    throw new IllegalArgumentException("BRA is empty (<BRA|KET>)");
-	if (st.hasMoreTokens())
-	    ket = st.nextToken().trim();
-	else 
-	    throw new IllegalArgumentException("KET is empty (<BRA|KET>)");
-	if (bra.charAt(0) != '(')
-	    throw new IllegalArgumentException("<\n"+bra+"| : expected '('");
-	if (ket.charAt(0) != '(')
-	    throw new IllegalArgumentException("<\n"+ket+"| : expected '('");
-	order = 0;
-	for (int i = 0; i < bra.length(); i++)
-	    if (bra.charAt(i) == '(')
-		order++;
-	edges = new Edge[2*order][3];
-	nodeSign = new boolean[2*order];
-	String [] a = new String[order-1];
-	String [] b = new String[order-1];
-	String [] s = new String[2*order];
-	for (int i = 0; i < order; i++){
-	    nodeSign[i] = false;
-	    nodeSign[order+i] = true;
+
+    /**
+     * Reads a YutsisGraph from the file <code>filename</code>, of
+     * which the format is guessed. The file is opened once: the format
+     * is guessed from the start of the same stream. Of a {@link
+     * YutsisArchive} the first graph is returned.
+     * @param filename the name of the file
+     * @return the YutsisGraph in the file
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the format is not recognized
+     *         or the file contains no valid graph
+     **/
+    public static YutsisGraph read(String filename) throws IOException{
+	BufferedReader input = new BufferedReader(new FileReader(filename));
+	try {
+	    int format = guessFormat(input);
+	    switch (format){
+	    case -1:
+		throw new IllegalArgumentException
+		    ("Unknown file format: " + filename);
+	    case ARCHIVE:
+		input.close();
+		YutsisArchive archive = new YutsisArchive(new File(filename));
+		if (archive.size() == 0)
+		    throw new IllegalArgumentException
+			("Empty archive: " + filename);
+		return archive.graph(0);
+	    default:
+		return new YutsisGraph(input, format);
+	    }
 	}
-	n = 0;
-	HashMap edgeshm = new HashMap(4*order);
-	int pos = parseBraket(bra,0,true,edgeshm,a,s);
-	String rest = bra.substring(pos).trim(); // should be the root label
-	rest = checkLabel(rest,"(,)","<" + bra.substring(0,pos)+'\n'
-		   + bra.substring(pos) + "|"
-		   + ": no matching opening brace");
-	pos = parseBraket(ket,0,false,edgeshm,b,s);
-	String root = ket.substring(pos).trim(); // should be the root label
-	root = checkLabel(root,"(,)","|" + ket.substring(0,pos)+'\n'
-		 + ket.substring(pos) + ">"
-		   + ": no matching opening brace");
-	if (!root.equals(rest))
-	    throw new IllegalArgumentException
-		("Root labels from both trees differ:" + rest + "!=" + root);
-	n = n/2;
-	genrecoupcoeff = new GenRecoupCoeff(order,root,a,b,s);
-	this.braket = braket.trim();
-    }
-
-    private int parseBraket(String braket, int pos, boolean bra, 
-			    HashMap edgeshm, String [] ab, String [] s){
-	pos++;
-	pos = skipSpaces(braket,pos);
-	if (braket.charAt(pos) == '(')
-	    pos = parseBraket(braket,pos,bra,edgeshm,ab,s);
-	int nextpos = braket.indexOf(',',pos);
-	if (nextpos == -1)
+	finally {
+	    input.close();
+	}
+    }
+
+    /** 
+     * Reads the characters of a BRAKET for {@link #parseBraket},
+     * keeping the text read for the braket notation and for the error
+     * messages, which are only built when the BRAKET is invalid.
+     **/
+    private static class BraketReader{
+	Reader in;
+	char [] buffer = new char[8192];
+	int pos = 0, length = 0;
+
+	/** The text read. **/
+	StringBuffer text = new StringBuffer();
+
+	/** 
+	 * The text read without spaces and with the intermediate
+	 * labels inserted, if these are absent.
+	 **/
+	StringBuffer inserted = new StringBuffer();
+
+	/** 
+	 * 1 if the intermediate labels are present, 0 if they have to
+	 * be inserted, -1 if not known yet (before the first ')').
+	 **/
+	int present = -1;
+
+	/** The number of the next inserted label. **/
+	int number = 1;
+
+	BraketReader(Reader in){ this.in = in; }
+
+	/** 
+	 * Returns the next character without reading it, -1 at the end.
+	 **/
+	int peek() throws IOException{
+	    if (pos == length){
+		length = in.read(buffer,0,buffer.length);
+		pos = 0;
+		if (length <= 0){
+		    length = 0;
+		    return -1;
+		}
+	    }
+	    return buffer[pos];
+	}
+
+	/** 
+	 * Reads the next character, -1 at the end.
+	 **/
+	int read() throws IOException{
+	    int c = peek();
+	    if (c != -1){
+		pos++;
+		text.append((char) c);
+		if (c != ' ')
+		    inserted.append((char) c);
+	    }
+	    return c;
+	}
+
+	/** 
+	 * Reads the next character which is not white space if it is
+	 * <code>c</code>.
+	 * @return true if <code>c</code> is read
+	 **/
+	boolean accept(char c) throws IOException{
+	    skipSpaces();
+	    if (peek() != c)
+		return false;
+	    read();
+	    return true;
+	}
+
+	void skipSpaces() throws IOException{
+	    int c;
+	    while ((c = peek()) != -1 && Character.isWhitespace((char) c))
+		read();
+	}
+
+	/** 
+	 * Reads a label up to the next delimiter; returns it without
+	 * the surrounding white space, possibly empty.
+	 **/
+	String label() throws IOException{
+	    skipSpaces();
+	    int start = text.length();
+	    int c;
+	    while ((c = peek()) != -1 && "(),<|>".indexOf(c) == -1)
+		read();
+	    return text.substring(start).trim();
+	}
+
+	/** 
+	 * Inserts an intermediate label at the current position.
+	 **/
+	void insert(String label){
+	    inserted.append(label);
+	}
+
+	/** 
+	 * Returns the braket notation of the text read, with the
+	 * intermediate labels.
+	 **/
+	String braket() throws IOException{
+	    int c;
+	    while ((c = peek()) != -1 && c != '\n' && c != '\r')
+		read();
+	    return (present == 0 ? inserted : text).toString().trim();
+	}
+
+	/** 
+	 * Returns the exception for an error at the current position:
+	 * the text read and the rest of the line, separated by a
+	 * newline, followed by the message.
+	 **/
+	IllegalArgumentException error(String message){
+	    StringBuffer msg = new StringBuffer(text.toString().trim());
+	    msg.append('\n');
+	    try {
+		int c;
+		while ((c = peek()) != -1 && c != '\n' && c != '\r'){
+		    msg.append((char) c);
+		    pos++;
+		}
+	    }
+	    catch (IOException e){
+		msg.append("...");
+	    }
+	    return new IllegalArgumentException(msg.append(": ")
+						.append(message).toString());
+	}
+
+	/** 
+	 * Returns a description of the current position, for the
+	 * messages of {@link #addEdges}.
+	 **/
+	public String toString(){
+	    return text.toString().trim();
+	}
+    }
+
+    /** 
+     * Parses the BRAKET read from <code>input</code> in a single pass,
+     * adding the nodes of both trees as their closing braces are read
+     * and inserting the intermediate labels if they are absent. The
+     * text is read up to the end of the line of the BRAKET.
+     **/
+    private void parseBraket(Reader input) throws IOException{
+	BraketReader in = new BraketReader(input);
+	in.skipSpaces();
+	if (in.peek() == '<')
+	    in.read();
+	ArrayList edges = new ArrayList();
+	HashMap edgeshm = new HashMap();
+	ArrayList a = new ArrayList(), b = new ArrayList(), s = new ArrayList();
+	n = order = 0;
+	String root = parseTree(in,true,edges,edgeshm,a,s,null);
+	order = n;
+	in.skipSpaces();
+	int c = in.peek();
+	if (c == -1 || c == '>' || c == '\n')
+	    throw new IllegalArgumentException("KET is empty (<BRA|KET>)");
+	if (!in.accept('|'))
+	    throw in.error("expected '|'");
+	String ketroot = parseTree(in,false,edges,edgeshm,b,s,root);
+	if (!in.accept('>') && in.peek() != -1)
+	    throw in.error("expected '>'");
+	if (!root.equals(ketroot))
 	    throw new IllegalArgumentException
-		((bra ? "<" : "|") + braket.substring(0,pos)+'\n'
-		 + braket.substring(pos) + (bra ? "|" : ">")
-		 + ": expected label followed by ','");
-	String [] label = new String[3]; 
-	label[0] = braket.substring(pos,nextpos).trim();
-	label[0] = checkLabel(label[0],"()", (bra ? "<" : "|") 
-			      + braket.substring(0,pos)
-			      +'\n'+ braket.substring(pos) + (bra ? "|" : ">")
-			      + ": expected label followed by ','");
-	pos = ++nextpos;
-	pos = skipSpaces(braket,pos);
-	if (braket.charAt(pos) == '(')
-	    pos = parseBraket(braket,pos,bra,edgeshm,ab,s);
-	nextpos = braket.indexOf(')',pos);
-	if (nextpos == -1)
+		("Root labels from both trees differ:" + root + "!=" + ketroot);
+	if (n != 2*order)
 	    throw new IllegalArgumentException
-		((bra ? "<" : "|") + braket.substring(0,pos)+'\n'
-		 + braket.substring(pos) + (bra ? "|" : ">")
-		 + ": expected label followed by ')'");
-	label[1] = braket.substring(pos,nextpos).trim();
-	label[1] = checkLabel(label[1],"(,",(bra ? "<" : "|") 
-			      + braket.substring(0,pos)
-			      +'\n'+ braket.substring(pos) + (bra ? "|" : ">")
-			      + ": expected label followed by ')'");
-	pos = ++nextpos; // just behind ')'
-	pos = skipSpaces(braket,pos);
-	while (nextpos < braket.length() && braket.charAt(nextpos) != ')' 
-	       && braket.charAt(nextpos) != ',')
-	    nextpos++;
-	label[2] = braket.substring(pos,nextpos).trim();
-	label[2] = checkLabel(label[2],"(",(bra ? "<" : "|") 
-			      + braket.substring(0,pos)+'\n'
-			      + braket.substring(pos) + (bra ? "|" : ">") 
-			      + ": expected label followed by ',' or ')'");
-	addEdges(n,label,bra,(bra ? "<" : "|") + braket.substring(0,pos)+'\n'
-		 + braket.substring(pos) + (bra ? "|" : ">"),edgeshm);
-	s[n] = label[0]; //first coupled node
-	if (n != order-1 && n != 2*order-1)
-	    ab[n < order ? n : n-order] = label[2];
-	n++;
-	return pos;
-    }
-
-    private void addEdges(int node, String [] label, boolean bra, String msg,
-			  HashMap edgeshm){
+		("Both trees must couple the same momenta");
+	nodeSign = new BitSet(2*order);
+	nodeSign.set(order,2*order);
+	n = order;
+	setEdges((Edge [][]) edges.toArray(new Edge[2*order][]));
+	genrecoupcoeff = new GenRecoupCoeff(labels,order,labels.id(root),
+					    labels.ids(strings(a)),
+					    labels.ids(strings(b)),
+					    labels.ids(strings(s)));
+	this.braket = in.braket();
+    }
+
+    /** 
+     * Parses a tree of the BRAKET, without recursion: the nodes of
+     * which the closing brace is not read yet are kept on a stack,
+     * with their labels read so far. Returns the root label.
+     **/
+    private String parseTree(BraketReader in, boolean bra, ArrayList edges,
+			     HashMap edgeshm, ArrayList ab, ArrayList s,
+			     String root) throws IOException{
+	in.skipSpaces();
+	if (in.peek() != '(')
+	    throw in.error("expected '('");
+	ArrayList stack = new ArrayList();
+	while (true){
+	    in.skipSpaces();
+	    if (in.peek() == '('){
+		in.read();
+		stack.add(new String[3]);
+		continue;
+	    }
+	    String item = in.label();
+	    while (true){
+		String [] label = (String []) stack.get(stack.size()-1);
+		if (label[0] == null){
+		    label[0] = checkLabel(item,in,
+					  "expected label followed by ','");
+		    if (!in.accept(','))
+			throw in.error("expected label followed by ','");
+		    break;
+		}
+		label[1] = checkLabel(item,in,"expected label followed by ')'");
+		if (!in.accept(')'))
+		    throw in.error("expected label followed by ')'");
+		stack.remove(stack.size()-1);
+		String own = in.label();
+		if (in.present == -1)
+		    in.present = own.length() > 0 ? 1 : 0;
+		if (in.present == 0){
+		    if (own.length() == 0){
+			own = bra || !stack.isEmpty() ? "t" + in.number++ : root;
+			in.insert(own);
+		    }
+		    else if (!bra && stack.isEmpty() && !own.equals(root))
+			throw new IllegalArgumentException
+			    ("Invalid BRAKET: root labels differ.");
+		}
+		label[2] = checkLabel(own,in,
+				      "expected label followed by ',' or ')'");
+		Edge [] nodeedges = new Edge[3];
+		edges.add(nodeedges);
+		addEdges(nodeedges,n,label,bra,in,edgeshm);
+		s.add(label[0]); //first coupled node
+		if (stack.isEmpty()){
+		    n++;
+		    return label[2];
+		}
+		ab.add(label[2]);
+		n++;
+		item = label[2];
+	    }
+	}
+    }
+
+    /** 
+     * Returns the Strings in the ArrayList as an array.
+     **/
+    private static String [] strings(ArrayList list){
+	return (String []) list.toArray(new String[list.size()]);
+    }
+
+    /** 
+     * Adds the edges of <code>node</code>, with the given labels, to
+     * the edges of the node; edges already added for another node are
+     * shared. The position is only used in the message when a label is
+     * a duplicate.
+     **/
+    private void addEdges(Edge [] edges, int node, String [] label, 
+			  boolean bra, Object position, HashMap edgeshm){
 	for (int i = 0; i < 2; i++){
-	    edges[node][i] = (Edge) edgeshm.get(label[i]);
-	    if (edges[node][i] == null){
-		edges[node][i] = bra ? new Edge(label[i],node,-1) 
+	    edges[i] = (Edge) edgeshm.get(label[i]);
+	    if (edges[i] == null){
+		edges[i] = bra ? new Edge(label[i],node,-1) 
 		    : new Edge(label[i],-1,node);
-		edgeshm.put(label[i],edges[node][i]);
+		edgeshm.put(label[i],edges[i]);
 	    }
-	    else if ((bra ? edges[node][i].tail() 
-		      : edges[node][i].head()) != -1)
+	    else if ((bra ? edges[i].tail() 
+		      : edges[i].head()) != -1)
 		throw new 
-		    IllegalArgumentException(msg+":duplicate edge label " 
+		    IllegalArgumentException(position+":duplicate edge label " 
 					     + label[i]);
 	    else if (bra)
-		edges[node][i].setTail(node) ;
+		edges[i].setTail(node) ;
 	    else
-		edges[node][i].setHead(node);
+		edges[i].setHead(node);
 	}
-	edges[node][2] = (Edge) edgeshm.get(label[2]);
-	if (edges[node][2] == null){
-	    edges[node][2] = bra ? new Edge(label[2],-1,node) 
+	edges[2] = (Edge) edgeshm.get(label[2]);
+	if (edges[2] == null){
+	    edges[2] = bra ? new Edge(label[2],-1,node) 
 		: new Edge(label[2],node,-1);
-	    edgeshm.put(label[2],edges[node][2]);
+	    edgeshm.put(label[2],edges[2]);
 	}
-	else if ((bra ? edges[node][2].head() 
-		      : edges[node][2].tail()) != -1)
+	else if ((bra ? edges[2].head() 
+		      : edges[2].tail()) != -1)
 	    throw new 
-		IllegalArgumentException(msg+":duplicate edge label " 
+		IllegalArgumentException(position+":duplicate edge label " 
 					 + label[2]);
 	else if (bra)
-	    edges[node][2].setHead(node);
+	    edges[2].setHead(node);
 	else
-	    edges[node][2].setTail(node);
+	    edges[2].setTail(node);
+    }
+
+    /** 
+     * Fills the adjacency, label and direction tables from a table
+     * with the Edge objects of each node, in which nodes sharing an 
+     * edge also share an Edge object.
+     * @param edges the edges of each node
+     **/
+    private void setEdges(Edge [][] edges){
+	adjacency = new int[3*edges.length];
+	labelIds = new int[3*edges.length];
+	heads = new BitSet(3*edges.length);
+	labels = new LabelTable(4*order);
+	initNodes(edges.length);
+	for (int i = 0; i < edges.length; i++)
+	    for (int j = 0; j < 3; j++){
+		adjacency[3*i+j] = edges[i][j].otherNode(i);
+		labelIds[3*i+j] = labels.id(edges[i][j].label());
+		heads.set(3*i+j, edges[i][j].head() == i);
+	    }
+	originallabels = labels.size();
     }
 
-    private int skipSpaces(String s, int pos){
-	while (s.charAt(pos) == ' ')
-	    pos++;
-	return pos;
+    /**
+     * Puts the nodes <code>0, ..., nodes-1</code> in the list of nodes
+     * which are not removed.
+     **/
+    private void initNodes(int nodes){
+	nghbCache = new int[nodes][];
+	nextNode = new int[nodes];
+	previousNode = new int[nodes];
+	for (int i = 0; i < nodes; i++){
+	    nextNode[i] = i+1;
+	    previousNode[i] = i-1;
+	}
+	firstNode = 0;
+	lastNode = nodes-1;
     }
 
     private String checkLabel(String label){
@@ -385,12 +833,9 @@ public class YutsisGraph extends AbstractYutsis{
 	return "j"+label; // was an integer...
     }
 
-    private String checkLabel(String label, String illegal, String message){
+    private String checkLabel(String label, BraketReader in, String message){
 	if (label.length() == 0)
-	    throw new IllegalArgumentException(message + "(empty label)");
-	for (int i = 0; i < illegal.length(); i++)
-	    if (label.indexOf(illegal.charAt(i)) != -1)
-		throw new IllegalArgumentException(message);
+	    throw in.error(message + "(empty label)");
 	return checkLabel(label);
     }
     
@@ -405,26 +850,20 @@ public class YutsisGraph extends AbstractYutsis{
 	// immutable: object sharing OK
 	newlabelbase = y.newlabelbase;
 	braket = y.braket;
-	newlabels = new HashSet(newlabels);
-	nodeSign = new boolean[y.nodeSign.length];
-	System.arraycopy(y.nodeSign,0,nodeSign,0,nodeSign.length);
-	edges = new Edge[y.edges.length][3];
-	HashMap edgeshm = new HashMap(4*order());
-	for (int i = 0; i < y.edges.length; i++)
-	    if (!isRemoved(i))
-		for (int j = 0; j < 3; j++){
-		    Edge e = (Edge) edgeshm.get(y.edges[i][j].label());
-		    if (e == null){
-			edges[i][j] = (Edge) y.edges[i][j].clone();
-			edgeshm.put(edges[i][j].label(), edges[i][j]);
-		    }
-		    else
-			edges[i][j] = e;
-		}
-	    else
-		for (int j = 0; j < 3; j++)
-		    edges[i][j] = null;	      
-	genrecoupcoeff = new GenRecoupCoeff(genrecoupcoeff);
+	nodeSign = (BitSet) y.nodeSign.clone();
+	adjacency = y.adjacency.clone();
+	labelIds = y.labelIds.clone();
+	heads = (BitSet) y.heads.clone();
+	labels = y.labels;
+	originallabels = y.originallabels;
+	changes = y.changes;
+	// the cached arrays are never modified: sharing OK
+	nghbCache = y.nghbCache.clone();
+	nextNode = y.nextNode.clone();
+	previousNode = y.previousNode.clone();
+	firstNode = y.firstNode;
+	lastNode = y.lastNode;
+	genrecoupcoeff = new GenRecoupCoeff(y.genrecoupcoeff);
 	log = y.log;
     }
 
@@ -451,7 +890,9 @@ public class YutsisGraph extends AbstractYutsis{
     /** 
      * Returns the neighbors of <code>node</code> or <code>null</code>
      * if the node is removed from the graph as specified by the
-     * {@link Graph} interface.
+     * {@link Graph} interface. The returned array is shared and
+     * must not be modified; it is only rebuilt after the neighbors
+     * of the node have changed.
      * @param node the node for wich the neighbors are returned
      * @return the neighbors of the node as an array
      * @see Graph
@@ -459,12 +900,38 @@ public class YutsisGraph extends AbstractYutsis{
     public int [] neighbors(int node){
 	if (isRemoved(node))
 	    return null;
-	int [] nghb = new int[3];
-	for (int i = 0; i < 3; i++) 
-	    nghb[i] = edges[node][i].otherNode(node);
+	if (nghbCache[node] == null)
+	    nghbCache[node] = neighbors(node, new int[3]);
+	return nghbCache[node];
+    }
+
+    /** 
+     * Copies the neighbors of <code>node</code> into
+     * <code>nghb</code> as specified by the {@link Graph} interface.
+     * @param node the node for wich the neighbors are returned
+     * @param nghb an array of at least three elements
+     * @return <code>nghb</code> or <code>null</code> if the node is
+     *         removed
+     * @see Graph
+     **/
+    public int [] neighbors(int node, int [] nghb){
+	if (isRemoved(node))
+	    return null;
+	System.arraycopy(adjacency,3*node,nghb,0,3);
 	return nghb;
     }
 
+    /** 
+     * Returns the neighbor of <code>node</code> at the other side of
+     * its i-th edge.
+     * @param node a node which is not removed
+     * @param i the index of the edge (0, 1 or 2)
+     * @return the i-th neighbor of the node
+     **/
+    public int neighbor(int node, int i){
+	return adjacency[3*node+i];
+    }
+
     /** 
      * Class implementing the {@link NodeIterator} interface.
      * @see NodeIterator
@@ -491,10 +958,7 @@ public class YutsisGraph extends AbstractYutsis{
 	 * @see Iterator
 	 **/
 	public boolean hasNext(){
-	    for(int i=this.node+1;i < order(); i++)
-		if (!isRemoved(i))
-		    return true;
-	    return false;
+	    return nextNode(node) < order();
 	}
 
 	/** 
@@ -504,10 +968,10 @@ public class YutsisGraph extends AbstractYutsis{
 	 * @see Iterator
 	 **/
 	public int next(){
-	    for(node++;node < order(); node++)
-		if (!isRemoved(node))
-		    return node;
-	    throw new NoSuchElementException();
+	    int next = nextNode(node);
+	    if (next >= order())
+		throw new NoSuchElementException();
+	    return node = next;
 	}
 
 	/** 
@@ -518,10 +982,7 @@ public class YutsisGraph extends AbstractYutsis{
 	 * @see Iterator 
 	 **/
 	public boolean hasPrevious(){
-	    for(int i=node;i >= 0; i--)
-		if (!isRemoved(i))
-		    return true;
-	    return false;
+	    return previousNode(node) >= 0;
 	}
 	
 	/** 
@@ -531,13 +992,40 @@ public class YutsisGraph extends AbstractYutsis{
 	 * @see Iterator
 	 **/
 	public int previous(){
-	    for(; node >= 0; node--)
-		if (!isRemoved(node))
-		    return node--;
-	    throw new NoSuchElementException();
+	    int previous = previousNode(node);
+	    if (previous < 0)
+		throw new NoSuchElementException();
+	    node = previous-1;
+	    return previous;
 	}
     }
 
+    /** 
+     * Returns the first node after <code>node</code> which is not
+     * removed, order() if there is none.
+     * @param node a node, -1 to get the first node
+     **/
+    private int nextNode(int node){
+	int next = node < 0 ? firstNode : nextNode[node];
+	while (next < order() && isRemoved(next))
+	    next = nextNode[next];
+	return next;
+    }
+
+    /** 
+     * Returns the last node not after <code>node</code> which is not
+     * removed, -1 if there is none.
+     * @param node a node, order()-1 to get the last node
+     **/
+    private int previousNode(int node){
+	if (node < 0)
+	    return -1;
+	int previous = node >= order()-1 ? lastNode : node;
+	while (previous >= 0 && isRemoved(previous))
+	    previous = previousNode[previous];
+	return previous;
+    }
+
     /** 
      * Returns an {@link NodeIterator} over the nodeset starting at the node 
      * with lowest label as specified by the
@@ -577,10 +1065,7 @@ public class YutsisGraph extends AbstractYutsis{
     public NodeIterator nodeIterator(int node){
 	if (0 > node || node > order()-1 || isRemoved(node))
 	    return null;
-	for (int i = node-1; i >= 0 ; i--)
-	    if (!isRemoved(i))
-		return new YNodeIterator(i);
-	return new YNodeIterator(node-1); // same effect as -1
+	return new YNodeIterator(node-1);
     }
     
     /*---------- Basic graph operations -------------*/
@@ -606,7 +1091,7 @@ public class YutsisGraph extends AbstractYutsis{
      * @return true if the node is removed, false otherwise
      * @see Graph
      **/ 
-    public boolean isRemoved(int node){ return edges[node][0] == null; }
+    public boolean isRemoved(int node){ return adjacency[3*node] == -1; }
 
     /** 
      * Returns (a copy) of the edges coupled in the node
@@ -616,9 +1101,9 @@ public class YutsisGraph extends AbstractYutsis{
      *         of the specified node
      **/
     public Edge [] edges(int node){
-	Edge [] theedges = {(Edge) edges[node][0].clone(), 
-			    (Edge) edges[node][1].clone(),
-			    (Edge) edges[node][2].clone()};
+	if (isRemoved(node))
+	    return null;
+	Edge [] theedges = {edge(3*node), edge(3*node+1), edge(3*node+2)};
 	return theedges;
     }
 
@@ -630,12 +1115,21 @@ public class YutsisGraph extends AbstractYutsis{
      * @return the labels of the {@link Edge}s coupled in the specified node
      **/
     public String [] edgeLabels(int node){
-	String [] labels = {edges[node][0].label(), 
-			    edges[node][1].label(),
-			    edges[node][2].label()};
+	if (isRemoved(node))
+	    return null;
+	String [] labels = {label(3*node), label(3*node+1), label(3*node+2)};
 	return labels;
     }
 
+    /** 
+     * Returns the label ids of the edges coupled in the node
+     * <code>node</code>.
+     **/
+    private int [] labelIds(int node){
+	int [] ids = {labelIds[3*node], labelIds[3*node+1], labelIds[3*node+2]};
+	return ids;
+    }
+
     /** 
      * Returns the edges between <code>nodes[0]</code> and 
      * <code>nodes[1]</code>(max 3) as an array of edges.
@@ -664,21 +1158,105 @@ public class YutsisGraph extends AbstractYutsis{
 	    return null;
 	ArrayList theedges = new ArrayList(3);
 	for (int i = 0; i < 3; i++)
-	    if (edges[node1][i].otherNode(node1) == node2)
-		theedges.add(edges[node1][i].clone());
+	    if (adjacency[3*node1+i] == node2)
+		theedges.add(edge(3*node1+i));
 	Edge [] toreturn = new Edge[theedges.size()];
 	theedges.toArray(toreturn);
 	return toreturn;
     }
 
+    /*------------ Slot operations ---------------*/
+
+    /** 
+     * Returns the label of the edge in the given slot.
+     * @param slot the slot <code>3*node+i</code> of the i-th edge of 
+     *             a node
+     **/
+    private String label(int slot){ 
+	return labels.label(labelIds[slot]); 
+    }
+
+    /** 
+     * Returns the tail of the edge in the given slot.
+     **/
+    private int tail(int slot){ 
+	return heads.get(slot) ? adjacency[slot] : slot/3;
+    }
+
+    /** 
+     * Returns the head of the edge in the given slot.
+     **/
+    private int head(int slot){ 
+	return heads.get(slot) ? slot/3 : adjacency[slot];
+    }
+
+    /** 
+     * Returns the slot of the same edge at the other endpoint.
+     **/
+    private int twin(int slot){
+	int other = adjacency[slot];
+	for (int i = 0; i < 3; i++)
+	    if (3*other+i != slot && labelIds[3*other+i] == labelIds[slot])
+		return 3*other+i;
+	throw new IllegalStateException("Edge " + label(slot) 
+					+ " has only one endpoint");
+    }
+
+    /** 
+     * Returns a new Edge object with the label and direction of the 
+     * edge in the given slot.
+     **/
+    private Edge edge(int slot){
+	return new Edge(label(slot),tail(slot),head(slot));
+    }
+
+    /** 
+     * Puts an edge in a slot.
+     * @param slot the slot to be filled
+     * @param other the node at the other side of the edge
+     * @param labelid the label id of the edge
+     * @param head true if the node of the slot is the head of the edge
+     **/
+    private void setSlot(int slot, int other, int labelid, boolean head){
+	changed();
+	if (undolog != null){
+	    push(slot); push(adjacency[slot]); push(labelIds[slot]);
+	    push(heads.get(slot) ? 1 : 0); push(UNDO_SLOT);
+	}
+	adjacency[slot] = other;
+	labelIds[slot] = labelid;
+	heads.set(slot,head);
+	nghbCache[slot/3] = null;
+    }
+
     /*------------ Basic reduction operations ---------------*/
+
+    /** 
+     * Returns the number of changes made to this graph since it was
+     * read: inverted signs and edges and changed slots. A rollback
+     * does not decrease it, so 0 means that the graph and its formula
+     * are the ones that were read.
+     * @return the number of changes, 0 if the graph is untouched
+     **/
+    public int nrOfChanges(){ return changes; }
+
+    /**
+     * Counts a change, to be called before the tables are changed: the
+     * braket of a graph read in EDGELIST format is built from the
+     * tables first.
+     **/
+    private void changed(){
+	if (braket == null)
+	    braket = tablesBraket();
+	changes++;
+    }
     
     /** 
      * Returns the sign of <code>node</code>.
      * @param node the node of which the sign has to be returned
      * @return true if the specified node is positive false otherwise
      **/
-    public boolean sign(int node){ return nodeSign[node];}
+    public boolean sign(int node){ return nodeSign.get(node);}
 
     /** 
      * Reverses the sign of <code>node</code>.
@@ -686,8 +1264,14 @@ public class YutsisGraph extends AbstractYutsis{
      **/
     public void invertSign(int node){
 	// Code to generate C=(-1)^(j1+j2+j3), node = (j1,j2,j3)
-	genrecoupcoeff.invertNode(edgeLabels(node));
-	nodeSign[node] = !nodeSign[node];
+	ReductionMetrics m = ReductionMetrics.begin(ReductionMetrics.FORMULA);
+	genrecoupcoeff.invertNode(labelIds(node));
+	ReductionMetrics.end(m);
+	changed();
+	nodeSign.flip(node);
+	if (undolog != null){
+	    push(node); push(UNDO_SIGN);
+	}
 	log("Inverted node: " + node);
     }
     
@@ -701,20 +1285,27 @@ public class YutsisGraph extends AbstractYutsis{
      **/
     public void invertEdge(int node, Edge e){
 	for (int i = 0; i < 3; i++)
-	    if (e.equals(edges[node][i]))
-		invertEdge(edges[node][i]);
+	    if (e.equals(edge(3*node+i)))
+		invertEdge(3*node+i);
     }
 
     /** 
-     * Directly inverts the given an {@link Edge}. Make sure this edge
-     * is in the graph.
-     * @param e the Edge to be inverted
+     * Directly inverts the edge in the given slot.
+     * @param slot the slot of the edge to be inverted
      **/
-    private void invertEdge(Edge e){
+    private void invertEdge(int slot){
 	// Code to generate C=(-1)^(2j), j edge label of e
-	genrecoupcoeff.invertEdge(e.label());
-	e.invert();
-	log("Inverted edge: " + e);
+	ReductionMetrics m = ReductionMetrics.begin(ReductionMetrics.FORMULA);
+	genrecoupcoeff.invertEdge(labelIds[slot]);
+	ReductionMetrics.end(m);
+	changed();
+	int twin = twin(slot);
+	heads.flip(slot);
+	heads.flip(twin);
+	if (undolog != null){
+	    push(slot); push(twin); push(UNDO_EDGE);
+	}
+	log("Inverted edge: " + edge(slot));
     }
 
     /** 
@@ -726,7 +1317,7 @@ public class YutsisGraph extends AbstractYutsis{
      * @see Edge
      **/
     public boolean isNewLabel(String label){
-	return newlabels.contains(label);
+	return labels.lookup(label) >= originallabels;
     }
 
     /** 
@@ -736,14 +1327,63 @@ public class YutsisGraph extends AbstractYutsis{
      * @param node2 second node to be removed
      **/
     private void removeNodes(int node1, int node2){
+	changed();
+	if (undolog != null){
+	    for (int i = 0; i < 3; i++)
+		push(adjacency[3*node1+i]);
+	    for (int i = 0; i < 3; i++)
+		push(adjacency[3*node2+i]);
+	    push(node1); push(node2); push(UNDO_REMOVE);
+	}
 	for (int i = 0; i < 3; i++){
-	    edges[node1][i] = null;
-	    edges[node2][i] = null;
+	    adjacency[3*node1+i] = -1;
+	    adjacency[3*node2+i] = -1;
 	}
+	nghbCache[node1] = null;
+	nghbCache[node2] = null;
+	unlink(node1);
+	unlink(node2);
 	n--;
 	log("Removed nodes: " + node1 + ", " + node2);
     }
 
+    /** 
+     * Removes a node from the list of nodes which are not removed.
+     * The links of the node itself are kept.
+     * @param node the node to be unlinked
+     **/
+    private void unlink(int node){
+	int previous = previousNode[node];
+	int next = nextNode[node];
+	if (previous >= 0)
+	    nextNode[previous] = next;
+	else
+	    firstNode = next;
+	if (next < order())
+	    previousNode[next] = previous;
+	else
+	    lastNode = previous;
+    }
+
+    /** 
+     * Puts an unlinked node back in the list of nodes which are not
+     * removed, using the links it had at the time of its removal. 
+     * Nodes have to be relinked in the reverse order of unlinking.
+     * @param node the node to be relinked
+     **/
+    private void relink(int node){
+	int previous = previousNode[node];
+	int next = nextNode[node];
+	if (previous >= 0)
+	    nextNode[previous] = node;
+	else
+	    firstNode = node;
+	if (next < order())
+	    previousNode[next] = node;
+	else
+	    lastNode = node;
+    }
+
     /** 
      * Implementation of the abstract method {@link Yutsis#bubble}.
      * @return the nodes of the bubble as an array or {-1,-1} if no bubbles
@@ -752,20 +1392,19 @@ public class YutsisGraph extends AbstractYutsis{
      **/
     public int [] bubble(){
 	int [] bubble = {-1,-1};
-	for (int i = 0; i < order()-1; i++)
-	    if (!isRemoved(i)){
-		int [] nghb = neighbors(i);
-		if (nghb[0]==nghb[1] || nghb[0] == nghb[2] ){
-		    bubble[0]=i;
-		    bubble[1]=nghb[0];
-		    break;
-		}
-		else if (nghb[1] == nghb[2]){
-		    bubble[0] = i;
-		    bubble[1] = nghb[1];
-		    break;
-		}
+	for (int i = nextNode(-1); i < order()-1; i = nextNode(i)){
+	    int [] nghb = neighbors(i);
+	    if (nghb[0]==nghb[1] || nghb[0] == nghb[2] ){
+		bubble[0]=i;
+		bubble[1]=nghb[0];
+		break;
+	    }
+	    else if (nghb[1] == nghb[2]){
+		bubble[0] = i;
+		bubble[1] = nghb[1];
+		break;
 	    }
+	}
 	return bubble;
     }
 
@@ -777,10 +1416,10 @@ public class YutsisGraph extends AbstractYutsis{
      **/
     public void removeBubble(int [] bubble){
 	int [] nghb = new int[2]; 
-	Edge [] bedges = new Edge[2]; 
-	Edge [] nghbedges = new Edge[2];
-	formatBubble(bubble,nghb,bedges,nghbedges);
-	removeBubble(bubble,nghb,bedges,nghbedges);
+	int [] bslots = new int[2]; 
+	int [] nghbslots = new int[2];
+	formatBubble(bubble,nghb,bslots,nghbslots);
+	removeBubble(bubble,nghb,bslots,nghbslots);
 	fireStateChanged();
     }
 
@@ -792,72 +1431,71 @@ public class YutsisGraph extends AbstractYutsis{
      * @param bubble array containing the nodes of the bubble
      * @param nghb the neighbors of the nodes in the bubble in the 
      *             proper order
-     * @param bedges the Edges of the bubble
-     * @param nghbedges the Edges to the neighbors of the bubble in the
-     *                  proper order
-     * @see Edge
+     * @param bslots the slots at bubble[0] of the edges of the bubble
+     * @param nghbslots the slots at the bubble of the edges to the 
+     *                  neighbors of the bubble in the proper order
      **/
     private void formatBubble(int [] bubble, int [] nghb, 
-			      Edge [] bedges, Edge [] nghbedges){
+			      int [] bslots, int [] nghbslots){
 	log("Formatting bubble: " + bubble[0] + ", " + bubble[1]);
 	int nrofbedges = 0;
 	for (int i = 0; i < 3; i++)
-	    if (edges[bubble[0]][i].otherNode(bubble[0]) == bubble[1])
-		bedges[nrofbedges++] = edges[bubble[0]][i];
+	    if (adjacency[3*bubble[0]+i] == bubble[1])
+		bslots[nrofbedges++] = 3*bubble[0]+i;
 	    else
-		nghbedges[0] = edges[bubble[0]][i];
+		nghbslots[0] = 3*bubble[0]+i;
 	
 	for (int i = 0; i < 3; i++)
-	    if (edges[bubble[1]][i].otherNode(bubble[1]) != bubble[0])
-		nghbedges[1] = edges[bubble[1]][i];
+	    if (adjacency[3*bubble[1]+i] != bubble[0])
+		nghbslots[1] = 3*bubble[1]+i;
 
-	nghb[0] = nghbedges[0].otherNode(bubble[0]);
-	nghb[1] = nghbedges[1].otherNode(bubble[1]);
+	nghb[0] = adjacency[nghbslots[0]];
+	nghb[1] = adjacency[nghbslots[1]];
 
 	boolean invertsign = sign(bubble[0]) == sign(bubble[1]);
 	boolean [] invertbedge = new boolean[2];
 	invertbedge[0] = sign(bubble[0]) ? 
-	    bedges[0].head() == bubble[0] : 
-	    bedges[0].tail() == bubble[0];
+	    head(bslots[0]) == bubble[0] : 
+	    tail(bslots[0]) == bubble[0];
 	invertbedge[1]  = sign(bubble[0]) ? 
-	    bedges[1].head() == bubble[0] : 
-	    bedges[1].tail() == bubble[0];
+	    head(bslots[1]) == bubble[0] : 
+	    tail(bslots[1]) == bubble[0];
 	boolean [] invertnghbedge = new boolean[2];
 	invertnghbedge[0] = sign(bubble[0]) ? 
-	    nghbedges[0].head() == bubble[0]
-	    : nghbedges[0].tail() == bubble[0];
+	    head(nghbslots[0]) == bubble[0]
+	    : tail(nghbslots[0]) == bubble[0];
 	invertnghbedge[1] = sign(bubble[0]) 
-	    ? nghbedges[1].tail() == bubble[1] 
-	    : nghbedges[1].head() == bubble[1];
+	    ? tail(nghbslots[1]) == bubble[1] 
+	    : head(nghbslots[1]) == bubble[1];
 	
 	if (invertsign){
 	    if (invertbedge[0] && invertbedge[1]){
 		invertSign(bubble[0]); 
 		if (!invertnghbedge[0])
-		    invertEdge(nghbedges[0]);
+		    invertEdge(nghbslots[0]);
 		if (!invertnghbedge[1])
-		    invertEdge(nghbedges[1]);
+		    invertEdge(nghbslots[1]);
 	    }
 	    else{
 		invertSign(bubble[1]);
 		if (invertbedge[0])
-		    invertEdge(bedges[0]); 
+		    invertEdge(bslots[0]); 
 		else
-		    invertEdge(bedges[1]);
+		    invertEdge(bslots[1]);
 		if (invertnghbedge[0])
-		    invertEdge(nghbedges[0]);
+		    invertEdge(nghbslots[0]);
 		if (invertnghbedge[1])
-		    invertEdge(nghbedges[1]);
+		    invertEdge(nghbslots[1]);
 	    }    
 	} else { // invert the edges that need to be inverted
 	    if (invertbedge[0])
-		invertEdge(bedges[0]);
+		invertEdge(bslots[0]);
 	    if (invertbedge[1])
-		invertEdge(bedges[1]);
+		invertEdge(bslots[1]);
 	    if (invertnghbedge[0])
-		invertEdge(nghbedges[0]);
+		invertEdge(nghbslots[0]);
 	    if (invertnghbedge[1])
-		invertEdge(nghbedges[1]);
+		invertEdge(nghbslots[1]);
 	}
     }
 
@@ -867,41 +1505,45 @@ public class YutsisGraph extends AbstractYutsis{
      * @param bubble array containing the nodes of the bubble
      * @param nghb the neighbors of the nodes in the bubble in the 
      *             proper order
-     * @param bedges the Edges of the bubble
-     * @param nghbedges the Edges to the neighbors of the bubble in the
-     *                  proper order
-     * @see Edge
+     * @param bslots the slots at bubble[0] of the edges of the bubble
+     * @param nghbslots the slots at the bubble of the edges to the 
+     *                  neighbors of the bubble in the proper order
      **/
     private void removeBubble(int [] bubble, int [] nghb, 
-			      Edge [] bedges, Edge [] nghbedges){
+			      int [] bslots, int [] nghbslots){
 	// Remove edge with label which causes a summuation
 	// first!
 	int stay, remove;
-	if (isNewLabel(nghbedges[0].label())){
+	if (labelIds[nghbslots[0]] >= originallabels){ // a new label
 	    //Code to generate C=(2*l1+1)^-1*delta(l1,l2), l1 label nghbedge[1]
-	    genrecoupcoeff.bubble(nghbedges[1].label(),
-				  nghbedges[0].label());
+	    ReductionMetrics m = 
+		ReductionMetrics.begin(ReductionMetrics.FORMULA);
+	    genrecoupcoeff.bubble(labelIds[nghbslots[1]],
+				  labelIds[nghbslots[0]]);
+	    ReductionMetrics.end(m);
 	    stay = 1;
 	    remove = 0;
 	}
 	else {
 	    //Code to generate C=(2*l1+1)^-1*delta(l1,l2), l1 label nghbedge[0]
-	    genrecoupcoeff.bubble(nghbedges[0].label(),
-				  nghbedges[1].label());
+	    ReductionMetrics m = 
+		ReductionMetrics.begin(ReductionMetrics.FORMULA);
+	    genrecoupcoeff.bubble(labelIds[nghbslots[0]],
+				  labelIds[nghbslots[1]]);
+	    ReductionMetrics.end(m);
 	    stay = 0;
 	    remove = 1;
 	}
 
-	if (nghbedges[stay].tail() == nghb[stay])
-	    nghbedges[stay].setHead(nghb[remove]);
-	else
-	    nghbedges[stay].setTail(nghb[remove]);
-	for (int i = 0; i < 3; i++)
-	    if (edges[nghb[remove]][i].equals(nghbedges[remove]))
-		edges[nghb[remove]][i] = nghbedges[stay];
+	// the edge staying is reconnected from the bubble to nghb[remove]
+	int staytwin = twin(nghbslots[stay]);
+	int removetwin = twin(nghbslots[remove]);
+	setSlot(staytwin,nghb[remove],labelIds[staytwin],heads.get(staytwin));
+	setSlot(removetwin,nghb[stay],labelIds[nghbslots[stay]],
+		heads.get(nghbslots[stay]));
 	removeNodes(bubble[0],bubble[1]);
 	log("Removed bubble: " + bubble[0] + ", " + bubble[1] 
-		    + " keeping edge: " + nghbedges[stay].label());
+		    + " keeping edge: " + label(staytwin));
     }
 
     /** 
@@ -911,20 +1553,19 @@ public class YutsisGraph extends AbstractYutsis{
      * @see Yutsis
      **/
     public int [] triangle(){
-	for (int i = 0; i < order()-2; i++)
-	    if (!isRemoved(i)){
-		int [] nghb = neighbors(i);
-		for (int j = 0; j < 2; j++){
-		    int [] nghbj = neighbors(nghb[j]);
-		    for (int k = 0; k < 3; k++)
-			if (nghbj[k] == nghb[j+1] || nghbj[k] == nghb[(j+2)%3])
-			    if (nghb[j] < nghbj[k])
-				// return it like CycleGenerator
-				return new int [] {i, nghb[j], nghbj[k]};
-			    else 
-				return new int [] {i, nghbj[k], nghb[j]};
-		}
+	for (int i = nextNode(-1); i < order()-2; i = nextNode(i)){
+	    int [] nghb = neighbors(i);
+	    for (int j = 0; j < 2; j++){
+		int [] nghbj = neighbors(nghb[j]);
+		for (int k = 0; k < 3; k++)
+		    if (nghbj[k] == nghb[j+1] || nghbj[k] == nghb[(j+2)%3])
+			if (nghb[j] < nghbj[k])
+			    // return it like CycleGenerator
+			    return new int [] {i, nghb[j], nghbj[k]};
+			else 
+			    return new int [] {i, nghbj[k], nghb[j]};
 	    }
+	}
 	return new int [] {-1,-1,-1};
     }
 
@@ -935,20 +1576,19 @@ public class YutsisGraph extends AbstractYutsis{
      **/
     public int [][] triangles(){
 	ArrayList triangles = new ArrayList();
-	for (int i = 0; i < order()-2; i++)
-	    if (!isRemoved(i)){
-		int [] nghb = neighbors(i);
-		for (int j = 0; j < 3; j++)
-		    if (i < nghb[j]){
-			int [] nghbj = neighbors(nghb[j]);
-			for (int k = 0; k < 3; k++)
-			    if (i < nghbj[k] && (nghbj[k] == nghb[(j+1)%3] 
-				|| nghbj[k] == nghb[(j+2)%3]))
-				if (nghb[j] < nghbj[k])
-				    triangles.add(new int [] 
-					{i, nghb[j], nghbj[k]});
-		    }
-	    }
+	for (int i = nextNode(-1); i < order()-2; i = nextNode(i)){
+	    int [] nghb = neighbors(i);
+	    for (int j = 0; j < 3; j++)
+		if (i < nghb[j]){
+		    int [] nghbj = neighbors(nghb[j]);
+		    for (int k = 0; k < 3; k++)
+			if (i < nghbj[k] && (nghbj[k] == nghb[(j+1)%3] 
+			    || nghbj[k] == nghb[(j+2)%3]))
+			    if (nghb[j] < nghbj[k])
+				triangles.add(new int [] 
+				    {i, nghb[j], nghbj[k]});
+		}
+	}
 	int [] [] toreturn = new int [triangles.size()][];
 	triangles.toArray(toreturn);
 	return toreturn;
@@ -964,25 +1604,38 @@ public class YutsisGraph extends AbstractYutsis{
      **/
     public void removeTriangle(int [] triangle){
 	int [] nghb = new int[3]; 
-	Edge [] tedges = new Edge[3]; 
-	Edge [] nghbedges = new Edge[3];
-	formatTriangle(triangle,nghb,tedges,nghbedges);
+	int [] tslots = new int[3]; 
+	int [] nghbslots = new int[3];
+	formatTriangle(triangle,nghb,tslots,nghbslots);
+	int [] l = {labelIds[tslots[0]], labelIds[tslots[1]], 
+		    labelIds[tslots[2]]};
+	int [] j = {labelIds[nghbslots[2]], labelIds[nghbslots[0]], 
+		    labelIds[nghbslots[1]]};
+	int [] nghblabels = new int[3];
+	int [] nghbtwins = new int[3];
 	for (int i = 0; i < 3; i++){
-	    nghbedges[i].setTail(triangle[0]);
-	    edges[triangle[0]][i] = nghbedges[i];
+	    nghblabels[i] = labelIds[nghbslots[i]];
+	    nghbtwins[i] = twin(nghbslots[i]);
+	}
+	for (int i = 0; i < 3; i++){
+	    // the edges to the neighbors get triangle[0] as tail
+	    setSlot(3*triangle[0]+i,nghb[i],nghblabels[i],false);
+	    setSlot(nghbtwins[i],triangle[0],nghblabels[i],true);
 	}
 	removeNodes(triangle[1],triangle[2]);
 	//nodesign must be inverted, but WITHOUT formulageneration
-	nodeSign[triangle[0]] = true; 
+	if (undolog != null){
+	    push(triangle[0]); push(nodeSign.get(triangle[0]) ? 1 : 0); 
+	    push(UNDO_SETSIGN);
+	}
+	nodeSign.set(triangle[0]); 
 	log("Removed Triangle: " + triangle[0] + ", " +
 			   triangle[1] + ", " + triangle[2]);
 	//Code to generate 6j(nghbedges[2],nghbedges[0],nghbedges[1],
 	// tedges[0],tedges[1],tedges[2])
-	String [] l = {tedges[0].label(), tedges[1].label(), 
-		       tedges[2].label()};
-	String [] j = {nghbedges[2].label(), nghbedges[0].label(), 
-		       nghbedges[1].label()};
+	ReductionMetrics m = ReductionMetrics.begin(ReductionMetrics.FORMULA);
 	genrecoupcoeff.triangle(l,j);
+	ReductionMetrics.end(m);
 	fireStateChanged();
     }
     
@@ -994,13 +1647,13 @@ public class YutsisGraph extends AbstractYutsis{
      * @param triangle the nodes of the triangle as an array
      * @param nghb the neigbors of the nodes of the triangle in the 
      *             proper order
-     * @param tedges the Edges of the triangle in the proper order
-     * @param nghbedges the Edges to the neighbors of the triangle 
-     *                  in the proper order
-     * @see Edge
+     * @param tslots the slots of the edges of the triangle in the 
+     *               proper order
+     * @param nghbslots the slots at the triangle of the edges to the
+     *                  neighbors of the triangle in the proper order
      **/
     private void formatTriangle(int [] triangle, int [] nghb,
-				Edge [] tedges, Edge [] nghbedges){
+				int [] tslots, int [] nghbslots){
 	log("Formatting triangle: " + triangle[0] + ", " +
 			   triangle[1] + ", " + triangle[2]);
 	// Make all nodes negative
@@ -1010,40 +1663,34 @@ public class YutsisGraph extends AbstractYutsis{
 
 	boolean [] inverttedges = new boolean[3];
 	for (int i = 0; i < 3; i++)
-	    if (edges[triangle[0]][i].otherNode(triangle[0]) 
-		== triangle[1]){
-		tedges[0] = edges[triangle[0]][i];
-		inverttedges[0] = tedges[0].tail() == triangle[0];
+	    if (adjacency[3*triangle[0]+i] == triangle[1]){
+		tslots[0] = 3*triangle[0]+i;
+		inverttedges[0] = tail(tslots[0]) == triangle[0];
 	    }
-	    else if (edges[triangle[0]][i].otherNode(triangle[0]) 
-		     == triangle[2]){
-		tedges[2] = edges[triangle[0]][i];
-		inverttedges[2] = tedges[2].tail() == triangle[2];
+	    else if (adjacency[3*triangle[0]+i] == triangle[2]){
+		tslots[2] = 3*triangle[0]+i;
+		inverttedges[2] = tail(tslots[2]) == triangle[2];
 	    }
 	    else{
-		nghbedges[0] = edges[triangle[0]][i];
-		nghb[0] = nghbedges[0].otherNode(triangle[0]);
+		nghbslots[0] = 3*triangle[0]+i;
+		nghb[0] = adjacency[nghbslots[0]];
 	    }
 
 	for (int i = 0; i < 3; i++)
-	    if (edges[triangle[1]][i].otherNode(triangle[1]) 
-		== triangle[2]){
-		tedges[1] = edges[triangle[1]][i];
-		inverttedges[1] = tedges[1].tail() == triangle[1];
+	    if (adjacency[3*triangle[1]+i] == triangle[2]){
+		tslots[1] = 3*triangle[1]+i;
+		inverttedges[1] = tail(tslots[1]) == triangle[1];
 	    }
-	    else if (edges[triangle[1]][i].otherNode(triangle[1])
-		     != triangle[0]){
-		nghbedges[1] = edges[triangle[1]][i];
-		nghb[1] = nghbedges[1].otherNode(triangle[1]);
+	    else if (adjacency[3*triangle[1]+i] != triangle[0]){
+		nghbslots[1] = 3*triangle[1]+i;
+		nghb[1] = adjacency[nghbslots[1]];
 	    }
 
 	for (int i = 0; i < 3; i++)
-	    if (edges[triangle[2]][i].otherNode(triangle[2]) 
-		  != triangle[0]
-		&& edges[triangle[2]][i].otherNode(triangle[2]) 
-		     != triangle[1]){
-		nghbedges[2] = edges[triangle[2]][i];
-		nghb[2] = nghbedges[2].otherNode(triangle[2]);
+	    if (adjacency[3*triangle[2]+i] != triangle[0]
+		&& adjacency[3*triangle[2]+i] != triangle[1]){
+		nghbslots[2] = 3*triangle[2]+i;
+		nghb[2] = adjacency[nghbslots[2]];
 	    }
 
 	int nroftrue = 0;
@@ -1055,9 +1702,9 @@ public class YutsisGraph extends AbstractYutsis{
 		inverttedges[i] = !inverttedges[i];
 	for (int i = 0; i < 3; i++){
 	    if (inverttedges[i])
-		invertEdge(tedges[i]);
-	    if (nghbedges[i].tail() != triangle[i])
-		invertEdge(nghbedges[i]);
+		invertEdge(tslots[i]);
+	    if (tail(nghbslots[i]) != triangle[i])
+		invertEdge(nghbslots[i]);
 	}
     }
 
@@ -1071,10 +1718,10 @@ public class YutsisGraph extends AbstractYutsis{
      * @see Yutsis 
      **/
     public void interchange(int [] nodes, int [] icnodes){
-	Edge [] ices = new Edge[2];
-	Edge [] nghbedges = new Edge[2];
-	formatInterchange(nodes, icnodes, ices, nghbedges);
-	performInterchange(nodes, icnodes, ices, nghbedges);
+	int [] icslots = new int[2];
+	int [] nghbslots = new int[2];
+	formatInterchange(nodes, icnodes, icslots, nghbslots);
+	performInterchange(nodes, icnodes, icslots, nghbslots);
 	fireStateChanged();
     }
 
@@ -1085,40 +1732,39 @@ public class YutsisGraph extends AbstractYutsis{
      *              is performed
      * @param icnodes the endpoints of the Edges to be interchanged in 
      *                the proper order
-     * @param ices the Edges to be interchanged in the proper order
-     * @param nhbedges the Edges coupled in the endpoint of the 
-     *                 Edge on which the interchange is performed
-     *                 which are NOT to be interchanged
-     * @see Edge
+     * @param icslots the slots at nodes of the Edges to be interchanged
+     *                in the proper order
+     * @param nghbslots the slots at nodes of the Edges which are NOT
+     *                  to be interchanged
      **/
     private void formatInterchange(int [] nodes, int [] icnodes, 
-				   Edge [] ices, Edge [] nghbedges){
+				   int [] icslots, int [] nghbslots){
 	for (int i=0; i < 3; i++)
-	    if (edges[nodes[0]][i].otherNode(nodes[0]) == icnodes[0])
-		ices[0] = edges[nodes[0]][i];
-	    else if (edges[nodes[0]][i].otherNode(nodes[0]) != nodes[1])
-		nghbedges[0] = edges[nodes[0]][i];
+	    if (adjacency[3*nodes[0]+i] == icnodes[0])
+		icslots[0] = 3*nodes[0]+i;
+	    else if (adjacency[3*nodes[0]+i] != nodes[1])
+		nghbslots[0] = 3*nodes[0]+i;
 	for (int i=0; i < 3; i++)
-	    if (edges[nodes[1]][i].otherNode(nodes[1]) == icnodes[1])
-		ices[1] = edges[nodes[1]][i];
-	    else if (edges[nodes[1]][i].otherNode(nodes[1]) != nodes[0])
-		nghbedges[1] = edges[nodes[1]][i];
+	    if (adjacency[3*nodes[1]+i] == icnodes[1])
+		icslots[1] = 3*nodes[1]+i;
+	    else if (adjacency[3*nodes[1]+i] != nodes[0])
+		nghbslots[1] = 3*nodes[1]+i;
 	log("Formatting interchange on edge: " 
 	    + edges(nodes[0],nodes[1])[0] + "\n  interchanging edges: "
-	    + ices[0] +", " + ices[1]);
+	    + edge(icslots[0]) +", " + edge(icslots[1]));
 
 	if (!sign(nodes[0]))
 	    invertSign(nodes[0]);
 	if (!sign(nodes[1]))
 	    invertSign(nodes[1]);
-	if (ices[0].tail() != nodes[0])
-	    invertEdge(ices[0]);
-	if (ices[1].tail() != nodes[1])
-	    invertEdge(ices[1]);
-	if (nghbedges[0].tail() != nodes[0])
-	    invertEdge(nghbedges[0]);
-	if (nghbedges[1].tail() != nodes[1])
-	    invertEdge(nghbedges[1]);
+	if (tail(icslots[0]) != nodes[0])
+	    invertEdge(icslots[0]);
+	if (tail(icslots[1]) != nodes[1])
+	    invertEdge(icslots[1]);
+	if (tail(nghbslots[0]) != nodes[0])
+	    invertEdge(nghbslots[0]);
+	if (tail(nghbslots[1]) != nodes[1])
+	    invertEdge(nghbslots[1]);
     }
 
     /** 
@@ -1128,39 +1774,58 @@ public class YutsisGraph extends AbstractYutsis{
      *              is performed
      * @param icnodes the endpoints of the Edges to be interchanged in 
      *                the proper order
-     * @param ices the Edges to be interchanged in the proper order
-     * @param nhbedges the Edges coupled in the endpoint of the 
-     *                 Edge on which the interchange is performed
-     *                 which are NOT to be interchanged
-     * @see Edge
+     * @param icslots the slots at nodes of the Edges to be interchanged
+     *                in the proper order
+     * @param nghbslots the slots at nodes of the Edges which are NOT
+     *                  to be interchanged
      **/
     private void performInterchange(int [] nodes, int [] icnodes, 
-				    Edge [] ices, Edge [] nghbedges){
-	Edge e = null;
-	for (int i = 0; i < 3; i++){
-	    if (edges[nodes[0]][i].otherNode(nodes[0]) == icnodes[0])
-		edges[nodes[0]][i] = ices[1];
-	    else if (edges[nodes[0]][i].otherNode(nodes[0]) == nodes[1]){
-		e = edges[nodes[0]][i];
-	    }
-	    if (edges[nodes[1]][i].otherNode(nodes[1]) == icnodes[1])
-		edges[nodes[1]][i] = ices[0];
+				    int [] icslots, int [] nghbslots){
+	int eslot = -1;
+	for (int i = 0; i < 3; i++)
+	    if (adjacency[3*nodes[0]+i] == nodes[1])
+		eslot = 3*nodes[0]+i;
+	int [] ictwins = {twin(icslots[0]), twin(icslots[1])};
+	int [] iclabels = {labelIds[icslots[0]], labelIds[icslots[1]]};
+	// both interchanged edges keep their tail at nodes
+	setSlot(icslots[0],icnodes[1],iclabels[1],false);
+	setSlot(ictwins[1],nodes[0],iclabels[1],true);
+	setSlot(icslots[1],icnodes[0],iclabels[0],false);
+	setSlot(ictwins[0],nodes[1],iclabels[0],true);
+	int oldlabel = labelIds[eslot];
+	int etwin = twin(eslot);
+	if (undolog != null){
+	    push(eslot); push(etwin); push(oldlabel); push(newlabelcount);
+	    push(UNDO_LABEL);
 	}
-	String oldlabel = e.label();
-	e.setLabel(newlabelbase+(newlabelcount++));
-	newlabels.add(e.label());
-	ices[0].setTail(nodes[1]);
-	ices[1].setTail(nodes[0]);
-	log("Performed interchange on edge: " + oldlabel + "->" + e 
-		    + "\n  interchanging edges: " + ices[0] + ", " + ices[1]);
+	int newlabel = newLabel();
+	changed();
+	labelIds[eslot] = labelIds[etwin] = newlabel;
+	log("Performed interchange on edge: " + labels.label(oldlabel) + "->" 
+	    + edge(eslot)
+		    + "\n  interchanging edges: " + edge(icslots[1]) + ", " 
+	    + edge(icslots[0]));
 	//code for generating sum(nl)[(-1)^(ic1+ic2+e+nl) (2nl+1) 
 	// 6j(nghbedges[0], ices[1], nl, nghbedges[1], ices[0], e) or 
 	// 6j(nghbedges[1], ices[0], nl, nghbedges[0], ices[1], e)] 
 	// depending on direction of e -> does not matter (invariants)
-	genrecoupcoeff.interchange(oldlabel,
-				   ices[0].label(), ices[1].label(), 
-				   nghbedges[0].label(), 
-				   nghbedges[1].label(),e.label());
+	ReductionMetrics m = ReductionMetrics.begin(ReductionMetrics.FORMULA);
+	genrecoupcoeff.interchange(oldlabel, iclabels[1], iclabels[0],
+				   labelIds[nghbslots[0]], 
+				   labelIds[nghbslots[1]], newlabel);
+	ReductionMetrics.end(m);
+    }
+
+    /** 
+     * Returns the id of the next new label, skipping the names that
+     * are labels of the original graph.
+     **/
+    private int newLabel(){
+	int id;
+	do
+	    id = labels.id(newlabelbase+(newlabelcount++));
+	while (id < originallabels);
+	return id;
     }
 
     /** 
@@ -1174,9 +1839,8 @@ public class YutsisGraph extends AbstractYutsis{
 	if (n() != 1)
 	    return false;
 	int [] td = new int[2]; int tdcount = 0;
-	for (int i = 0; i < order(); i++)
-	    if (!isRemoved(i))
-		td[tdcount++] = i;
+	for (int i = nextNode(-1); i < order(); i = nextNode(i))
+	    td[tdcount++] = i;
 
 	return triangularDelta(td[0],td[1]);
     }
@@ -1210,8 +1874,8 @@ public class YutsisGraph extends AbstractYutsis{
         int invertcount = 0; // nr of edges to be inverted with sign(node1)
 	for (int i = 0; i < 3; i++){
 	    invertedges[i] = sign(node1) ? 
-		edges[node1][i].head() == node1 : 
-		edges[node1][i].tail() == node1;
+		head(3*node1+i) == node1 : 
+		tail(3*node1+i) == node1;
 	    if (invertedges[i])
 		invertcount++;
 	}
@@ -1222,22 +1886,232 @@ public class YutsisGraph extends AbstractYutsis{
 		invertSign(node1);
 		for (int i = 0; i < 3; i++)
 		    if (!invertedges[i])
-			invertEdge(edges[node1][i]);
+			invertEdge(3*node1+i);
 	    }
 	    else {
 		invertSign(node2);
 		for (int i = 0; i < 3; i++)
 		    if (invertedges[i])
-			invertEdge(edges[node1][i]);
+			invertEdge(3*node1+i);
 	    }
 	}
 	else  // only edges need to be inverted
 	    for (int i = 0; i < 3; i++)
 		    if (invertedges[i])
-			invertEdge(edges[node1][i]);
+			invertEdge(3*node1+i);
 	return true;
     }
     
+    /*------------ Canonical form ---------------*/
+
+    /** 
+     * Returns a canonical form of the current graph: two YutsisGraphs
+     * have the same canonical form iff they are isomorphic, respecting
+     * the node signs (the cyclic order of the edges in each node) and
+     * the edge directions, but not the labels. The canonical form is
+     * the smallest code produced by a breadth first search from each
+     * slot, visiting the edges of each node in cyclic order starting
+     * from the edge by which it was reached. The code holds for each
+     * edge of each node in the order of numbering: the number of the
+     * neighbor, 1 if the node is the head of the edge (0 otherwise),
+     * and the position of the edge in the cyclic order of the
+     * neighbor.
+     * @param canonical filled with the canonical number of each node,
+     *                  -1 for removed nodes (length at least order())
+     * @return the canonical code, or null if the graph has open edges
+     *         or is not connected
+     **/
+    public int [] canonicalForm(int [] canonical){
+	for (int v = nextNode(-1); v < order(); v = nextNode(v))
+	    for (int i = 0; i < 3; i++)
+		if (adjacency[3*v+i] == -1)
+		    return null;
+	int [] best = null;
+	int [] code = new int[9*nrOfNodes()];
+	int [] number = new int[order()];
+	int [] entry = new int[order()];
+	int [] queue = new int[nrOfNodes()];
+	for (int v = nextNode(-1); v < order(); v = nextNode(v))
+	    for (int i = 0; i < 3; i++)
+		if (canonicalCode(3*v+i, code, best, number, entry, queue)){
+		    best = code.clone();
+		    Arrays.fill(canonical, -1);
+		    for (int k = 0; k < queue.length; k++)
+			canonical[queue[k]] = k;
+		}
+	return best;
+    }
+
+    /** 
+     * Generates the code of the breadth first search from the given
+     * slot as described at {@link #canonicalForm}, leaving the nodes
+     * in order of numbering in <code>queue</code>. The search is
+     * abandoned as soon as the code is bigger than <code>best</code>.
+     * @return true if the code is smaller than <code>best</code>
+     **/
+    private boolean canonicalCode(int start, int [] code, int [] best,
+				  int [] number, int [] entry, int [] queue){
+	Arrays.fill(number, -1);
+	boolean smaller = best == null;
+	int c = 0, head = 0, tail = 0;
+	number[start/3] = tail;
+	entry[start/3] = start;
+	queue[tail++] = start/3;
+	while (head < tail){
+	    int node = queue[head++];
+	    int step = sign(node) ? 1 : 2;
+	    for (int i = 0, slot = entry[node]; i < 3; 
+		 i++, slot = 3*node + (slot+step)%3){
+		int nghb = adjacency[slot];
+		int twin = twin(slot);
+		if (number[nghb] == -1){
+		    number[nghb] = tail;
+		    entry[nghb] = twin;
+		    queue[tail++] = nghb;
+		}
+		int d = (twin - entry[nghb] + 3)%3;
+		int [] triple = {number[nghb], heads.get(slot) ? 1 : 0,
+				 sign(nghb) ? d : (3-d)%3};
+		for (int k = 0; k < 3; k++, c++){
+		    code[c] = triple[k];
+		    if (!smaller){
+			if (code[c] > best[c])
+			    return false;
+			smaller = code[c] < best[c];
+		    }
+		}
+	    }
+	}
+	return smaller && tail == queue.length;
+    }
+
+    /*------------ Undo log ---------------*/
+
+    /** 
+     * Sets a mark to which this YutsisGraph, including its {@link
+     * GenRecoupCoeff}, can be rolled back. From the first mark on all
+     * changes are recorded in an undo log, such that alternative
+     * reductions can be explored without copying the graph. Marks
+     * can be nested; they have to be released (by {@link #rollback}
+     * or {@link #commit}) in the reverse order in which they are set.
+     * @return the mark
+     * @see #rollback
+     * @see #commit
+     **/
+    public int mark(){
+	if (undolog == null){
+	    undolog = new int[64];
+	    undosize = 0;
+	}
+	int mark = undosize;
+	push(topmark); push(genrecoupcoeff.mark()); push(UNDO_MARK);
+	topmark = mark;
+	return mark;
+    }
+
+    /** 
+     * Undoes all changes made since <code>mark</code> was set and
+     * releases the mark (and all marks set after it). Listeners are
+     * notified of the change.
+     * @param mark a mark returned by {@link #mark}
+     * @throws IllegalArgumentException if the mark is not set
+     * @see #mark
+     **/
+    public void rollback(int mark){
+	checkMark(mark);
+	while (undosize > mark)
+	    switch (pop()){
+	    case UNDO_MARK:
+		genrecoupcoeff.rollback(pop());
+		topmark = pop();
+		break;
+	    case UNDO_SIGN:
+		nodeSign.flip(pop());
+		break;
+	    case UNDO_SETSIGN:{
+		boolean sign = pop() == 1;
+		nodeSign.set(pop(),sign);
+		break;
+	    }
+	    case UNDO_EDGE:
+		heads.flip(pop());
+		heads.flip(pop());
+		break;
+	    case UNDO_SLOT:{
+		boolean head = pop() == 1;
+		int labelid = pop();
+		int other = pop();
+		int slot = pop();
+		adjacency[slot] = other;
+		labelIds[slot] = labelid;
+		heads.set(slot,head);
+		nghbCache[slot/3] = null;
+		break;
+	    }
+	    case UNDO_REMOVE:{
+		int node2 = pop();
+		int node1 = pop();
+		for (int i = 2; i >= 0; i--)
+		    adjacency[3*node2+i] = pop();
+		for (int i = 2; i >= 0; i--)
+		    adjacency[3*node1+i] = pop();
+		relink(node2);
+		relink(node1);
+		n++;
+		break;
+	    }
+	    case UNDO_LABEL:{
+		newlabelcount = pop();
+		int labelid = pop();
+		int etwin = pop();
+		int eslot = pop();
+		labelIds[eslot] = labelIds[etwin] = labelid;
+		break;
+	    }
+	    }
+	if (topmark == -1)
+	    undolog = null;
+	log("Rolled back to mark " + mark);
+	fireStateChanged();
+    }
+
+    /** 
+     * Releases <code>mark</code> (and all marks set after it) keeping
+     * the changes made since. If no marks are left, changes are no 
+     * longer recorded.
+     * @param mark a mark returned by {@link #mark}
+     * @throws IllegalArgumentException if the mark is not set
+     * @see #mark
+     **/
+    public void commit(int mark){
+	checkMark(mark);
+	topmark = undolog[mark];
+	if (topmark == -1){
+	    genrecoupcoeff.commit(undolog[mark+1]);
+	    undolog = null;
+	    undosize = 0;
+	}
+    }
+
+    private void checkMark(int mark){
+	int m = topmark;
+	while (m > mark)
+	    m = undolog[m];
+	if (m != mark || mark < 0)
+	    throw new IllegalArgumentException("No mark " + mark);
+    }
+
+    private void push(int value){
+	if (undosize == undolog.length){
+	    int [] newlog = new int[2*undolog.length];
+	    System.arraycopy(undolog,0,newlog,0,undosize);
+	    undolog = newlog;
+	}
+	undolog[undosize++] = value;
+    }
+
+    private int pop(){ return undolog[--undosize]; }
+
     /** 
      * Returns the General Recoupling Coefficient corresponding with
      * the current state of this YutsisGraph. 
@@ -1262,7 +2136,57 @@ public class YutsisGraph extends AbstractYutsis{
      * Returns the braket notation of the original YutsisGraph.
      * @return the braket notation of the original YutsisGraph
      **/
-    public String braket(){ return braket; }
+    public String braket(){
+	// a graph read in EDGELIST format has no braket until it is
+	// needed or the graph is changed
+	if (braket == null)
+	    braket = tablesBraket();
+	return braket;
+    }
+
+    /**
+     * Returns the braket of the unchanged graph built from its tables,
+     * as set by {@link #setTables}.
+     **/
+    private String tablesBraket(){
+	StringBuffer out = new StringBuffer(16*order);
+	out.append('<');
+	appendTree(0, out);
+	out.append('|');
+	appendTree(order, out);
+	out.append('>');
+	return out.toString();
+    }
+
+    /**
+     * Appends the tree of the nodes <code>first, ..., first+order-1</code>
+     * of the unchanged graph, without recursion. The root is the last
+     * node and the slots 0 and 1 of a node hold its children.
+     **/
+    private void appendTree(int first, StringBuffer out){
+	int [] node = new int[order]; // node per level
+	int [] child = new int[order]; // next child per level
+	int level = 0;
+	node[0] = first+order-1;
+	while (level >= 0){
+	    int slot = 3*node[level];
+	    if (child[level] == 2){
+		out.append(')').append(labels.label(labelIds[slot+2]));
+		level--;
+		continue;
+	    }
+	    out.append(child[level] == 0 ? '(' : ',');
+	    slot += child[level]++;
+	    int other = adjacency[slot];
+	    if (other >= first && other < first+order){
+		level++;
+		node[level] = other;
+		child[level] = 0;
+	    }
+	    else
+		out.append(labels.label(labelIds[slot]));
+	}
+    }
 
     /** 
      * Sets the PrintStream to which all operation which alter the
@@ -1284,16 +2208,15 @@ public class YutsisGraph extends AbstractYutsis{
     public String toString(){
 	StringBuffer sb = new StringBuffer();
 	sb.append(n()); sb.append('\n');
-	for (int i = 0; i < order(); i++)
-	    if (!isRemoved(i)){
-		sb.append((sign(i) ? "+" : "-") + i + " | ");
-		for (int j = 0; j < 3; j++){
-		    sb.append(edges[i][j].label() + ":" 
-			      + (edges[i][j].head() == i ? '+' : '-')
-			      + edges[i][j].otherNode(i) + " ");
-		}
-		sb.append('\n');
+	for (int i = nextNode(-1); i < order(); i = nextNode(i)){
+	    sb.append((sign(i) ? "+" : "-") + i + " | ");
+	    for (int j = 0; j < 3; j++){
+		sb.append(label(3*i+j) + ":" 
+			  + (head(3*i+j) == i ? '+' : '-')
+			  + adjacency[3*i+j] + " ");
 	    }
+	    sb.append('\n');
+	}
 	return sb.toString();
     }
 
@@ -1305,11 +2228,7 @@ public class YutsisGraph extends AbstractYutsis{
      * @return a label for the edge (i,j) or null if no label is desired.
      **/
     public String [] gmlEdgeLabels(int i){
-	String [] labels = new String[3];
-	Edge [] edges = edges(i);
-	for (int j = 0; j < 3; j++)
-	    labels[j] = edges[j].label();
-	return labels;
+	return edgeLabels(i);
     }
 
     /** 
@@ -1320,27 +2239,19 @@ public class YutsisGraph extends AbstractYutsis{
     public Object clone(){
 	YutsisGraph y = null;
 	y = (YutsisGraph) super.clone();
-	y.nodeSign = new boolean[nodeSign.length];
-	System.arraycopy(nodeSign,0,y.nodeSign,0,nodeSign.length);
-	y.edges = new Edge[edges.length][3];
-	HashMap edgeshm = new HashMap(4*order());
-	for (int i = 0; i < edges.length; i++)
-	    if (!isRemoved(i))
-		for (int j = 0; j < 3; j++){
-		    Edge e = (Edge) edgeshm.get(edges[i][j].label());
-		    if (e == null){
-			y.edges[i][j] = (Edge) edges[i][j].clone();
-			edgeshm.put(y.edges[i][j].label(), y.edges[i][j]);
-		    }
-		    else
-			y.edges[i][j] = e;
-		}
-	    else
-		for (int j = 0; j < 3; j++)
-		    y.edges[i][j] = null;	      
-	// Immutable objects -> values don't have to be cloned
-	y.newlabels = (HashSet) newlabels.clone();
+	y.nodeSign = (BitSet) nodeSign.clone();
+	y.adjacency = adjacency.clone();
+	y.labelIds = labelIds.clone();
+	y.heads = (BitSet) heads.clone();
+	// the cached arrays are never modified: sharing OK
+	y.nghbCache = nghbCache.clone();
+	y.nextNode = nextNode.clone();
+	y.previousNode = previousNode.clone();
 	y.genrecoupcoeff = (GenRecoupCoeff) genrecoupcoeff.clone();
+	// the clone starts without marks
+	y.undolog = null;
+	y.undosize = 0;
+	y.topmark = -1;
 	return y;
     }
     
@@ -1352,21 +2263,14 @@ public class YutsisGraph extends AbstractYutsis{
      * "usage" to System.err.
      **/
     public static void main(String [] args) throws IOException{
-    String usage = new String("Usage: java YutsisGraph <YutsisGraph>\n <YutsisGraph>:= \"<Bra|Ket>\" | <filename>\n <filename> must be in BRAKET of YTS format\n  (see documentation of Class YutsisGraph for more info)");
+    String usage = new String("Usage: java YutsisGraph <YutsisGraph>\n <YutsisGraph>:= \"<Bra|Ket>\" | <filename>\n <filename> must be in BRAKET, YTS or EDGELIST format\n  (see documentation of Class YutsisGraph for more info)");
       YutsisGraph y = null;
       if (args.length == 1){
 	  try {	  
 	      if (args[0].charAt(0) == '<')
 		  y = new YutsisGraph(args[0]);
-	      else {
-		  int format = YutsisGraph.guessFileFormat(args[0]);
-		  if (format == -1){
-		      System.err.println(usage);
-		      return;
-		  }
-		  y = new YutsisGraph(new BufferedReader(new FileReader(args[0])),
-				      format);
-	      }
+	      else
+		  y = read(args[0]);
 	  }
 	  catch (IllegalArgumentException e){
 	      System.err.println(e.getMessage());
@@ -1513,7 +2417,7 @@ public class YutsisGraph extends AbstractYutsis{
 			    filename = args.nextToken();
 			    int format = guessFileFormat(filename);
 			    if (format == -1)
-				System.err.println("Illegal format: use BRAKET or YTS format (see documentation YutsisGraph)");			
+				System.err.println("Illegal format: use BRAKET, YTS or EDGELIST format (see documentation YutsisGraph)");			
 				y = new YutsisGraph(new BufferedReader(new 
 				    FileReader(filename)),format);
 				pg = new PathGenerator(y);